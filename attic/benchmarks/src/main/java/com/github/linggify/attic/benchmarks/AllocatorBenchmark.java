@@ -0,0 +1,96 @@
+package com.github.linggify.attic.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.linggify.attic.util.IAllocator;
+
+/**
+ * Measures allocating and freeing vertex buffer segments the way batches do
+ * when sprites are added and removed
+ *
+ * @author Fredie
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AllocatorBenchmark {
+
+	/** the size of one sprite in the default sprite layout */
+	private static final int SPRITE_BYTES = 4 * 20;
+
+	@Param({ "1000", "10000" })
+	public int mLiveAllocations;
+
+	private IAllocator mAllocator;
+	private int[] mHandles;
+	private Random mRandom;
+
+	@Setup(Level.Iteration)
+	public void setup() {
+		// room for twice the live allocations, the same as a half full batch
+		mAllocator = createAllocator(mLiveAllocations * SPRITE_BYTES * 2);
+		mHandles = new int[mLiveAllocations];
+		mRandom = new Random(42);
+		for (int i = 0; i < mHandles.length; i++)
+			mHandles[i] = mAllocator.allocate(SPRITE_BYTES * (1 + mRandom.nextInt(2)));
+	}
+
+	/**
+	 * @param capacity
+	 * @return the {@link IAllocator} to measure
+	 */
+	protected IAllocator createAllocator(int capacity) {
+		return new BestFitAllocator(capacity);
+	}
+
+	@Benchmark
+	public int churn() {
+		// replace a random allocation by one of a random size
+		int i = mRandom.nextInt(mHandles.length);
+		mAllocator.free(mHandles[i]);
+		mHandles[i] = allocate(SPRITE_BYTES * (1 + mRandom.nextInt(2)));
+		return mHandles[i];
+	}
+
+	@Benchmark
+	public int churnAndDefragment() {
+		// the same as churn, defragmenting a sprite per change like a batch does every frame
+		int handle = churn();
+		mAllocator.defragment(SPRITE_BYTES);
+		return handle;
+	}
+
+	/**
+	 * Allocates the given amount of bytes, defragmenting all allocations if
+	 * the free bytes are too fragmented
+	 *
+	 * @param length
+	 * @return the handle of the allocation
+	 */
+	private int allocate(int length) {
+		int handle = mAllocator.allocate(length);
+		if (handle == IAllocator.INVALID_HANDLE) {
+			mAllocator.defragment(Integer.MAX_VALUE);
+			handle = mAllocator.allocate(length);
+		}
+		return handle;
+	}
+}
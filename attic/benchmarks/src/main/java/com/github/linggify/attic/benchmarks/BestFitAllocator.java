@@ -0,0 +1,267 @@
+package com.github.linggify.attic.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.github.linggify.attic.exceptions.AtticRuntimeException;
+import com.github.linggify.attic.util.IAllocator;
+
+/**
+ * A BestFitAllocator hands out the smallest free block that is large enough
+ * for an allocation. If the free bytes are too fragmented for an allocation,
+ * all allocations are moved to the front, so the free bytes form a single
+ * block at the end. It is the allocator the vertex buffers used before the
+ * {@link com.github.linggify.attic.util.FreeListAllocator}, kept as the
+ * baseline of the {@link AllocatorBenchmark}
+ *
+ * @author Fredie
+ *
+ */
+public class BestFitAllocator implements IAllocator {
+
+	private final int mCapacity;
+	private int mFreeBytes;
+
+	// all blocks, sorted by their offset
+	private final List<Block> mBlocks;
+
+	private Block[] mHandles;
+	private int mHandleCount;
+	private int[] mFreeHandles;
+	private int mFreeHandleCount;
+
+	private MoveListener mListener;
+
+	/**
+	 * Creates a new {@link BestFitAllocator} managing the given amount of
+	 * bytes
+	 *
+	 * @param capacity
+	 */
+	public BestFitAllocator(int capacity) {
+		if (capacity <= 0)
+			throw new AtticRuntimeException("The capacity must be positive, but was " + capacity);
+
+		mCapacity = capacity;
+		mFreeBytes = capacity;
+		mBlocks = new ArrayList<>();
+		mBlocks.add(new Block(0, capacity));
+
+		mHandles = new Block[16];
+		mFreeHandles = new int[16];
+	}
+
+	@Override
+	public int allocate(int length) {
+		if (length <= 0)
+			throw new AtticRuntimeException("Cannot allocate " + length + " bytes");
+		if (mFreeBytes < length)
+			return INVALID_HANDLE;
+
+		// find the best fitting free block
+		int fit = -1;
+		int fitLength = Integer.MAX_VALUE;
+		for (int i = 0; i < mBlocks.size(); i++) {
+			Block block = mBlocks.get(i);
+			if (block.mHandle == INVALID_HANDLE && block.mLength >= length && block.mLength < fitLength) {
+				fit = i;
+				fitLength = block.mLength;
+			}
+		}
+
+		// if no block is large enough, group all free bytes together
+		if (fit == -1) {
+			compact();
+			fit = mBlocks.size() - 1;
+		}
+
+		Block free = mBlocks.get(fit);
+		Block used;
+		if (free.mLength == length) {
+			used = free;
+		} else {
+			// split the used part off the front of the free block
+			used = new Block(free.mOffset, length);
+			free.mOffset += length;
+			free.mLength -= length;
+			mBlocks.add(fit, used);
+		}
+
+		used.mHandle = newHandle(used);
+		mFreeBytes -= length;
+		return used.mHandle;
+	}
+
+	/**
+	 * Moves all used blocks to the front, leaving a single free block at the
+	 * end
+	 */
+	private void compact() {
+		int offset = 0;
+		int used = 0;
+		for (int i = 0; i < mBlocks.size(); i++) {
+			Block block = mBlocks.get(i);
+			if (block.mHandle == INVALID_HANDLE)
+				continue;
+
+			if (block.mOffset != offset) {
+				int from = block.mOffset;
+				block.mOffset = offset;
+				if (mListener != null)
+					mListener.onMove(block.mHandle, from, offset, block.mLength);
+			}
+
+			offset += block.mLength;
+			mBlocks.set(used++, block);
+		}
+
+		while (mBlocks.size() > used)
+			mBlocks.remove(mBlocks.size() - 1);
+		if (offset < mCapacity)
+			mBlocks.add(new Block(offset, mCapacity - offset));
+	}
+
+	@Override
+	public void free(int handle) {
+		Block block = block(handle);
+		block.mHandle = INVALID_HANDLE;
+		mHandles[handle] = null;
+		mFreeHandles[mFreeHandleCount++] = handle;
+		mFreeBytes += block.mLength;
+
+		// merge with free neighbours
+		int index = indexOf(block);
+		if (index + 1 < mBlocks.size()) {
+			Block next = mBlocks.get(index + 1);
+			if (next.mHandle == INVALID_HANDLE) {
+				block.mLength += next.mLength;
+				mBlocks.remove(index + 1);
+			}
+		}
+		if (index > 0) {
+			Block previous = mBlocks.get(index - 1);
+			if (previous.mHandle == INVALID_HANDLE) {
+				previous.mLength += block.mLength;
+				mBlocks.remove(index);
+			}
+		}
+	}
+
+	/**
+	 * Finds the position of the given {@link Block} using a binary search over
+	 * the offsets
+	 *
+	 * @param block
+	 * @return the position of the Block
+	 */
+	private int indexOf(Block block) {
+		int low = 0;
+		int high = mBlocks.size() - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int offset = mBlocks.get(mid).mOffset;
+			if (offset < block.mOffset)
+				low = mid + 1;
+			else if (offset > block.mOffset)
+				high = mid - 1;
+			else
+				return mid;
+		}
+
+		throw new AtticRuntimeException("Block at offset " + block.mOffset + " is not managed by this allocator");
+	}
+
+	/**
+	 * Creates a new handle for the given {@link Block}
+	 *
+	 * @param block
+	 * @return the handle
+	 */
+	private int newHandle(Block block) {
+		int handle;
+		if (mFreeHandleCount > 0) {
+			handle = mFreeHandles[--mFreeHandleCount];
+		} else {
+			if (mHandleCount == mHandles.length) {
+				mHandles = Arrays.copyOf(mHandles, mHandleCount * 2);
+				mFreeHandles = Arrays.copyOf(mFreeHandles, mHandleCount * 2);
+			}
+			handle = mHandleCount++;
+		}
+
+		mHandles[handle] = block;
+		return handle;
+	}
+
+	/**
+	 *
+	 * @param handle
+	 * @return the used {@link Block} with the given handle
+	 */
+	private Block block(int handle) {
+		if (handle < 0 || handle >= mHandleCount || mHandles[handle] == null)
+			throw new AtticRuntimeException("Invalid allocation handle " + handle);
+
+		return mHandles[handle];
+	}
+
+	@Override
+	public int offset(int handle) {
+		return block(handle).mOffset;
+	}
+
+	@Override
+	public int length(int handle) {
+		return block(handle).mLength;
+	}
+
+	@Override
+	public int capacity() {
+		return mCapacity;
+	}
+
+	@Override
+	public int freeBytes() {
+		return mFreeBytes;
+	}
+
+	/**
+	 * Does nothing, a {@link BestFitAllocator} compacts all allocations when
+	 * an allocation does not fit otherwise
+	 */
+	@Override
+	public int defragment(int budget) {
+		return 0;
+	}
+
+	@Override
+	public void setMoveListener(MoveListener listener) {
+		mListener = listener;
+	}
+
+	/**
+	 * A range of bytes that is either free or used by an allocation
+	 *
+	 * @author Fredie
+	 *
+	 */
+	private static class Block {
+
+		private int mOffset;
+		private int mLength;
+		private int mHandle;
+
+		/**
+		 * Creates a new free {@link Block}
+		 *
+		 * @param offset
+		 * @param length
+		 */
+		Block(int offset, int length) {
+			mOffset = offset;
+			mLength = length;
+			mHandle = INVALID_HANDLE;
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package com.github.linggify.attic.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.linggify.attic.logic.Entity;
+import com.github.linggify.attic.logic.IProperty;
+import com.github.linggify.attic.properties.SpriteRendererProperty;
+import com.github.linggify.attic.properties.TransformProperty;
+import com.github.linggify.attic.render.RenderData;
+
+/**
+ * Measures looking up {@link IProperty}s of an {@link Entity}
+ *
+ * @author Fredie
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityBenchmark {
+
+	private Entity mEntity;
+
+	@Setup
+	public void setup() {
+		mEntity = new Entity(null, new SpriteRendererProperty(false), new TransformProperty());
+	}
+
+	@Benchmark
+	public TransformProperty propertyByType() {
+		return mEntity.propertyByType(TransformProperty.class);
+	}
+
+	@Benchmark
+	public MissingProperty propertyByTypeMissing() {
+		return mEntity.propertyByType(MissingProperty.class);
+	}
+
+	@Benchmark
+	public List<IProperty<RenderData>> propertiesByValue() {
+		return mEntity.propertiesByValue(RenderData.class);
+	}
+
+	/**
+	 * A property type no entity in this benchmark has
+	 *
+	 * @author Fredie
+	 *
+	 */
+	public static class MissingProperty extends TransformProperty {
+	}
+}
@@ -0,0 +1,19 @@
+package com.github.linggify.attic.benchmarks;
+
+import com.github.linggify.attic.util.FreeListAllocator;
+import com.github.linggify.attic.util.IAllocator;
+
+/**
+ * Measures the {@link FreeListAllocator} with the same allocations as the
+ * {@link AllocatorBenchmark}
+ *
+ * @author Fredie
+ *
+ */
+public class FreeListAllocatorBenchmark extends AllocatorBenchmark {
+
+	@Override
+	protected IAllocator createAllocator(int capacity) {
+		return new FreeListAllocator(capacity);
+	}
+}
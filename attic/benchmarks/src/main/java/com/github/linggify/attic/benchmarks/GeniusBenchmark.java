@@ -0,0 +1,65 @@
+package com.github.linggify.attic.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.linggify.attic.logic.Genius;
+import com.github.linggify.attic.properties.TransformProperty;
+import com.github.linggify.attic.render.Renderer;
+
+/**
+ * Measures a single {@link Genius#update(double)} over N entities
+ *
+ * @author Fredie
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeniusBenchmark {
+
+	@Param({ "1000", "10000", "100000" })
+	public int mEntityCount;
+
+	@Param({ "false", "true" })
+	public boolean mParallel;
+
+	private Genius mGenius;
+
+	@Setup(Level.Trial)
+	public void setup() throws InterruptedException {
+		mGenius = new Genius(new Renderer(new StubContext()));
+		mGenius.setParallelUpdate(mParallel);
+
+		// entities are added by the Genius' own Thread
+		mGenius.start();
+		for (int i = 0; i < mEntityCount; i++)
+			mGenius.createEntity(new TransformProperty());
+		while (mGenius.getEntityCount() < mEntityCount)
+			Thread.sleep(1);
+
+		// let the Thread finish its last tick before updating from here
+		mGenius.stop();
+		Thread.sleep(100);
+	}
+
+	@Benchmark
+	public void update() {
+		mGenius.update(1.0 / 60.0);
+	}
+}
@@ -0,0 +1,102 @@
+package com.github.linggify.attic.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.linggify.attic.util.Matrix33;
+import com.github.linggify.attic.util.Vector2D;
+
+/**
+ * Measures the {@link Matrix33} and {@link Vector2D} operations used for
+ * transforms and sprites
+ *
+ * @author Fredie
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MathBenchmark {
+
+	private static final int POINTS = 1024;
+
+	private Matrix33 mLeft;
+	private Matrix33 mRight;
+	private Matrix33 mResult;
+	private Vector2D mVector;
+	private Vector2D mOther;
+	private float[] mPoints;
+	private float[] mTransformed;
+
+	@Setup
+	public void setup() {
+		mLeft = new Matrix33().compose(2, 30, 1, 2);
+		mRight = new Matrix33().compose(0.5f, 45, -3, 4);
+		mResult = new Matrix33();
+		mVector = new Vector2D(1, 2);
+		mOther = new Vector2D(3, -1);
+
+		mPoints = new float[POINTS * 2];
+		for (int i = 0; i < mPoints.length; i++)
+			mPoints[i] = i * 0.5f;
+		mTransformed = new float[POINTS * 2];
+	}
+
+	@Benchmark
+	public Matrix33 multiply() {
+		return mResult.set(mLeft).multiply(mRight);
+	}
+
+	@Benchmark
+	public Matrix33 multiplyAffine() {
+		return mResult.set(mLeft).multiplyAffine(mRight);
+	}
+
+	@Benchmark
+	public Matrix33 scaleRotateTransform() {
+		return mResult.identy().scale(2).rotate(30).transform(1, 2);
+	}
+
+	@Benchmark
+	public Matrix33 compose() {
+		return mResult.compose(2, 30, 1, 2);
+	}
+
+	@Benchmark
+	public Matrix33 invert() {
+		return mResult.set(mLeft).invert();
+	}
+
+	@Benchmark
+	public Vector2D multiplyVector() {
+		return mLeft.multiply(mVector.set(1, 2));
+	}
+
+	@Benchmark
+	public float[] transformPoints() {
+		return mLeft.transformPoints(mPoints, mTransformed, POINTS);
+	}
+
+	@Benchmark
+	public float vectorOps() {
+		return mVector.set(1, 2).add(mOther).scale(0.5f).normalize().dot(mOther);
+	}
+
+	@Benchmark
+	public byte[] vectorAsBytes() {
+		return mVector.set(1, 2).asBytes();
+	}
+}
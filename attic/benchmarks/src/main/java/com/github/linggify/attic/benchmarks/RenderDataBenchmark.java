@@ -0,0 +1,101 @@
+package com.github.linggify.attic.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.linggify.attic.properties.SpriteRendererProperty;
+import com.github.linggify.attic.render.IContext.VertexAttribute;
+import com.github.linggify.attic.render.RenderData;
+import com.github.linggify.attic.render.VertexWriter;
+
+/**
+ * Measures packing the vertices of a sprite's {@link RenderData} the way a
+ * batch uploads them
+ *
+ * @author Fredie
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderDataBenchmark {
+
+	private static final VertexAttribute[] ATTRIBUTES = { VertexAttribute.POSITION, VertexAttribute.COLOR,
+			VertexAttribute.TEX_COORD_0 };
+
+	private RenderData mData;
+	private byte[] mTarget;
+	private VertexWriter mWriter;
+	private VertexWriter mInstanceWriter;
+
+	@Setup
+	public void setup() {
+		mData = new SpriteRendererProperty(false).get();
+
+		int vertexSize = 0;
+		for (VertexAttribute attribute : ATTRIBUTES)
+			vertexSize += attribute.offset();
+		mTarget = new byte[vertexSize * mData.getVertexCount()];
+		mWriter = new VertexWriter(ByteBuffer.allocateDirect(mTarget.length).order(ByteOrder.nativeOrder()));
+		mInstanceWriter = new VertexWriter(
+				ByteBuffer.allocateDirect(RenderData.INSTANCE_SIZE).order(ByteOrder.nativeOrder()));
+	}
+
+	@Benchmark
+	public ByteBuffer writeInstance() {
+		// what an instanced batch streams per sprite and frame
+		ByteBuffer buffer = mInstanceWriter.buffer();
+		buffer.clear();
+		mData.writeInstance(mInstanceWriter);
+		return buffer;
+	}
+
+	@Benchmark
+	public ByteBuffer writeDirect() {
+		// what a batch does for every changed property
+		ByteBuffer buffer = mWriter.buffer();
+		buffer.clear();
+		mData.write(ATTRIBUTES, mWriter);
+		buffer.flip();
+		return buffer;
+	}
+
+	@Benchmark
+	public byte[] packReused() {
+		pack(mTarget);
+		return mTarget;
+	}
+
+	@Benchmark
+	public byte[] packAllocating() {
+		// what a batch used to do for every changed property
+		byte[] target = new byte[mTarget.length];
+		pack(target);
+		return target;
+	}
+
+	/**
+	 * Interleaves the vertices of the measured {@link RenderData} into the
+	 * given array in the native byte order
+	 * 
+	 * @param target
+	 */
+	private void pack(byte[] target) {
+		mData.write(ATTRIBUTES, new VertexWriter(ByteBuffer.wrap(target).order(ByteOrder.nativeOrder())));
+	}
+}
@@ -0,0 +1,81 @@
+package com.github.linggify.attic.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.linggify.attic.logic.Entity;
+import com.github.linggify.attic.properties.SpriteRendererProperty;
+import com.github.linggify.attic.properties.TransformProperty;
+import com.github.linggify.attic.render.Renderer;
+
+/**
+ * Measures registering sprites with a {@link Renderer} backed by a
+ * {@link StubContext}
+ *
+ * @author Fredie
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RendererBenchmark {
+
+	private static final int ENTITIES = 10000;
+
+	private Entity[] mEntities;
+	// static and dynamic sprites alternating, so batches of both kinds fill up
+	private Entity[] mMixed;
+	private Renderer mRenderer;
+
+	@Setup(Level.Invocation)
+	public void setup() {
+		mRenderer = new Renderer(new StubContext());
+		if (mEntities == null) {
+			mEntities = new Entity[ENTITIES];
+			for (int i = 0; i < ENTITIES; i++)
+				mEntities[i] = new Entity(null, new TransformProperty(), new SpriteRendererProperty(false));
+
+			mMixed = new Entity[ENTITIES];
+			for (int i = 0; i < ENTITIES; i++)
+				mMixed[i] = new Entity(null, new TransformProperty(), new SpriteRendererProperty(i % 2 == 0));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ENTITIES)
+	public Renderer registerEntityForRendering() {
+		for (Entity entity : mEntities)
+			mRenderer.registerEntityForRendering(entity);
+		return mRenderer;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ENTITIES)
+	public Renderer registerEntitiesForRendering() {
+		mRenderer.registerEntitiesForRendering(mEntities);
+		return mRenderer;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ENTITIES)
+	public Renderer registerMixed() {
+		for (Entity entity : mMixed)
+			mRenderer.registerEntityForRendering(entity);
+		return mRenderer;
+	}
+}
@@ -0,0 +1,58 @@
+package com.github.linggify.attic.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.linggify.attic.properties.SpritePrefab;
+import com.github.linggify.attic.properties.SpriteRendererProperty;
+import com.github.linggify.attic.util.Color;
+
+/**
+ * Measures creating sprites sharing the quad of a {@link SpritePrefab}
+ * against sprites owning their vertices. Run with -prof gc to compare the
+ * allocated bytes per sprite, the direct buffer of an owned quad adds its
+ * native memory on top of that
+ *
+ * @author Fredie
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpriteFootprintBenchmark {
+
+	private SpritePrefab mPrefab;
+	private Color mTint;
+
+	@Setup
+	public void setup() {
+		mPrefab = new SpritePrefab("sprites", false, false);
+		mTint = new Color(1, 0, 0, 1);
+	}
+
+	@Benchmark
+	public SpriteRendererProperty shared() {
+		return mPrefab.create();
+	}
+
+	@Benchmark
+	public SpriteRendererProperty owned() {
+		// tinting copies the quad, like every sprite did before prefabs
+		SpriteRendererProperty sprite = mPrefab.create();
+		sprite.setTint(mTint);
+		return sprite;
+	}
+}
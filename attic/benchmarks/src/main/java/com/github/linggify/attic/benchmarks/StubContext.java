@@ -0,0 +1,205 @@
+package com.github.linggify.attic.benchmarks;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.github.linggify.attic.logic.IProperty;
+import com.github.linggify.attic.render.FrameStats;
+import com.github.linggify.attic.render.IBatch;
+import com.github.linggify.attic.render.IContext;
+import com.github.linggify.attic.render.RenderData;
+import com.github.linggify.attic.util.Color;
+import com.github.linggify.attic.util.Matrix33;
+import com.github.linggify.attic.util.Vector2D;
+
+/**
+ * An {@link IContext} that does not talk to any graphics hardware. Its batches
+ * only count the vertices they accepted, so the cost of the engine's own
+ * bookkeeping can be measured without a GL context
+ *
+ * @author Fredie
+ *
+ */
+public class StubContext implements IContext {
+
+	/** The amount of vertices a single batch accepts, same as the lwjgl backend */
+	public static final int BATCH_VERTICES = 65536;
+
+	private int mBatchCount;
+	private final FrameStats mFrameStats = new FrameStats();
+
+	/**
+	 *
+	 * @return how many batches were generated by this {@link StubContext}
+	 */
+	public int getBatchCount() {
+		return mBatchCount;
+	}
+
+	@Override
+	public String getLog() {
+		return "";
+	}
+
+	@Override
+	public int getMaxRenderTargets() {
+		return 1;
+	}
+
+	@Override
+	public void clearRenderTargets() {
+	}
+
+	@Override
+	public void setClearColor(int target, Color color) {
+	}
+
+	@Override
+	public int newTexture() {
+		return 1;
+	}
+
+	@Override
+	public void destroyTexture(int handle) {
+	}
+
+	@Override
+	public void setPixelData(int handle, int width, int height, TextureFormat format, byte[] data) {
+	}
+
+	@Override
+	public void setTextureFilter(int handle, TextureFilter minFilter, TextureFilter magFilter) {
+	}
+
+	@Override
+	public boolean bindTexture(int unit, int handle) {
+		return true;
+	}
+
+	@Override
+	public void unbindTexture(int unit) {
+	}
+
+	@Override
+	public boolean bindRenderTarget(int target, int handle) {
+		return true;
+	}
+
+	@Override
+	public void unbindRenderTarget(int target) {
+	}
+
+	@Override
+	public int genShader(String vertexshader, String fragmentshader) {
+		return 1;
+	}
+
+	@Override
+	public void destroyShader(int handle) {
+	}
+
+	@Override
+	public boolean bindShader(int handle) {
+		return true;
+	}
+
+	@Override
+	public void unbindShader() {
+	}
+
+	@Override
+	public Map<String, Integer> getUniforms(int handle) {
+		return Collections.emptyMap();
+	}
+
+	@Override
+	public int getUniformLocation(String name) {
+		return -1;
+	}
+
+	@Override
+	public boolean setUniformInt(int location, int value) {
+		return true;
+	}
+
+	@Override
+	public boolean setUniformDouble(int location, double value) {
+		return true;
+	}
+
+	@Override
+	public boolean setUniformTexture(int location, int texture) {
+		return true;
+	}
+
+	@Override
+	public boolean setUniformMatrix(int location, Matrix33 texture) {
+		return true;
+	}
+
+	@Override
+	public boolean setUniformVector(int location, Vector2D vector) {
+		return true;
+	}
+
+	@Override
+	public boolean setAttribute(String name, int value) {
+		return true;
+	}
+
+	@Override
+	public IBatch genBatch(BatchType type, boolean isStatic, VertexAttribute... attributes) {
+		mBatchCount++;
+		return new StubBatch(attributes);
+	}
+
+	@Override
+	public void destroyBatch(IBatch batch) {
+	}
+
+	@Override
+	public boolean renderBatch(IBatch batch) {
+		return true;
+	}
+
+	@Override
+	public FrameStats getFrameStats() {
+		return mFrameStats;
+	}
+
+	/**
+	 * A batch accepting {@link RenderData} with matching attributes until
+	 * {@link StubContext#BATCH_VERTICES} are used
+	 *
+	 * @author Fredie
+	 *
+	 */
+	private static class StubBatch implements IBatch {
+
+		private final Set<VertexAttribute> mAttributes;
+		private int mVertices;
+
+		/**
+		 * Creates a new {@link StubBatch} for the given attributes
+		 *
+		 * @param attributes
+		 */
+		StubBatch(VertexAttribute... attributes) {
+			mAttributes = EnumSet.noneOf(VertexAttribute.class);
+			mAttributes.addAll(Arrays.asList(attributes));
+		}
+
+		@Override
+		public boolean accept(IProperty<RenderData> property) {
+			RenderData data = property.get();
+			if (!mAttributes.equals(data.getAttributes()) || mVertices + data.getVertexCount() > BATCH_VERTICES)
+				return false;
+
+			mVertices += data.getVertexCount();
+			return true;
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package com.github.linggify.attic.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.linggify.attic.properties.TransformProperty;
+import com.github.linggify.attic.properties.TransformStore;
+import com.github.linggify.attic.util.Matrix33;
+
+/**
+ * Measures resolving chains of {@link TransformProperty}s and updating a whole
+ * {@link TransformStore}
+ *
+ * @author Fredie
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransformBenchmark {
+
+	@Param({ "1", "8", "32" })
+	public int mDepth;
+
+	@Param({ "10000" })
+	public int mSceneSize;
+
+	private TransformProperty mRoot;
+	private TransformProperty mLeaf;
+
+	private TransformStore mScene;
+	private TransformProperty[] mSceneRoots;
+
+	@Setup
+	public void setup() {
+		TransformStore store = new TransformStore();
+		mRoot = new TransformProperty(store);
+		mLeaf = mRoot;
+		for (int i = 1; i < mDepth; i++) {
+			TransformProperty child = new TransformProperty(store);
+			child.setParentTransform(mLeaf);
+			child.setPosition(1, 0);
+			child.setRotation(10);
+			mLeaf = child;
+		}
+
+		// a scene of small hierarchies of the given depth
+		mScene = new TransformStore(mSceneSize);
+		mSceneRoots = new TransformProperty[mSceneSize / mDepth];
+		for (int i = 0; i < mSceneRoots.length; i++) {
+			TransformProperty parent = new TransformProperty(mScene);
+			mSceneRoots[i] = parent;
+			for (int c = 1; c < mDepth; c++) {
+				TransformProperty child = new TransformProperty(mScene);
+				child.setParentTransform(parent);
+				child.setPosition(1, 0);
+				parent = child;
+			}
+		}
+	}
+
+	@Benchmark
+	public Matrix33 getChainClean() {
+		return mLeaf.get();
+	}
+
+	@Benchmark
+	public Matrix33 getChainDirtyRoot() {
+		mRoot.rotate(1);
+		return mLeaf.get();
+	}
+
+	@Benchmark
+	public void updateSceneDirtyRoots() {
+		for (TransformProperty root : mSceneRoots)
+			root.rotate(1);
+		mScene.updateWorldMatrices();
+	}
+}
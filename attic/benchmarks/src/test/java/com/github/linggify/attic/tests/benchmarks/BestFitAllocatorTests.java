@@ -0,0 +1,101 @@
+package com.github.linggify.attic.tests.benchmarks;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.github.linggify.attic.benchmarks.BestFitAllocator;
+import com.github.linggify.attic.exceptions.AtticRuntimeException;
+import com.github.linggify.attic.util.IAllocator;
+
+public class BestFitAllocatorTests {
+
+	/**
+	 * Tests {@link BestFitAllocator#allocate(int)}
+	 */
+	@Test
+	public void testAllocate() {
+		BestFitAllocator allocator = new BestFitAllocator(100);
+		int a = allocator.allocate(40);
+		int b = allocator.allocate(60);
+		assertEquals(0, allocator.offset(a));
+		assertEquals(40, allocator.offset(b));
+		assertEquals(60, allocator.length(b));
+		assertEquals(0, allocator.freeBytes());
+		assertEquals(IAllocator.INVALID_HANDLE, allocator.allocate(1));
+	}
+
+	/**
+	 * Tests {@link BestFitAllocator#free(int)} choosing the best fitting block
+	 */
+	@Test
+	public void testBestFit() {
+		BestFitAllocator allocator = new BestFitAllocator(100);
+		int a = allocator.allocate(30);
+		allocator.allocate(10);
+		int c = allocator.allocate(20);
+		allocator.allocate(10);
+
+		allocator.free(a);
+		allocator.free(c);
+		assertEquals(80, allocator.freeBytes());
+
+		// the 20 byte gap fits better than the 30 byte gap or the end
+		int d = allocator.allocate(15);
+		assertEquals(40, allocator.offset(d));
+	}
+
+	/**
+	 * Tests {@link BestFitAllocator#allocate(int)} compacting fragmented
+	 * memory
+	 */
+	@Test
+	public void testCompact() {
+		BestFitAllocator allocator = new BestFitAllocator(100);
+		int[] moved = new int[1];
+		allocator.setMoveListener((handle, from, to, length) -> moved[0]++);
+
+		int a = allocator.allocate(25);
+		int b = allocator.allocate(25);
+		int c = allocator.allocate(25);
+		int d = allocator.allocate(25);
+		allocator.free(a);
+		allocator.free(c);
+
+		// neither gap is large enough on its own
+		int e = allocator.allocate(50);
+		assertNotEquals(IAllocator.INVALID_HANDLE, e);
+		assertEquals(2, moved[0]);
+		assertEquals(0, allocator.offset(b));
+		assertEquals(25, allocator.offset(d));
+		assertEquals(50, allocator.offset(e));
+	}
+
+	/**
+	 * Tests {@link BestFitAllocator#free(int)} merging neighbouring blocks
+	 */
+	@Test
+	public void testMerge() {
+		BestFitAllocator allocator = new BestFitAllocator(100);
+		int[] moved = new int[1];
+		allocator.setMoveListener((handle, from, to, length) -> moved[0]++);
+
+		int a = allocator.allocate(25);
+		int b = allocator.allocate(25);
+		allocator.allocate(50);
+		allocator.free(a);
+		allocator.free(b);
+
+		// the merged gap fits without moving anything
+		assertEquals(0, allocator.offset(allocator.allocate(50)));
+		assertEquals(0, moved[0]);
+	}
+
+	@Test (expected = AtticRuntimeException.class)
+	public void testInvalidHandleError0() {
+		BestFitAllocator allocator = new BestFitAllocator(100);
+		int a = allocator.allocate(10);
+		allocator.free(a);
+		allocator.free(a);
+	}
+}
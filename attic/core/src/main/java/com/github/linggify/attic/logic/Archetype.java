@@ -0,0 +1,167 @@
+package com.github.linggify.attic.logic;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.github.linggify.attic.exceptions.AtticRuntimeException;
+
+/**
+ * An Archetype groups all {@link Entity}s that have the same set of
+ * {@link IProperty} types. The properties of one type are kept together in a
+ * dense array (a column) which is typed with the class of the property, so
+ * systems can iterate them without looking them up entity by entity.
+ * 
+ * @author Fredie
+ *
+ */
+public class Archetype {
+
+	private final ArchetypeStore mStore;
+	private final Set<Class<?>> mTypes;
+	private final Map<Class<?>, Integer> mColumnIds;
+	private final Class<?>[] mColumnTypes;
+
+	private Object[][] mColumns;
+	private Entity[] mEntities;
+	private int mSize;
+
+	/**
+	 * Creates a new empty {@link Archetype} for the given property types
+	 * 
+	 * @param store
+	 * @param types
+	 */
+	Archetype(ArchetypeStore store, Set<Class<?>> types) {
+		mStore = store;
+		mTypes = Collections.unmodifiableSet(new HashSet<>(types));
+		mColumnIds = new HashMap<>();
+		mColumnTypes = mTypes.toArray(new Class<?>[0]);
+
+		int capacity = 16;
+		mEntities = new Entity[capacity];
+		mColumns = new Object[mColumnTypes.length][];
+		for (int i = 0; i < mColumnTypes.length; i++) {
+			mColumnIds.put(mColumnTypes[i], i);
+			mColumns[i] = (Object[]) Array.newInstance(mColumnTypes[i], capacity);
+		}
+	}
+
+	/**
+	 * 
+	 * @return the {@link ArchetypeStore} this {@link Archetype} belongs to
+	 */
+	ArchetypeStore getStore() {
+		return mStore;
+	}
+
+	/**
+	 * 
+	 * @return the property types shared by all {@link Entity}s of this
+	 *         {@link Archetype}
+	 */
+	public Set<Class<?>> getTypes() {
+		return mTypes;
+	}
+
+	/**
+	 * 
+	 * @param types
+	 * @return whether the {@link Entity}s of this {@link Archetype} have
+	 *         properties of all the given types
+	 */
+	public boolean hasTypes(Class<?>... types) {
+		for (Class<?> type : types) {
+			if (!mColumnIds.containsKey(type))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * 
+	 * @return how many {@link Entity}s belong to this {@link Archetype}
+	 */
+	public int size() {
+		return mSize;
+	}
+
+	/**
+	 * 
+	 * @param row
+	 * @return the {@link Entity} in the given row
+	 */
+	public Entity entity(int row) {
+		if (row < 0 || row >= mSize)
+			throw new AtticRuntimeException("Invalid row " + row);
+		return mEntities[row];
+	}
+
+	/**
+	 * Returns the dense array of all properties of the given type. Only the
+	 * first {@link #size()} elements are valid, and the array may be replaced
+	 * when {@link Entity}s are added, so it should not be kept around
+	 * 
+	 * @param type
+	 * @return the column of the given type or null if this {@link Archetype}
+	 *         has no such column
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T[] column(Class<T> type) {
+		Integer id = mColumnIds.get(type);
+		if (id == null)
+			return null;
+		return (T[]) mColumns[id];
+	}
+
+	/**
+	 * Adds the given {@link Entity} to this {@link Archetype}
+	 * 
+	 * @param entity
+	 * @return the row of the Entity
+	 */
+	int add(Entity entity) {
+		if (mSize == mEntities.length) {
+			int capacity = mSize * 2;
+			mEntities = Arrays.copyOf(mEntities, capacity);
+			for (int i = 0; i < mColumns.length; i++)
+				mColumns[i] = Arrays.copyOf(mColumns[i], capacity);
+		}
+
+		int row = mSize++;
+		mEntities[row] = entity;
+		for (int i = 0; i < mColumns.length; i++)
+			mColumns[i][row] = entity.firstPropertyOfType(mColumnTypes[i]);
+
+		return row;
+	}
+
+	/**
+	 * Removes the {@link Entity} in the given row by moving the last Entity
+	 * into its place
+	 * 
+	 * @param row
+	 * @return the Entity that was moved into the row or null if the removed
+	 *         Entity was the last one
+	 */
+	Entity removeAt(int row) {
+		int last = --mSize;
+		Entity moved = null;
+		if (row != last) {
+			moved = mEntities[last];
+			mEntities[row] = moved;
+			for (int i = 0; i < mColumns.length; i++)
+				mColumns[i][row] = mColumns[i][last];
+		}
+
+		mEntities[last] = null;
+		for (int i = 0; i < mColumns.length; i++)
+			mColumns[i][last] = null;
+
+		return moved;
+	}
+}
@@ -0,0 +1,132 @@
+package com.github.linggify.attic.logic;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The ArchetypeStore sorts {@link Entity}s into {@link Archetype}s by the types
+ * of their {@link IProperty}s and moves them between Archetypes whenever
+ * properties are added or removed
+ * 
+ * @author Fredie
+ *
+ */
+public class ArchetypeStore {
+
+	private final Map<Set<Class<?>>, Archetype> mArchetypes;
+	private final List<Archetype> mArchetypeList;
+
+	/**
+	 * Creates a new empty {@link ArchetypeStore}
+	 */
+	public ArchetypeStore() {
+		mArchetypes = new HashMap<>();
+		mArchetypeList = new ArrayList<>();
+	}
+
+	/**
+	 * Adds the given {@link Entity} to the {@link Archetype} matching its
+	 * properties
+	 * 
+	 * @param entity
+	 */
+	public void add(Entity entity) {
+		Set<Class<?>> types = entity.getPropertyTypes();
+		Archetype archetype = mArchetypes.get(types);
+		if (archetype == null) {
+			archetype = new Archetype(this, types);
+			mArchetypes.put(archetype.getTypes(), archetype);
+			mArchetypeList.add(archetype);
+		}
+
+		entity.setArchetype(archetype, archetype.add(entity));
+	}
+
+	/**
+	 * Adds all given {@link Entity}s to the {@link Archetype}s matching their
+	 * properties. Consecutive Entities with the same property types are added
+	 * to the same Archetype without looking it up again
+	 * 
+	 * @param entities
+	 */
+	public void addAll(Entity[] entities) {
+		Archetype archetype = null;
+		for (Entity entity : entities) {
+			Set<Class<?>> types = entity.getPropertyTypes();
+			if (archetype == null || !archetype.getTypes().equals(types)) {
+				archetype = mArchetypes.get(types);
+				if (archetype == null) {
+					archetype = new Archetype(this, types);
+					mArchetypes.put(archetype.getTypes(), archetype);
+					mArchetypeList.add(archetype);
+				}
+			}
+
+			entity.setArchetype(archetype, archetype.add(entity));
+		}
+	}
+
+	/**
+	 * Removes the given {@link Entity} from its {@link Archetype}, does nothing
+	 * if the Entity is not part of this {@link ArchetypeStore}
+	 * 
+	 * @param entity
+	 */
+	public void remove(Entity entity) {
+		Archetype archetype = entity.getArchetype();
+		if (archetype == null || archetype.getStore() != this)
+			return;
+
+		int row = entity.getArchetypeRow();
+		Entity moved = archetype.removeAt(row);
+		if (moved != null)
+			moved.setArchetype(archetype, row);
+
+		entity.setArchetype(null, -1);
+	}
+
+	/**
+	 * Moves the given {@link Entity} to the {@link Archetype} matching its
+	 * current properties. This is called by Entities when their properties
+	 * change
+	 * 
+	 * @param entity
+	 */
+	void update(Entity entity) {
+		remove(entity);
+		add(entity);
+	}
+
+	/**
+	 * 
+	 * @return how many {@link Archetype}s exist in this {@link ArchetypeStore}
+	 */
+	public int archetypeCount() {
+		return mArchetypeList.size();
+	}
+
+	/**
+	 * Archetypes are never removed, so the index of an {@link Archetype} stays
+	 * the same
+	 * 
+	 * @param index
+	 * @return the {@link Archetype} with the given index
+	 */
+	public Archetype archetype(int index) {
+		return mArchetypeList.get(index);
+	}
+
+	/**
+	 * Creates a {@link Query} for all {@link Entity}s having properties of all
+	 * the given types
+	 * 
+	 * @param types
+	 * @return the Query
+	 */
+	public Query query(Class<?>... types) {
+		return new Query(this, types);
+	}
+}
@@ -2,7 +2,11 @@ package com.github.linggify.attic.logic;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -15,8 +19,14 @@ public class Entity {
 
 	private List<IProperty<?>> mProperties;
 	private Set<Class<?>> mPropertyTypes;
+	private IProperty<?>[] mPropertyIndex;
+	// filled whenever the properties change, so it is only read while updating
+	private Map<Class<?>, List<?>> mValueCache;
 	private final Genius mGenius;
 	private boolean mDead = false;
+	private int mHandle = EntityStore.INVALID_HANDLE;
+	private Archetype mArchetype;
+	private int mArchetypeRow = -1;
 	
 	/**
 	 * Creates a new {@link Entity} with the given {@link IProperty}s
@@ -24,8 +34,11 @@ public class Entity {
 	 */
 	public Entity(Genius genius, IProperty<?>...properties) {
 		mProperties = new ArrayList<>();
-		addProperties(properties);
+		mPropertyTypes = new HashSet<>();
+		mPropertyIndex = new IProperty<?>[PropertyTypes.count()];
+		mValueCache = new HashMap<>();
 		mGenius = genius;
+		addProperties(properties);
 	}
 	
 	/**
@@ -36,14 +49,69 @@ public class Entity {
 		return mGenius;
 	}
 	
+	/**
+	 * 
+	 * @return the handle of this {@link Entity} in its {@link Genius} or
+	 *         {@link EntityStore#INVALID_HANDLE} if it is not part of a scene
+	 */
+	public int getHandle() {
+		return mHandle;
+	}
+	
+	/**
+	 * Sets the handle of this {@link Entity}, used by the {@link EntityStore}
+	 * @param handle
+	 */
+	void setHandle(int handle) {
+		mHandle = handle;
+	}
+	
+	/**
+	 * 
+	 * @return the {@link Archetype} this {@link Entity} currently belongs to or null
+	 */
+	public Archetype getArchetype() {
+		return mArchetype;
+	}
+	
+	/**
+	 * 
+	 * @return the row of this {@link Entity} in its {@link Archetype}
+	 */
+	int getArchetypeRow() {
+		return mArchetypeRow;
+	}
+	
+	/**
+	 * Sets the {@link Archetype} of this {@link Entity}, used by the {@link ArchetypeStore}
+	 * @param archetype
+	 * @param row
+	 */
+	void setArchetype(Archetype archetype, int row) {
+		mArchetype = archetype;
+		mArchetypeRow = row;
+	}
+	
+	/**
+	 * Moves this {@link Entity} to the {@link Archetype} matching its properties,
+	 * if it is part of an {@link ArchetypeStore}
+	 */
+	private void updateArchetype() {
+		if(mArchetype != null) mArchetype.getStore().update(this);
+	}
+	
 	/**
 	 * <blockquote><strong>this method should only be called by the {@link Genius}</strong></blockquote>
 	 * Kills this {@link Entity} thereby stripping it of all its {@link IProperty}s
 	 * and thus making it unusable.
 	 */
 	public void kill() {
+		if(mArchetype != null) mArchetype.getStore().remove(this);
 		for(IProperty<?> property : mProperties) property.onDetach();
 		mProperties.clear();
+		mPropertyTypes.clear();
+		Arrays.fill(mPropertyIndex, null);
+		mValueCache = Collections.emptyMap();
 	}
 	
 	/**
@@ -67,43 +135,109 @@ public class Entity {
 	 */
 	public void addProperties(IProperty<?>...properties) {
 		mProperties.addAll(Arrays.asList(properties));
-		for(IProperty<?> property : properties) property.onAttach(this);
+		for(IProperty<?> property : properties) {
+			mPropertyTypes.add(property.getClass());
+			index(property);
+			property.onAttach(this);
+		}
+		cacheValues();
+		updateArchetype();
+	}
+	
+	/**
+	 * 
+	 * @return the types of all {@link IProperty}s of this {@link Entity}
+	 */
+	public Set<Class<?>> getPropertyTypes() {
+		return Collections.unmodifiableSet(mPropertyTypes);
 	}
 	
 	/**
 	 * 
 	 * @param type
-	 * @return the {@link IProperty} of the given type, or null if none exists
+	 * @return the first {@link IProperty} of exactly the given type or null if none exists
 	 */
-	@SuppressWarnings("unchecked")
-	public <T extends IProperty<?>> T propertyByType(Class<T> type) {
-		//if no property of the given type exists, return nothing
-		if(!mPropertyTypes.contains(type))
-			return null;
+	IProperty<?> firstPropertyOfType(Class<?> type) {
+		int id = PropertyTypes.idOf(type);
+		return id < mPropertyIndex.length ? mPropertyIndex[id] : null;
+	}
+	
+	/**
+	 * Adds the given {@link IProperty} to the index of this {@link Entity},
+	 * unless there already is a property of the same type
+	 * @param property
+	 */
+	private void index(IProperty<?> property) {
+		int id = PropertyTypes.idOf(property.getClass());
+		if(id >= mPropertyIndex.length)
+			mPropertyIndex = Arrays.copyOf(mPropertyIndex, Math.max(id + 1, PropertyTypes.count()));
 		
-		//search for the property
+		if(mPropertyIndex[id] == null)
+			mPropertyIndex[id] = property;
+	}
+	
+	/**
+	 * Removes the given {@link IProperty} from the index of this {@link Entity},
+	 * replacing it with the next property of the same type if there is one
+	 * @param property
+	 */
+	private void unindex(IProperty<?> property) {
+		int id = PropertyTypes.idOf(property.getClass());
+		if(mPropertyIndex[id] != property)
+			return;
+		
+		mPropertyIndex[id] = null;
+		for(IProperty<?> other : mProperties) {
+			if(other.getClass() == property.getClass()) {
+				mPropertyIndex[id] = other;
+				break;
+			}
+		}
+	}
+	
+	/**
+	 * Groups the {@link IProperty}s of this {@link Entity} by their content
+	 * type. A new cache is created instead of changing the old one, so it can
+	 * be read by any Thread while updating
+	 */
+	private void cacheValues() {
+		Map<Class<?>, List<IProperty<?>>> found = new HashMap<>();
 		for(IProperty<?> property : mProperties) {
-			if(property.getClass() == type)
-				return (T) property;
+			List<IProperty<?>> values = found.get(property.getContentType());
+			if(values == null) {
+				values = new ArrayList<>();
+				found.put(property.getContentType(), values);
+			}
+			values.add(property);
 		}
 		
-		//this line is probably never reached
-		return null;
+		Map<Class<?>, List<?>> cache = new HashMap<>();
+		for(Map.Entry<Class<?>, List<IProperty<?>>> entry : found.entrySet())
+			cache.put(entry.getKey(), Collections.unmodifiableList(entry.getValue()));
+		mValueCache = cache;
 	}
 	
 	/**
-	 * Finds all {@link IProperty}s containing the given type contained by this {@link Entity}
+	 * 
 	 * @param type
-	 * @return a List of all Properties of the given type
+	 * @return the {@link IProperty} of the given type, or null if none exists
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends IProperty<?>> T propertyByType(Class<T> type) {
+		return (T) firstPropertyOfType(type);
+	}
+	
+	/**
+	 * Finds all {@link IProperty}s containing the given type contained by this {@link Entity}.
+	 * The result is cached whenever the properties of this Entity change, so this method
+	 * only reads and may be called from any Thread while updating
+	 * @param type
+	 * @return an unmodifiable List of all Properties of the given type
 	 */
 	@SuppressWarnings("unchecked")
 	public <T> List<IProperty<T>> propertiesByValue(Class<T> type) {
-		List<IProperty<T>> result = new ArrayList<>();
-		for(IProperty<?> property : mProperties) {
-			if(property.getContentType() == type) result.add((IProperty<T>) property);
-		}
-		
-		return result;
+		List<IProperty<T>> result = (List<IProperty<T>>) mValueCache.get(type);
+		return result != null ? result : Collections.emptyList();
 	}
 	
 	/**
@@ -113,7 +247,16 @@ public class Entity {
 	 */
 	public boolean removeProperty(IProperty<?> property) {
 		boolean result = mProperties.remove(property);
-		if(result) property.onDetach();
+		if(result) {
+			unindex(property);
+			cacheValues();
+			
+			// only forget the type if no other property has it
+			if(firstPropertyOfType(property.getClass()) == null)
+				mPropertyTypes.remove(property.getClass());
+			property.onDetach();
+			updateArchetype();
+		}
 		
 		return result;
 	}
@@ -127,4 +270,26 @@ public class Entity {
 			property.update(delta);
 		}
 	}
+	
+	/**
+	 * Updates only the thread-safe {@link IProperty}s of this {@link Entity}
+	 * @param delta the time since the last update
+	 * @see IProperty#isThreadSafe()
+	 */
+	public void updateThreadSafe(double delta) {
+		for(IProperty<?> property : mProperties) {
+			if(property.isThreadSafe()) property.update(delta);
+		}
+	}
+	
+	/**
+	 * Updates only the {@link IProperty}s of this {@link Entity} which are not thread-safe
+	 * @param delta the time since the last update
+	 * @see IProperty#isThreadSafe()
+	 */
+	public void updateSerial(double delta) {
+		for(IProperty<?> property : mProperties) {
+			if(!property.isThreadSafe()) property.update(delta);
+		}
+	}
 }
@@ -0,0 +1,216 @@
+package com.github.linggify.attic.logic;
+
+import java.util.Arrays;
+
+import com.github.linggify.attic.exceptions.AtticRuntimeException;
+
+/**
+ * An EntityStore keeps {@link Entity}s densely packed in an array, so they can
+ * be iterated quickly, while handing out stable handles to identify them.
+ *
+ * A handle consists of a slot and a generation. Removing an {@link Entity}
+ * swaps the last Entity into its place and frees its slot for reuse with the
+ * next generation, so both adding and removing take constant time and stale
+ * handles never resolve to a different Entity.
+ *
+ * A slot has {@link #MAX_GENERATION} + 1 generations. Once its last generation
+ * is removed, the slot is retired instead of wrapping back to the first
+ * generation, which would make old handles valid again. Retired slots are
+ * never reused, so a single slot can only be used that often and the store
+ * is full once all {@code 2^SLOT_BITS} slots are in use or retired.
+ *
+ * @author Fredie
+ *
+ */
+public class EntityStore {
+
+	/** The number of bits of a handle used for its slot */
+	public static final int SLOT_BITS = 22;
+	/** The last generation of a slot, before it is retired */
+	public static final int MAX_GENERATION = (1 << (31 - SLOT_BITS)) - 1;
+	/** A handle that never refers to any {@link Entity} */
+	public static final int INVALID_HANDLE = -1;
+
+	private static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+
+	private Entity[] mEntities;
+	private int[] mDenseSlots;
+	private int mSize;
+
+	private int[] mSparse;
+	private int[] mGenerations;
+	private int mSlotCount;
+
+	private int[] mFreeSlots;
+	private int mFreeCount;
+
+	/**
+	 * Creates a new empty {@link EntityStore}
+	 */
+	public EntityStore() {
+		this(64);
+	}
+
+	/**
+	 * Creates a new empty {@link EntityStore} with room for the given amount
+	 * of {@link Entity}s
+	 *
+	 * @param capacity
+	 */
+	public EntityStore(int capacity) {
+		capacity = Math.max(capacity, 1);
+		mEntities = new Entity[capacity];
+		mDenseSlots = new int[capacity];
+		mSparse = new int[capacity];
+		mGenerations = new int[capacity];
+		mFreeSlots = new int[capacity];
+	}
+
+	/**
+	 * Makes sure the given amount of {@link Entity}s can be added without
+	 * growing any internal arrays
+	 *
+	 * @param count
+	 */
+	public void reserve(int count) {
+		int capacity = mSize + count;
+		if (capacity > mEntities.length) {
+			mEntities = Arrays.copyOf(mEntities, capacity);
+			mDenseSlots = Arrays.copyOf(mDenseSlots, capacity);
+		}
+
+		// free slots are reused first, retired ones never
+		int slots = mSlotCount + Math.max(count - mFreeCount, 0);
+		if (slots > mSparse.length) {
+			mSparse = Arrays.copyOf(mSparse, slots);
+			mGenerations = Arrays.copyOf(mGenerations, slots);
+			mFreeSlots = Arrays.copyOf(mFreeSlots, slots);
+		}
+	}
+
+	/**
+	 * Adds the given {@link Entity} to this {@link EntityStore}
+	 *
+	 * @param entity
+	 * @return the handle of the Entity
+	 */
+	public int add(Entity entity) {
+		if (entity == null)
+			throw new AtticRuntimeException("Cannot add null to an EntityStore");
+
+		// grow by half to keep adding amortized constant
+		if (mSize == mEntities.length || (mFreeCount == 0 && mSlotCount == mSparse.length))
+			reserve(Math.max(mSize / 2, 16));
+
+		int slot;
+		if (mFreeCount > 0) {
+			slot = mFreeSlots[--mFreeCount];
+		} else {
+			if (mSlotCount > SLOT_MASK)
+				throw new AtticRuntimeException("EntityStore is full");
+			slot = mSlotCount++;
+		}
+
+		int index = mSize++;
+		mEntities[index] = entity;
+		mDenseSlots[index] = slot;
+		mSparse[slot] = index;
+
+		int handle = (mGenerations[slot] << SLOT_BITS) | slot;
+		entity.setHandle(handle);
+		return handle;
+	}
+
+	/**
+	 *
+	 * @param handle
+	 * @return whether the given handle refers to an {@link Entity} in this
+	 *         {@link EntityStore}
+	 */
+	public boolean contains(int handle) {
+		if (handle < 0)
+			return false;
+
+		int slot = handle & SLOT_MASK;
+		return slot < mSlotCount && mGenerations[slot] == handle >>> SLOT_BITS && mSparse[slot] >= 0;
+	}
+
+	/**
+	 *
+	 * @param handle
+	 * @return the {@link Entity} with the given handle or null if the handle
+	 *         is stale or invalid
+	 */
+	public Entity get(int handle) {
+		if (!contains(handle))
+			return null;
+
+		return mEntities[mSparse[handle & SLOT_MASK]];
+	}
+
+	/**
+	 * Removes the {@link Entity} with the given handle
+	 *
+	 * @param handle
+	 * @return the removed Entity or null if the handle is stale or invalid
+	 */
+	public Entity remove(int handle) {
+		if (!contains(handle))
+			return null;
+
+		return removeAt(mSparse[handle & SLOT_MASK]);
+	}
+
+	/**
+	 * Removes the {@link Entity} at the given position. The last Entity is
+	 * moved into its place, so removing several Entities while iterating must
+	 * happen in descending order
+	 *
+	 * @param index
+	 * @return the removed Entity
+	 */
+	public Entity removeAt(int index) {
+		if (index < 0 || index >= mSize)
+			throw new AtticRuntimeException("Invalid entity index " + index);
+
+		Entity removed = mEntities[index];
+		int slot = mDenseSlots[index];
+
+		// swap the last entity into the gap
+		int last = --mSize;
+		mEntities[index] = mEntities[last];
+		mDenseSlots[index] = mDenseSlots[last];
+		mSparse[mDenseSlots[index]] = index;
+		mEntities[last] = null;
+
+		// free the slot for the next generation, or retire it for good
+		mSparse[slot] = -1;
+		if (mGenerations[slot] < MAX_GENERATION) {
+			mGenerations[slot]++;
+			mFreeSlots[mFreeCount++] = slot;
+		}
+
+		removed.setHandle(INVALID_HANDLE);
+		return removed;
+	}
+
+	/**
+	 *
+	 * @param index
+	 * @return the {@link Entity} at the given position
+	 */
+	public Entity at(int index) {
+		if (index < 0 || index >= mSize)
+			throw new AtticRuntimeException("Invalid entity index " + index);
+
+		return mEntities[index];
+	}
+
+	/**
+	 *
+	 * @return how many {@link Entity}s are in this {@link EntityStore}
+	 */
+	public int size() {
+		return mSize;
+	}
+}
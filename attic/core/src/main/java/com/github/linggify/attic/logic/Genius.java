@@ -1,15 +1,18 @@
 package com.github.linggify.attic.logic;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
 
 import com.github.linggify.attic.exceptions.AtticRuntimeException;
 import com.github.linggify.attic.render.Renderer;
+import com.github.linggify.attic.util.MpscQueue;
 
 /**
  * The Genius is responsible for all gamelogic updates and listening to UI
@@ -20,84 +23,472 @@ import com.github.linggify.attic.render.Renderer;
  */
 public class Genius {
 
-	private List<Entity> mEntities;
-	private List<Integer> mDead;
+	/**
+	 * The strategy a {@link Genius} uses to wait for the next tick when running
+	 * with a fixed timestep
+	 * 
+	 * @author Fredie
+	 *
+	 */
+	public enum IdleStrategy {
+		/** keeps polling the clock, lowest latency but occupies a full core */
+		SPIN,
+		/** yields the Thread to the scheduler between checks */
+		YIELD,
+		/** parks the Thread until the next tick is due */
+		PARK;
+	}
+
+	private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+	private final EntityStore mEntities;
+	private final ArchetypeStore mArchetypes;
+	private final List<ISystem> mSystems;
+	private int[] mDead;
+	private int mDeadCount;
 
 	private Renderer mRenderer;
 
-	private ReadWriteLock mRunLock;
-	private boolean mRunning;
+	private final AtomicBoolean mRunning;
 	private Thread mThread;
 
-	private Lock mTaskLock;
-	private List<Runnable> mTasks;
-	private List<Runnable> mLastTasks;
+	private final MpscQueue<Runnable> mTasks;
+	private volatile int mMaxTasksPerTick;
+	private volatile long mLastDrainNanos;
+	private volatile int mLastDrainCount;
+	// summed over the ticks of the current frame
+	private long mDrainNanos;
+	private int mDrainCount;
+
+	private volatile long mStepNanos;
+	private volatile int mMaxCatchUpSteps;
+	private volatile IdleStrategy mIdleStrategy;
+	private volatile double mAlpha;
+	private volatile LongSupplier mClock;
+	// only used by the Thread advancing this Genius
+	private long mLastTime;
+	private long mAccumulator;
+
+	private volatile boolean mParallelUpdate;
+	private volatile int mChunkSize;
+	private ForkJoinPool mPool;
 
 	/**
 	 * Creates a new Genius
 	 */
 	public Genius(Renderer renderer) {
-		mEntities = new ArrayList<>();
-		mDead = new ArrayList<>();
+		mEntities = new EntityStore();
+		mArchetypes = new ArchetypeStore();
+		mSystems = new ArrayList<>();
+		mDead = new int[64];
+		mDeadCount = 0;
 		mRenderer = renderer;
 
-		mRunning = false;
-		mRunLock = new ReentrantReadWriteLock(true);
+		mRunning = new AtomicBoolean(false);
+
+		mTasks = new MpscQueue<>();
+		mMaxTasksPerTick = Integer.MAX_VALUE;
+
+		// variable timestep by default
+		mStepNanos = 0;
+		mMaxCatchUpSteps = 5;
+		mIdleStrategy = IdleStrategy.PARK;
+		mAlpha = 1.0;
+		mClock = System::nanoTime;
+		mLastTime = mClock.getAsLong();
+
+		// serial update by default
+		mParallelUpdate = false;
+		mChunkSize = 512;
+		mPool = ForkJoinPool.commonPool();
+	}
+
+	/**
+	 * Sets whether {@link Entity}s are updated in parallel. When enabled, the
+	 * entities are split into chunks that are updated on a work-stealing
+	 * pool. Only thread-safe {@link IProperty}s are updated in parallel, all
+	 * others are updated afterwards on the Thread of this {@link Genius}, which
+	 * changes the order of the updates as described in
+	 * {@link IProperty#isThreadSafe()}
+	 * 
+	 * @param flag
+	 * @see IProperty#isThreadSafe()
+	 */
+	public void setParallelUpdate(boolean flag) {
+		mParallelUpdate = flag;
+	}
+
+	/**
+	 * 
+	 * @return whether {@link Entity}s are updated in parallel
+	 */
+	public boolean isParallelUpdate() {
+		return mParallelUpdate;
+	}
+
+	/**
+	 * Sets how many {@link Entity}s are updated by a single task at least
+	 * during a parallel update. Scenes with fewer entities are updated
+	 * serially
+	 * 
+	 * @param size
+	 */
+	public void setParallelChunkSize(int size) {
+		if (size < 1)
+			throw new AtticRuntimeException("The chunk size must be positive, but was " + size);
+		mChunkSize = size;
+	}
+
+	/**
+	 * 
+	 * @return how many {@link Entity}s are updated by a single task at least
+	 */
+	public int getParallelChunkSize() {
+		return mChunkSize;
+	}
+
+	/**
+	 * Sets the {@link ForkJoinPool} used for parallel updates. By default the
+	 * common pool is used
+	 * 
+	 * @param pool
+	 */
+	public void setUpdatePool(ForkJoinPool pool) {
+		if (pool == null)
+			throw new AtticRuntimeException("The update pool may not be null");
+		mPool = pool;
+	}
+
+	/**
+	 * Sets the fixed timestep used by this {@link Genius}. Every update will
+	 * advance the simulation by exactly this amount of time. Using a value of
+	 * 0 or less switches back to a variable timestep, which updates as often
+	 * as possible using the time since the last update
+	 * 
+	 * @param seconds
+	 *            the length of a single tick in seconds
+	 */
+	public void setFixedTimestep(double seconds) {
+		mStepNanos = seconds > 0 ? (long) (seconds * NANOS_PER_SECOND) : 0;
+	}
+
+	/**
+	 * 
+	 * @return the length of a single tick in seconds or 0 if this
+	 *         {@link Genius} uses a variable timestep
+	 */
+	public double getFixedTimestep() {
+		return mStepNanos / NANOS_PER_SECOND;
+	}
 
-		mTaskLock = new ReentrantLock();
-		mTasks = new LinkedList<>();
-		mLastTasks = new LinkedList<>();
+	/**
+	 * Sets how many ticks may be simulated in a row to catch up with real
+	 * time. Any time exceeding this amount is dropped, so a long stall slows
+	 * the simulation down instead of causing ever growing catch-up phases
+	 * 
+	 * @param steps
+	 */
+	public void setMaxCatchUpSteps(int steps) {
+		if (steps < 1)
+			throw new AtticRuntimeException("At least one step per tick is required, but got " + steps);
+		mMaxCatchUpSteps = steps;
 	}
 
 	/**
-	 * Creates a new {@link Entity} with the given {@link IProperty}s
+	 * 
+	 * @return how many ticks may be simulated in a row to catch up with real
+	 *         time
+	 */
+	public int getMaxCatchUpSteps() {
+		return mMaxCatchUpSteps;
+	}
+
+	/**
+	 * Sets the {@link IdleStrategy} used to wait between ticks when running
+	 * with a fixed timestep
+	 * 
+	 * @param strategy
+	 */
+	public void setIdleStrategy(IdleStrategy strategy) {
+		if (strategy == null)
+			throw new AtticRuntimeException("IdleStrategy may not be null");
+		mIdleStrategy = strategy;
+	}
+
+	/**
+	 * 
+	 * @return the {@link IdleStrategy} used to wait between ticks
+	 */
+	public IdleStrategy getIdleStrategy() {
+		return mIdleStrategy;
+	}
+
+	/**
+	 * Sets the clock used to measure the time between ticks, which returns
+	 * the current time in nanoseconds. The time is measured from the moment
+	 * the clock is set. By default {@link System#nanoTime()} is used
+	 * 
+	 * @param clock
+	 */
+	public void setClock(LongSupplier clock) {
+		if (clock == null)
+			throw new AtticRuntimeException("The clock may not be null");
+		if (isRunning())
+			throw new AtticRuntimeException("Cannot change the clock of a running Genius");
+
+		mClock = clock;
+		mLastTime = clock.getAsLong();
+		mAccumulator = 0;
+	}
+
+	/**
+	 * The interpolation alpha is the fraction of a tick that has passed since
+	 * the last update. It can be used to interpolate between the previous and
+	 * the current state when rendering. When using a variable timestep it is
+	 * always 1
+	 * 
+	 * @return the current interpolation alpha in the range [0, 1)
+	 */
+	public double getInterpolationAlpha() {
+		return mAlpha;
+	}
+
+	/**
+	 * Sets how many submitted tasks are executed per tick at most. Tasks that
+	 * exceed this limit are executed in the following ticks
+	 * 
+	 * @param count
+	 */
+	public void setMaxTasksPerTick(int count) {
+		if (count < 1)
+			throw new AtticRuntimeException("At least one task per tick is required, but got " + count);
+		mMaxTasksPerTick = count;
+	}
+
+	/**
+	 * 
+	 * @return how many submitted tasks are executed per tick at most
+	 */
+	public int getMaxTasksPerTick() {
+		return mMaxTasksPerTick;
+	}
+
+	/**
+	 * 
+	 * @return how many submitted tasks are currently waiting for execution
+	 */
+	public int getTaskQueueDepth() {
+		return mTasks.size();
+	}
+
+	/**
+	 * 
+	 * @return the time in nanoseconds it took to execute the tasks of the
+	 *         last frame, summed over all of its ticks. Frames that did not
+	 *         simulate any tick are not counted
+	 * @see #advance()
+	 */
+	public long getLastTaskDrainNanos() {
+		return mLastDrainNanos;
+	}
+
+	/**
+	 * 
+	 * @return how many tasks were executed in the last frame, summed over all
+	 *         of its ticks. Frames that did not simulate any tick are not
+	 *         counted
+	 * @see #advance()
+	 */
+	public int getLastTaskDrainCount() {
+		return mLastDrainCount;
+	}
+
+	/**
+	 * Creates a new {@link Entity} with the given {@link IProperty}s. The
+	 * properties are attached on the Thread of this {@link Genius}, when the
+	 * Entity is added to the scene
 	 * 
 	 * @param properties
 	 * @return the newly created Entity
 	 */
 	public Entity createEntity(IProperty<?>... properties) {
-		Entity result = new Entity(this, properties);
+		Entity result = new Entity(this);
 		submitTask(() -> {
+			result.addProperties(properties);
 			mEntities.add(result);
-			mRenderer.registerEntityForRendering(result);
+			mArchetypes.add(result);
+			if (mRenderer != null)
+				mRenderer.registerEntityForRendering(result);
 		});
 
 		return result;
 	}
 
+	/**
+	 * Creates the given amount of {@link Entity}s at once, each with the
+	 * {@link IProperty}s returned by the given supplier. All Entities are
+	 * added with a single task, which reserves their storage up front and
+	 * registers them for rendering together, so spawning many Entities costs
+	 * far less than calling {@link #createEntity(IProperty...)} for each. Like
+	 * there, the properties are attached on the Thread of this {@link Genius}
+	 * 
+	 * @param count
+	 * @param properties
+	 *            called once per Entity, returning new properties every time
+	 * @return the newly created Entities
+	 */
+	public Entity[] createEntities(int count, Supplier<IProperty<?>[]> properties) {
+		if (count < 0)
+			throw new AtticRuntimeException("Cannot create " + count + " Entities");
+		if (properties == null)
+			throw new AtticRuntimeException("The property supplier may not be null");
+
+		Entity[] result = new Entity[count];
+		IProperty<?>[][] added = new IProperty<?>[count][];
+		for (int i = 0; i < count; i++) {
+			result[i] = new Entity(this);
+			added[i] = properties.get();
+		}
+
+		submitTask(() -> {
+			mEntities.reserve(count);
+			for (int i = 0; i < count; i++) {
+				result[i].addProperties(added[i]);
+				mEntities.add(result[i]);
+			}
+			mArchetypes.addAll(result);
+			if (mRenderer != null)
+				mRenderer.registerEntitiesForRendering(result);
+		});
+
+		return result;
+	}
+
+	/**
+	 * 
+	 * @param handle
+	 * @return the {@link Entity} with the given handle or null if it does not
+	 *         exist (anymore)
+	 * @see Entity#getHandle()
+	 */
+	public Entity getEntity(int handle) {
+		return mEntities.get(handle);
+	}
+
+	/**
+	 * 
+	 * @return how many {@link Entity}s are managed by this {@link Genius}
+	 */
+	public int getEntityCount() {
+		return mEntities.size();
+	}
+
+	/**
+	 * 
+	 * @return the {@link ArchetypeStore} holding all {@link Entity}s of this
+	 *         {@link Genius}
+	 */
+	public ArchetypeStore archetypes() {
+		return mArchetypes;
+	}
+
+	/**
+	 * Creates a {@link Query} for all {@link Entity}s having properties of all
+	 * the given types
+	 * 
+	 * @param types
+	 * @return the Query
+	 */
+	public Query query(Class<?>... types) {
+		return mArchetypes.query(types);
+	}
+
+	/**
+	 * Adds the given {@link ISystem}, which is updated every tick after all
+	 * {@link Entity}s. This should be called from the Thread of this
+	 * {@link Genius}, e.g. inside a submitted task
+	 * 
+	 * @param system
+	 */
+	public void addSystem(ISystem system) {
+		if (system == null)
+			throw new AtticRuntimeException("System may not be null");
+		mSystems.add(system);
+	}
+
+	/**
+	 * 
+	 * @param type
+	 * @return the first added {@link ISystem} of exactly the given type or null
+	 *         if there is none
+	 */
+	public <T extends ISystem> T getSystem(Class<T> type) {
+		for (int i = 0; i < mSystems.size(); i++) {
+			ISystem system = mSystems.get(i);
+			if (system.getClass() == type)
+				return type.cast(system);
+		}
+		return null;
+	}
+
+	/**
+	 * Removes the given {@link ISystem}
+	 * 
+	 * @param system
+	 * @return whether the system was removed
+	 */
+	public boolean removeSystem(ISystem system) {
+		return mSystems.remove(system);
+	}
+
 	/**
 	 * Updates all {@link Entity}s managed by this {@link Genius}
 	 * 
 	 * @param delta
 	 */
 	public void update(double delta) {
-		mDead.clear();
+		// update thread-safe properties in parallel first
+		boolean parallel = mParallelUpdate && mEntities.size() > mChunkSize;
+		if (parallel)
+			mPool.invoke(new UpdateAction(delta, 0, mEntities.size(), mChunkSize));
+
+		mDeadCount = 0;
 		for (int i = 0; i < mEntities.size(); i++) {
-			Entity entity = mEntities.get(i);
-			if (entity.isDead())
-				mDead.add(i);
+			Entity entity = mEntities.at(i);
+			if (entity.isDead()) {
+				if (mDeadCount == mDead.length)
+					mDead = Arrays.copyOf(mDead, mDeadCount * 2);
+				mDead[mDeadCount++] = i;
+			} else if (parallel)
+				entity.updateSerial(delta);
 			else
 				entity.update(delta);
 		}
 
-		// kill all dead entities
-		for (int id : mDead) {
-			mEntities.remove(id).kill();
+		// kill all dead entities, in descending order as every removal moves
+		// the last entity into the gap
+		for (int i = mDeadCount - 1; i >= 0; i--) {
+			mEntities.removeAt(mDead[i]).kill();
+		}
+
+		// update systems
+		for (int i = 0; i < mSystems.size(); i++) {
+			mSystems.get(i).update(delta);
 		}
 	}
 
 	/**
-	 * Submits a Runnable to execute on the Thread of this {@link Genius}
+	 * Submits a Runnable to execute on the Thread of this {@link Genius}.
+	 * Tasks submitted while it is not running are executed once it is
+	 * started or {@link #advance()}d
 	 * 
 	 * @param task
 	 */
 	public void submitTask(Runnable task) {
-		if (!isRunning())
-			throw new AtticRuntimeException("Cannot submit Task: Genius is not yet running");
+		if (task == null)
+			throw new AtticRuntimeException("Task may not be null");
 
-		mTaskLock.lock();
-		mTasks.add(task);
-		mTaskLock.unlock();
+		mTasks.offer(task);
 	}
 
 	/**
@@ -105,47 +496,26 @@ public class Genius {
 	 * @return whether this genius is running or not
 	 */
 	public boolean isRunning() {
-		mRunLock.readLock().lock();
-		boolean tmp = mRunning;
-		mRunLock.readLock().unlock();
-
-		return tmp;
+		return mRunning.get();
 	}
 
 	/**
 	 * Starts this {@link Genius} in its own Thread
 	 */
 	public void start() {
-		if (isRunning())
+		// set the flag before starting the Thread, so tasks can be submitted
+		// right away
+		if (!mRunning.compareAndSet(false, true))
 			throw new AtticRuntimeException("Genius is already running");
 
 		mThread = new Thread(() -> {
 			try {
-				mRunLock.writeLock().lock();
-				mRunning = true;
-				mRunLock.writeLock().unlock();
-
-				long lastMillis = System.currentTimeMillis();
-				long millis = lastMillis;
-				while (isRunning()) {
-					lastMillis = millis;
-					millis = System.currentTimeMillis();
-					update((double) (millis - lastMillis) / 1000.0);
-
-					// execute submitted tasks
-					List<Runnable> tmp = mTasks;
-					mTaskLock.lock();
-					mTasks = mLastTasks;
-					mTaskLock.unlock();
-					mLastTasks = tmp;
-
-					// after this the list of tasks is empty, so no need to
-					// clear it
-					while (!mLastTasks.isEmpty())
-						mLastTasks.remove(0).run();
-				}
+				mLastTime = mClock.getAsLong();
+				mAccumulator = 0;
+				while (isRunning())
+					idle(advance());
 			} catch (Exception e) {
-				mRunning = false;
+				mRunning.set(false);
 				e.printStackTrace();
 			}
 		});
@@ -153,14 +523,170 @@ public class Genius {
 		mThread.start();
 	}
 
+	/**
+	 * Runs a single frame of this {@link Genius}. With a variable timestep it
+	 * updates once using the time since the last frame. With a fixed timestep
+	 * it simulates all ticks that are due by its clock, but at most
+	 * {@link #getMaxCatchUpSteps()}, and publishes the interpolation alpha.
+	 * The Thread of a started Genius calls this in a loop, a Genius that is
+	 * not running may be advanced manually instead
+	 * 
+	 * @return the time in nanoseconds until the next tick is due, or 0 when
+	 *         using a variable timestep
+	 */
+	public long advance() {
+		long now = mClock.getAsLong();
+		long elapsed = now - mLastTime;
+		mLastTime = now;
+
+		mDrainNanos = 0;
+		mDrainCount = 0;
+		long step = mStepNanos;
+		if (step <= 0) {
+			// variable timestep, update as often as possible
+			update(elapsed / NANOS_PER_SECOND);
+			executeTasks();
+			publishDrain();
+			publishAlpha(1.0);
+			mAccumulator = 0;
+			return 0;
+		}
+
+		// fixed timestep, simulate all ticks that are due
+		mAccumulator += elapsed;
+		int steps = 0;
+		int maxSteps = mMaxCatchUpSteps;
+		while (mAccumulator >= step && steps < maxSteps) {
+			update(step / NANOS_PER_SECOND);
+			executeTasks();
+			mAccumulator -= step;
+			steps++;
+		}
+		if (steps > 0)
+			publishDrain();
+
+		// drop the time that could not be caught up with
+		if (mAccumulator >= step)
+			mAccumulator %= step;
+
+		publishAlpha((double) mAccumulator / step);
+		return step - mAccumulator;
+	}
+
+	/**
+	 * Executes the tasks submitted before this call, up to
+	 * {@link #getMaxTasksPerTick()} of them
+	 */
+	private void executeTasks() {
+		// tasks submitted by the tasks themselves are left for the next tick
+		int count = Math.min(mTasks.size(), mMaxTasksPerTick);
+		long start = System.nanoTime();
+
+		int executed = 0;
+		Runnable task;
+		while (executed < count && (task = mTasks.poll()) != null) {
+			task.run();
+			executed++;
+		}
+
+		mDrainNanos += System.nanoTime() - start;
+		mDrainCount += executed;
+	}
+
+	/**
+	 * Publishes the task metrics summed over the ticks of the current frame
+	 */
+	private void publishDrain() {
+		mLastDrainNanos = mDrainNanos;
+		mLastDrainCount = mDrainCount;
+	}
+
+	/**
+	 * Publishes the given interpolation alpha to this {@link Genius} and its
+	 * {@link Renderer}
+	 * 
+	 * @param alpha
+	 */
+	private void publishAlpha(double alpha) {
+		mAlpha = alpha;
+		if (mRenderer != null)
+			mRenderer.setInterpolationAlpha(alpha);
+	}
+
+	/**
+	 * Waits for the given amount of time using the current
+	 * {@link IdleStrategy}
+	 * 
+	 * @param nanos
+	 */
+	private void idle(long nanos) {
+		if (nanos <= 0)
+			return;
+
+		switch (mIdleStrategy) {
+		case PARK:
+			LockSupport.parkNanos(nanos);
+			break;
+		case YIELD:
+			Thread.yield();
+			break;
+		default:
+			// keep spinning
+			break;
+		}
+	}
+
 	/**
 	 * Stops this {@link Genius} after the currently running tick
 	 */
 	public void stop() {
-		if (!isRunning())
+		if (!mRunning.compareAndSet(true, false))
 			throw new AtticRuntimeException("Genius has already been stopped or not started");
-		mRunLock.writeLock().lock();
-		mRunning = false;
-		mRunLock.writeLock().unlock();
+	}
+
+	/**
+	 * Updates the thread-safe {@link IProperty}s of a range of {@link Entity}s,
+	 * splitting the range until it fits into a single chunk
+	 * 
+	 * @author Fredie
+	 *
+	 */
+	private class UpdateAction extends RecursiveAction {
+
+		private static final long serialVersionUID = 3866519573302370845L;
+
+		private final double mDelta;
+		private final int mStart;
+		private final int mEnd;
+		private final int mChunk;
+
+		/**
+		 * Creates a new {@link UpdateAction} for the entities in [start, end)
+		 * 
+		 * @param delta
+		 * @param start
+		 * @param end
+		 * @param chunk
+		 */
+		UpdateAction(double delta, int start, int end, int chunk) {
+			mDelta = delta;
+			mStart = start;
+			mEnd = end;
+			mChunk = chunk;
+		}
+
+		@Override
+		protected void compute() {
+			if (mEnd - mStart <= mChunk) {
+				for (int i = mStart; i < mEnd; i++) {
+					Entity entity = mEntities.at(i);
+					if (!entity.isDead())
+						entity.updateThreadSafe(mDelta);
+				}
+			} else {
+				int mid = (mStart + mEnd) >>> 1;
+				invokeAll(new UpdateAction(mDelta, mStart, mid, mChunk), new UpdateAction(mDelta, mid, mEnd, mChunk));
+			}
+		}
 	}
 }
@@ -62,6 +62,28 @@ public interface IProperty<T> {
 	 */
 	void update(double delta);
 
+	/**
+	 * Thread-safe {@link IProperty}s may be updated concurrently with the
+	 * {@link IProperty}s of other {@link Entity}s when the {@link Genius} runs
+	 * a parallel update. Properties that are not thread-safe are always
+	 * updated on the Thread of the Genius.
+	 * <p>
+	 * This changes the order of the updates: a parallel update first updates
+	 * the thread-safe properties of all Entities and only then the other
+	 * properties, Entity by Entity. So a thread-safe property may see the
+	 * state of a property added before it, that was not yet updated in this
+	 * tick. Without a parallel update, either because it is disabled or
+	 * because there are too few Entities, all properties are updated in the
+	 * order they were added, Entity by Entity. Properties reading each others
+	 * state within a tick should therefore agree on being thread-safe
+	 * 
+	 * @return whether {@link #update(double)} may be called from any Thread
+	 * @see Genius#setParallelUpdate(boolean)
+	 */
+	default boolean isThreadSafe() {
+		return false;
+	}
+
 	/**
 	 * 
 	 * @return the current value of this {@link IProperty}
@@ -0,0 +1,20 @@
+package com.github.linggify.attic.logic;
+
+/**
+ * Systems are updated by the {@link Genius} once per tick after all
+ * {@link Entity}s. They are meant to process many {@link IProperty}s at once,
+ * usually by iterating the results of a {@link Query}
+ * 
+ * @author Fredie
+ *
+ */
+public interface ISystem {
+
+	/**
+	 * Updates this {@link ISystem}
+	 * 
+	 * @param delta
+	 *            the time since the last update
+	 */
+	void update(double delta);
+}
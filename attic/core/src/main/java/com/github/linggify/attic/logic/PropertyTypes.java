@@ -0,0 +1,45 @@
+package com.github.linggify.attic.logic;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PropertyTypes assigns a small, unique integer id to every {@link IProperty}
+ * class. The ids are dense, starting at 0, so they can be used as indices
+ * into arrays.
+ * 
+ * @author Fredie
+ *
+ */
+public final class PropertyTypes {
+
+	private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+	private static final ClassValue<Integer> IDS = new ClassValue<Integer>() {
+		@Override
+		protected Integer computeValue(Class<?> type) {
+			return NEXT_ID.getAndIncrement();
+		}
+	};
+
+	private PropertyTypes() {
+	}
+
+	/**
+	 * The id of a class is assigned the first time it is requested and never
+	 * changes afterwards
+	 * 
+	 * @param type
+	 * @return the id of the given class
+	 */
+	public static int idOf(Class<?> type) {
+		return IDS.get(type);
+	}
+
+	/**
+	 * 
+	 * @return how many ids have been assigned so far
+	 */
+	public static int count() {
+		return NEXT_ID.get();
+	}
+}
@@ -0,0 +1,87 @@
+package com.github.linggify.attic.logic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A Query finds all {@link Entity}s of an {@link ArchetypeStore} that have
+ * properties of a given set of types. It remembers the matching
+ * {@link Archetype}s, so it should be created once and reused every tick.
+ * 
+ * @author Fredie
+ *
+ */
+public class Query {
+
+	private final ArchetypeStore mStore;
+	private final Class<?>[] mTypes;
+	private final List<Archetype> mMatches;
+	private final List<Archetype> mMatchesView;
+	private int mChecked;
+
+	/**
+	 * Creates a new {@link Query}
+	 * 
+	 * @param store
+	 * @param types
+	 */
+	Query(ArchetypeStore store, Class<?>[] types) {
+		mStore = store;
+		mTypes = types.clone();
+		mMatches = new ArrayList<>();
+		mMatchesView = Collections.unmodifiableList(mMatches);
+		mChecked = 0;
+	}
+
+	/**
+	 * Checks all {@link Archetype}s created since the last call
+	 */
+	private void refresh() {
+		int count = mStore.archetypeCount();
+		for (; mChecked < count; mChecked++) {
+			Archetype archetype = mStore.archetype(mChecked);
+			if (archetype.hasTypes(mTypes))
+				mMatches.add(archetype);
+		}
+	}
+
+	/**
+	 * Iterating the returned {@link Archetype}s and their columns is the
+	 * fastest way to process the results of this {@link Query}
+	 * 
+	 * @return all Archetypes matching this Query
+	 */
+	public List<Archetype> archetypes() {
+		refresh();
+		return mMatchesView;
+	}
+
+	/**
+	 * 
+	 * @return how many {@link Entity}s match this {@link Query}
+	 */
+	public int count() {
+		refresh();
+		int count = 0;
+		for (int i = 0; i < mMatches.size(); i++)
+			count += mMatches.get(i).size();
+		return count;
+	}
+
+	/**
+	 * Calls the given action for every {@link Entity} matching this
+	 * {@link Query}. Entities must not be added or changed while iterating
+	 * 
+	 * @param action
+	 */
+	public void forEach(Consumer<Entity> action) {
+		refresh();
+		for (int i = 0; i < mMatches.size(); i++) {
+			Archetype archetype = mMatches.get(i);
+			for (int row = 0; row < archetype.size(); row++)
+				action.accept(archetype.entity(row));
+		}
+	}
+}
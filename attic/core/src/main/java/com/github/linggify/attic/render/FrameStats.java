@@ -0,0 +1,143 @@
+package com.github.linggify.attic.render;
+
+/**
+ * FrameStats count the work done by an {@link IContext} during a single
+ * frame. They are reset by the {@link Renderer} at the beginning of every
+ * frame, so after rendering they describe the last frame
+ *
+ * @author Fredie
+ *
+ */
+public class FrameStats {
+
+	private int mUploadCalls;
+	private long mUploadBytes;
+	private int mDrawCalls;
+	private int mBindCalls;
+	private int mSkippedBinds;
+	private int mVisible;
+	private int mCulled;
+
+	/**
+	 * Records a single upload of the given amount of bytes to the graphics
+	 * hardware
+	 *
+	 * @param bytes
+	 */
+	public void recordUpload(int bytes) {
+		mUploadCalls++;
+		mUploadBytes += bytes;
+	}
+
+	/**
+	 *
+	 * @return how many uploads were issued in this frame
+	 */
+	public int uploadCalls() {
+		return mUploadCalls;
+	}
+
+	/**
+	 *
+	 * @return how many bytes were uploaded in this frame
+	 */
+	public long uploadBytes() {
+		return mUploadBytes;
+	}
+
+	/**
+	 * Records a single draw call
+	 */
+	public void recordDraw() {
+		mDrawCalls++;
+	}
+
+	/**
+	 *
+	 * @return how many draw calls were issued in this frame
+	 */
+	public int drawCalls() {
+		return mDrawCalls;
+	}
+
+	/**
+	 * Records a single call changing the state of the graphics hardware, e.g.
+	 * binding a buffer
+	 */
+	public void recordBind() {
+		mBindCalls++;
+	}
+
+	/**
+	 * Records a call changing the state of the graphics hardware, that was
+	 * skipped because it would not have changed anything
+	 */
+	public void recordSkippedBind() {
+		mSkippedBinds++;
+	}
+
+	/**
+	 *
+	 * @return how many calls changing the state were issued in this frame
+	 */
+	public int bindCalls() {
+		return mBindCalls;
+	}
+
+	/**
+	 *
+	 * @return how many calls changing the state were skipped in this frame
+	 */
+	public int skippedBinds() {
+		return mSkippedBinds;
+	}
+
+	/**
+	 * Records the result of culling the scene against the viewport
+	 *
+	 * @param visible
+	 *            how many properties overlap the viewport
+	 * @param culled
+	 *            how many properties were not rendered as they are outside of
+	 *            it
+	 */
+	public void recordCulling(int visible, int culled) {
+		mVisible += visible;
+		mCulled += culled;
+	}
+
+	/**
+	 *
+	 * @return how many properties were inside the viewport in this frame
+	 */
+	public int visible() {
+		return mVisible;
+	}
+
+	/**
+	 *
+	 * @return how many properties were culled in this frame
+	 */
+	public int culled() {
+		return mCulled;
+	}
+
+	/**
+	 * Resets all counters for a new frame
+	 */
+	public void reset() {
+		mUploadCalls = 0;
+		mUploadBytes = 0;
+		mDrawCalls = 0;
+		mBindCalls = 0;
+		mSkippedBinds = 0;
+		mVisible = 0;
+		mCulled = 0;
+	}
+
+	@Override
+	public String toString() {
+		return "FrameStats [uploads=" + mUploadCalls + ", bytes=" + mUploadBytes + ", draws=" + mDrawCalls + ", binds="
+				+ mBindCalls + ", skipped=" + mSkippedBinds + ", visible=" + mVisible + ", culled=" + mCulled + "]";
+	}
+}
@@ -19,4 +19,31 @@ public interface IBatch {
 	 * @return true if the given Property was accepted
 	 */
 	boolean accept(IProperty<RenderData> property);
+	
+	/**
+	 * Sets whether the given {@link IProperty}, that was accepted by this
+	 * {@link IBatch}, is visible. Invisible properties are not rendered, but
+	 * stay in this batch and keep their active state, so they are shown again
+	 * without being accepted again. Batches that cannot hide single properties
+	 * render them anyway
+	 * 
+	 * @param property
+	 * @param visible
+	 */
+	default void setVisible(IProperty<RenderData> property, boolean visible) {
+		// render everything
+	}
+
+	/**
+	 * Sets the listener that is notified when this {@link IBatch} has room
+	 * again after rejecting a property, because the room of removed properties
+	 * is only released later, e.g. on the rendering Thread. Batches releasing
+	 * the room as soon as a property is removed never notify it. The listener
+	 * may be called from any Thread
+	 * 
+	 * @param listener
+	 */
+	default void setRoomListener(Runnable listener) {
+		// room is released on removal
+	}
 }
@@ -1,5 +1,6 @@
 package com.github.linggify.attic.render;
 
+import java.util.List;
 import java.util.Map;
 
 import com.github.linggify.attic.util.Color;
@@ -409,14 +410,133 @@ public interface IContext {
 	}
 
 	/**
-	 * Creates a new {@link IBatch} on the graphics hardware
+	 * The data streamed per instance by {@link BatchType#INSTANCED} batches.
+	 * Every instance consists of all InstanceAttributes in declaration order
+	 * 
+	 * @author Fredie
+	 *
+	 */
+	enum InstanceAttribute {
+		/** The first row of the affine transform of an instance */
+		TRANSFORM_0("i_transform_0", ElementType.FLOAT, 3, false),
+
+		/** The second row of the affine transform of an instance */
+		TRANSFORM_1("i_transform_1", ElementType.FLOAT, 3, false),
+
+		/** The tint of an instance (RGBA as bytes) */
+		TINT("i_tint", ElementType.BYTE, 4, true),
+
+		/**
+		 * The region of the texture used by an instance (u, v, width, height)
+		 */
+		REGION("i_region", ElementType.FLOAT, 4, false);
+
+		private final int mECount;
+		private final ElementType mType;
+		private final boolean mNormalized;
+		private final int mOffset;
+		private final String mName;
+
+		/**
+		 * Creates a new {@link InstanceAttribute}
+		 * 
+		 * @param name
+		 *            the name it is represented by in the shader
+		 * @param type
+		 *            the type of a single element of the InstanceAttribute
+		 * @param ecount
+		 *            the count of elements in this
+		 * @param normalized
+		 *            whether elements in the attribute are normalized or not
+		 */
+		InstanceAttribute(String name, ElementType type, int ecount, boolean normalized) {
+			mName = name;
+			mType = type;
+			mECount = ecount;
+			mOffset = type.size() * mECount;
+			mNormalized = normalized;
+		}
+
+		/**
+		 * 
+		 * @return the {@link ElementType} of this {@link InstanceAttribute}
+		 */
+		public ElementType type() {
+			return mType;
+		}
+
+		/**
+		 * 
+		 * @return how many elements there are in the attribute
+		 */
+		public int elementCount() {
+			return mECount;
+		}
+
+		/**
+		 * 
+		 * @return whether values in this attribute are normalized or not
+		 */
+		public boolean normalized() {
+			return mNormalized;
+		}
+
+		/**
+		 * 
+		 * @return how many bytes are consumed by this instance-attribute
+		 */
+		public int offset() {
+			return mOffset;
+		}
+
+		/**
+		 * 
+		 * @return the name of this {@link InstanceAttribute} used in shaders
+		 */
+		public String attribute() {
+			return mName;
+		}
+	}
+
+	/**
+	 * The ways an {@link IBatch} can store {@link RenderData}
+	 * 
+	 * @author Fredie
+	 *
+	 */
+	enum BatchType {
+		/** The vertices of every RenderData are stored separately */
+		VERTEX,
+		/**
+		 * The vertices are shared by all RenderData, only the
+		 * {@link InstanceAttribute}s are stored per RenderData. Only accepts
+		 * instanced RenderData
+		 */
+		INSTANCED
+	}
+
+	/**
+	 * Creates a new {@link IBatch} of the type {@link BatchType#VERTEX} on the
+	 * graphics hardware
 	 * 
 	 * @param isStatic
 	 * @param attributes
 	 * @return the created batch or null if the creation failed
 	 */
+	default IBatch genBatch(boolean isStatic, VertexAttribute... attributes) {
+		return genBatch(BatchType.VERTEX, isStatic, attributes);
+	}
 
-	IBatch genBatch(boolean isStatic, VertexAttribute... attributes);
+	/**
+	 * Creates a new {@link IBatch} of the given {@link BatchType} on the
+	 * graphics hardware
+	 * 
+	 * @param type
+	 * @param isStatic
+	 * @param attributes
+	 * @return the created batch or null if the creation failed
+	 */
+	IBatch genBatch(BatchType type, boolean isStatic, VertexAttribute... attributes);
 
 	/**
 	 * Destroys the given {@link IBatch} or does nothing if batch is null
@@ -432,4 +552,27 @@ public interface IContext {
 	 * @return whether rendering the batch was successful or not
 	 */
 	boolean renderBatch(IBatch batch);
+
+	/**
+	 * Renders all given {@link IBatch}es using the currently active shader.
+	 * Implementations may upload the changes of all batches before drawing
+	 * any of them and share state between the draws, so this should be
+	 * preferred over calling {@link #renderBatch(IBatch)} for every batch
+	 * 
+	 * @param batches
+	 * @return whether rendering all batches was successful or not
+	 */
+	default boolean renderBatches(List<IBatch> batches) {
+		boolean success = true;
+		for (IBatch batch : batches)
+			success &= renderBatch(batch);
+		return success;
+	}
+
+	/**
+	 * 
+	 * @return the {@link FrameStats} counting the work done in the current
+	 *         frame
+	 */
+	FrameStats getFrameStats();
 }
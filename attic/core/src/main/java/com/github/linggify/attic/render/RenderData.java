@@ -1,34 +1,81 @@
 package com.github.linggify.attic.render;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.Set;
 
+import com.github.linggify.attic.exceptions.AtticRuntimeException;
+import com.github.linggify.attic.render.IContext.InstanceAttribute;
 import com.github.linggify.attic.render.IContext.VertexAttribute;
+import com.github.linggify.attic.util.Color;
 import com.github.linggify.attic.util.Matrix33;
 
 /**
  * {@link RenderData} contains the data needed to render one specific object on
  * the screen. (e.g.: layer, vertices, indices, textures etc.)
+ * <p>
+ * The vertices are stored interleaved in a single direct {@link ByteBuffer}
+ * in the native byte order. Every vertex consists of the
+ * {@link VertexAttribute}s of this RenderData in the order they are declared
+ * in, so a batch using the same order can copy all vertices at once.
+ * <p>
+ * Instanced RenderData shares its vertices with other RenderData and is
+ * placed by its transform, tint and texture region instead, which are written
+ * by {@link #writeInstance(VertexWriter)}.
+ * <p>
+ * RenderData created by {@link #share()} uses the same vertices and indices
+ * as the RenderData it was created from, until one of them changes its
+ * vertices, which copies them first.
  * 
  * @author Fredie
  *
  */
 public class RenderData {
 
+	/** How many bytes are written by {@link #writeInstance(VertexWriter)} */
+	public static final int INSTANCE_SIZE;
+
+	static {
+		int size = 0;
+		for (InstanceAttribute attribute : InstanceAttribute.values())
+			size += attribute.offset();
+		INSTANCE_SIZE = size;
+	}
+
+	private static final VertexAttribute[] TEX_COORDS = { VertexAttribute.TEX_COORD_0, VertexAttribute.TEX_COORD_1,
+			VertexAttribute.TEX_COORD_2, VertexAttribute.TEX_COORD_3, VertexAttribute.TEX_COORD_4,
+			VertexAttribute.TEX_COORD_5, VertexAttribute.TEX_COORD_6, VertexAttribute.TEX_COORD_7,
+			VertexAttribute.TEX_COORD_8, VertexAttribute.TEX_COORD_9 };
+
 	private String mLayer;
 	private boolean mIsStatic;
 
 	private Matrix33 mTransform;
 
+	private boolean mInstanced;
+	private int mTint;
+	private float[] mRegion;
+
 	private Set<VertexAttribute> mAttributes;
+	private VertexAttribute[] mLayout;
+	private int[] mOffsets;
+	private int mVertexSize;
 	private int[] mIndices;
 
-	private Map<VertexAttribute, List<VertexData>> mVertexData;
+	private ByteBuffer mVertices;
+	// created on demand, so shared RenderData stays small. Only used on the
+	// rendering Thread
+	private ByteBuffer mView;
 	private int mVertexCount;
+	// whether the vertices may be used by other RenderData
+	private boolean mShared;
+
+	private VertexAttribute[] mWriteOrder;
+	private int[] mWriteOffsets;
 
 	/**
 	 * Creates new {@link RenderData} on the layer "default"
@@ -43,17 +90,108 @@ public class RenderData {
 	 * @param layer
 	 */
 	public RenderData(int size, String layer, boolean isStatic, VertexAttribute... attributes) {
+		if (size < 0)
+			throw new AtticRuntimeException("The vertex count may not be negative, but was " + size);
+
 		mLayer = layer;
 		mIsStatic = isStatic;
-		mAttributes = new HashSet<>();
 		mTransform = new Matrix33();
+		mTint = 0xFFFFFFFF;
+		mRegion = new float[] { 0, 0, 1, 1 };
 
-		mVertexCount = size;
-		mVertexData = new HashMap<>();
-		for (VertexAttribute attribute : attributes) {
-			mAttributes.add(attribute);
-			mVertexData.put(attribute, new ArrayList<>(mVertexCount));
+		// EnumSets iterate in declaration order, which defines the layout
+		EnumSet<VertexAttribute> set = EnumSet.noneOf(VertexAttribute.class);
+		set.addAll(Arrays.asList(attributes));
+		mAttributes = Collections.unmodifiableSet(set);
+		mLayout = set.toArray(new VertexAttribute[set.size()]);
+
+		mOffsets = new int[VertexAttribute.values().length];
+		Arrays.fill(mOffsets, -1);
+		for (VertexAttribute attribute : mLayout) {
+			mOffsets[attribute.ordinal()] = mVertexSize;
+			mVertexSize += attribute.offset();
 		}
+
+		mVertexCount = size;
+		mVertices = ByteBuffer.allocateDirect(mVertexSize * mVertexCount).order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Creates new RenderData using the vertices and indices of the given
+	 * RenderData
+	 * 
+	 * @param template
+	 */
+	private RenderData(RenderData template) {
+		mLayer = template.mLayer;
+		mIsStatic = template.mIsStatic;
+		mTransform = new Matrix33();
+		mInstanced = template.mInstanced;
+		mTint = template.mTint;
+		mRegion = template.mRegion.clone();
+
+		// the layout is never changed after construction
+		mAttributes = template.mAttributes;
+		mLayout = template.mLayout;
+		mOffsets = template.mOffsets;
+		mVertexSize = template.mVertexSize;
+		mIndices = template.mIndices;
+
+		mVertexCount = template.mVertexCount;
+		mVertices = template.mVertices;
+		mShared = true;
+	}
+
+	/**
+	 * Creates new {@link RenderData} on the same layer, with the same
+	 * vertices, indices, tint and texture region as this one. The vertices
+	 * are shared until either RenderData changes them, so sharing the
+	 * vertices of a template costs a few bytes per RenderData only. The
+	 * transform is not shared
+	 * 
+	 * @return the new RenderData
+	 */
+	public RenderData share() {
+		mShared = true;
+		return new RenderData(this);
+	}
+
+	/**
+	 * 
+	 * @return whether the vertices of this {@link RenderData} may be shared
+	 *         with other RenderData
+	 */
+	public boolean isShared() {
+		return mShared;
+	}
+
+	/**
+	 * Copies the vertices of this {@link RenderData} if they may be shared, so
+	 * they can be changed without changing any other RenderData
+	 */
+	private void own() {
+		if (!mShared)
+			return;
+
+		ByteBuffer vertices = ByteBuffer.allocateDirect(mVertices.capacity()).order(ByteOrder.nativeOrder());
+		ByteBuffer source = mVertices.duplicate();
+		source.clear();
+		vertices.put(source);
+		vertices.clear();
+
+		mVertices = vertices;
+		mView = null;
+		mShared = false;
+	}
+
+	/**
+	 * 
+	 * @return the reused view of the vertices
+	 */
+	private ByteBuffer view() {
+		if (mView == null)
+			mView = mVertices.duplicate().order(ByteOrder.nativeOrder());
+		return mView;
 	}
 
 	/**
@@ -73,6 +211,147 @@ public class RenderData {
 		return mTransform;
 	}
 
+	/**
+	 * Computes the axis-aligned bounds of the positions of this
+	 * {@link RenderData} after applying its transform
+	 * 
+	 * @param bounds
+	 *            the array to store minX, minY, maxX and maxY in
+	 * @return bounds for chaining
+	 */
+	public float[] getBounds(float[] bounds) {
+		if (bounds == null || bounds.length < 4)
+			throw new AtticRuntimeException("The bounds need room for 4 values");
+		if (mOffsets[VertexAttribute.POSITION.ordinal()] == -1 || mVertexCount == 0)
+			throw new AtticRuntimeException("RenderData without positions has no bounds");
+
+		// no transform means the identity
+		float m0 = 1, m1 = 0, m2 = 0, m3 = 0, m4 = 1, m5 = 0;
+		if (mTransform != null) {
+			m0 = mTransform.get(0, 0);
+			m1 = mTransform.get(0, 1);
+			m2 = mTransform.get(0, 2);
+			m3 = mTransform.get(1, 0);
+			m4 = mTransform.get(1, 1);
+			m5 = mTransform.get(1, 2);
+		}
+
+		float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+		float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+		for (int i = 0; i < mVertexCount; i++) {
+			float x = getFloat(i, VertexAttribute.POSITION, 0);
+			float y = getFloat(i, VertexAttribute.POSITION, 1);
+			float tx = m0 * x + m1 * y + m2;
+			float ty = m3 * x + m4 * y + m5;
+			minX = Math.min(minX, tx);
+			minY = Math.min(minY, ty);
+			maxX = Math.max(maxX, tx);
+			maxY = Math.max(maxY, ty);
+		}
+
+		bounds[0] = minX;
+		bounds[1] = minY;
+		bounds[2] = maxX;
+		bounds[3] = maxY;
+		return bounds;
+	}
+
+	/**
+	 * Sets whether this {@link RenderData} is rendered as an instance of
+	 * vertices shared with other RenderData
+	 * 
+	 * @param instanced
+	 */
+	public void setInstanced(boolean instanced) {
+		mInstanced = instanced;
+	}
+
+	/**
+	 * 
+	 * @return whether this {@link RenderData} is rendered as an instance of
+	 *         vertices shared with other RenderData
+	 */
+	public boolean isInstanced() {
+		return mInstanced;
+	}
+
+	/**
+	 * Sets the tint of this {@link RenderData} if it is instanced, which is
+	 * multiplied with the colors of the vertices
+	 * 
+	 * @param rgba
+	 *            the tint packed as 0xRRGGBBAA
+	 */
+	public void setTint(int rgba) {
+		mTint = rgba;
+	}
+
+	/**
+	 * Sets the tint of this {@link RenderData} if it is instanced to the given
+	 * {@link Color}
+	 * 
+	 * @param color
+	 */
+	public void setTint(Color color) {
+		setTint(pack(color.red(), color.green(), color.blue(), color.alpha()));
+	}
+
+	/**
+	 * 
+	 * @return the tint of this {@link RenderData} packed as 0xRRGGBBAA
+	 */
+	public int getTint() {
+		return mTint;
+	}
+
+	/**
+	 * Sets the region of the texture used if this {@link RenderData} is
+	 * instanced. The texture-coordinates of the vertices are mapped into this
+	 * region
+	 * 
+	 * @param u
+	 * @param v
+	 * @param width
+	 * @param height
+	 */
+	public void setRegion(float u, float v, float width, float height) {
+		mRegion[0] = u;
+		mRegion[1] = v;
+		mRegion[2] = width;
+		mRegion[3] = height;
+	}
+
+	/**
+	 * 
+	 * @return a copy of the texture-region of this {@link RenderData} as u, v,
+	 *         width and height
+	 */
+	public float[] getRegion() {
+		return mRegion.clone();
+	}
+
+	/**
+	 * Writes the {@link InstanceAttribute}s of this {@link RenderData} into
+	 * the given {@link VertexWriter}, using the identity if there is no
+	 * transform
+	 * 
+	 * @param writer
+	 */
+	public void writeInstance(VertexWriter writer) {
+		Matrix33 transform = mTransform;
+		if (transform == null) {
+			writer.putFloat(1).putFloat(0).putFloat(0);
+			writer.putFloat(0).putFloat(1).putFloat(0);
+		} else {
+			writer.putFloat(transform.get(0, 0)).putFloat(transform.get(0, 1)).putFloat(transform.get(0, 2));
+			writer.putFloat(transform.get(1, 0)).putFloat(transform.get(1, 1)).putFloat(transform.get(1, 2));
+		}
+
+		writer.putByte((byte) (mTint >>> 24)).putByte((byte) (mTint >>> 16)).putByte((byte) (mTint >>> 8))
+				.putByte((byte) mTint);
+		writer.putFloat(mRegion[0]).putFloat(mRegion[1]).putFloat(mRegion[2]).putFloat(mRegion[3]);
+	}
+
 	/**
 	 * 
 	 * @return the layer this {@link RenderData} is rendered on
@@ -98,28 +377,207 @@ public class RenderData {
 		return mAttributes;
 	}
 
-	// TODO implement actual functionality
+	/**
+	 * 
+	 * @return the {@link VertexAttribute}s of a vertex in the order they are
+	 *         stored in
+	 */
+	public VertexAttribute[] getLayout() {
+		return mLayout.clone();
+	}
+
+	/**
+	 * 
+	 * @param attributes
+	 * @return whether the vertices of this {@link RenderData} consist of
+	 *         exactly the given {@link VertexAttribute}s in the given order
+	 */
+	public boolean hasLayout(VertexAttribute[] attributes) {
+		return Arrays.equals(mLayout, attributes);
+	}
+
+	/**
+	 * 
+	 * @return how many bytes are used by a single vertex
+	 */
+	public int getVertexSize() {
+		return mVertexSize;
+	}
+
+	/**
+	 * 
+	 * @param attribute
+	 * @return the offset of the given {@link VertexAttribute} within a vertex
+	 *         in bytes
+	 */
+	public int offsetOf(VertexAttribute attribute) {
+		int offset = mOffsets[attribute.ordinal()];
+		if (offset == -1)
+			throw new AtticRuntimeException("RenderData has no vertex-data for " + attribute);
+
+		return offset;
+	}
 
 	/**
-	 * Sets the data for a given vertex for the given attribute
+	 * Calculates the position of the given {@link VertexAttribute} of the
+	 * given vertex in the underlying buffer
 	 * 
 	 * @param vertex
 	 * @param attribute
-	 * @param data
+	 * @return the position in bytes
 	 */
-	public void setVertexData(int vertex, VertexAttribute attribute, VertexData data) {
-		mVertexData.get(attribute).set(vertex, data);
+	private int position(int vertex, VertexAttribute attribute) {
+		if (vertex < 0 || vertex >= mVertexCount)
+			throw new AtticRuntimeException(
+					"Vertex " + vertex + " is out of bounds for RenderData with " + mVertexCount + " vertices");
+
+		return vertex * mVertexSize + offsetOf(attribute);
+	}
+
+	/**
+	 * Sets the position of the given vertex
+	 * 
+	 * @param vertex
+	 * @param x
+	 * @param y
+	 */
+	public void setPosition(int vertex, float x, float y) {
+		setFloats(vertex, VertexAttribute.POSITION, x, y);
+	}
+
+	/**
+	 * Sets the texture-coordinates of the given vertex for the given texture
+	 * unit
+	 * 
+	 * @param vertex
+	 * @param unit
+	 *            the index of the texture-coordinates, from 0 to 9
+	 * @param u
+	 * @param v
+	 */
+	public void setTexCoord(int vertex, int unit, float u, float v) {
+		if (unit < 0 || unit >= TEX_COORDS.length)
+			throw new AtticRuntimeException("There are no texture-coordinates for unit " + unit);
+
+		setFloats(vertex, TEX_COORDS[unit], u, v);
 	}
 
 	/**
+	 * Sets the 2 floats of the given {@link VertexAttribute} of the given
+	 * vertex
 	 * 
 	 * @param vertex
 	 * @param attribute
-	 * @return the vertex-data for the given vertex and {@link VertexAttribute}
-	 *         combination
+	 * @param a
+	 * @param b
 	 */
-	public VertexData getVertexData(int vertex, VertexAttribute attribute) {
-		return mVertexData.get(attribute).get(vertex);
+	private void setFloats(int vertex, VertexAttribute attribute, float a, float b) {
+		int position = position(vertex, attribute);
+		own();
+		mVertices.putFloat(position, a);
+		mVertices.putFloat(position + 4, b);
+	}
+
+	/**
+	 * Sets the color of the given vertex
+	 * 
+	 * @param vertex
+	 * @param rgba
+	 *            the color packed as 0xRRGGBBAA
+	 */
+	public void setColor(int vertex, int rgba) {
+		int position = position(vertex, VertexAttribute.COLOR);
+		own();
+		mVertices.put(position, (byte) (rgba >>> 24));
+		mVertices.put(position + 1, (byte) (rgba >>> 16));
+		mVertices.put(position + 2, (byte) (rgba >>> 8));
+		mVertices.put(position + 3, (byte) rgba);
+	}
+
+	/**
+	 * Sets the color of the given vertex to the given {@link Color}
+	 * 
+	 * @param vertex
+	 * @param color
+	 */
+	public void setColor(int vertex, Color color) {
+		setColor(vertex, color.red(), color.green(), color.blue(), color.alpha());
+	}
+
+	/**
+	 * Sets the color of the given vertex
+	 * 
+	 * @param vertex
+	 * @param r
+	 * @param g
+	 * @param b
+	 * @param a
+	 */
+	public void setColor(int vertex, float r, float g, float b, float a) {
+		setColor(vertex, pack(r, g, b, a));
+	}
+
+	/**
+	 * Packs the given color channels as 0xRRGGBBAA
+	 * 
+	 * @param r
+	 * @param g
+	 * @param b
+	 * @param a
+	 * @return the packed color
+	 */
+	private static int pack(float r, float g, float b, float a) {
+		return ((int) (r * 255.0f) & 0xFF) << 24 | ((int) (g * 255.0f) & 0xFF) << 16
+				| ((int) (b * 255.0f) & 0xFF) << 8 | ((int) (a * 255.0f) & 0xFF);
+	}
+
+	/**
+	 * 
+	 * @param vertex
+	 * @return the color of the given vertex packed as 0xRRGGBBAA
+	 */
+	public int getColor(int vertex) {
+		int position = position(vertex, VertexAttribute.COLOR);
+		return (mVertices.get(position) & 0xFF) << 24 | (mVertices.get(position + 1) & 0xFF) << 16
+				| (mVertices.get(position + 2) & 0xFF) << 8 | (mVertices.get(position + 3) & 0xFF);
+	}
+
+	/**
+	 * 
+	 * @param vertex
+	 * @param attribute
+	 * @param element
+	 * @return the element with the given index of the given
+	 *         {@link VertexAttribute} of the given vertex, which must consist of
+	 *         floats
+	 */
+	public float getFloat(int vertex, VertexAttribute attribute, int element) {
+		if (attribute.type() != IContext.ElementType.FLOAT || element < 0 || element >= attribute.elementCount())
+			throw new AtticRuntimeException(attribute + " has no float element " + element);
+
+		return mVertices.getFloat(position(vertex, attribute) + element * 4);
+	}
+
+	/**
+	 * Sets the data for a given vertex for the given attribute. The data is
+	 * copied into this {@link RenderData}
+	 * 
+	 * @param vertex
+	 * @param attribute
+	 * @param data
+	 */
+	public void setVertexData(int vertex, VertexAttribute attribute, VertexData data) {
+		int position = position(vertex, attribute);
+		own();
+		// a view of its own, as the reused one may be read by the rendering Thread
+		ByteBuffer view = mVertices.duplicate().order(ByteOrder.nativeOrder());
+		view.limit(position + attribute.offset()).position(position);
+
+		try {
+			data.write(new VertexWriter(view));
+		} catch (BufferOverflowException e) {
+			throw new AtticRuntimeException(attribute + " can only hold " + attribute.offset() + " bytes");
+		}
 	}
 
 	/**
@@ -130,6 +588,81 @@ public class RenderData {
 		return mVertexCount;
 	}
 
+	/**
+	 * Returns a view of the interleaved vertices of this {@link RenderData}
+	 * without copying them. The view is reused, every call resets its position
+	 * to the first and its limit to behind the last vertex. Hence it may only be
+	 * used on the rendering Thread, other Threads use {@link #getVertices()}
+	 * 
+	 * @return the vertices as a direct {@link ByteBuffer} in native byte order
+	 */
+	public ByteBuffer asBuffer() {
+		ByteBuffer view = view();
+		view.clear();
+		return view;
+	}
+
+	/**
+	 * Returns a new read-only view of the interleaved vertices of this
+	 * {@link RenderData} without copying them. Unlike {@link #asBuffer()} it may
+	 * be used on any Thread
+	 * 
+	 * @return the vertices as a {@link ByteBuffer} in native byte order
+	 */
+	public ByteBuffer getVertices() {
+		return mVertices.asReadOnlyBuffer().order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Interleaves the vertex-data of this {@link RenderData} into the given
+	 * {@link VertexWriter}, writing all given {@link VertexAttribute}s of a
+	 * vertex before the next vertex. If the order matches the layout of this
+	 * RenderData, all vertices are copied at once. Like {@link #asBuffer()} it
+	 * may only be used on the rendering Thread
+	 * 
+	 * @param attributes
+	 *            the order of the attributes within a vertex
+	 * @param writer
+	 */
+	public void write(VertexAttribute[] attributes, VertexWriter writer) {
+		if (hasLayout(attributes)) {
+			writer.put(asBuffer());
+			return;
+		}
+
+		int[] offsets = writeOffsets(attributes);
+		ByteBuffer view = view();
+		for (int i = 0; i < mVertexCount; i++) {
+			int vertex = i * mVertexSize;
+			for (int c = 0; c < attributes.length; c++) {
+				int position = vertex + offsets[c];
+				view.limit(position + attributes[c].offset()).position(position);
+				writer.put(view);
+			}
+		}
+	}
+
+	/**
+	 * Looks up the offsets of the given {@link VertexAttribute}s within a
+	 * vertex. The result is cached for the given array, as batches always
+	 * write with the same one
+	 * 
+	 * @param attributes
+	 * @return the offsets of the given VertexAttributes
+	 */
+	private int[] writeOffsets(VertexAttribute[] attributes) {
+		if (attributes == mWriteOrder)
+			return mWriteOffsets;
+
+		int[] offsets = new int[attributes.length];
+		for (int c = 0; c < attributes.length; c++)
+			offsets[c] = offsetOf(attributes[c]);
+
+		mWriteOrder = attributes;
+		mWriteOffsets = offsets;
+		return offsets;
+	}
+
 	/**
 	 * Sets the indices of this {@link RenderData}
 	 * 
@@ -161,5 +694,16 @@ public class RenderData {
 		 *         rendering
 		 */
 		public byte[] asBytes();
+		
+		/**
+		 * Writes all data of the datatype relevant for rendering into the given {@link VertexWriter}.
+		 * By default the result of {@link #asBytes()} is copied
+		 * 
+		 * @param writer
+		 */
+		public default void write(VertexWriter writer) {
+			byte[] bytes = asBytes();
+			writer.putBytes(bytes, bytes.length);
+		}
 	}
 }
\ No newline at end of file
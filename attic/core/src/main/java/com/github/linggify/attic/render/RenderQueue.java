@@ -0,0 +1,357 @@
+package com.github.linggify.attic.render;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.github.linggify.attic.exceptions.AtticRuntimeException;
+
+/**
+ * A RenderQueue collects the {@link IBatch}es to render in a frame together
+ * with their shader and texture, and renders them in an order that changes
+ * as little state as possible. Every submitted batch gets a 64-bit sort key
+ * containing, from the most to the least significant bits:
+ * <ul>
+ * <li>the layer, so layers are rendered one after another</li>
+ * <li>whether it is translucent, so translucent batches come last</li>
+ * <li>for opaque batches the shader, texture and depth front to back</li>
+ * <li>for translucent batches the depth back to front, shader and texture, as
+ * blending needs them in order</li>
+ * </ul>
+ * The keys are sorted with a radix sort, so sorting takes linear time and
+ * creates no garbage.
+ *
+ * @author Fredie
+ *
+ */
+public class RenderQueue {
+
+	/** How many different layers a key can hold */
+	public static final int MAX_LAYERS = 1 << 8;
+	/** How many different shader handles a key can hold */
+	public static final int MAX_SHADERS = 1 << 12;
+	/** How many different texture handles a key can hold */
+	public static final int MAX_TEXTURES = 1 << 16;
+
+	private static final int DEPTH_BITS = 24;
+	private static final int MAX_DEPTH = (1 << DEPTH_BITS) - 1;
+
+	/**
+	 * A ShaderSetup is called whenever a {@link RenderQueue} switched to
+	 * another shader, e.g. to set its uniforms
+	 *
+	 * @author Fredie
+	 *
+	 */
+	public interface ShaderSetup {
+
+		/**
+		 * Sets up the given shader, that was just bound
+		 *
+		 * @param context
+		 * @param shader
+		 */
+		void setup(IContext context, int shader);
+	}
+
+	private IBatch[] mBatches;
+	private int[] mShaders;
+	private int[] mTextures;
+	private long[] mKeys;
+	private int mCount;
+
+	// the submitted items in sorted order
+	private int[] mOrder;
+	private boolean mSorted;
+
+	// buffers reused by the radix sort
+	private long[] mKeyBuffer;
+	private long[] mKeyScratch;
+	private int[] mOrderBuffer;
+	private final int[] mDigitCounts;
+
+	private int mStateChanges;
+	private int mStateChangesSaved;
+
+	private ShaderSetup mSetup;
+	private List<IBatch> mRun;
+
+	/**
+	 * Creates a new, empty {@link RenderQueue}
+	 */
+	public RenderQueue() {
+		mBatches = new IBatch[64];
+		mShaders = new int[64];
+		mTextures = new int[64];
+		mKeys = new long[64];
+		mOrder = new int[64];
+		mKeyBuffer = new long[64];
+		mKeyScratch = new long[64];
+		mOrderBuffer = new int[64];
+		mDigitCounts = new int[256];
+		mRun = new ArrayList<>();
+		mSorted = true;
+	}
+
+	/**
+	 * Creates the sort key of a batch
+	 *
+	 * @param layer
+	 *            the layer, lower layers are rendered first
+	 * @param translucent
+	 *            whether the batch has to be blended
+	 * @param shader
+	 * @param texture
+	 * @param depth
+	 *            the distance to the viewer between 0 and 1
+	 * @return the sort key
+	 */
+	public static long key(int layer, boolean translucent, int shader, int texture, float depth) {
+		if (layer < 0 || layer >= MAX_LAYERS)
+			throw new AtticRuntimeException("Invalid layer " + layer);
+		if (shader < 0 || shader >= MAX_SHADERS)
+			throw new AtticRuntimeException("Invalid shader-handle " + shader);
+		if (texture < 0 || texture >= MAX_TEXTURES)
+			throw new AtticRuntimeException("Invalid texture-handle " + texture);
+
+		long quantized = (long) (Math.min(Math.max(depth, 0f), 1f) * MAX_DEPTH);
+		long key = (long) layer << 56;
+		if (translucent)
+			return key | 1L << 55 | (MAX_DEPTH - quantized) << 28 | (long) shader << 16 | texture;
+		return key | (long) shader << 40 | (long) texture << 24 | quantized;
+	}
+
+	/**
+	 * Submits the given {@link IBatch} to be rendered with the given shader
+	 * and texture
+	 *
+	 * @param batch
+	 * @param layer
+	 *            the layer, lower layers are rendered first
+	 * @param translucent
+	 *            whether the batch has to be blended
+	 * @param shader
+	 * @param texture
+	 *            the texture bound to the first unit or 0
+	 * @param depth
+	 *            the distance to the viewer between 0 and 1
+	 */
+	public void submit(IBatch batch, int layer, boolean translucent, int shader, int texture, float depth) {
+		long key = key(layer, translucent, shader, texture, depth);
+		if (mCount == mBatches.length) {
+			int capacity = mCount * 2;
+			mBatches = Arrays.copyOf(mBatches, capacity);
+			mShaders = Arrays.copyOf(mShaders, capacity);
+			mTextures = Arrays.copyOf(mTextures, capacity);
+			mKeys = Arrays.copyOf(mKeys, capacity);
+			mOrder = new int[capacity];
+			mKeyBuffer = new long[capacity];
+			mKeyScratch = new long[capacity];
+			mOrderBuffer = new int[capacity];
+		}
+
+		mBatches[mCount] = batch;
+		mShaders[mCount] = shader;
+		mTextures[mCount] = texture;
+		mKeys[mCount] = key;
+		mCount++;
+		mSorted = false;
+	}
+
+	/**
+	 * Sorts the submitted batches by their keys. Batches with equal keys stay
+	 * in the order they were submitted in
+	 */
+	public void sort() {
+		if (mSorted)
+			return;
+
+		long[] keysIn = mKeyBuffer;
+		int[] orderIn = mOrder;
+		long[] keysOut = mKeyScratch;
+		int[] orderOut = mOrderBuffer;
+		System.arraycopy(mKeys, 0, keysIn, 0, mCount);
+		for (int i = 0; i < mCount; i++)
+			orderIn[i] = i;
+
+		// least significant digit first, every pass is stable
+		for (int shift = 0; shift < 64 && mCount > 1; shift += 8) {
+			Arrays.fill(mDigitCounts, 0);
+			for (int i = 0; i < mCount; i++)
+				mDigitCounts[(int) (keysIn[i] >>> shift) & 0xFF]++;
+
+			// all keys share this digit, so the pass would not change anything
+			if (mDigitCounts[(int) (keysIn[0] >>> shift) & 0xFF] == mCount)
+				continue;
+
+			int offset = 0;
+			for (int d = 0; d < 256; d++) {
+				int count = mDigitCounts[d];
+				mDigitCounts[d] = offset;
+				offset += count;
+			}
+
+			for (int i = 0; i < mCount; i++) {
+				int target = mDigitCounts[(int) (keysIn[i] >>> shift) & 0xFF]++;
+				keysOut[target] = keysIn[i];
+				orderOut[target] = orderIn[i];
+			}
+
+			long[] keySwap = keysIn;
+			keysIn = keysOut;
+			keysOut = keySwap;
+			int[] orderSwap = orderIn;
+			orderIn = orderOut;
+			orderOut = orderSwap;
+		}
+
+		mKeyBuffer = keysIn;
+		mKeyScratch = keysOut;
+		mOrder = orderIn;
+		mOrderBuffer = orderOut;
+		mSorted = true;
+
+		int unsorted = countStateChanges(null);
+		mStateChanges = countStateChanges(mOrder);
+		mStateChangesSaved = unsorted - mStateChanges;
+	}
+
+	/**
+	 * Counts how often the shader or texture changes when rendering in the
+	 * given order
+	 *
+	 * @param order
+	 *            the order or null for the submission order
+	 * @return the amount of shader and texture binds
+	 */
+	private int countStateChanges(int[] order) {
+		int changes = 0;
+		int shader = -1;
+		int texture = -1;
+		for (int i = 0; i < mCount; i++) {
+			int item = order == null ? i : order[i];
+			if (mShaders[item] != shader) {
+				shader = mShaders[item];
+				changes++;
+			}
+			if (mTextures[item] != texture) {
+				texture = mTextures[item];
+				changes++;
+			}
+		}
+		return changes;
+	}
+
+	/**
+	 * Sorts the submitted batches and renders them. The shader and texture are
+	 * only bound when they differ from the previous batch, and consecutive
+	 * batches with the same state are rendered with a single
+	 * {@link IContext#renderBatches(List)}
+	 *
+	 * @param context
+	 */
+	public void render(IContext context) {
+		sort();
+
+		int shader = -1;
+		int texture = -1;
+		for (int i = 0; i < mCount; i++) {
+			int item = mOrder[i];
+			if (mShaders[item] != shader || mTextures[item] != texture) {
+				renderRun(context);
+
+				if (mShaders[item] != shader) {
+					shader = mShaders[item];
+					context.bindShader(shader);
+					if (mSetup != null)
+						mSetup.setup(context, shader);
+				}
+				if (mTextures[item] != texture) {
+					texture = mTextures[item];
+					context.bindTexture(0, texture);
+				}
+			}
+			mRun.add(mBatches[item]);
+		}
+		renderRun(context);
+
+		if (mCount > 0) {
+			context.unbindTexture(0);
+			context.unbindShader();
+		}
+	}
+
+	/**
+	 * Renders the collected batches sharing the same state
+	 *
+	 * @param context
+	 */
+	private void renderRun(IContext context) {
+		if (!mRun.isEmpty()) {
+			context.renderBatches(mRun);
+			mRun.clear();
+		}
+	}
+
+	/**
+	 * Removes all submitted batches, so the queue can be filled for the next
+	 * frame
+	 */
+	public void clear() {
+		Arrays.fill(mBatches, 0, mCount, null);
+		mCount = 0;
+		mSorted = true;
+		mStateChanges = 0;
+		mStateChangesSaved = 0;
+	}
+
+	/**
+	 * Sets the {@link ShaderSetup} called whenever another shader is bound
+	 *
+	 * @param setup
+	 *            the setup or null
+	 */
+	public void setShaderSetup(ShaderSetup setup) {
+		mSetup = setup;
+	}
+
+	/**
+	 *
+	 * @return how many batches were submitted
+	 */
+	public int size() {
+		return mCount;
+	}
+
+	/**
+	 *
+	 * @param index
+	 * @return the batch at the given index in sorted order
+	 */
+	public IBatch get(int index) {
+		if (index < 0 || index >= mCount)
+			throw new AtticRuntimeException("Invalid index " + index);
+
+		sort();
+		return mBatches[mOrder[index]];
+	}
+
+	/**
+	 *
+	 * @return how many shader and texture binds are needed in sorted order
+	 */
+	public int getStateChanges() {
+		sort();
+		return mStateChanges;
+	}
+
+	/**
+	 *
+	 * @return how many shader and texture binds were saved by sorting,
+	 *         compared to rendering in submission order
+	 */
+	public int getStateChangesSaved() {
+		sort();
+		return mStateChangesSaved;
+	}
+}
@@ -1,15 +1,28 @@
 package com.github.linggify.attic.render;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
 import com.github.linggify.attic.exceptions.AtticRuntimeException;
 import com.github.linggify.attic.logic.Entity;
 import com.github.linggify.attic.logic.IProperty;
+import com.github.linggify.attic.logic.IProperty.PropertyEvent;
+import com.github.linggify.attic.logic.IProperty.PropertyListener;
 import com.github.linggify.attic.render.path.INode;
 import com.github.linggify.attic.render.path.RenderPath;
 import com.github.linggify.attic.render.path.ValueInput;
+import com.github.linggify.attic.util.MpscQueue;
+import com.github.linggify.attic.util.SpatialGrid;
 
 /**
  * The Renderer is used to manage the rendering process
@@ -19,11 +32,41 @@ import com.github.linggify.attic.render.path.ValueInput;
  */
 public class Renderer {
 
+	/** The edge length of the cells used to cull the scene by default */
+	public static final float DEFAULT_CELL_SIZE = 256;
+
 	private IContext mHelper;
 	private RenderPath mRenderPath;
 
 	private HashMap<String, List<IBatch>> mScene;
 	private HashMap<String, INode.IInput> mGlobals;
+	private RenderQueue mQueue;
+
+	// batches that may have room left, by the properties they can accept
+	private HashMap<BatchSignature, Deque<IBatch>> mOpenBatches;
+	private Set<IBatch> mOpen;
+	private BatchSignature mLookup;
+	private BatchSignature mPreviousLookup;
+	// batches that reported room again on another Thread, reopened by the next registration
+	private MpscQueue<Runnable> mReopenTasks;
+
+	// changes to the culling state, applied on the rendering Thread by the next culling
+	private MpscQueue<Runnable> mCullTasks;
+	// every registered property by its world bounds
+	private SpatialGrid<CullEntry> mGrid;
+	// properties whose bounds may change without an event
+	private List<CullEntry> mDynamic;
+	// static properties that changed since the last culling
+	private List<CullEntry> mChanged;
+	// properties shown since the last culling and the ones found by the current one
+	private List<CullEntry> mShown;
+	private List<CullEntry> mFound;
+	private float[] mViewport;
+	private float[] mBounds;
+	private int mCullFrame;
+
+	private volatile double mAlpha;
+	private double mFrameAlpha;
 
 	/**
 	 * Creates a new {@link Renderer} using the given {@link IContext}
@@ -32,48 +75,398 @@ public class Renderer {
 	 */
 	public Renderer(IContext helper) {
 		mScene = new HashMap<>();
+		mQueue = new RenderQueue();
+		mOpenBatches = new HashMap<>();
+		mOpen = Collections.newSetFromMap(new IdentityHashMap<>());
+		mLookup = new BatchSignature();
+		mPreviousLookup = new BatchSignature();
+		mReopenTasks = new MpscQueue<>();
+		mCullTasks = new MpscQueue<>();
+		mGrid = new SpatialGrid<>(DEFAULT_CELL_SIZE);
+		mDynamic = new ArrayList<>();
+		mChanged = new ArrayList<>();
+		mShown = new ArrayList<>();
+		mFound = new ArrayList<>();
+		mBounds = new float[4];
 		mHelper = helper;
+		mAlpha = 1.0;
+		mFrameAlpha = 1.0;
+	}
+
+	/**
+	 * Sets the interpolation alpha used for the next frame. This is called by
+	 * the {@link com.github.linggify.attic.logic.Genius} after every tick
+	 * 
+	 * @param alpha
+	 */
+	public void setInterpolationAlpha(double alpha) {
+		mAlpha = alpha;
+	}
+
+	/**
+	 * The interpolation alpha is the fraction of a logic tick that passed
+	 * since the last update. It is read once at the beginning of every frame,
+	 * so it stays the same while a frame is rendered
+	 * 
+	 * @return the interpolation alpha of the current frame
+	 */
+	public double getInterpolationAlpha() {
+		return mFrameAlpha;
 	}
 
 	/**
 	 * Registers all {@link IProperty}s of this {@link Entity} containing
-	 * {@link RenderData} for rendering in a suitable {@link IBatch}
+	 * {@link RenderData} for rendering in a suitable {@link IBatch}. Batches
+	 * are indexed by the kind of RenderData they accept, and a batch that
+	 * rejected a property is not asked again until one of its properties is
+	 * removed or it reports room again, so finding a batch takes constant time
+	 * on average
 	 * 
 	 * @param entity
 	 */
 	public void registerEntityForRendering(Entity entity) {
+		reopenBatches();
 		List<IProperty<RenderData>> properties = entity.propertiesByValue(RenderData.class);
-		for (IProperty<RenderData> property : properties) {
-			RenderData subject = property.get();
+		for (IProperty<RenderData> property : properties)
+			register(property);
+	}
+
+	/**
+	 * Registers all {@link IProperty}s of the given {@link Entity}s the same
+	 * way as {@link #registerEntityForRendering(Entity)}. Their vertices are
+	 * uploaded with the next frame, once per batch they were added to
+	 * 
+	 * @param entities
+	 */
+	public void registerEntitiesForRendering(Entity[] entities) {
+		reopenBatches();
+		Deque<IBatch> open = null;
+		for (Entity entity : entities) {
+			List<IProperty<RenderData>> properties = entity.propertiesByValue(RenderData.class);
+			for (IProperty<RenderData> property : properties)
+				open = register(property, open);
+		}
+	}
+
+	/**
+	 * Registers the given {@link IProperty} in a suitable {@link IBatch}
+	 * 
+	 * @param property
+	 */
+	private void register(IProperty<RenderData> property) {
+		register(property, null);
+	}
 
-			// if the scene does not yet contain the given layer, create it
-			if (!mScene.containsKey(subject.getLayer()))
-				mScene.put(subject.getLayer(), new LinkedList<>());
+	/**
+	 * Registers the given {@link IProperty} in a suitable {@link IBatch}
+	 * 
+	 * @param property
+	 * @param previous
+	 *            the open batches used for the previous property or null
+	 * @return the open batches used for the given property
+	 */
+	private Deque<IBatch> register(IProperty<RenderData> property, Deque<IBatch> previous) {
+		RenderData subject = property.get();
 
-			// get a list of static or dynamic batches to fit the property to
-			List<IBatch> batches = mScene.get(subject.getLayer());
+		// if the scene does not yet contain the given layer, create it
+		if (!mScene.containsKey(subject.getLayer()))
+			mScene.put(subject.getLayer(), new LinkedList<>());
 
-			// find an existing batch that accepts the given property
-			boolean accepted = false;
-			for (IBatch batch : batches) {
-				accepted |= batch.accept(property);
-				if (accepted)
+		// get the batches that may accept the property, the newest first
+		mLookup.set(subject);
+		Deque<IBatch> open = previous != null && mLookup.equals(mPreviousLookup) ? previous
+				: mOpenBatches.get(mLookup);
+		if (open == null) {
+			open = new ArrayDeque<>();
+			mOpenBatches.put(mLookup.copy(), open);
+		}
+		// remember the signature, so a run of similar properties skips the lookup
+		BatchSignature swap = mPreviousLookup;
+		mPreviousLookup = mLookup;
+		mLookup = swap;
+
+		// find an open batch that accepts the given property, closing the ones that do not
+		IBatch accepting = null;
+		while (!open.isEmpty()) {
+			IBatch batch = open.peekFirst();
+			if (batch.accept(property)) {
+				accepting = batch;
+				break;
+			}
+			open.pollFirst();
+			mOpen.remove(batch);
+		}
+
+		// if no batch accepted it, try generating a new one that should be
+		// able to accept it
+		if (accepting == null) {
+			IContext.BatchType type = subject.isInstanced() ? IContext.BatchType.INSTANCED
+					: IContext.BatchType.VERTEX;
+			IBatch batch = mHelper.genBatch(type, subject.isStatic(),
+					subject.getAttributes().toArray(new IContext.VertexAttribute[0]));
+			// if the batch does not accept it, the object is most likely
+			// not renderable on this hardware
+			if (!batch.accept(property))
+				throw new AtticRuntimeException("Failed to add Property for rendering.");
+
+			mScene.get(subject.getLayer()).add(batch);
+			open.addFirst(batch);
+			mOpen.add(batch);
+			Deque<IBatch> batches = open;
+			batch.setRoomListener(() -> mReopenTasks.offer(() -> reopen(batch, batches)));
+			accepting = batch;
+		}
+
+		reopenOnRemoval(property, accepting, open);
+		track(property, accepting);
+		return open;
+	}
+
+	/**
+	 * Opens the given {@link IBatch} again when the given {@link IProperty} is
+	 * removed from it, as the batch has room afterwards. Batches releasing the
+	 * room later reject properties until then and report it once they did
+	 * 
+	 * @param property
+	 * @param batch
+	 * @param open
+	 *            the open batches of the property's kind
+	 */
+	private void reopenOnRemoval(IProperty<RenderData> property, IBatch batch, Deque<IBatch> open) {
+		property.addListener(new PropertyListener() {
+			public void onEvent(IProperty<?> target, PropertyEvent event) {
+				if (event == PropertyEvent.PROPERTY_REMOVED) {
+					reopen(batch, open);
+					target.removeListener(this);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Opens the given {@link IBatch} again, unless it is still open
+	 * 
+	 * @param batch
+	 * @param open
+	 *            the open batches of the batch's kind
+	 */
+	private void reopen(IBatch batch, Deque<IBatch> open) {
+		// filled up last, so it is asked after the newer batches
+		if (mOpen.add(batch))
+			open.addLast(batch);
+	}
+
+	/**
+	 * Opens the batches again that reported room since the last registration
+	 */
+	private void reopenBatches() {
+		Runnable task;
+		while ((task = mReopenTasks.poll()) != null)
+			task.run();
+	}
+
+	/**
+	 * Inserts the given {@link IProperty} into the grid used for culling and
+	 * keeps its bounds up to date. Static properties are only updated when
+	 * they changed, all others with every culling while a viewport is set.
+	 * The grid is only used on the rendering Thread, so the property is
+	 * inserted by the next culling
+	 * 
+	 * @param property
+	 * @param batch
+	 *            the {@link IBatch} rendering the property
+	 */
+	private void track(IProperty<RenderData> property, IBatch batch) {
+		RenderData data = property.get();
+		// without positions there is nothing to cull, so it is always rendered
+		if (!data.getAttributes().contains(IContext.VertexAttribute.POSITION) || data.getVertexCount() == 0)
+			return;
+
+		CullEntry entry = new CullEntry(property, batch);
+		mCullTasks.offer(() -> insert(entry));
+
+		property.addListener(new PropertyListener() {
+			public void onEvent(IProperty<?> target, PropertyEvent event) {
+				switch (event) {
+				case PROPERTY_CHANGED:
+					if (data.isStatic())
+						mCullTasks.offer(() -> changed(entry));
+					break;
+				case PROPERTY_REMOVED:
+					mCullTasks.offer(() -> remove(entry));
+					target.removeListener(this);
 					break;
+				default:
+					// do nothing
+					break;
+				}
 			}
+		});
+	}
+
+	/**
+	 * Inserts the given entry into the grid
+	 * 
+	 * @param entry
+	 */
+	private void insert(CullEntry entry) {
+		RenderData data = entry.mProperty.get();
+		data.getBounds(mBounds);
+		entry.mHandle = mGrid.insert(entry, mBounds[0], mBounds[1], mBounds[2], mBounds[3]);
+		if (!data.isStatic())
+			mDynamic.add(entry);
+		// batches show new properties, so they are hidden by this culling if needed
+		if (mViewport != null)
+			mShown.add(entry);
+	}
 
-			// if no batch accepted it, try generating a new one that should be
-			// able to accept it
-			if (!accepted) {
-				IBatch batch = mHelper.genBatch(subject.isStatic(),
-						subject.getAttributes().toArray(new IContext.VertexAttribute[0]));
-				// if the batch does not accept it, the object is most likely
-				// not renderable on this hardware
-				if (!batch.accept(property))
-					throw new AtticRuntimeException("Failed to add Property for rendering.");
-
-				batches.add(batch);
+	/**
+	 * Marks the bounds of the given static entry to be updated by this
+	 * culling
+	 * 
+	 * @param entry
+	 */
+	private void changed(CullEntry entry) {
+		if (!entry.mChanged && !entry.mRemoved) {
+			entry.mChanged = true;
+			mChanged.add(entry);
+		}
+	}
+
+	/**
+	 * Removes the given entry from the grid, it is dropped from the lists by
+	 * this culling
+	 * 
+	 * @param entry
+	 */
+	private void remove(CullEntry entry) {
+		mGrid.remove(entry.mHandle);
+		entry.mRemoved = true;
+	}
+
+	/**
+	 * Sets the rectangle of the world that is visible on the screen. From the
+	 * next frame on only properties overlapping it are rendered. This may be
+	 * called from any Thread
+	 * 
+	 * @param minX
+	 * @param minY
+	 * @param maxX
+	 * @param maxY
+	 */
+	public void setViewport(float minX, float minY, float maxX, float maxY) {
+		if (!(minX <= maxX && minY <= maxY))
+			throw new AtticRuntimeException(
+					"Invalid viewport (" + minX + ", " + minY + ") to (" + maxX + ", " + maxY + ")");
+
+		mCullTasks.offer(() -> {
+			if (mViewport == null) {
+				// everything is shown while not culling
+				mViewport = new float[4];
+				mShown.clear();
+				mGrid.items(mShown);
 			}
+			mViewport[0] = minX;
+			mViewport[1] = minY;
+			mViewport[2] = maxX;
+			mViewport[3] = maxY;
+		});
+	}
+
+	/**
+	 * Stops culling, so every property is rendered again with the next frame.
+	 * This may be called from any Thread
+	 */
+	public void clearViewport() {
+		mCullTasks.offer(() -> {
+			if (mViewport == null)
+				return;
+
+			mViewport = null;
+			mFound.clear();
+			mGrid.items(mFound);
+			for (CullEntry entry : mFound) {
+				if (!entry.mShown) {
+					entry.mShown = true;
+					entry.mBatch.setVisible(entry.mProperty, true);
+				}
+			}
+			mFound.clear();
+			mShown.clear();
+		});
+	}
+
+	/**
+	 * Applies all registrations, removals and viewport changes since the last
+	 * culling, then updates the bounds of all properties that may have moved
+	 * and shows only the properties overlapping the viewport. Only properties
+	 * whose visibility changed are passed to their {@link IBatch}es, so a
+	 * frame where nothing entered or left the viewport costs a single query
+	 */
+	private void cull() {
+		// only the changes made before this culling started, later ones wait for the next
+		int count = mCullTasks.size();
+		Runnable task;
+		for (int i = 0; i < count && (task = mCullTasks.poll()) != null; i++)
+			task.run();
+
+		boolean culling = mViewport != null;
+
+		// bulk update of everything that may have moved, dropping removed properties
+		int kept = 0;
+		for (int i = 0; i < mDynamic.size(); i++) {
+			CullEntry entry = mDynamic.get(i);
+			if (entry.mRemoved)
+				continue;
+			if (culling)
+				updateBounds(entry);
+			mDynamic.set(kept++, entry);
 		}
+		mDynamic.subList(kept, mDynamic.size()).clear();
+
+		if (!culling)
+			return;
+
+		for (CullEntry entry : mChanged) {
+			entry.mChanged = false;
+			if (!entry.mRemoved)
+				updateBounds(entry);
+		}
+		mChanged.clear();
+
+		mCullFrame++;
+		mGrid.query(mViewport[0], mViewport[1], mViewport[2], mViewport[3], mFound);
+		for (CullEntry entry : mFound) {
+			entry.mFrame = mCullFrame;
+			if (!entry.mShown) {
+				entry.mShown = true;
+				entry.mBatch.setVisible(entry.mProperty, true);
+			}
+		}
+		for (CullEntry entry : mShown) {
+			if (entry.mFrame != mCullFrame && entry.mShown && !entry.mRemoved) {
+				entry.mShown = false;
+				entry.mBatch.setVisible(entry.mProperty, false);
+			}
+		}
+
+		mHelper.getFrameStats().recordCulling(mFound.size(), mGrid.size() - mFound.size());
+
+		// the found properties are the shown ones of the next culling
+		List<CullEntry> swap = mShown;
+		mShown = mFound;
+		mFound = swap;
+		mFound.clear();
+	}
+
+	/**
+	 * Moves the given entry to the current bounds of its property
+	 * 
+	 * @param entry
+	 */
+	private void updateBounds(CullEntry entry) {
+		entry.mProperty.get().getBounds(mBounds);
+		mGrid.update(entry.mHandle, mBounds[0], mBounds[1], mBounds[2], mBounds[3]);
 	}
 	
 	/**
@@ -104,6 +497,25 @@ public class Renderer {
 		return new ValueInput<>(mScene.get(name));
 	}
 	
+	/**
+	 * The {@link RenderQueue} of this {@link Renderer} is cleared after every
+	 * frame, so batches have to be submitted to it again for every frame
+	 * 
+	 * @return the {@link RenderQueue} of the next frame
+	 */
+	public RenderQueue getQueue() {
+		return mQueue;
+	}
+	
+	/**
+	 * Creates a new {@link ValueInput} containing the {@link RenderQueue} of
+	 * this {@link Renderer}
+	 * @return the newly created ValueInput
+	 */
+	public ValueInput<RenderQueue> getQueueData() {
+		return new ValueInput<>(mQueue);
+	}
+	
 	/**
 	 * 
 	 * @return the {@link IContext} currently used by this {@link Renderer}
@@ -112,12 +524,24 @@ public class Renderer {
 		return mHelper;
 	}
 	
+	/**
+	 * 
+	 * @return the {@link FrameStats} of the last rendered frame
+	 */
+	public FrameStats getFrameStats() {
+		return mHelper.getFrameStats();
+	}
+
 	/**
 	 * Renders the current scene
 	 */
 	public void render() {
+		mFrameAlpha = mAlpha;
+		mHelper.getFrameStats().reset();
+		cull();
 		if(mRenderPath != null)
 			mRenderPath.pollFrame();
+		mQueue.clear();
 	}
 
 	/**
@@ -128,4 +552,119 @@ public class Renderer {
 		mRenderPath = path;
 		path.setRenderHelper(mHelper);
 	}
+
+	/**
+	 * A CullEntry remembers where a registered {@link IProperty} is rendered
+	 * and whether it is currently shown
+	 * 
+	 * @author Fredie
+	 *
+	 */
+	private static class CullEntry {
+
+		private final IProperty<RenderData> mProperty;
+		private final IBatch mBatch;
+		private int mHandle;
+
+		private boolean mShown;
+		private boolean mChanged;
+		private boolean mRemoved;
+		// the last culling that found this entry
+		private int mFrame;
+
+		/**
+		 * Creates a new {@link CullEntry} of a shown property
+		 * 
+		 * @param property
+		 * @param batch
+		 */
+		private CullEntry(IProperty<RenderData> property, IBatch batch) {
+			mProperty = property;
+			mBatch = batch;
+			mShown = true;
+		}
+	}
+
+	/**
+	 * A BatchSignature describes which {@link RenderData} can share an
+	 * {@link IBatch}: RenderData on the same layer with the same attributes,
+	 * both static or dynamic and both instanced or not. Instanced RenderData
+	 * also has to share its geometry, i.e. its indices and vertices
+	 * 
+	 * @author Fredie
+	 *
+	 */
+	private static class BatchSignature {
+
+		private String mLayer;
+		private Set<IContext.VertexAttribute> mAttributes;
+		private boolean mIsStatic;
+		private boolean mInstanced;
+		private int[] mIndices;
+		private ByteBuffer mVertices;
+		private int mHash;
+
+		/**
+		 * Sets this {@link BatchSignature} to the one of the given
+		 * {@link RenderData}, without copying anything, so it can be used to
+		 * look up batches without creating garbage. Only instanced RenderData
+		 * needs a view of its vertices
+		 * 
+		 * @param data
+		 * @return this BatchSignature for chaining
+		 */
+		private BatchSignature set(RenderData data) {
+			mLayer = data.getLayer();
+			mAttributes = data.getAttributes();
+			mIsStatic = data.isStatic();
+			mInstanced = data.isInstanced();
+			mIndices = mInstanced ? data.getIndices() : null;
+			mVertices = mInstanced ? data.getVertices() : null;
+
+			int hash = Objects.hashCode(mLayer);
+			hash = 31 * hash + mAttributes.hashCode();
+			hash = 31 * hash + (mIsStatic ? 1 : 0);
+			hash = 31 * hash + (mInstanced ? 1 : 0);
+			hash = 31 * hash + Arrays.hashCode(mIndices);
+			mHash = 31 * hash + Objects.hashCode(mVertices);
+			return this;
+		}
+
+		/**
+		 * 
+		 * @return a copy of this {@link BatchSignature}, that does not change
+		 *         with the RenderData it was set to
+		 */
+		private BatchSignature copy() {
+			BatchSignature copy = new BatchSignature();
+			copy.mLayer = mLayer;
+			copy.mAttributes = mAttributes;
+			copy.mIsStatic = mIsStatic;
+			copy.mInstanced = mInstanced;
+			copy.mIndices = mIndices == null ? null : mIndices.clone();
+			if (mVertices != null)
+				copy.mVertices = (ByteBuffer) ByteBuffer.allocate(mVertices.remaining()).put(mVertices.duplicate())
+						.flip();
+			copy.mHash = mHash;
+			return copy;
+		}
+
+		@Override
+		public int hashCode() {
+			return mHash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof BatchSignature))
+				return false;
+
+			BatchSignature other = (BatchSignature) obj;
+			return mHash == other.mHash && mIsStatic == other.mIsStatic && mInstanced == other.mInstanced
+					&& Objects.equals(mLayer, other.mLayer) && mAttributes.equals(other.mAttributes)
+					&& Arrays.equals(mIndices, other.mIndices) && Objects.equals(mVertices, other.mVertices);
+		}
+	}
 }
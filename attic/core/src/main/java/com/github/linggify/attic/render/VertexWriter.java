@@ -0,0 +1,150 @@
+package com.github.linggify.attic.render;
+
+import java.nio.ByteBuffer;
+
+import com.github.linggify.attic.exceptions.AtticRuntimeException;
+import com.github.linggify.attic.render.RenderData.VertexData;
+
+/**
+ * A VertexWriter is used by {@link VertexData} to write itself directly into a
+ * {@link ByteBuffer}, usually a reusable direct buffer that is uploaded to the
+ * graphics hardware. Values are written in the byte order of the buffer at the
+ * current position, which advances accordingly.
+ *
+ * @author Fredie
+ *
+ */
+public class VertexWriter {
+
+	private ByteBuffer mBuffer;
+
+	/**
+	 * Creates a new {@link VertexWriter} writing into the given
+	 * {@link ByteBuffer}
+	 *
+	 * @param buffer
+	 */
+	public VertexWriter(ByteBuffer buffer) {
+		setBuffer(buffer);
+	}
+
+	/**
+	 * Sets the {@link ByteBuffer} this {@link VertexWriter} writes into
+	 *
+	 * @param buffer
+	 * @return this VertexWriter for chaining
+	 */
+	public VertexWriter setBuffer(ByteBuffer buffer) {
+		if (buffer == null)
+			throw new AtticRuntimeException("The target ByteBuffer may not be null");
+
+		mBuffer = buffer;
+		return this;
+	}
+
+	/**
+	 *
+	 * @return the {@link ByteBuffer} this {@link VertexWriter} writes into
+	 */
+	public ByteBuffer buffer() {
+		return mBuffer;
+	}
+
+	/**
+	 *
+	 * @return the position the next value is written at
+	 */
+	public int position() {
+		return mBuffer.position();
+	}
+
+	/**
+	 * Sets the position the next value is written at
+	 *
+	 * @param position
+	 * @return this VertexWriter for chaining
+	 */
+	public VertexWriter position(int position) {
+		mBuffer.position(position);
+		return this;
+	}
+
+	/**
+	 * Skips the given amount of bytes, leaving them untouched
+	 *
+	 * @param bytes
+	 * @return this VertexWriter for chaining
+	 */
+	public VertexWriter skip(int bytes) {
+		mBuffer.position(mBuffer.position() + bytes);
+		return this;
+	}
+
+	/**
+	 * Writes the given float
+	 *
+	 * @param value
+	 * @return this VertexWriter for chaining
+	 */
+	public VertexWriter putFloat(float value) {
+		mBuffer.putFloat(value);
+		return this;
+	}
+
+	/**
+	 * Writes the given int
+	 *
+	 * @param value
+	 * @return this VertexWriter for chaining
+	 */
+	public VertexWriter putInt(int value) {
+		mBuffer.putInt(value);
+		return this;
+	}
+
+	/**
+	 * Writes the given short
+	 *
+	 * @param value
+	 * @return this VertexWriter for chaining
+	 */
+	public VertexWriter putShort(short value) {
+		mBuffer.putShort(value);
+		return this;
+	}
+
+	/**
+	 * Writes the given byte
+	 *
+	 * @param value
+	 * @return this VertexWriter for chaining
+	 */
+	public VertexWriter putByte(byte value) {
+		mBuffer.put(value);
+		return this;
+	}
+
+	/**
+	 * Writes the first length bytes of the given array
+	 *
+	 * @param bytes
+	 * @param length
+	 * @return this VertexWriter for chaining
+	 */
+	public VertexWriter putBytes(byte[] bytes, int length) {
+		mBuffer.put(bytes, 0, length);
+		return this;
+	}
+
+	/**
+	 * Writes the remaining bytes of the given {@link ByteBuffer}, advancing
+	 * its position
+	 *
+	 * @param bytes
+	 * @return this VertexWriter for chaining
+	 */
+	public VertexWriter put(ByteBuffer bytes) {
+		mBuffer.put(bytes);
+		return this;
+	}
+}
@@ -0,0 +1,134 @@
+package com.github.linggify.attic.render.atlas;
+
+import com.github.linggify.attic.exceptions.AtticRuntimeException;
+
+/**
+ * An AtlasPage is a square image, that many smaller images are packed into.
+ * The pixels are kept on the CPU-side in the RGBA_8888 format, until they are
+ * uploaded by the {@link TextureAtlas}. Every image is surrounded by a border
+ * repeating its outermost pixels, so filtering never mixes neighbouring
+ * images
+ *
+ * @author Fredie
+ *
+ */
+public class AtlasPage {
+
+	private final int mSize;
+	private final int mPadding;
+	private final SkylinePacker mPacker;
+	private final byte[] mPixels;
+
+	private int mTexture;
+	private boolean mDirty;
+
+	/**
+	 * Creates a new, empty {@link AtlasPage}
+	 *
+	 * @param size
+	 *            the width and height in pixels
+	 * @param padding
+	 *            the width of the border around every image
+	 */
+	public AtlasPage(int size, int padding) {
+		if (padding < 0)
+			throw new AtticRuntimeException("The padding must not be negative, but was " + padding);
+
+		mSize = size;
+		mPadding = padding;
+		mPacker = new SkylinePacker(size, size);
+		mPixels = new byte[size * size * 4];
+	}
+
+	/**
+	 * Packs the given image into this {@link AtlasPage}
+	 *
+	 * @param width
+	 * @param height
+	 * @param pixels
+	 *            the pixels of the image in the RGBA_8888 format, row by row
+	 * @return the {@link AtlasRegion} of the image or null if it does not fit
+	 */
+	public AtlasRegion add(int width, int height, byte[] pixels) {
+		if (pixels.length != width * height * 4)
+			throw new AtticRuntimeException(
+					"Expected " + width * height * 4 + " bytes for the image but got " + pixels.length);
+
+		int[] position = mPacker.pack(width + mPadding * 2, height + mPadding * 2);
+		if (position == null)
+			return null;
+
+		int x = position[0] + mPadding;
+		int y = position[1] + mPadding;
+		// every pixel of the border repeats the closest pixel of the image
+		for (int row = -mPadding; row < height + mPadding; row++) {
+			int source = Math.min(Math.max(row, 0), height - 1) * width;
+			int target = (y + row) * mSize + x;
+			for (int column = -mPadding; column < width + mPadding; column++) {
+				int from = (source + Math.min(Math.max(column, 0), width - 1)) * 4;
+				System.arraycopy(pixels, from, mPixels, (target + column) * 4, 4);
+			}
+		}
+
+		mDirty = true;
+		return new AtlasRegion(this, x, y, width, height);
+	}
+
+	/**
+	 *
+	 * @return the width and height of this {@link AtlasPage} in pixels
+	 */
+	public int getSize() {
+		return mSize;
+	}
+
+	/**
+	 *
+	 * @return the pixels of this {@link AtlasPage} in the RGBA_8888 format
+	 */
+	public byte[] getPixels() {
+		return mPixels;
+	}
+
+	/**
+	 *
+	 * @return the fraction of this {@link AtlasPage} covered by images and
+	 *         their borders
+	 */
+	public float occupancy() {
+		return mPacker.occupancy();
+	}
+
+	/**
+	 * Sets the handle of the texture this {@link AtlasPage} is uploaded to
+	 *
+	 * @param texture
+	 */
+	public void setTexture(int texture) {
+		mTexture = texture;
+	}
+
+	/**
+	 *
+	 * @return the handle of the texture this {@link AtlasPage} is uploaded to
+	 *         or 0 if it has none
+	 */
+	public int getTexture() {
+		return mTexture;
+	}
+
+	/**
+	 *
+	 * @return whether images were added since the last upload
+	 */
+	public boolean isDirty() {
+		return mDirty;
+	}
+
+	/**
+	 * Marks this {@link AtlasPage} as uploaded
+	 */
+	public void clean() {
+		mDirty = false;
+	}
+}
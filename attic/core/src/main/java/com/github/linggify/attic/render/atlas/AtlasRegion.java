@@ -0,0 +1,113 @@
+package com.github.linggify.attic.render.atlas;
+
+/**
+ * An AtlasRegion is the part of an {@link AtlasPage} holding a single image
+ *
+ * @author Fredie
+ *
+ */
+public class AtlasRegion {
+
+	private final AtlasPage mPage;
+	private final int mX;
+	private final int mY;
+	private final int mWidth;
+	private final int mHeight;
+
+	/**
+	 * Creates a new {@link AtlasRegion}
+	 *
+	 * @param page
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 */
+	AtlasRegion(AtlasPage page, int x, int y, int width, int height) {
+		mPage = page;
+		mX = x;
+		mY = y;
+		mWidth = width;
+		mHeight = height;
+	}
+
+	/**
+	 *
+	 * @return the {@link AtlasPage} containing this {@link AtlasRegion}
+	 */
+	public AtlasPage getPage() {
+		return mPage;
+	}
+
+	/**
+	 *
+	 * @return the handle of the texture containing this {@link AtlasRegion}
+	 */
+	public int getTexture() {
+		return mPage.getTexture();
+	}
+
+	/**
+	 *
+	 * @return the x coordinate of the image in the page, in pixels
+	 */
+	public int getX() {
+		return mX;
+	}
+
+	/**
+	 *
+	 * @return the y coordinate of the image in the page, in pixels
+	 */
+	public int getY() {
+		return mY;
+	}
+
+	/**
+	 *
+	 * @return the width of the image, in pixels
+	 */
+	public int getWidth() {
+		return mWidth;
+	}
+
+	/**
+	 *
+	 * @return the height of the image, in pixels
+	 */
+	public int getHeight() {
+		return mHeight;
+	}
+
+	/**
+	 *
+	 * @return the left texture coordinate of the image
+	 */
+	public float getU() {
+		return (float) mX / mPage.getSize();
+	}
+
+	/**
+	 *
+	 * @return the top texture coordinate of the image
+	 */
+	public float getV() {
+		return (float) mY / mPage.getSize();
+	}
+
+	/**
+	 *
+	 * @return the width of the image in texture coordinates
+	 */
+	public float getUWidth() {
+		return (float) mWidth / mPage.getSize();
+	}
+
+	/**
+	 *
+	 * @return the height of the image in texture coordinates
+	 */
+	public float getVHeight() {
+		return (float) mHeight / mPage.getSize();
+	}
+}
@@ -0,0 +1,201 @@
+package com.github.linggify.attic.render.atlas;
+
+import java.util.Arrays;
+
+import com.github.linggify.attic.exceptions.AtticRuntimeException;
+
+/**
+ * A SkylinePacker places rectangles one after another into an area of a
+ * fixed size, without knowing the following rectangles. It remembers the
+ * upper outline of all placed rectangles as a list of horizontal segments
+ * (the skyline) and puts every rectangle as low as possible on top of it.
+ *
+ * @author Fredie
+ *
+ */
+public class SkylinePacker {
+
+	private final int mWidth;
+	private final int mHeight;
+
+	// the segments of the skyline, ordered from left to right
+	private int[] mX;
+	private int[] mY;
+	private int[] mLengths;
+	private int mCount;
+
+	private int mUsedArea;
+
+	/**
+	 * Creates a new, empty {@link SkylinePacker} for the given area
+	 *
+	 * @param width
+	 * @param height
+	 */
+	public SkylinePacker(int width, int height) {
+		if (width <= 0 || height <= 0)
+			throw new AtticRuntimeException("Invalid area " + width + "x" + height);
+
+		mWidth = width;
+		mHeight = height;
+		mX = new int[16];
+		mY = new int[16];
+		mLengths = new int[16];
+		mX[0] = 0;
+		mY[0] = 0;
+		mLengths[0] = width;
+		mCount = 1;
+	}
+
+	/**
+	 * Places a rectangle of the given size. Of all positions on the skyline
+	 * the lowest is chosen, or the leftmost of equally low ones
+	 *
+	 * @param width
+	 * @param height
+	 * @return the x and y coordinate of the placed rectangle or null if it
+	 *         does not fit anymore
+	 */
+	public int[] pack(int width, int height) {
+		if (width <= 0 || height <= 0)
+			throw new AtticRuntimeException("Invalid rectangle " + width + "x" + height);
+
+		int best = -1;
+		int bestY = Integer.MAX_VALUE;
+		for (int i = 0; i < mCount; i++) {
+			int y = fit(i, width);
+			if (y >= 0 && y + height <= mHeight && y < bestY) {
+				best = i;
+				bestY = y;
+			}
+		}
+
+		if (best == -1)
+			return null;
+
+		int x = mX[best];
+		place(best, x, bestY + height, width);
+		mUsedArea += width * height;
+		return new int[] { x, bestY };
+	}
+
+	/**
+	 * Finds how low a rectangle of the given width can be placed at the start
+	 * of the segment with the given index
+	 *
+	 * @param index
+	 * @param width
+	 * @return the y coordinate or -1 if the rectangle does not fit
+	 */
+	private int fit(int index, int width) {
+		if (mX[index] + width > mWidth)
+			return -1;
+
+		// the rectangle rests on the highest segment it covers
+		int y = 0;
+		int remaining = width;
+		for (int i = index; remaining > 0; i++) {
+			y = Math.max(y, mY[i]);
+			remaining -= mLengths[i];
+		}
+		return y;
+	}
+
+	/**
+	 * Adds a segment for the top of a placed rectangle, cutting away the
+	 * segments below it and merging neighbours of the same height
+	 *
+	 * @param index
+	 *            the segment the rectangle was placed at
+	 * @param x
+	 * @param y
+	 * @param width
+	 */
+	private void place(int index, int x, int y, int width) {
+		insert(index, x, y, width);
+
+		// shrink or remove the segments covered by the new one
+		int end = x + width;
+		int i = index + 1;
+		while (i < mCount && mX[i] < end) {
+			int segmentEnd = mX[i] + mLengths[i];
+			if (segmentEnd <= end) {
+				remove(i);
+			} else {
+				mLengths[i] = segmentEnd - end;
+				mX[i] = end;
+				break;
+			}
+		}
+
+		// merge neighbours at the same height
+		for (int j = 0; j < mCount - 1;) {
+			if (mY[j] == mY[j + 1]) {
+				mLengths[j] += mLengths[j + 1];
+				remove(j + 1);
+			} else {
+				j++;
+			}
+		}
+	}
+
+	/**
+	 * Inserts a segment at the given index
+	 *
+	 * @param index
+	 * @param x
+	 * @param y
+	 * @param length
+	 */
+	private void insert(int index, int x, int y, int length) {
+		if (mCount == mX.length) {
+			mX = Arrays.copyOf(mX, mCount * 2);
+			mY = Arrays.copyOf(mY, mCount * 2);
+			mLengths = Arrays.copyOf(mLengths, mCount * 2);
+		}
+
+		System.arraycopy(mX, index, mX, index + 1, mCount - index);
+		System.arraycopy(mY, index, mY, index + 1, mCount - index);
+		System.arraycopy(mLengths, index, mLengths, index + 1, mCount - index);
+		mX[index] = x;
+		mY[index] = y;
+		mLengths[index] = length;
+		mCount++;
+	}
+
+	/**
+	 * Removes the segment at the given index
+	 *
+	 * @param index
+	 */
+	private void remove(int index) {
+		System.arraycopy(mX, index + 1, mX, index, mCount - index - 1);
+		System.arraycopy(mY, index + 1, mY, index, mCount - index - 1);
+		System.arraycopy(mLengths, index + 1, mLengths, index, mCount - index - 1);
+		mCount--;
+	}
+
+	/**
+	 *
+	 * @return the width of the packed area
+	 */
+	public int getWidth() {
+		return mWidth;
+	}
+
+	/**
+	 *
+	 * @return the height of the packed area
+	 */
+	public int getHeight() {
+		return mHeight;
+	}
+
+	/**
+	 *
+	 * @return the fraction of the area covered by placed rectangles
+	 */
+	public float occupancy() {
+		return (float) mUsedArea / ((float) mWidth * mHeight);
+	}
+}
@@ -0,0 +1,131 @@
+package com.github.linggify.attic.render.atlas;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.linggify.attic.exceptions.AtticRuntimeException;
+import com.github.linggify.attic.render.IContext;
+import com.github.linggify.attic.render.IContext.TextureFormat;
+
+/**
+ * A TextureAtlas packs many named images into as few textures as possible.
+ * Sprites using images of the same {@link AtlasPage} only differ in their
+ * texture coordinates, so they can be rendered by a single draw call. New
+ * pages are created whenever an image does not fit into the existing ones
+ *
+ * @author Fredie
+ *
+ */
+public class TextureAtlas {
+
+	private final IContext mContext;
+	private final int mPageSize;
+	private final int mPadding;
+
+	private List<AtlasPage> mPages;
+	private Map<String, AtlasRegion> mRegions;
+
+	/**
+	 * Creates a new, empty {@link TextureAtlas}
+	 *
+	 * @param context
+	 *            the {@link IContext} to create the textures with
+	 * @param pageSize
+	 *            the width and height of every page in pixels
+	 * @param padding
+	 *            the width of the border around every image
+	 */
+	public TextureAtlas(IContext context, int pageSize, int padding) {
+		mContext = context;
+		mPageSize = pageSize;
+		mPadding = padding;
+		mPages = new ArrayList<>();
+		mRegions = new HashMap<>();
+	}
+
+	/**
+	 * Adds the given image to this {@link TextureAtlas}. The image is only
+	 * visible after the next {@link #upload()}
+	 *
+	 * @param name
+	 * @param width
+	 * @param height
+	 * @param pixels
+	 *            the pixels of the image in the RGBA_8888 format, row by row
+	 * @return the {@link AtlasRegion} of the image
+	 */
+	public AtlasRegion add(String name, int width, int height, byte[] pixels) {
+		if (mRegions.containsKey(name))
+			throw new AtticRuntimeException("The atlas already contains an image named " + name);
+		if (width + mPadding * 2 > mPageSize || height + mPadding * 2 > mPageSize)
+			throw new AtticRuntimeException(
+					"The image " + name + " is too large for pages of " + mPageSize + "x" + mPageSize + " pixels");
+
+		AtlasRegion region = null;
+		for (int i = 0; i < mPages.size() && region == null; i++)
+			region = mPages.get(i).add(width, height, pixels);
+
+		if (region == null) {
+			AtlasPage page = new AtlasPage(mPageSize, mPadding);
+			page.setTexture(mContext.newTexture());
+			mPages.add(page);
+			region = page.add(width, height, pixels);
+		}
+
+		mRegions.put(name, region);
+		return region;
+	}
+
+	/**
+	 * Uploads every {@link AtlasPage} that changed since the last upload
+	 */
+	public void upload() {
+		for (AtlasPage page : mPages) {
+			if (page.isDirty()) {
+				mContext.setPixelData(page.getTexture(), mPageSize, mPageSize, TextureFormat.RGBA_8888,
+						page.getPixels());
+				page.clean();
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param name
+	 * @return the {@link AtlasRegion} of the image with the given name or null
+	 *         if there is no such image
+	 */
+	public AtlasRegion getRegion(String name) {
+		return mRegions.get(name);
+	}
+
+	/**
+	 *
+	 * @return how many pages this {@link TextureAtlas} uses
+	 */
+	public int getPageCount() {
+		return mPages.size();
+	}
+
+	/**
+	 *
+	 * @param index
+	 * @return the {@link AtlasPage} with the given index
+	 */
+	public AtlasPage getPage(int index) {
+		return mPages.get(index);
+	}
+
+	/**
+	 * Destroys the textures of all pages, thereby making this
+	 * {@link TextureAtlas} unusable
+	 */
+	public void destroy() {
+		for (AtlasPage page : mPages)
+			mContext.destroyTexture(page.getTexture());
+		mPages.clear();
+		mRegions.clear();
+	}
+}
@@ -0,0 +1,122 @@
+package com.github.linggify.attic.resources;
+
+import com.github.linggify.attic.Application;
+import com.github.linggify.attic.IFileManager;
+import com.github.linggify.attic.exceptions.AtticRuntimeException;
+import com.github.linggify.attic.render.IContext;
+import com.github.linggify.attic.render.atlas.TextureAtlas;
+import org.json.JSONObject;
+import org.kohsuke.MetaInfServices;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An {@link IResourceLoader} that packs images into a {@link TextureAtlas}
+ * @author Freddy
+ */
+@MetaInfServices
+public class AtlasLoader implements IResourceLoader {
+
+    private static final int DEFAULT_PAGE_SIZE = 2048;
+    private static final int DEFAULT_PADDING = 1;
+
+    private IContext mContext;
+    private List<TextureAtlas> mAtlases;
+
+    /**
+     * Creates a new {@link AtlasLoader}
+     */
+    public AtlasLoader() {
+        mAtlases = new ArrayList<>();
+    }
+
+    @Override
+    public String loadingType() {
+        return "atlas";
+    }
+
+    @Override
+    public void setApplication(Application app) {
+        mContext = app.renderer().context();
+    }
+
+    @Override
+    public int load(IFileManager.IFileHandle file) {
+        //read properties from json file
+        JSONObject obj = new JSONObject(file.readString()).getJSONObject("atlas");
+        int pageSize = obj.optInt("pageSize", DEFAULT_PAGE_SIZE);
+        int padding = obj.optInt("padding", DEFAULT_PADDING);
+        JSONObject images = obj.getJSONObject("images");
+
+        //pack all images and upload the pages once
+        TextureAtlas atlas = new TextureAtlas(mContext, pageSize, padding);
+        IFileManager.IFileHandle dir = file.parent();
+        for(String name : images.keySet()) {
+            BufferedImage image = read(dir.child(images.getString(name)));
+            atlas.add(name, image.getWidth(), image.getHeight(), pixels(image));
+        }
+        atlas.upload();
+
+        mAtlases.add(atlas);
+        return mAtlases.size() - 1;
+    }
+
+    /**
+     * Reads the image from the given file
+     * @param file
+     * @return the image
+     */
+    private BufferedImage read(IFileManager.IFileHandle file) {
+        try(InputStream input = file.openInput()) {
+            BufferedImage image = ImageIO.read(input);
+            if(image == null)
+                throw new AtticRuntimeException("Unsupported image format");
+            return image;
+        } catch (IOException e) {
+            throw new AtticRuntimeException("Could not read image");
+        }
+    }
+
+    /**
+     * Converts the given image to the RGBA_8888 format
+     * @param image
+     * @return the pixels of the image, row by row
+     */
+    private static byte[] pixels(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] argb = image.getRGB(0, 0, width, height, null, 0, width);
+
+        byte[] rgba = new byte[argb.length * 4];
+        for(int i = 0; i < argb.length; i++) {
+            rgba[i * 4] = (byte) (argb[i] >> 16);
+            rgba[i * 4 + 1] = (byte) (argb[i] >> 8);
+            rgba[i * 4 + 2] = (byte) argb[i];
+            rgba[i * 4 + 3] = (byte) (argb[i] >> 24);
+        }
+        return rgba;
+    }
+
+    /**
+     *
+     * @param handle
+     * @return the {@link TextureAtlas} with the given handle
+     */
+    public TextureAtlas getAtlas(int handle) {
+        if(handle < 0 || handle >= mAtlases.size() || mAtlases.get(handle) == null)
+            throw new AtticRuntimeException("Invalid atlas-handle " + handle);
+
+        return mAtlases.get(handle);
+    }
+
+    @Override
+    public void destroy(int handle) {
+        getAtlas(handle).destroy();
+        mAtlases.set(handle, null);
+    }
+}
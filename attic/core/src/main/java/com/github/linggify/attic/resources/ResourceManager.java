@@ -52,6 +52,15 @@ public class ResourceManager {
         mLoaders.put(loader.loadingType(), loader);
     }
 
+    /**
+     *
+     * @param type
+     * @return the {@link IResourceLoader} loading the given type of resources or null if there is none
+     */
+    public IResourceLoader getLoader(String type) {
+        return mLoaders.get(type);
+    }
+
     /**
      * Loads the given file as a resource
      * @param name the name which is used to retrieve the resource handle later
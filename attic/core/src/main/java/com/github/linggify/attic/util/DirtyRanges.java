@@ -0,0 +1,162 @@
+package com.github.linggify.attic.util;
+
+import java.util.Arrays;
+
+import com.github.linggify.attic.exceptions.AtticRuntimeException;
+
+/**
+ * DirtyRanges collect ranges of bytes that changed, e.g. in a buffer on the
+ * graphics hardware. Before the changes are uploaded, {@link #merge()}
+ * combines overlapping and adjacent ranges into as few contiguous ranges as
+ * possible, so every resulting range needs a single upload.
+ *
+ * @author Fredie
+ *
+ */
+public class DirtyRanges {
+
+	// every range is packed as (start << 32) | end, so sorting sorts by start
+	private long[] mRanges;
+	private int mCount;
+	private boolean mMerged;
+
+	/**
+	 * Creates new, empty {@link DirtyRanges}
+	 */
+	public DirtyRanges() {
+		mRanges = new long[16];
+		mMerged = true;
+	}
+
+	/**
+	 * Marks the given range as dirty
+	 *
+	 * @param offset
+	 * @param length
+	 */
+	public void add(int offset, int length) {
+		if (offset < 0 || length < 0)
+			throw new AtticRuntimeException("Invalid range at " + offset + " with length " + length);
+		if (length == 0)
+			return;
+
+		if (mCount == mRanges.length)
+			mRanges = Arrays.copyOf(mRanges, mCount * 2);
+
+		mRanges[mCount++] = (long) offset << 32 | (offset + length);
+		mMerged = mCount == 1;
+	}
+
+	/**
+	 * Sorts all dirty ranges and combines overlapping and adjacent ones
+	 *
+	 * @return how many ranges are left
+	 */
+	public int merge() {
+		if (mMerged)
+			return mCount;
+
+		Arrays.sort(mRanges, 0, mCount);
+		int merged = 0;
+		for (int i = 1; i < mCount; i++) {
+			long last = mRanges[merged];
+			long next = mRanges[i];
+			if (start(next) <= end(last)) {
+				if (end(next) > end(last))
+					mRanges[merged] = last & 0xFFFFFFFF00000000L | end(next);
+			} else {
+				mRanges[++merged] = next;
+			}
+		}
+
+		mCount = merged + 1;
+		mMerged = true;
+		return mCount;
+	}
+
+	/**
+	 *
+	 * @param range
+	 * @return the start of the packed range
+	 */
+	private static int start(long range) {
+		return (int) (range >>> 32);
+	}
+
+	/**
+	 *
+	 * @param range
+	 * @return the end of the packed range
+	 */
+	private static int end(long range) {
+		return (int) range;
+	}
+
+	/**
+	 *
+	 * @return how many ranges there are, which is only minimal after
+	 *         {@link #merge()}
+	 */
+	public int count() {
+		return mCount;
+	}
+
+	/**
+	 *
+	 * @return whether there are no dirty ranges
+	 */
+	public boolean isEmpty() {
+		return mCount == 0;
+	}
+
+	/**
+	 *
+	 * @param index
+	 * @return the offset of the range with the given index
+	 */
+	public int offset(int index) {
+		return start(range(index));
+	}
+
+	/**
+	 *
+	 * @param index
+	 * @return the length of the range with the given index
+	 */
+	public int length(int index) {
+		long range = range(index);
+		return end(range) - start(range);
+	}
+
+	/**
+	 *
+	 * @param index
+	 * @return the packed range with the given index
+	 */
+	private long range(int index) {
+		if (index < 0 || index >= mCount)
+			throw new AtticRuntimeException("There is no range with index " + index);
+
+		return mRanges[index];
+	}
+
+	/**
+	 *
+	 * @return how many bytes are covered by all ranges, which is only exact
+	 *         after {@link #merge()}
+	 */
+	public int bytes() {
+		int bytes = 0;
+		for (int i = 0; i < mCount; i++)
+			bytes += end(mRanges[i]) - start(mRanges[i]);
+		return bytes;
+	}
+
+	/**
+	 * Removes all ranges
+	 */
+	public void clear() {
+		mCount = 0;
+		mMerged = true;
+	}
+}
@@ -0,0 +1,524 @@
+package com.github.linggify.attic.util;
+
+import java.util.Arrays;
+
+import com.github.linggify.attic.exceptions.AtticRuntimeException;
+
+/**
+ * A FreeListAllocator keeps its free blocks in segregated free lists: every
+ * power of two is split into {@link #SL_COUNT} linear size classes, and two
+ * levels of bitmaps tell which classes hold free blocks. An allocation takes
+ * the first block of the smallest class whose blocks are all large enough,
+ * so it is found with a few bit operations instead of a search. Every block
+ * knows its neighbours in memory, so freed blocks are merged in constant
+ * time. The free blocks are additionally kept in a heap ordered by offset,
+ * which costs O(log n) per change and lets {@link #defragment(int)} find the
+ * first gap right away.
+ *
+ * All blocks are kept in primitive arrays, so neither allocating nor freeing
+ * creates garbage. Allocations are never moved while allocating, if the free
+ * bytes are too fragmented the allocation fails. Instead
+ * {@link #defragment(int)} slides allocations to the front a few bytes at a
+ * time, so it can be called every frame with a small budget.
+ *
+ * @author Fredie
+ *
+ */
+public class FreeListAllocator implements IAllocator {
+
+	// how many bits of a length select its class within its power of two
+	private static final int SL_BITS = 4;
+	private static final int SL_COUNT = 1 << SL_BITS;
+	// enough powers of two for every positive int
+	private static final int FL_COUNT = 32 - SL_BITS;
+
+	private int mCapacity;
+	private int mFreeBytes;
+
+	// blocks by id, the handle of an allocation is the id of its block
+	private int[] mOffsets;
+	private int[] mLengths;
+	private boolean[] mUsed;
+	// the neighbours in memory or -1
+	private int[] mPrevious;
+	private int[] mNext;
+	private int mLast;
+	private int mBlockCount;
+	private int[] mFreeIds;
+	private int mFreeIdCount;
+
+	// the free blocks of every size class as doubly-linked lists
+	private int[] mBins;
+	private int[] mPreviousFree;
+	private int[] mNextFree;
+	// which powers of two, and which classes within them, have free blocks
+	private int mFirstLevel;
+	private int[] mSecondLevel;
+
+	// the free blocks as a min-heap by offset
+	private int[] mHeap;
+	private int[] mHeapIndex;
+	private int mFreeCount;
+
+	private MoveListener mListener;
+
+	/**
+	 * Creates a new {@link FreeListAllocator} managing the given amount of
+	 * bytes
+	 *
+	 * @param capacity
+	 */
+	public FreeListAllocator(int capacity) {
+		if (capacity <= 0)
+			throw new AtticRuntimeException("The capacity must be positive, but was " + capacity);
+
+		mCapacity = capacity;
+		mOffsets = new int[16];
+		mLengths = new int[16];
+		mUsed = new boolean[16];
+		mPrevious = new int[16];
+		mNext = new int[16];
+		mFreeIds = new int[16];
+		mPreviousFree = new int[16];
+		mNextFree = new int[16];
+		mHeapIndex = new int[16];
+		mHeap = new int[16];
+
+		mBins = new int[FL_COUNT * SL_COUNT];
+		Arrays.fill(mBins, -1);
+		mSecondLevel = new int[FL_COUNT];
+
+		int block = newBlock(0, capacity);
+		mPrevious[block] = -1;
+		mNext[block] = -1;
+		mLast = block;
+		addFree(block);
+	}
+
+	/**
+	 *
+	 * @param length
+	 * @return the size class of the given length, the power of two in the
+	 *         high and the linear class within it in the low 16 bits
+	 */
+	private static int sizeClass(int length) {
+		// small lengths have a class of their own
+		if (length < SL_COUNT)
+			return length;
+
+		int log = 31 - Integer.numberOfLeadingZeros(length);
+		int fl = log - SL_BITS + 1;
+		int sl = (length >>> (log - SL_BITS)) - SL_COUNT;
+		return fl << 16 | sl;
+	}
+
+	/**
+	 * Creates a new block
+	 *
+	 * @param offset
+	 * @param length
+	 * @return the id of the block
+	 */
+	private int newBlock(int offset, int length) {
+		int block;
+		if (mFreeIdCount > 0) {
+			block = mFreeIds[--mFreeIdCount];
+		} else {
+			if (mBlockCount == mOffsets.length) {
+				int size = mBlockCount * 2;
+				mOffsets = Arrays.copyOf(mOffsets, size);
+				mLengths = Arrays.copyOf(mLengths, size);
+				mUsed = Arrays.copyOf(mUsed, size);
+				mPrevious = Arrays.copyOf(mPrevious, size);
+				mNext = Arrays.copyOf(mNext, size);
+				mFreeIds = Arrays.copyOf(mFreeIds, size);
+				mPreviousFree = Arrays.copyOf(mPreviousFree, size);
+				mNextFree = Arrays.copyOf(mNextFree, size);
+				mHeapIndex = Arrays.copyOf(mHeapIndex, size);
+				mHeap = Arrays.copyOf(mHeap, size);
+			}
+			block = mBlockCount++;
+		}
+
+		mOffsets[block] = offset;
+		mLengths[block] = length;
+		mUsed[block] = false;
+		return block;
+	}
+
+	/**
+	 * Unlinks the given block from its neighbours and releases its id
+	 *
+	 * @param block
+	 */
+	private void deleteBlock(int block) {
+		int previous = mPrevious[block];
+		int next = mNext[block];
+		if (previous != -1)
+			mNext[previous] = next;
+		if (next != -1)
+			mPrevious[next] = previous;
+		else
+			mLast = previous;
+
+		mUsed[block] = false;
+		mFreeIds[mFreeIdCount++] = block;
+	}
+
+	/**
+	 * Adds the given block to the free blocks
+	 *
+	 * @param block
+	 */
+	private void addFree(int block) {
+		int index = bin(sizeClass(mLengths[block]));
+		int head = mBins[index];
+		mPreviousFree[block] = -1;
+		mNextFree[block] = head;
+		if (head != -1)
+			mPreviousFree[head] = block;
+		mBins[index] = block;
+		mFirstLevel |= 1 << index / SL_COUNT;
+		mSecondLevel[index / SL_COUNT] |= 1 << index % SL_COUNT;
+
+		mHeap[mFreeCount] = block;
+		mHeapIndex[block] = mFreeCount;
+		siftUp(mFreeCount++);
+		mFreeBytes += mLengths[block];
+	}
+
+	/**
+	 * Removes the given block from the free blocks. Its length may not have
+	 * changed since it was added
+	 *
+	 * @param block
+	 */
+	private void removeFree(int block) {
+		int index = bin(sizeClass(mLengths[block]));
+		int previous = mPreviousFree[block];
+		int next = mNextFree[block];
+		if (previous != -1)
+			mNextFree[previous] = next;
+		else
+			mBins[index] = next;
+		if (next != -1)
+			mPreviousFree[next] = previous;
+
+		if (mBins[index] == -1) {
+			int fl = index / SL_COUNT;
+			mSecondLevel[fl] &= ~(1 << index % SL_COUNT);
+			if (mSecondLevel[fl] == 0)
+				mFirstLevel &= ~(1 << fl);
+		}
+
+		int position = mHeapIndex[block];
+		int last = mHeap[--mFreeCount];
+		if (position != mFreeCount) {
+			mHeap[position] = last;
+			mHeapIndex[last] = position;
+			siftDown(position);
+			siftUp(position);
+		}
+		mFreeBytes -= mLengths[block];
+	}
+
+	/**
+	 *
+	 * @param sizeClass
+	 * @return the index of the free list of the given size class
+	 */
+	private static int bin(int sizeClass) {
+		return (sizeClass >>> 16) * SL_COUNT + (sizeClass & 0xFFFF);
+	}
+
+	/**
+	 * Moves the free block at the given position of the heap up, until its
+	 * parent has a lower offset
+	 *
+	 * @param position
+	 */
+	private void siftUp(int position) {
+		int block = mHeap[position];
+		while (position > 0) {
+			int parent = (position - 1) >>> 1;
+			if (mOffsets[mHeap[parent]] <= mOffsets[block])
+				break;
+			mHeap[position] = mHeap[parent];
+			mHeapIndex[mHeap[position]] = position;
+			position = parent;
+		}
+		mHeap[position] = block;
+		mHeapIndex[block] = position;
+	}
+
+	/**
+	 * Moves the free block at the given position of the heap down, until its
+	 * children have higher offsets
+	 *
+	 * @param position
+	 */
+	private void siftDown(int position) {
+		int block = mHeap[position];
+		while (true) {
+			int child = 2 * position + 1;
+			if (child >= mFreeCount)
+				break;
+			if (child + 1 < mFreeCount && mOffsets[mHeap[child + 1]] < mOffsets[mHeap[child]])
+				child++;
+			if (mOffsets[block] <= mOffsets[mHeap[child]])
+				break;
+			mHeap[position] = mHeap[child];
+			mHeapIndex[mHeap[position]] = position;
+			position = child;
+		}
+		mHeap[position] = block;
+		mHeapIndex[block] = position;
+	}
+
+	/**
+	 * Finds a free block of at least the given length. The length is rounded
+	 * up to the next size class, so the first block of any non-empty class
+	 * from there on fits. Only if there is none, the class of the length
+	 * itself is searched for a block that is large enough
+	 *
+	 * @param length
+	 * @return the free block or -1 if there is none
+	 */
+	private int findFree(int length) {
+		int rounded = length;
+		if (length >= SL_COUNT)
+			rounded += (1 << (31 - Integer.numberOfLeadingZeros(length) - SL_BITS)) - 1;
+
+		if (rounded > 0) {
+			int sizeClass = sizeClass(rounded);
+			int fl = sizeClass >>> 16;
+			int slMap = mSecondLevel[fl] & (~0 << (sizeClass & 0xFFFF));
+			if (slMap == 0) {
+				int flMap = fl + 1 < FL_COUNT ? mFirstLevel & (~0 << (fl + 1)) : 0;
+				if (flMap != 0) {
+					fl = Integer.numberOfTrailingZeros(flMap);
+					slMap = mSecondLevel[fl];
+				}
+			}
+			if (slMap != 0)
+				return mBins[fl * SL_COUNT + Integer.numberOfTrailingZeros(slMap)];
+		}
+
+		// only some blocks of the length's own class may be large enough
+		for (int block = mBins[bin(sizeClass(length))]; block != -1; block = mNextFree[block]) {
+			if (mLengths[block] >= length)
+				return block;
+		}
+		return -1;
+	}
+
+	@Override
+	public int allocate(int length) {
+		if (length <= 0)
+			throw new AtticRuntimeException("Cannot allocate " + length + " bytes");
+
+		int block = findFree(length);
+		if (block == -1)
+			return INVALID_HANDLE;
+
+		removeFree(block);
+		int rest = mLengths[block] - length;
+		if (rest > 0) {
+			// the allocation takes the front, the rest stays free behind it
+			int split = newBlock(mOffsets[block] + length, rest);
+			int next = mNext[block];
+			mPrevious[split] = block;
+			mNext[split] = next;
+			mNext[block] = split;
+			if (next != -1)
+				mPrevious[next] = split;
+			else
+				mLast = split;
+			mLengths[block] = length;
+			addFree(split);
+		}
+
+		mUsed[block] = true;
+		return block;
+	}
+
+	@Override
+	public void free(int handle) {
+		check(handle);
+		int block = handle;
+		mUsed[block] = false;
+
+		// merge with free neighbours
+		int next = mNext[block];
+		if (next != -1 && !mUsed[next]) {
+			removeFree(next);
+			mLengths[block] += mLengths[next];
+			deleteBlock(next);
+		}
+		int previous = mPrevious[block];
+		if (previous != -1 && !mUsed[previous]) {
+			removeFree(previous);
+			mLengths[previous] += mLengths[block];
+			deleteBlock(block);
+			block = previous;
+		}
+
+		addFree(block);
+	}
+
+	/**
+	 * Moves allocations towards the front of the managed bytes, one at a time,
+	 * until the given amount of bytes was moved or all free bytes form a single
+	 * block at the end. The first allocation is always moved, even if it is
+	 * larger than the budget, so allocations larger than the budget don't stall
+	 * defragmentation forever. Any further allocation is only moved if it fits
+	 * into the remaining budget
+	 */
+	@Override
+	public int defragment(int budget) {
+		if (budget <= 0)
+			return 0;
+
+		int moved = 0;
+		while (mFreeCount > 0) {
+			int gap = mHeap[0];
+			// free neighbours are merged, so the block behind the first gap is used
+			int block = mNext[gap];
+			// nothing behind the first gap, so there is nothing left to do
+			if (block == -1)
+				break;
+
+			int length = mLengths[block];
+			if (moved > 0 && moved + length > budget)
+				break;
+
+			// slide the allocation into the gap, the gap moves behind it
+			int from = mOffsets[block];
+			int to = mOffsets[gap];
+			int previous = mPrevious[gap];
+			int next = mNext[block];
+			if (previous != -1)
+				mNext[previous] = block;
+			mPrevious[block] = previous;
+			mNext[block] = gap;
+			mPrevious[gap] = block;
+			mNext[gap] = next;
+			if (next != -1)
+				mPrevious[next] = gap;
+			else
+				mLast = gap;
+
+			mOffsets[block] = to;
+			mOffsets[gap] = to + length;
+			if (next != -1 && !mUsed[next]) {
+				removeFree(gap);
+				removeFree(next);
+				mLengths[gap] += mLengths[next];
+				deleteBlock(next);
+				addFree(gap);
+			} else {
+				// still the same size class, only its offset grew
+				siftDown(mHeapIndex[gap]);
+			}
+
+			moved += length;
+			if (mListener != null)
+				mListener.onMove(block, from, to, length);
+		}
+
+		return moved;
+	}
+
+	/**
+	 * Grows the managed bytes to the given capacity. The new bytes are added
+	 * at the end, so no allocation is moved and all handles stay valid
+	 *
+	 * @param capacity
+	 */
+	public void grow(int capacity) {
+		if (capacity < mCapacity)
+			throw new AtticRuntimeException("Cannot shrink from " + mCapacity + " to " + capacity + " bytes");
+		if (capacity == mCapacity)
+			return;
+
+		int length = capacity - mCapacity;
+		if (!mUsed[mLast]) {
+			removeFree(mLast);
+			mLengths[mLast] += length;
+			addFree(mLast);
+		} else {
+			int block = newBlock(mCapacity, length);
+			mPrevious[block] = mLast;
+			mNext[block] = -1;
+			mNext[mLast] = block;
+			mLast = block;
+			addFree(block);
+		}
+		mCapacity = capacity;
+	}
+
+	/**
+	 *
+	 * @return the end of the last allocation, every byte behind it is free
+	 */
+	public int end() {
+		if (mUsed[mLast])
+			return mOffsets[mLast] + mLengths[mLast];
+		return mOffsets[mLast];
+	}
+
+	/**
+	 * Makes sure the given handle belongs to an allocation
+	 *
+	 * @param handle
+	 */
+	private void check(int handle) {
+		if (handle < 0 || handle >= mBlockCount || !mUsed[handle])
+			throw new AtticRuntimeException("Invalid allocation handle " + handle);
+	}
+
+	@Override
+	public int offset(int handle) {
+		check(handle);
+		return mOffsets[handle];
+	}
+
+	@Override
+	public int length(int handle) {
+		check(handle);
+		return mLengths[handle];
+	}
+
+	@Override
+	public int capacity() {
+		return mCapacity;
+	}
+
+	@Override
+	public int freeBytes() {
+		return mFreeBytes;
+	}
+
+	/**
+	 * Looks through the free blocks of the largest non-empty size class
+	 *
+	 * @return the length of the largest free block, which is the largest
+	 *         allocation that can succeed
+	 */
+	public int largestFreeBlock() {
+		if (mFirstLevel == 0)
+			return 0;
+
+		int fl = 31 - Integer.numberOfLeadingZeros(mFirstLevel);
+		int sl = 31 - Integer.numberOfLeadingZeros(mSecondLevel[fl]);
+		int largest = 0;
+		for (int block = mBins[fl * SL_COUNT + sl]; block != -1; block = mNextFree[block])
+			largest = Math.max(largest, mLengths[block]);
+		return largest;
+	}
+
+	@Override
+	public void setMoveListener(MoveListener listener) {
+		mListener = listener;
+	}
+}
@@ -0,0 +1,101 @@
+package com.github.linggify.attic.util;
+
+/**
+ * An IAllocator manages ranges of a fixed amount of bytes, e.g. the memory of
+ * a buffer on the graphics hardware, without touching the memory itself.
+ * Allocations are identified by handles that stay the same even if the
+ * allocation is moved to another offset.
+ *
+ * @author Fredie
+ *
+ */
+public interface IAllocator {
+
+	/** The handle returned if an allocation failed */
+	int INVALID_HANDLE = -1;
+
+	/**
+	 * A MoveListener is notified whenever an {@link IAllocator} moves an
+	 * allocation, so the owner of the memory can move its contents
+	 *
+	 * @author Fredie
+	 *
+	 */
+	interface MoveListener {
+
+		/**
+		 * Called after the allocation with the given handle was moved
+		 *
+		 * @param handle
+		 * @param from
+		 *            the previous offset
+		 * @param to
+		 *            the new offset
+		 * @param length
+		 */
+		void onMove(int handle, int from, int to, int length);
+	}
+
+	/**
+	 * Allocates the given amount of bytes
+	 *
+	 * @param length
+	 * @return the handle of the allocation or {@link #INVALID_HANDLE} if there
+	 *         is not enough space
+	 */
+	int allocate(int length);
+
+	/**
+	 * Frees the allocation with the given handle
+	 *
+	 * @param handle
+	 */
+	void free(int handle);
+
+	/**
+	 *
+	 * @param handle
+	 * @return the current offset of the allocation with the given handle
+	 */
+	int offset(int handle);
+
+	/**
+	 *
+	 * @param handle
+	 * @return the length of the allocation with the given handle
+	 */
+	int length(int handle);
+
+	/**
+	 *
+	 * @return how many bytes are managed by this {@link IAllocator}
+	 */
+	int capacity();
+
+	/**
+	 *
+	 * @return how many bytes are not allocated
+	 */
+	int freeBytes();
+
+	/**
+	 * Moves allocations to reduce fragmentation, notifying the
+	 * {@link MoveListener} about every move, but moves at most the given
+	 * amount of bytes. A single allocation larger than the budget may still be
+	 * moved, so defragmentation always makes progress
+	 *
+	 * @param budget
+	 *            how many bytes may be moved, nothing is moved if it is not
+	 *            positive
+	 * @return how many bytes were moved
+	 */
+	int defragment(int budget);
+
+	/**
+	 * Sets the {@link MoveListener} notified whenever an allocation is moved
+	 *
+	 * @param listener
+	 *            the listener or null
+	 */
+	void setMoveListener(MoveListener listener);
+}
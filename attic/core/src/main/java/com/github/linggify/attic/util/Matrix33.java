@@ -39,6 +39,19 @@ public class Matrix33 {
 		return values;
 	}
 	
+	/**
+	 * 
+	 * @param row
+	 * @param column
+	 * @return the value in the given row and column of this {@link Matrix33}
+	 */
+	public float get(int row, int column) {
+		if(row < 0 || row > 2 || column < 0 || column > 2)
+			throw new AtticRuntimeException("There is no value at " + row + ", " + column + " in a Matrix33");
+		
+		return mValues[row * 3 + column];
+	}
+	
 	/**
 	 * Copies the values from the given array into this {@link Matrix33}. the given array must have a length of 9
 	 * @param values
@@ -52,6 +65,20 @@ public class Matrix33 {
 		return this;
 	}
 	
+	/**
+	 * Copies 9 values starting at the given offset from the given array into this {@link Matrix33}
+	 * @param values
+	 * @param offset
+	 * @return this Matix33 for chaining
+	 */
+	public Matrix33 set(float[] values, int offset) {
+		if(values == null) throw new AtticRuntimeException("Values of a Matrix33 may not be null");
+		if(offset < 0 || offset + 9 > values.length) throw new AtticRuntimeException("Need 9 values for Matrix33 at offset " + offset + ", but only got " + values.length);
+		System.arraycopy(values, offset, mValues, 0, 9);
+		
+		return this;
+	}
+	
 	/**
 	 * Sets this {@link Matrix33} to the given matrix
 	 * @param matrix
@@ -59,7 +86,7 @@ public class Matrix33 {
 	 */
 	public Matrix33 set(Matrix33 matrix) {
 		if(matrix == null) throw new AtticRuntimeException("The source Matrix33 may not be null");
-		set(matrix.getValues());
+		System.arraycopy(matrix.mValues, 0, mValues, 0, 9);
 		
 		return this;
 	}
@@ -69,7 +96,31 @@ public class Matrix33 {
 	 * @return this Matix33 for chaining
 	 */
 	public Matrix33 identy() {
-		set(new float[] {1, 0, 0, 0, 1, 0, 0, 0, 1});
+		float[] m = mValues;
+		m[0] = 1; m[1] = 0; m[2] = 0;
+		m[3] = 0; m[4] = 1; m[5] = 0;
+		m[6] = 0; m[7] = 0; m[8] = 1;
+		return this;
+	}
+	
+	/**
+	 * Sets this {@link Matrix33} to the 2D affine transform that first scales, then rotates counter-clockwise
+	 * and then translates. The last row is (0, 0, 1)
+	 * @param scale
+	 * @param angle rotation in degrees
+	 * @param x
+	 * @param y
+	 * @return this Matix33 for chaining
+	 */
+	public Matrix33 compose(float scale, float angle, float x, float y) {
+		double radians = Math.toRadians(angle);
+		float sin = (float) Math.sin(radians) * scale;
+		float cos = (float) Math.cos(radians) * scale;
+		
+		float[] m = mValues;
+		m[0] = cos; m[1] = -sin; m[2] = x;
+		m[3] = sin; m[4] = cos; m[5] = y;
+		m[6] = 0; m[7] = 0; m[8] = 1;
 		return this;
 	}
 	
@@ -108,18 +159,48 @@ public class Matrix33 {
 	 */
 	public Matrix33 multiply(Matrix33 other) {
 		if(other == null) throw new AtticRuntimeException("The source Matrix33 may not be null");
-		//use the field directly to avoid unnecessary coping
-		float[] others = other.mValues;
-		float[] newVals = new float[9];
-		for(int i = 0; i < mValues.length; i++) {
-			for(int c = 0; c < 3; c++) {
-				float a = mValues[((int) (i / 3)) * 3 + c];
-				float b = others[(i % 3) + (3 * c)];
-				newVals[i] += a * b;
-			}
+		//use the fields directly and unroll to avoid temporary arrays, other may be this matrix
+		float[] a = mValues;
+		float[] b = other.mValues;
+		float b0 = b[0], b1 = b[1], b2 = b[2];
+		float b3 = b[3], b4 = b[4], b5 = b[5];
+		float b6 = b[6], b7 = b[7], b8 = b[8];
+		
+		for(int row = 0; row < 9; row += 3) {
+			float a0 = a[row], a1 = a[row + 1], a2 = a[row + 2];
+			a[row] = a0 * b0 + a1 * b3 + a2 * b6;
+			a[row + 1] = a0 * b1 + a1 * b4 + a2 * b7;
+			a[row + 2] = a0 * b2 + a1 * b5 + a2 * b8;
 		}
 		
-		set(newVals);
+		return this;
+	}
+	
+	/**
+	 * Multiplies this {@link Matrix33} with the other matrix (the given matrix is used as the right matrix),
+	 * treating both as 2D affine transforms. The last rows of both matrices are assumed to be (0, 0, 1) and
+	 * the last row of the result is set to (0, 0, 1)
+	 * @param other
+	 * @return this Matix33 for chaining
+	 */
+	public Matrix33 multiplyAffine(Matrix33 other) {
+		if(other == null) throw new AtticRuntimeException("The source Matrix33 may not be null");
+		float[] a = mValues;
+		float[] b = other.mValues;
+		float a0 = a[0], a1 = a[1], a2 = a[2];
+		float a3 = a[3], a4 = a[4], a5 = a[5];
+		float b0 = b[0], b1 = b[1], b2 = b[2];
+		float b3 = b[3], b4 = b[4], b5 = b[5];
+		
+		a[0] = a0 * b0 + a1 * b3;
+		a[1] = a0 * b1 + a1 * b4;
+		a[2] = a0 * b2 + a1 * b5 + a2;
+		a[3] = a3 * b0 + a4 * b3;
+		a[4] = a3 * b1 + a4 * b4;
+		a[5] = a3 * b2 + a4 * b5 + a5;
+		a[6] = 0;
+		a[7] = 0;
+		a[8] = 1;
 		
 		return this;
 	}
@@ -140,6 +221,31 @@ public class Matrix33 {
 		return vector;
 	}
 	
+	/**
+	 * Multiplies the given points with this {@link Matrix33} the same way as {@link #multiply(Vector2D)}.
+	 * The points are stored as consecutive x and y values. src and dst may be the same array
+	 * @param src
+	 * @param dst
+	 * @param count the number of points
+	 * @return dst for chaining
+	 */
+	public float[] transformPoints(float[] src, float[] dst, int count) {
+		if(src == null || dst == null) throw new AtticRuntimeException("The point arrays may not be null");
+		if(count < 0 || src.length < count * 2 || dst.length < count * 2)
+			throw new AtticRuntimeException("Cannot transform " + count + " points with arrays of length " + src.length + " and " + dst.length);
+		
+		float m0 = mValues[0], m1 = mValues[1], m2 = mValues[2];
+		float m3 = mValues[3], m4 = mValues[4], m5 = mValues[5];
+		for(int i = 0; i < count * 2; i += 2) {
+			float x = src[i];
+			float y = src[i + 1];
+			dst[i] = m0 * x + m1 * y + m2;
+			dst[i + 1] = m3 * x + m4 * y + m5;
+		}
+		
+		return dst;
+	}
+	
 	/**
 	 * Transforms this {@link Matrix33} by the given {@link Vector2D}
 	 * @param vector
@@ -0,0 +1,110 @@
+package com.github.linggify.attic.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.github.linggify.attic.exceptions.AtticRuntimeException;
+
+/**
+ * A lock-free, unbounded queue that can be filled by any number of Threads but
+ * must only be drained by a single Thread. Producers never block each other,
+ * they only swap the head of an intrusive linked list.
+ *
+ * @author Fredie
+ *
+ * @param <T>
+ */
+public class MpscQueue<T> {
+
+	private final AtomicReference<Node<T>> mHead;
+	private Node<T> mTail;
+	private final AtomicInteger mSize;
+
+	/**
+	 * Creates a new empty {@link MpscQueue}
+	 */
+	public MpscQueue() {
+		Node<T> stub = new Node<>(null);
+		mHead = new AtomicReference<>(stub);
+		mTail = stub;
+		mSize = new AtomicInteger();
+	}
+
+	/**
+	 * Adds the given value to the end of this {@link MpscQueue}. This method
+	 * may be called from any Thread
+	 *
+	 * @param value
+	 */
+	public void offer(T value) {
+		if (value == null)
+			throw new AtticRuntimeException("Cannot add null to a MpscQueue");
+
+		Node<T> node = new Node<>(value);
+		mSize.incrementAndGet();
+
+		// link the node after the previous head, the consumer can only see it
+		// once the link is published
+		Node<T> previous = mHead.getAndSet(node);
+		previous.mNext = node;
+	}
+
+	/**
+	 * Removes the first value of this {@link MpscQueue}. This method must only
+	 * be called from the consuming Thread
+	 *
+	 * @return the first value or null if the queue is empty
+	 */
+	public T poll() {
+		Node<T> next = mTail.mNext;
+		if (next == null)
+			return null;
+
+		T value = next.mValue;
+		// the polled node becomes the new stub
+		next.mValue = null;
+		mTail = next;
+		mSize.decrementAndGet();
+
+		return value;
+	}
+
+	/**
+	 * The size is only an estimate while other Threads are adding values
+	 *
+	 * @return how many values are currently in this {@link MpscQueue}
+	 */
+	public int size() {
+		return mSize.get();
+	}
+
+	/**
+	 *
+	 * @return whether this {@link MpscQueue} is empty
+	 */
+	public boolean isEmpty() {
+		return mTail.mNext == null;
+	}
+
+	/**
+	 * A single node of the linked list
+	 *
+	 * @author Fredie
+	 *
+	 * @param <T>
+	 */
+	private static class Node<T> {
+
+		private T mValue;
+		private volatile Node<T> mNext;
+
+		/**
+		 * Creates a new {@link Node} holding the given value
+		 *
+		 * @param value
+		 */
+		Node(T value) {
+			mValue = value;
+		}
+	}
+}
@@ -0,0 +1,389 @@
+package com.github.linggify.attic.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import com.github.linggify.attic.exceptions.AtticRuntimeException;
+
+/**
+ * A SpatialGrid is a uniform grid of square cells, that finds all items whose
+ * bounds overlap a given rectangle without looking at the items far away
+ * from it. Every item is kept in all cells its bounds overlap, cells without
+ * items are not stored at all, so the grid may span an unbounded world.
+ * Updating an item only touches the grid if it moved into other cells.
+ *
+ * @author Fredie
+ *
+ */
+public class SpatialGrid<T> {
+
+	private final float mCellSize;
+	// cells packed as (x << 32) | y, mapping to the handles of their items
+	private final HashMap<Long, Cell> mCells;
+
+	private Object[] mItems;
+	// minX, minY, maxX, maxY of every item
+	private float[] mBounds;
+	// the covered cells of every item as minX, minY, maxX, maxY
+	private int[] mCovered;
+	// the query an item was last found by, so it is reported only once
+	private int[] mQueries;
+	private boolean[] mUsed;
+	private int mHandleCount;
+	private int[] mFreeHandles;
+	private int mFreeHandleCount;
+	private int mSize;
+	private int mQuery;
+
+	/**
+	 * Creates a new, empty {@link SpatialGrid}
+	 *
+	 * @param cellSize
+	 *            the edge length of a cell, which should be about the size of
+	 *            the queried rectangles
+	 */
+	public SpatialGrid(float cellSize) {
+		if (!(cellSize > 0))
+			throw new AtticRuntimeException("The cell size must be positive, but was " + cellSize);
+
+		mCellSize = cellSize;
+		mCells = new HashMap<>();
+		mItems = new Object[16];
+		mBounds = new float[16 * 4];
+		mCovered = new int[16 * 4];
+		mQueries = new int[16];
+		mUsed = new boolean[16];
+		mFreeHandles = new int[16];
+	}
+
+	/**
+	 * Inserts the given item with the given bounds
+	 *
+	 * @param item
+	 * @param minX
+	 * @param minY
+	 * @param maxX
+	 * @param maxY
+	 * @return the handle of the item
+	 */
+	public int insert(T item, float minX, float minY, float maxX, float maxY) {
+		checkBounds(minX, minY, maxX, maxY);
+
+		int handle = newHandle();
+		mItems[handle] = item;
+		mUsed[handle] = true;
+		mQueries[handle] = mQuery;
+		setBounds(handle, minX, minY, maxX, maxY);
+
+		int index = handle * 4;
+		mCovered[index] = cell(minX);
+		mCovered[index + 1] = cell(minY);
+		mCovered[index + 2] = cell(maxX);
+		mCovered[index + 3] = cell(maxY);
+		addToCells(handle, mCovered[index], mCovered[index + 1], mCovered[index + 2], mCovered[index + 3]);
+
+		mSize++;
+		return handle;
+	}
+
+	/**
+	 * Sets the bounds of the item with the given handle. The cells are only
+	 * changed if the item moved into other cells
+	 *
+	 * @param handle
+	 * @param minX
+	 * @param minY
+	 * @param maxX
+	 * @param maxY
+	 */
+	public void update(int handle, float minX, float minY, float maxX, float maxY) {
+		check(handle);
+		checkBounds(minX, minY, maxX, maxY);
+		setBounds(handle, minX, minY, maxX, maxY);
+
+		int index = handle * 4;
+		int cellMinX = cell(minX);
+		int cellMinY = cell(minY);
+		int cellMaxX = cell(maxX);
+		int cellMaxY = cell(maxY);
+		if (cellMinX == mCovered[index] && cellMinY == mCovered[index + 1] && cellMaxX == mCovered[index + 2]
+				&& cellMaxY == mCovered[index + 3])
+			return;
+
+		removeFromCells(handle);
+		mCovered[index] = cellMinX;
+		mCovered[index + 1] = cellMinY;
+		mCovered[index + 2] = cellMaxX;
+		mCovered[index + 3] = cellMaxY;
+		addToCells(handle, cellMinX, cellMinY, cellMaxX, cellMaxY);
+	}
+
+	/**
+	 * Removes the item with the given handle, the handle may be reused
+	 * afterwards
+	 *
+	 * @param handle
+	 */
+	public void remove(int handle) {
+		check(handle);
+		removeFromCells(handle);
+		mItems[handle] = null;
+		mUsed[handle] = false;
+		mFreeHandles[mFreeHandleCount++] = handle;
+		mSize--;
+	}
+
+	/**
+	 * Adds every item whose bounds overlap the given rectangle to the given
+	 * list. Every item is added once, in no particular order
+	 *
+	 * @param minX
+	 * @param minY
+	 * @param maxX
+	 * @param maxY
+	 * @param result
+	 *            the list to add the items to
+	 * @return how many items were added
+	 */
+	@SuppressWarnings("unchecked")
+	public int query(float minX, float minY, float maxX, float maxY, List<? super T> result) {
+		checkBounds(minX, minY, maxX, maxY);
+
+		// a new query id instead of clearing the marks of every item
+		if (++mQuery == 0) {
+			Arrays.fill(mQueries, 0);
+			mQuery = 1;
+		}
+
+		int found = 0;
+		int cellMinX = cell(minX);
+		int cellMaxX = cell(maxX);
+		int cellMinY = cell(minY);
+		int cellMaxY = cell(maxY);
+		for (int x = cellMinX; x <= cellMaxX; x++) {
+			for (int y = cellMinY; y <= cellMaxY; y++) {
+				Cell cell = mCells.get(key(x, y));
+				if (cell == null)
+					continue;
+
+				for (int i = 0; i < cell.mCount; i++) {
+					int handle = cell.mHandles[i];
+					if (mQueries[handle] == mQuery)
+						continue;
+
+					mQueries[handle] = mQuery;
+					int index = handle * 4;
+					if (mBounds[index] <= maxX && mBounds[index + 2] >= minX && mBounds[index + 1] <= maxY
+							&& mBounds[index + 3] >= minY) {
+						result.add((T) mItems[handle]);
+						found++;
+					}
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Adds every item of this {@link SpatialGrid} to the given list
+	 *
+	 * @param result
+	 * @return how many items were added
+	 */
+	@SuppressWarnings("unchecked")
+	public int items(List<? super T> result) {
+		for (int handle = 0; handle < mHandleCount; handle++) {
+			if (mUsed[handle])
+				result.add((T) mItems[handle]);
+		}
+		return mSize;
+	}
+
+	/**
+	 *
+	 * @param handle
+	 * @return the item with the given handle
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(int handle) {
+		check(handle);
+		return (T) mItems[handle];
+	}
+
+	/**
+	 *
+	 * @return how many items this {@link SpatialGrid} contains
+	 */
+	public int size() {
+		return mSize;
+	}
+
+	/**
+	 *
+	 * @return how many cells contain at least one item
+	 */
+	public int cellCount() {
+		return mCells.size();
+	}
+
+	/**
+	 * Stores the given bounds of the item with the given handle
+	 *
+	 * @param handle
+	 * @param minX
+	 * @param minY
+	 * @param maxX
+	 * @param maxY
+	 */
+	private void setBounds(int handle, float minX, float minY, float maxX, float maxY) {
+		int index = handle * 4;
+		mBounds[index] = minX;
+		mBounds[index + 1] = minY;
+		mBounds[index + 2] = maxX;
+		mBounds[index + 3] = maxY;
+	}
+
+	/**
+	 * Adds the given handle to all given cells
+	 *
+	 * @param handle
+	 * @param minX
+	 * @param minY
+	 * @param maxX
+	 * @param maxY
+	 */
+	private void addToCells(int handle, int minX, int minY, int maxX, int maxY) {
+		for (int x = minX; x <= maxX; x++) {
+			for (int y = minY; y <= maxY; y++) {
+				Long key = key(x, y);
+				Cell cell = mCells.get(key);
+				if (cell == null) {
+					cell = new Cell();
+					mCells.put(key, cell);
+				}
+				cell.add(handle);
+			}
+		}
+	}
+
+	/**
+	 * Removes the given handle from all cells it is kept in, dropping cells
+	 * that become empty
+	 *
+	 * @param handle
+	 */
+	private void removeFromCells(int handle) {
+		int index = handle * 4;
+		for (int x = mCovered[index]; x <= mCovered[index + 2]; x++) {
+			for (int y = mCovered[index + 1]; y <= mCovered[index + 3]; y++) {
+				Long key = key(x, y);
+				Cell cell = mCells.get(key);
+				cell.remove(handle);
+				if (cell.mCount == 0)
+					mCells.remove(key);
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param coordinate
+	 * @return the cell containing the given coordinate
+	 */
+	private int cell(float coordinate) {
+		return (int) Math.floor(coordinate / mCellSize);
+	}
+
+	/**
+	 *
+	 * @param x
+	 * @param y
+	 * @return the given cell packed into a single key
+	 */
+	private static long key(int x, int y) {
+		return (long) x << 32 | y & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * Makes sure the given bounds are valid
+	 *
+	 * @param minX
+	 * @param minY
+	 * @param maxX
+	 * @param maxY
+	 */
+	private static void checkBounds(float minX, float minY, float maxX, float maxY) {
+		if (!(minX <= maxX && minY <= maxY))
+			throw new AtticRuntimeException(
+					"Invalid bounds (" + minX + ", " + minY + ") to (" + maxX + ", " + maxY + ")");
+	}
+
+	/**
+	 * Creates a new handle
+	 *
+	 * @return the handle
+	 */
+	private int newHandle() {
+		if (mFreeHandleCount > 0)
+			return mFreeHandles[--mFreeHandleCount];
+
+		if (mHandleCount == mItems.length) {
+			int capacity = mHandleCount * 2;
+			mItems = Arrays.copyOf(mItems, capacity);
+			mBounds = Arrays.copyOf(mBounds, capacity * 4);
+			mCovered = Arrays.copyOf(mCovered, capacity * 4);
+			mQueries = Arrays.copyOf(mQueries, capacity);
+			mUsed = Arrays.copyOf(mUsed, capacity);
+			mFreeHandles = Arrays.copyOf(mFreeHandles, capacity);
+		}
+		return mHandleCount++;
+	}
+
+	/**
+	 * Makes sure the given handle belongs to an item
+	 *
+	 * @param handle
+	 */
+	private void check(int handle) {
+		if (handle < 0 || handle >= mHandleCount || !mUsed[handle])
+			throw new AtticRuntimeException("Invalid item handle " + handle);
+	}
+
+	/**
+	 * A Cell holds the handles of all items overlapping it
+	 *
+	 * @author Fredie
+	 *
+	 */
+	private static class Cell {
+
+		private int[] mHandles = new int[4];
+		private int mCount;
+
+		/**
+		 * Adds the given handle
+		 *
+		 * @param handle
+		 */
+		private void add(int handle) {
+			if (mCount == mHandles.length)
+				mHandles = Arrays.copyOf(mHandles, mCount * 2);
+			mHandles[mCount++] = handle;
+		}
+
+		/**
+		 * Removes the given handle, moving the last handle into its place
+		 *
+		 * @param handle
+		 */
+		private void remove(int handle) {
+			for (int i = 0; i < mCount; i++) {
+				if (mHandles[i] == handle) {
+					mHandles[i] = mHandles[--mCount];
+					return;
+				}
+			}
+		}
+	}
+}
@@ -2,6 +2,7 @@ package com.github.linggify.attic.util;
 
 import com.github.linggify.attic.exceptions.AtticRuntimeException;
 import com.github.linggify.attic.render.RenderData.VertexData;
+import com.github.linggify.attic.render.VertexWriter;
 
 /**
  * Vector2D is a math-utility class representing a 2-dimensional vector
@@ -278,6 +279,11 @@ public class Vector2D implements VertexData {
 		return true;
 	}
 
+	@Override
+	public void write(VertexWriter writer) {
+		writer.putFloat(mX).putFloat(mY);
+	}
+
 	@Override
 	public byte[] asBytes() {
 		if(mBytesDirty) {
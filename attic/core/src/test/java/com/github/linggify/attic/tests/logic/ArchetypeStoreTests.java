@@ -0,0 +1,210 @@
+package com.github.linggify.attic.tests.logic;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.linggify.attic.logic.Archetype;
+import com.github.linggify.attic.logic.ArchetypeStore;
+import com.github.linggify.attic.logic.Entity;
+import com.github.linggify.attic.logic.IProperty;
+import com.github.linggify.attic.logic.Query;
+
+public class ArchetypeStoreTests {
+
+	/**
+	 * Tests {@link ArchetypeStore#add(Entity)}
+	 */
+	@Test
+	public void testAdd() {
+		ArchetypeStore store = new ArchetypeStore();
+		Entity a = new Entity(null, new PropertyA(), new PropertyB());
+		Entity b = new Entity(null, new PropertyB(), new PropertyA());
+		Entity c = new Entity(null, new PropertyA());
+		store.add(a);
+		store.add(b);
+		store.add(c);
+
+		// the order of the properties does not matter
+		assertEquals(2, store.archetypeCount());
+		assertSame(a.getArchetype(), b.getArchetype());
+		assertNotSame(a.getArchetype(), c.getArchetype());
+		assertEquals(2, a.getArchetype().size());
+	}
+
+	/**
+	 * Tests {@link ArchetypeStore#addAll(Entity[])}
+	 */
+	@Test
+	public void testAddAll() {
+		ArchetypeStore store = new ArchetypeStore();
+		Entity[] entities = new Entity[10];
+		for (int i = 0; i < entities.length; i++) {
+			entities[i] = i < 6 ? new Entity(null, new PropertyA(), new PropertyB())
+					: new Entity(null, new PropertyA());
+		}
+		store.add(entities[0]);
+		store.addAll(Arrays.copyOfRange(entities, 1, entities.length));
+
+		assertEquals(2, store.archetypeCount());
+		assertEquals(6, entities[0].getArchetype().size());
+		assertEquals(4, entities[9].getArchetype().size());
+		// the entities keep their order within their archetype
+		for (int i = 0; i < entities.length; i++)
+			assertSame(entities[i], entities[i].getArchetype().entity(i < 6 ? i : i - 6));
+	}
+
+	/**
+	 * Tests {@link Archetype#column(Class)}
+	 */
+	@Test
+	public void testColumn() {
+		ArchetypeStore store = new ArchetypeStore();
+		List<PropertyA> properties = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			PropertyA property = new PropertyA();
+			properties.add(property);
+			store.add(new Entity(null, property, new PropertyB()));
+		}
+
+		Archetype archetype = store.archetype(0);
+		PropertyA[] column = archetype.column(PropertyA.class);
+		assertEquals(100, archetype.size());
+		for (int i = 0; i < archetype.size(); i++)
+			assertSame(properties.get(i), column[i]);
+		assertNull(archetype.column(String.class));
+	}
+
+	/**
+	 * Tests that {@link Entity}s move between {@link Archetype}s when their
+	 * properties change
+	 */
+	@Test
+	public void testChangeProperties() {
+		ArchetypeStore store = new ArchetypeStore();
+		Entity a = new Entity(null, new PropertyA());
+		Entity b = new Entity(null, new PropertyA());
+		store.add(a);
+		store.add(b);
+		Archetype onlyA = a.getArchetype();
+
+		PropertyB property = new PropertyB();
+		a.addProperties(property);
+		assertNotSame(onlyA, a.getArchetype());
+		assertTrue(a.getArchetype().hasTypes(PropertyA.class, PropertyB.class));
+		assertEquals(1, onlyA.size());
+		assertSame(b, onlyA.entity(0));
+
+		a.removeProperty(property);
+		assertSame(onlyA, a.getArchetype());
+		assertEquals(2, onlyA.size());
+	}
+
+	/**
+	 * Tests {@link ArchetypeStore#remove(Entity)}
+	 */
+	@Test
+	public void testRemove() {
+		ArchetypeStore store = new ArchetypeStore();
+		Entity a = new Entity(null, new PropertyA());
+		Entity b = new Entity(null, new PropertyA());
+		store.add(a);
+		store.add(b);
+
+		store.remove(a);
+		assertNull(a.getArchetype());
+		assertEquals(1, b.getArchetype().size());
+		assertSame(b, b.getArchetype().entity(0));
+
+		b.kill();
+		assertNull(b.getArchetype());
+	}
+
+	/**
+	 * Tests {@link Query}
+	 */
+	@Test
+	public void testQuery() {
+		ArchetypeStore store = new ArchetypeStore();
+		Query query = store.query(PropertyA.class, PropertyB.class);
+		assertEquals(0, query.count());
+
+		store.add(new Entity(null, new PropertyA()));
+		store.add(new Entity(null, new PropertyA(), new PropertyB()));
+		store.add(new Entity(null, new PropertyB()));
+		// archetypes created after the query are found as well
+		assertEquals(1, query.count());
+
+		store.add(new Entity(null, new PropertyB(), new PropertyA(), new PropertyC()));
+		assertEquals(2, query.count());
+		assertEquals(2, query.archetypes().size());
+
+		List<Entity> found = new ArrayList<>();
+		query.forEach(found::add);
+		assertEquals(2, found.size());
+		for (Entity entity : found)
+			assertTrue(entity.getArchetype().hasTypes(PropertyA.class, PropertyB.class));
+	}
+
+	/**
+	 * A property without any behavior
+	 * 
+	 * @author Fredie
+	 *
+	 */
+	private static abstract class StubProperty implements IProperty<Integer> {
+
+		@Override
+		public void addListener(PropertyListener listener) {
+		}
+
+		@Override
+		public boolean removeListener(PropertyListener listener) {
+			return false;
+		}
+
+		@Override
+		public void onAttach(Entity parent) {
+		}
+
+		@Override
+		public void onDetach() {
+		}
+
+		@Override
+		public void setActive(boolean flag) {
+		}
+
+		@Override
+		public boolean isActive() {
+			return true;
+		}
+
+		@Override
+		public Class<Integer> getContentType() {
+			return Integer.class;
+		}
+
+		@Override
+		public void update(double delta) {
+		}
+
+		@Override
+		public Integer get() {
+			return 0;
+		}
+	}
+
+	private static class PropertyA extends StubProperty {
+	}
+
+	private static class PropertyB extends StubProperty {
+	}
+
+	private static class PropertyC extends StubProperty {
+	}
+}
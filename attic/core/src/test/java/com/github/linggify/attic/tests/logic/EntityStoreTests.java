@@ -0,0 +1,138 @@
+package com.github.linggify.attic.tests.logic;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.github.linggify.attic.exceptions.AtticRuntimeException;
+import com.github.linggify.attic.logic.Entity;
+import com.github.linggify.attic.logic.EntityStore;
+
+public class EntityStoreTests {
+
+	/**
+	 * Tests {@link EntityStore#add(Entity)} and {@link EntityStore#get(int)}
+	 */
+	@Test
+	public void testAdd() {
+		EntityStore store = new EntityStore(2);
+		Entity[] entities = new Entity[100];
+		int[] handles = new int[entities.length];
+		for (int i = 0; i < entities.length; i++) {
+			entities[i] = new Entity(null);
+			handles[i] = store.add(entities[i]);
+			assertEquals(handles[i], entities[i].getHandle());
+		}
+
+		assertEquals(100, store.size());
+		for (int i = 0; i < entities.length; i++) {
+			assertSame(entities[i], store.get(handles[i]));
+			assertSame(entities[i], store.at(i));
+		}
+	}
+
+	/**
+	 * Tests {@link EntityStore#remove(int)}
+	 */
+	@Test
+	public void testRemove() {
+		EntityStore store = new EntityStore();
+		Entity a = new Entity(null);
+		Entity b = new Entity(null);
+		Entity c = new Entity(null);
+		int ha = store.add(a);
+		int hb = store.add(b);
+		int hc = store.add(c);
+
+		assertSame(a, store.remove(ha));
+		assertEquals(EntityStore.INVALID_HANDLE, a.getHandle());
+		assertEquals(2, store.size());
+		assertFalse(store.contains(ha));
+		assertNull(store.get(ha));
+		assertNull(store.remove(ha));
+
+		// the remaining entities keep their handles
+		assertSame(b, store.get(hb));
+		assertSame(c, store.get(hc));
+	}
+
+	/**
+	 * Tests that handles of removed {@link Entity}s stay invalid after their
+	 * slot is reused
+	 */
+	@Test
+	public void testStaleHandle() {
+		EntityStore store = new EntityStore();
+		int stale = store.add(new Entity(null));
+		store.remove(stale);
+
+		Entity next = new Entity(null);
+		int handle = store.add(next);
+		assertNotEquals(stale, handle);
+		assertNull(store.get(stale));
+		assertSame(next, store.get(handle));
+	}
+
+	/**
+	 * Tests that a slot is retired after its last generation, so none of its
+	 * handles ever become valid again
+	 */
+	@Test
+	public void testRetiredSlot() {
+		int slotMask = (1 << EntityStore.SLOT_BITS) - 1;
+		EntityStore store = new EntityStore();
+		int[] handles = new int[EntityStore.MAX_GENERATION + 2];
+		for (int i = 0; i < handles.length; i++) {
+			handles[i] = store.add(new Entity(null));
+			store.remove(handles[i]);
+		}
+
+		// every generation of the first slot was used once
+		for (int i = 0; i <= EntityStore.MAX_GENERATION; i++)
+			assertEquals(0, handles[i] & slotMask);
+		assertEquals(1, handles[EntityStore.MAX_GENERATION + 1] & slotMask);
+
+		Entity next = new Entity(null);
+		int handle = store.add(next);
+		assertEquals(1, handle & slotMask);
+		for (int stale : handles) {
+			assertNotEquals(stale, handle);
+			assertFalse(store.contains(stale));
+			assertNull(store.get(stale));
+		}
+		assertSame(next, store.get(handle));
+	}
+
+	/**
+	 * Tests {@link EntityStore#removeAt(int)} in descending order
+	 */
+	@Test
+	public void testRemoveAtDescending() {
+		EntityStore store = new EntityStore();
+		Entity[] entities = new Entity[10];
+		for (int i = 0; i < entities.length; i++) {
+			entities[i] = new Entity(null);
+			store.add(entities[i]);
+		}
+
+		// remove all odd entities
+		for (int i = 9; i >= 0; i--) {
+			if (i % 2 == 1)
+				assertSame(entities[i], store.removeAt(i));
+		}
+
+		assertEquals(5, store.size());
+		for (int i = 0; i < entities.length; i += 2)
+			assertSame(entities[i], store.get(entities[i].getHandle()));
+	}
+
+	@Test (expected = AtticRuntimeException.class)
+	public void testInvalidIndexError0() {
+		new EntityStore().at(0);
+	}
+
+	@Test (expected = AtticRuntimeException.class)
+	public void testNullEntityError0() {
+		new EntityStore().add(null);
+	}
+}
@@ -0,0 +1,179 @@
+package com.github.linggify.attic.tests.logic;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.linggify.attic.logic.Entity;
+import com.github.linggify.attic.logic.IProperty;
+
+public class EntityTests {
+
+	/**
+	 * Tests {@link Entity#propertyByType(Class)}
+	 */
+	@Test
+	public void testPropertyByType() {
+		PropertyA a = new PropertyA();
+		PropertyB b = new PropertyB();
+		Entity entity = new Entity(null, a, b);
+
+		assertSame(a, entity.propertyByType(PropertyA.class));
+		assertSame(b, entity.propertyByType(PropertyB.class));
+		assertNull(entity.propertyByType(PropertyC.class));
+
+		PropertyC c = new PropertyC();
+		entity.addProperties(c);
+		assertSame(c, entity.propertyByType(PropertyC.class));
+		assertTrue(entity.getPropertyTypes().contains(PropertyC.class));
+	}
+
+	/**
+	 * Tests {@link Entity#removeProperty(IProperty)} replacing the indexed
+	 * property with the next one of the same type
+	 */
+	@Test
+	public void testRemoveProperty() {
+		PropertyA first = new PropertyA();
+		PropertyA second = new PropertyA();
+		Entity entity = new Entity(null, first, second);
+		assertSame(first, entity.propertyByType(PropertyA.class));
+
+		// removing the property that is not indexed keeps the index
+		assertTrue(entity.removeProperty(second));
+		assertSame(first, entity.propertyByType(PropertyA.class));
+		entity.addProperties(second);
+
+		assertTrue(entity.removeProperty(first));
+		assertSame(second, entity.propertyByType(PropertyA.class));
+		assertTrue(entity.getPropertyTypes().contains(PropertyA.class));
+
+		assertTrue(entity.removeProperty(second));
+		assertNull(entity.propertyByType(PropertyA.class));
+		assertFalse(entity.getPropertyTypes().contains(PropertyA.class));
+		assertFalse(entity.removeProperty(second));
+	}
+
+	/**
+	 * Tests {@link Entity#propertiesByValue(Class)} being updated when
+	 * properties are added and removed
+	 */
+	@Test
+	public void testPropertiesByValue() {
+		PropertyA a = new PropertyA();
+		NameProperty name = new NameProperty();
+		Entity entity = new Entity(null, a, name);
+
+		List<IProperty<Integer>> numbers = entity.propertiesByValue(Integer.class);
+		assertEquals(Arrays.asList(a), numbers);
+		assertEquals(Arrays.asList(name), entity.propertiesByValue(String.class));
+		assertTrue(entity.propertiesByValue(Double.class).isEmpty());
+
+		PropertyB b = new PropertyB();
+		entity.addProperties(b);
+		assertEquals(Arrays.asList(a, b), entity.propertiesByValue(Integer.class));
+		// a list that was handed out before stays as it was
+		assertEquals(Arrays.asList(a), numbers);
+
+		entity.removeProperty(a);
+		assertEquals(Arrays.asList(b), entity.propertiesByValue(Integer.class));
+		entity.removeProperty(name);
+		assertTrue(entity.propertiesByValue(String.class).isEmpty());
+
+		entity.kill();
+		assertTrue(entity.propertiesByValue(Integer.class).isEmpty());
+	}
+
+	/**
+	 * Tests {@link Entity#propertiesByValue(Class)} returning an unmodifiable
+	 * List
+	 */
+	@Test (expected = UnsupportedOperationException.class)
+	public void testPropertiesByValueError1() {
+		Entity entity = new Entity(null, new PropertyA());
+		entity.propertiesByValue(Integer.class).clear();
+	}
+
+	/**
+	 * A property without any behavior
+	 * 
+	 * @author Fredie
+	 *
+	 * @param <T>
+	 */
+	private static abstract class StubProperty<T> implements IProperty<T> {
+
+		private final Class<T> mType;
+
+		private StubProperty(Class<T> type) {
+			mType = type;
+		}
+
+		@Override
+		public void addListener(PropertyListener listener) {
+		}
+
+		@Override
+		public boolean removeListener(PropertyListener listener) {
+			return false;
+		}
+
+		@Override
+		public void onAttach(Entity parent) {
+		}
+
+		@Override
+		public void onDetach() {
+		}
+
+		@Override
+		public void setActive(boolean flag) {
+		}
+
+		@Override
+		public boolean isActive() {
+			return true;
+		}
+
+		@Override
+		public Class<T> getContentType() {
+			return mType;
+		}
+
+		@Override
+		public void update(double delta) {
+		}
+
+		@Override
+		public T get() {
+			return null;
+		}
+	}
+
+	private static class PropertyA extends StubProperty<Integer> {
+		private PropertyA() {
+			super(Integer.class);
+		}
+	}
+
+	private static class PropertyB extends StubProperty<Integer> {
+		private PropertyB() {
+			super(Integer.class);
+		}
+	}
+
+	private static class PropertyC extends StubProperty<Integer> {
+		private PropertyC() {
+			super(Integer.class);
+		}
+	}
+
+	private static class NameProperty extends StubProperty<String> {
+		private NameProperty() {
+			super(String.class);
+		}
+	}
+}
@@ -0,0 +1,369 @@
+package com.github.linggify.attic.tests.logic;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import com.github.linggify.attic.exceptions.AtticRuntimeException;
+import com.github.linggify.attic.logic.Entity;
+import com.github.linggify.attic.logic.Genius;
+import com.github.linggify.attic.logic.IProperty;
+import com.github.linggify.attic.logic.ISystem;
+
+public class GeniusTests {
+
+	private static final long STEP = 10_000_000;
+
+	/**
+	 * Creates a {@link Genius} with a fixed timestep of {@link #STEP}
+	 * nanoseconds, that is advanced by the given clock
+	 * 
+	 * @param clock
+	 *            the current time in nanoseconds
+	 * @return the Genius
+	 */
+	private Genius createFixed(long[] clock) {
+		Genius genius = new Genius(null);
+		genius.setFixedTimestep(STEP / 1_000_000_000.0);
+		genius.setClock(() -> clock[0]);
+		return genius;
+	}
+
+	/**
+	 * Tests {@link Genius#advance()} with a fixed timestep
+	 */
+	@Test
+	public void testAdvance() {
+		long[] clock = { 0 };
+		Genius genius = createFixed(clock);
+		CountingSystem system = new CountingSystem();
+		genius.addSystem(system);
+
+		// not a full tick yet
+		clock[0] += STEP / 2;
+		assertEquals(STEP / 2, genius.advance());
+		assertEquals(0, system.mDeltas.size());
+		assertEquals(0.5, genius.getInterpolationAlpha(), 0.0001);
+
+		// completes the first tick
+		clock[0] += STEP / 2;
+		assertEquals(STEP, genius.advance());
+		assertEquals(1, system.mDeltas.size());
+		assertEquals(0.0, genius.getInterpolationAlpha(), 0.0001);
+
+		// two ticks at once, every tick advances by exactly one step
+		clock[0] += STEP * 2 + STEP / 4;
+		genius.advance();
+		assertEquals(3, system.mDeltas.size());
+		for (double delta : system.mDeltas)
+			assertEquals(0.01, delta, 0.0000001);
+		assertEquals(0.25, genius.getInterpolationAlpha(), 0.0001);
+	}
+
+	/**
+	 * Tests {@link Genius#advance()} dropping the time that exceeds the
+	 * catch-up steps
+	 */
+	@Test
+	public void testAdvanceCatchUp() {
+		long[] clock = { 0 };
+		Genius genius = createFixed(clock);
+		genius.setMaxCatchUpSteps(3);
+		CountingSystem system = new CountingSystem();
+		genius.addSystem(system);
+
+		// a long stall only simulates the allowed ticks
+		clock[0] += STEP * 10 + STEP / 2;
+		genius.advance();
+		assertEquals(3, system.mDeltas.size());
+		assertEquals(0.5, genius.getInterpolationAlpha(), 0.0001);
+
+		// the dropped time is not simulated afterwards
+		genius.advance();
+		assertEquals(3, system.mDeltas.size());
+		clock[0] += STEP / 2;
+		genius.advance();
+		assertEquals(4, system.mDeltas.size());
+	}
+
+	/**
+	 * Tests {@link Genius#getInterpolationAlpha()} staying in [0, 1)
+	 */
+	@Test
+	public void testInterpolationAlpha() {
+		long[] clock = { 0 };
+		Genius genius = createFixed(clock);
+		Random random = new Random(7);
+		for (int i = 0; i < 1000; i++) {
+			clock[0] += random.nextInt((int) STEP * 8);
+			genius.advance();
+			double alpha = genius.getInterpolationAlpha();
+			assertTrue("alpha was " + alpha, alpha >= 0 && alpha < 1);
+		}
+
+		// with a variable timestep the latest update is always shown
+		genius.setFixedTimestep(0);
+		clock[0] += STEP;
+		assertEquals(0, genius.advance());
+		assertEquals(1.0, genius.getInterpolationAlpha(), 0.0001);
+	}
+
+	/**
+	 * Tests {@link Genius#advance()} executing submitted tasks once per tick
+	 */
+	@Test
+	public void testAdvanceTasks() {
+		long[] clock = { 0 };
+		Genius genius = createFixed(clock);
+		List<Integer> executed = new ArrayList<>();
+		genius.submitTask(() -> executed.add(1));
+
+		genius.advance();
+		assertTrue(executed.isEmpty());
+		clock[0] += STEP;
+		genius.advance();
+		assertEquals(1, executed.size());
+	}
+
+	/**
+	 * Tests {@link Genius#getLastTaskDrainCount()} summing up all ticks of a
+	 * frame
+	 */
+	@Test
+	public void testTaskDrainCount() {
+		long[] clock = { 0 };
+		Genius genius = createFixed(clock);
+		genius.setMaxTasksPerTick(2);
+		for (int i = 0; i < 3; i++)
+			genius.submitTask(() -> {
+			});
+
+		clock[0] += STEP * 2;
+		genius.advance();
+		assertEquals(3, genius.getLastTaskDrainCount());
+		assertEquals(0, genius.getTaskQueueDepth());
+
+		// frames without ticks keep the metrics of the last frame
+		genius.advance();
+		assertEquals(3, genius.getLastTaskDrainCount());
+
+		clock[0] += STEP;
+		genius.advance();
+		assertEquals(0, genius.getLastTaskDrainCount());
+	}
+
+	/**
+	 * Creates a {@link Genius} holding two {@link Entity}s, each with a
+	 * property that is not thread-safe followed by a thread-safe one, which
+	 * record their updates in the given list
+	 * 
+	 * @param updates
+	 * @return the Genius
+	 */
+	private Genius createOrdered(List<String> updates) {
+		Genius genius = new Genius(null);
+		genius.setUpdatePool(new ForkJoinPool(2));
+		for (String entity : new String[] { "a", "b" })
+			genius.createEntity(new OrderProperty(entity + "-serial", false, updates),
+					new OrderProperty(entity + "-safe", true, updates));
+		// executes the tasks adding the entities
+		genius.advance();
+		assertEquals(2, genius.getEntityCount());
+		updates.clear();
+		return genius;
+	}
+
+	/**
+	 * Tests {@link Genius#update(double)} updating all thread-safe properties
+	 * before the others when updating in parallel
+	 */
+	@Test
+	public void testParallelUpdate() {
+		List<String> updates = Collections.synchronizedList(new ArrayList<>());
+		Genius genius = createOrdered(updates);
+		genius.setParallelUpdate(true);
+		genius.setParallelChunkSize(1);
+
+		genius.update(1);
+		assertEquals(4, updates.size());
+		assertEquals(new HashSet<>(Arrays.asList("a-safe", "b-safe")), new HashSet<>(updates.subList(0, 2)));
+		assertEquals(Arrays.asList("a-serial", "b-serial"), updates.subList(2, 4));
+	}
+
+	/**
+	 * Tests {@link Genius#update(double)} keeping the order of the properties
+	 * when not updating in parallel
+	 */
+	@Test
+	public void testSerialUpdate() {
+		List<String> updates = Collections.synchronizedList(new ArrayList<>());
+		Genius genius = createOrdered(updates);
+		List<String> added = Arrays.asList("a-serial", "a-safe", "b-serial", "b-safe");
+
+		genius.update(1);
+		assertEquals(added, updates);
+
+		// too few entities for a parallel update
+		updates.clear();
+		genius.setParallelUpdate(true);
+		genius.setParallelChunkSize(2);
+		genius.update(1);
+		assertEquals(added, updates);
+	}
+
+	/**
+	 * Tests {@link Genius#createEntities(int, java.util.function.Supplier)}
+	 * storing all entities and adding them to the archetypes with the next tick
+	 */
+	@Test
+	public void testCreateEntities() {
+		long[] clock = { 0 };
+		Genius genius = createFixed(clock);
+		List<String> updates = new ArrayList<>();
+		int[] supplied = { 0 };
+		Entity[] entities = genius.createEntities(3,
+				() -> new IProperty<?>[] { new OrderProperty("e" + supplied[0]++, false, updates) });
+		assertEquals(3, entities.length);
+		assertEquals(3, supplied[0]);
+		assertEquals(0, genius.getEntityCount());
+
+		clock[0] += STEP;
+		genius.advance();
+		assertEquals(3, genius.getEntityCount());
+		for (int i = 0; i < entities.length; i++) {
+			assertSame(entities[i], genius.getEntity(entities[i].getHandle()));
+			assertEquals("e" + i, entities[i].propertiesByValue(String.class).get(0).get());
+		}
+		assertEquals(1, genius.archetypes().archetypeCount());
+		assertEquals(3, genius.query(OrderProperty.class).count());
+	}
+
+	/**
+	 * Tests {@link Genius#createEntities(int, java.util.function.Supplier)}
+	 * without any entities
+	 */
+	@Test
+	public void testCreateNoEntities() {
+		long[] clock = { 0 };
+		Genius genius = createFixed(clock);
+		Entity[] entities = genius.createEntities(0, () -> {
+			throw new AssertionError("No properties may be supplied");
+		});
+		assertEquals(0, entities.length);
+
+		clock[0] += STEP;
+		genius.advance();
+		assertEquals(0, genius.getEntityCount());
+		assertEquals(0, genius.query(OrderProperty.class).count());
+	}
+
+	/**
+	 * Tests {@link Genius#createEntities(int, java.util.function.Supplier)}
+	 * with a negative count
+	 */
+	@Test (expected = AtticRuntimeException.class)
+	public void testCreateEntitiesError1() {
+		new Genius(null).createEntities(-1, () -> new IProperty<?>[0]);
+	}
+
+	/**
+	 * Tests {@link Genius#createEntities(int, java.util.function.Supplier)}
+	 * with a null supplier
+	 */
+	@Test (expected = AtticRuntimeException.class)
+	public void testCreateEntitiesError2() {
+		new Genius(null).createEntities(1, null);
+	}
+
+	/**
+	 * Tests {@link Genius#setClock(java.util.function.LongSupplier)} with a
+	 * null clock
+	 */
+	@Test (expected = AtticRuntimeException.class)
+	public void testSetClockError1() {
+		new Genius(null).setClock(null);
+	}
+
+	/**
+	 * A property recording its updates by name
+	 */
+	private static class OrderProperty implements IProperty<String> {
+
+		private final String mName;
+		private final boolean mThreadSafe;
+		private final List<String> mUpdates;
+
+		private OrderProperty(String name, boolean threadSafe, List<String> updates) {
+			mName = name;
+			mThreadSafe = threadSafe;
+			mUpdates = updates;
+		}
+
+		@Override
+		public void addListener(PropertyListener listener) {
+		}
+
+		@Override
+		public boolean removeListener(PropertyListener listener) {
+			return false;
+		}
+
+		@Override
+		public void onAttach(Entity parent) {
+		}
+
+		@Override
+		public void onDetach() {
+		}
+
+		@Override
+		public void setActive(boolean flag) {
+		}
+
+		@Override
+		public boolean isActive() {
+			return true;
+		}
+
+		@Override
+		public Class<String> getContentType() {
+			return String.class;
+		}
+
+		@Override
+		public void update(double delta) {
+			mUpdates.add(mName);
+		}
+
+		@Override
+		public boolean isThreadSafe() {
+			return mThreadSafe;
+		}
+
+		@Override
+		public String get() {
+			return mName;
+		}
+	}
+
+	/**
+	 * A system remembering the deltas it was updated with
+	 */
+	private static class CountingSystem implements ISystem {
+
+		private final List<Double> mDeltas = new ArrayList<>();
+
+		@Override
+		public void update(double delta) {
+			mDeltas.add(delta);
+		}
+	}
+}
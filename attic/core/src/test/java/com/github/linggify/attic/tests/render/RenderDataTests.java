@@ -0,0 +1,225 @@
+package com.github.linggify.attic.tests.render;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+import com.github.linggify.attic.exceptions.AtticRuntimeException;
+import com.github.linggify.attic.render.IContext.VertexAttribute;
+import com.github.linggify.attic.render.RenderData;
+import com.github.linggify.attic.render.VertexWriter;
+import com.github.linggify.attic.util.Color;
+import com.github.linggify.attic.util.Matrix33;
+import com.github.linggify.attic.util.Vector2D;
+
+public class RenderDataTests {
+
+	private static final VertexAttribute[] ATTRIBUTES = { VertexAttribute.POSITION, VertexAttribute.COLOR };
+
+	/**
+	 * Creates {@link RenderData} with two vertices
+	 * 
+	 * @return the RenderData
+	 */
+	private RenderData createData() {
+		// declared out of order on purpose, the layout follows the enum
+		RenderData data = new RenderData(2, false, VertexAttribute.COLOR, VertexAttribute.POSITION);
+		data.setVertexData(0, VertexAttribute.POSITION, new Vector2D(1, 2));
+		data.setPosition(1, 3, 4);
+		data.setVertexData(0, VertexAttribute.COLOR, new Color(1, 0, 0, 1));
+		return data;
+	}
+
+	/**
+	 * Tests {@link RenderData#getLayout()}
+	 */
+	@Test
+	public void testLayout() {
+		RenderData data = createData();
+		assertArrayEquals(ATTRIBUTES, data.getLayout());
+		assertTrue(data.hasLayout(ATTRIBUTES));
+		assertEquals(12, data.getVertexSize());
+		assertEquals(0, data.offsetOf(VertexAttribute.POSITION));
+		assertEquals(8, data.offsetOf(VertexAttribute.COLOR));
+	}
+
+	/**
+	 * Tests the typed setters of {@link RenderData}
+	 */
+	@Test
+	public void testSetters() {
+		RenderData data = new RenderData(1, false, VertexAttribute.POSITION, VertexAttribute.COLOR,
+				VertexAttribute.TEX_COORD_1);
+		data.setPosition(0, 5, 6);
+		data.setTexCoord(0, 1, 0.25f, 0.75f);
+		data.setColor(0, 0x11223344);
+
+		assertEquals(5, data.getFloat(0, VertexAttribute.POSITION, 0), 0.001f);
+		assertEquals(6, data.getFloat(0, VertexAttribute.POSITION, 1), 0.001f);
+		assertEquals(0.25f, data.getFloat(0, VertexAttribute.TEX_COORD_1, 0), 0.001f);
+		assertEquals(0.75f, data.getFloat(0, VertexAttribute.TEX_COORD_1, 1), 0.001f);
+		assertEquals(0x11223344, data.getColor(0));
+
+		data.setColor(0, new Color(1, 0, 1, 0));
+		assertEquals(0xFF00FF00, data.getColor(0));
+	}
+
+	/**
+	 * Tests {@link RenderData#writeInstance(VertexWriter)}
+	 */
+	@Test
+	public void testWriteInstance() {
+		RenderData data = createData();
+		data.setInstanced(true);
+		data.getTransform().compose(2, 0, 3, 4);
+		data.setTint(0x11223344);
+		data.setRegion(0.5f, 0.25f, 0.5f, 0.75f);
+
+		ByteBuffer buffer = ByteBuffer.allocate(RenderData.INSTANCE_SIZE).order(ByteOrder.nativeOrder());
+		data.writeInstance(new VertexWriter(buffer));
+		assertEquals(44, buffer.position());
+
+		assertEquals(2, buffer.getFloat(0), 0.001f);
+		assertEquals(3, buffer.getFloat(8), 0.001f);
+		assertEquals(2, buffer.getFloat(16), 0.001f);
+		assertEquals(4, buffer.getFloat(20), 0.001f);
+		assertEquals((byte) 0x11, buffer.get(24));
+		assertEquals((byte) 0x44, buffer.get(27));
+		assertEquals(0.5f, buffer.getFloat(28), 0.001f);
+		assertEquals(0.75f, buffer.getFloat(40), 0.001f);
+	}
+
+	/**
+	 * Tests {@link RenderData#asBuffer()}
+	 */
+	@Test
+	public void testAsBuffer() {
+		RenderData data = createData();
+		ByteBuffer buffer = data.asBuffer();
+		assertTrue(buffer.isDirect());
+		assertEquals(0, buffer.position());
+		assertEquals(24, buffer.remaining());
+		assertEquals(3, buffer.getFloat(12), 0.001f);
+
+		// the view shares the memory of the RenderData
+		data.setPosition(1, 7, 8);
+		assertEquals(7, data.asBuffer().getFloat(12), 0.001f);
+	}
+
+	/**
+	 * Tests {@link RenderData#getVertices()} and that
+	 * {@link RenderData#setVertexData(int, VertexAttribute, RenderData.VertexData)}
+	 * leaves the reused view of {@link RenderData#asBuffer()} untouched
+	 */
+	@Test
+	public void testGetVertices() {
+		RenderData data = createData();
+		ByteBuffer buffer = data.asBuffer();
+		data.setVertexData(1, VertexAttribute.POSITION, new Vector2D(5, 6));
+		assertEquals(0, buffer.position());
+		assertEquals(24, buffer.limit());
+
+		ByteBuffer vertices = data.getVertices();
+		assertNotSame(buffer, vertices);
+		assertTrue(vertices.isReadOnly());
+		assertEquals(24, vertices.remaining());
+		assertEquals(5, vertices.getFloat(12), 0.001f);
+		assertEquals(buffer, vertices);
+	}
+
+	/**
+	 * Tests {@link RenderData#write(VertexAttribute[], VertexWriter)}
+	 */
+	@Test
+	public void testWrite() {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(32).order(ByteOrder.nativeOrder());
+		createData().write(ATTRIBUTES, new VertexWriter(buffer));
+		assertEquals(24, buffer.position());
+
+		assertEquals(1, buffer.getFloat(0), 0.001f);
+		assertEquals(2, buffer.getFloat(4), 0.001f);
+		assertEquals((byte) 255, buffer.get(8));
+		assertEquals((byte) 0, buffer.get(9));
+		assertEquals((byte) 255, buffer.get(11));
+		assertEquals(3, buffer.getFloat(12), 0.001f);
+		assertEquals(4, buffer.getFloat(16), 0.001f);
+		// the missing color is zero
+		assertEquals((byte) 0, buffer.get(20));
+	}
+
+	/**
+	 * Tests {@link RenderData#write(VertexAttribute[], VertexWriter)} with an
+	 * order different from the layout
+	 */
+	@Test
+	public void testWriteReordered() {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(24).order(ByteOrder.nativeOrder());
+		VertexAttribute[] order = { VertexAttribute.COLOR, VertexAttribute.POSITION };
+		createData().write(order, new VertexWriter(buffer));
+		assertEquals(24, buffer.position());
+
+		assertEquals((byte) 255, buffer.get(0));
+		assertEquals(1, buffer.getFloat(4), 0.001f);
+		assertEquals(2, buffer.getFloat(8), 0.001f);
+		assertEquals(3, buffer.getFloat(16), 0.001f);
+		assertEquals(4, buffer.getFloat(20), 0.001f);
+	}
+
+	/**
+	 * Tests {@link RenderData#getBounds(float[])}
+	 */
+	@Test
+	public void testBounds() {
+		RenderData data = createData();
+		assertArrayEquals(new float[] { 1, 2, 3, 4 }, data.getBounds(new float[4]), 0.001f);
+
+		data.setTransform(new Matrix33().compose(2, 0, 10, -10));
+		assertArrayEquals(new float[] { 12, -6, 16, -2 }, data.getBounds(new float[4]), 0.001f);
+	}
+
+	/**
+	 * Tests {@link RenderData#share()}
+	 */
+	@Test
+	public void testShare() {
+		RenderData template = createData();
+		RenderData copy = template.share();
+		assertTrue(template.isShared());
+		assertTrue(copy.isShared());
+		assertEquals(template.asBuffer(), copy.asBuffer());
+		assertSame(template.getIndices(), copy.getIndices());
+		assertNotSame(template.getTransform(), copy.getTransform());
+
+		// changing the copy does not change the template
+		copy.setPosition(1, 7, 8);
+		assertFalse(copy.isShared());
+		assertEquals(7, copy.getFloat(1, VertexAttribute.POSITION, 0), 0.001f);
+		assertEquals(3, template.getFloat(1, VertexAttribute.POSITION, 0), 0.001f);
+		assertEquals(copy.getColor(0), template.getColor(0));
+
+		// changing the template does not change earlier copies
+		RenderData other = template.share();
+		template.setColor(0, 0x11223344);
+		assertEquals(0x11223344, template.getColor(0));
+		assertEquals(0xFF0000FF, other.getColor(0));
+	}
+
+	@Test (expected = AtticRuntimeException.class)
+	public void testVertexOutOfBoundsError0() {
+		createData().setPosition(2, 0, 0);
+	}
+
+	@Test (expected = AtticRuntimeException.class)
+	public void testMissingAttributeError1() {
+		createData().setTexCoord(0, 0, 0, 0);
+	}
+
+	@Test (expected = AtticRuntimeException.class)
+	public void testMissingAttributeError2() {
+		createData().write(new VertexAttribute[] { VertexAttribute.TEX_COORD_0 },
+				new VertexWriter(ByteBuffer.allocate(32)));
+	}
+}
@@ -0,0 +1,139 @@
+package com.github.linggify.attic.tests.render;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.github.linggify.attic.exceptions.AtticRuntimeException;
+import com.github.linggify.attic.logic.IProperty;
+import com.github.linggify.attic.render.IBatch;
+import com.github.linggify.attic.render.RenderData;
+import com.github.linggify.attic.render.RenderQueue;
+
+public class RenderQueueTests {
+
+	/**
+	 * A batch remembering the order it was submitted in and its key
+	 */
+	private static class TestBatch implements IBatch {
+
+		private final int mIndex;
+		private long mKey;
+
+		private TestBatch(int index) {
+			mIndex = index;
+		}
+
+		@Override
+		public boolean accept(IProperty<RenderData> property) {
+			return false;
+		}
+	}
+
+	/**
+	 * Tests {@link RenderQueue#key(int, boolean, int, int, float)} ordering
+	 * layers before translucency before state before depth
+	 */
+	@Test
+	public void testKey() {
+		assertTrue(RenderQueue.key(0, true, 9, 9, 1) < RenderQueue.key(1, false, 0, 0, 0));
+		assertTrue(RenderQueue.key(0, false, 9, 9, 1) < RenderQueue.key(0, true, 0, 0, 0));
+		assertTrue(RenderQueue.key(0, false, 1, 9, 1) < RenderQueue.key(0, false, 2, 0, 0));
+		assertTrue(RenderQueue.key(0, false, 1, 1, 1) < RenderQueue.key(0, false, 1, 2, 0));
+		// opaque front to back, translucent back to front
+		assertTrue(RenderQueue.key(0, false, 1, 1, 0.25f) < RenderQueue.key(0, false, 1, 1, 0.5f));
+		assertTrue(RenderQueue.key(0, true, 1, 1, 0.5f) < RenderQueue.key(0, true, 1, 1, 0.25f));
+		assertTrue(RenderQueue.key(0, true, 9, 9, 0.5f) < RenderQueue.key(0, true, 1, 1, 0.25f));
+	}
+
+	/**
+	 * Tests {@link RenderQueue#sort()} against {@link Arrays#sort(long[])}
+	 */
+	@Test
+	public void testSort() {
+		RenderQueue queue = new RenderQueue();
+		Random random = new Random(42);
+		long[] expected = new long[500];
+		for (int i = 0; i < expected.length; i++) {
+			int layer = random.nextInt(4);
+			boolean translucent = random.nextBoolean();
+			int shader = random.nextInt(8);
+			int texture = random.nextInt(16);
+			float depth = random.nextFloat();
+			TestBatch batch = new TestBatch(i);
+			batch.mKey = RenderQueue.key(layer, translucent, shader, texture, depth);
+			expected[i] = batch.mKey;
+			queue.submit(batch, layer, translucent, shader, texture, depth);
+		}
+
+		Arrays.sort(expected);
+		assertEquals(expected.length, queue.size());
+		for (int i = 0; i < queue.size(); i++)
+			assertEquals(expected[i], ((TestBatch) queue.get(i)).mKey);
+	}
+
+	/**
+	 * Tests {@link RenderQueue#sort()} keeping batches with equal keys in
+	 * submission order
+	 */
+	@Test
+	public void testStable() {
+		RenderQueue queue = new RenderQueue();
+		for (int i = 0; i < 100; i++)
+			queue.submit(new TestBatch(i), i % 2, false, 1, 1, 0);
+
+		for (int i = 0; i < 50; i++) {
+			assertEquals(i * 2, ((TestBatch) queue.get(i)).mIndex);
+			assertEquals(i * 2 + 1, ((TestBatch) queue.get(50 + i)).mIndex);
+		}
+	}
+
+	/**
+	 * Tests {@link RenderQueue#getStateChanges()} and
+	 * {@link RenderQueue#getStateChangesSaved()}
+	 */
+	@Test
+	public void testStateChanges() {
+		RenderQueue queue = new RenderQueue();
+		// alternating shaders and textures need a bind for every batch
+		for (int i = 0; i < 8; i++)
+			queue.submit(new TestBatch(i), 0, false, 1 + i % 2, 1 + i % 2, 0);
+
+		// two shaders and two textures after sorting
+		assertEquals(4, queue.getStateChanges());
+		assertEquals(12, queue.getStateChangesSaved());
+
+		queue.clear();
+		assertEquals(0, queue.size());
+		assertEquals(0, queue.getStateChanges());
+	}
+
+	/**
+	 * Tests {@link RenderQueue#key(int, boolean, int, int, float)} with an
+	 * invalid layer
+	 */
+	@Test (expected = AtticRuntimeException.class)
+	public void testKeyError0() {
+		RenderQueue.key(RenderQueue.MAX_LAYERS, false, 0, 0, 0);
+	}
+
+	/**
+	 * Tests {@link RenderQueue#key(int, boolean, int, int, float)} with an
+	 * invalid shader
+	 */
+	@Test (expected = AtticRuntimeException.class)
+	public void testKeyError1() {
+		RenderQueue.key(0, false, RenderQueue.MAX_SHADERS, 0, 0);
+	}
+
+	/**
+	 * Tests {@link RenderQueue#get(int)} with an invalid index
+	 */
+	@Test (expected = AtticRuntimeException.class)
+	public void testGetError0() {
+		new RenderQueue().get(0);
+	}
+}
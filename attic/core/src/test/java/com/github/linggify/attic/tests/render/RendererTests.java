@@ -0,0 +1,576 @@
+package com.github.linggify.attic.tests.render;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+
+import com.github.linggify.attic.logic.Entity;
+import com.github.linggify.attic.logic.IProperty;
+import com.github.linggify.attic.logic.IProperty.PropertyEvent;
+import com.github.linggify.attic.logic.IProperty.PropertyListener;
+import com.github.linggify.attic.render.FrameStats;
+import com.github.linggify.attic.render.IBatch;
+import com.github.linggify.attic.render.IContext;
+import com.github.linggify.attic.render.RenderData;
+import com.github.linggify.attic.render.Renderer;
+import com.github.linggify.attic.util.Color;
+import com.github.linggify.attic.util.Matrix33;
+import com.github.linggify.attic.util.Vector2D;
+
+public class RendererTests {
+
+	/**
+	 * A property holding fixed {@link RenderData}, whose events are fired by
+	 * the tests
+	 */
+	private static class TestProperty implements IProperty<RenderData> {
+
+		private final RenderData mData;
+		private final List<PropertyListener> mListeners = new ArrayList<>();
+
+		private TestProperty(RenderData data) {
+			mData = data;
+		}
+
+		private void fire(PropertyEvent event) {
+			for (PropertyListener listener : new ArrayList<>(mListeners))
+				listener.onEvent(this, event);
+		}
+
+		@Override
+		public void addListener(PropertyListener listener) {
+			mListeners.add(listener);
+		}
+
+		@Override
+		public boolean removeListener(PropertyListener listener) {
+			return mListeners.remove(listener);
+		}
+
+		@Override
+		public void onAttach(Entity parent) {
+		}
+
+		@Override
+		public void onDetach() {
+		}
+
+		@Override
+		public void setActive(boolean flag) {
+		}
+
+		@Override
+		public boolean isActive() {
+			return true;
+		}
+
+		@Override
+		public Class<RenderData> getContentType() {
+			return RenderData.class;
+		}
+
+		@Override
+		public void update(double delta) {
+		}
+
+		@Override
+		public RenderData get() {
+			return mData;
+		}
+	}
+
+	/**
+	 * A batch accepting a fixed amount of properties and remembering which of
+	 * them are visible. Removed properties make room for new ones, either
+	 * right away or once they are released
+	 */
+	private static class TestBatch implements IBatch {
+
+		private final int mCapacity;
+		private final boolean mDeferred;
+		private int mCount;
+		private int mRemoved;
+		private Runnable mRoomListener;
+		// accepted on the registering Thread, shown and hidden on the rendering Thread
+		private final Map<IProperty<RenderData>, Boolean> mVisible = new ConcurrentHashMap<>();
+
+		private TestBatch(int capacity, boolean deferred) {
+			mCapacity = capacity;
+			mDeferred = deferred;
+		}
+
+		@Override
+		public boolean accept(IProperty<RenderData> property) {
+			if (mCount == mCapacity)
+				return false;
+
+			mCount++;
+			mVisible.put(property, true);
+			property.addListener(new PropertyListener() {
+				public void onEvent(IProperty<?> target, PropertyEvent event) {
+					if (event == PropertyEvent.PROPERTY_REMOVED) {
+						if (mDeferred)
+							mRemoved++;
+						else
+							mCount--;
+						target.removeListener(this);
+					}
+				}
+			});
+			return true;
+		}
+
+		@Override
+		public void setVisible(IProperty<RenderData> property, boolean visible) {
+			mVisible.put(property, visible);
+		}
+
+		@Override
+		public void setRoomListener(Runnable listener) {
+			mRoomListener = listener;
+		}
+
+		/**
+		 * Releases the room of the removed properties, like a batch applying
+		 * removals on the rendering Thread
+		 */
+		private void release() {
+			mCount -= mRemoved;
+			mRemoved = 0;
+			if (mRoomListener != null)
+				mRoomListener.run();
+		}
+
+		private boolean isVisible(IProperty<RenderData> property) {
+			return mVisible.get(property);
+		}
+
+		private boolean contains(IProperty<RenderData> property) {
+			return mVisible.containsKey(property);
+		}
+	}
+
+	/**
+	 * A context creating {@link TestBatch}es without any graphics hardware
+	 */
+	private static class TestContext implements IContext {
+
+		private final int mCapacity;
+		private final boolean mDeferred;
+		private final List<TestBatch> mBatches = new ArrayList<>();
+		private final FrameStats mStats = new FrameStats();
+
+		private TestContext(int capacity) {
+			this(capacity, false);
+		}
+
+		private TestContext(int capacity, boolean deferred) {
+			mCapacity = capacity;
+			mDeferred = deferred;
+		}
+
+		@Override
+		public String getLog() {
+			return "";
+		}
+
+		@Override
+		public int getMaxRenderTargets() {
+			return 1;
+		}
+
+		@Override
+		public void clearRenderTargets() {
+		}
+
+		@Override
+		public void setClearColor(int target, Color color) {
+		}
+
+		@Override
+		public int newTexture() {
+			return 1;
+		}
+
+		@Override
+		public void destroyTexture(int handle) {
+		}
+
+		@Override
+		public void setPixelData(int handle, int width, int height, TextureFormat format, byte[] data) {
+		}
+
+		@Override
+		public void setTextureFilter(int handle, TextureFilter minFilter, TextureFilter magFilter) {
+		}
+
+		@Override
+		public boolean bindTexture(int unit, int handle) {
+			return true;
+		}
+
+		@Override
+		public void unbindTexture(int unit) {
+		}
+
+		@Override
+		public boolean bindRenderTarget(int target, int handle) {
+			return true;
+		}
+
+		@Override
+		public void unbindRenderTarget(int target) {
+		}
+
+		@Override
+		public int genShader(String vertexshader, String fragmentshader) {
+			return 1;
+		}
+
+		@Override
+		public void destroyShader(int handle) {
+		}
+
+		@Override
+		public boolean bindShader(int handle) {
+			return true;
+		}
+
+		@Override
+		public void unbindShader() {
+		}
+
+		@Override
+		public Map<String, Integer> getUniforms(int handle) {
+			return Collections.emptyMap();
+		}
+
+		@Override
+		public int getUniformLocation(String name) {
+			return -1;
+		}
+
+		@Override
+		public boolean setUniformInt(int location, int value) {
+			return true;
+		}
+
+		@Override
+		public boolean setUniformDouble(int location, double value) {
+			return true;
+		}
+
+		@Override
+		public boolean setUniformTexture(int location, int texture) {
+			return true;
+		}
+
+		@Override
+		public boolean setUniformMatrix(int location, Matrix33 texture) {
+			return true;
+		}
+
+		@Override
+		public boolean setUniformVector(int location, Vector2D vector) {
+			return true;
+		}
+
+		@Override
+		public boolean setAttribute(String name, int value) {
+			return true;
+		}
+
+		@Override
+		public IBatch genBatch(BatchType type, boolean isStatic, VertexAttribute... attributes) {
+			TestBatch batch = new TestBatch(mCapacity, mDeferred);
+			mBatches.add(batch);
+			return batch;
+		}
+
+		@Override
+		public void destroyBatch(IBatch batch) {
+		}
+
+		@Override
+		public boolean renderBatch(IBatch batch) {
+			return true;
+		}
+
+		@Override
+		public FrameStats getFrameStats() {
+			return mStats;
+		}
+	}
+
+	/**
+	 * Creates a property with a dynamic quad of the given size at the given
+	 * position
+	 *
+	 * @param x
+	 * @param y
+	 * @param size
+	 * @return the property
+	 */
+	private TestProperty createQuad(float x, float y, float size) {
+		RenderData data = new RenderData(2, false, IContext.VertexAttribute.POSITION);
+		data.setPosition(0, x, y);
+		data.setPosition(1, x + size, y + size);
+		return new TestProperty(data);
+	}
+
+	/**
+	 * Creates a property with the given {@link RenderData}
+	 * 
+	 * @param layer
+	 * @param isStatic
+	 * @param indices
+	 *            the indices of instanced data or null
+	 * @return the property
+	 */
+	private TestProperty createData(String layer, boolean isStatic, int[] indices) {
+		RenderData data = new RenderData(2, layer, isStatic, IContext.VertexAttribute.POSITION);
+		data.setPosition(1, 1, 1);
+		if (indices != null) {
+			data.setIndices(indices);
+			data.setInstanced(true);
+		}
+		return new TestProperty(data);
+	}
+
+	/**
+	 * 
+	 * @param context
+	 * @param property
+	 * @return the index of the {@link TestBatch} that accepted the given
+	 *         property
+	 */
+	private int batchOf(TestContext context, TestProperty property) {
+		for (int i = 0; i < context.mBatches.size(); i++) {
+			if (context.mBatches.get(i).contains(property))
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Registers the given property in the given {@link Renderer}
+	 *
+	 * @param renderer
+	 * @param property
+	 */
+	private void register(Renderer renderer, TestProperty property) {
+		renderer.registerEntityForRendering(new Entity(null, property));
+	}
+
+	/**
+	 * Tests {@link Renderer#setViewport(float, float, float, float)} hiding
+	 * properties outside of the viewport
+	 */
+	@Test
+	public void testCulling() {
+		TestContext context = new TestContext(16);
+		Renderer renderer = new Renderer(context);
+		TestProperty near = createQuad(0, 0, 1);
+		TestProperty far = createQuad(100, 100, 1);
+		register(renderer, near);
+		register(renderer, far);
+		TestBatch batch = context.mBatches.get(0);
+
+		renderer.setViewport(-10, -10, 10, 10);
+		renderer.render();
+		assertTrue(batch.isVisible(near));
+		assertFalse(batch.isVisible(far));
+		assertEquals(1, renderer.getFrameStats().visible());
+		assertEquals(1, renderer.getFrameStats().culled());
+
+		// dynamic properties are followed without any events
+		far.get().setPosition(0, 5, 5);
+		far.get().setPosition(1, 6, 6);
+		renderer.render();
+		assertTrue(batch.isVisible(far));
+
+		// removed properties are dropped by the next culling
+		near.fire(IProperty.PropertyEvent.PROPERTY_REMOVED);
+		renderer.render();
+		assertEquals(1, renderer.getFrameStats().visible());
+		assertEquals(0, renderer.getFrameStats().culled());
+
+		renderer.setViewport(50, 50, 60, 60);
+		renderer.render();
+		assertFalse(batch.isVisible(far));
+		renderer.clearViewport();
+		renderer.render();
+		assertTrue(batch.isVisible(far));
+	}
+
+	/**
+	 * Tests a full batch being used again after one of its properties was
+	 * removed
+	 */
+	@Test
+	public void testReopenOnRemoval() {
+		TestContext context = new TestContext(2);
+		Renderer renderer = new Renderer(context);
+		TestProperty[] properties = new TestProperty[5];
+		for (int i = 0; i < properties.length; i++)
+			properties[i] = createQuad(i, i, 1);
+
+		register(renderer, properties[0]);
+		register(renderer, properties[1]);
+		register(renderer, properties[2]);
+		assertEquals(2, context.mBatches.size());
+		assertEquals(0, batchOf(context, properties[1]));
+		assertEquals(1, batchOf(context, properties[2]));
+
+		// the first batch is asked again, after the newer one is full
+		properties[0].fire(IProperty.PropertyEvent.PROPERTY_REMOVED);
+		register(renderer, properties[3]);
+		register(renderer, properties[4]);
+		assertEquals(2, context.mBatches.size());
+		assertEquals(1, batchOf(context, properties[3]));
+		assertEquals(0, batchOf(context, properties[4]));
+	}
+
+	/**
+	 * Tests a full batch that releases the room of removed properties later,
+	 * which must be used again once it did instead of generating new batches
+	 */
+	@Test
+	public void testReopenOnRelease() {
+		TestContext context = new TestContext(2, true);
+		Renderer renderer = new Renderer(context);
+		TestProperty[] properties = new TestProperty[5];
+		for (int i = 0; i < properties.length; i++)
+			properties[i] = createQuad(i, i, 1);
+
+		register(renderer, properties[0]);
+		register(renderer, properties[1]);
+
+		// the room is not released yet, so the reopened batch still rejects
+		properties[0].fire(IProperty.PropertyEvent.PROPERTY_REMOVED);
+		register(renderer, properties[2]);
+		assertEquals(2, context.mBatches.size());
+		assertEquals(1, batchOf(context, properties[2]));
+
+		// released on the rendering Thread, asked again after the newer batch
+		context.mBatches.get(0).release();
+		register(renderer, properties[3]);
+		register(renderer, properties[4]);
+		assertEquals(2, context.mBatches.size());
+		assertEquals(1, batchOf(context, properties[3]));
+		assertEquals(0, batchOf(context, properties[4]));
+	}
+
+	/**
+	 * Tests properties with different layers, static flags or instanced
+	 * geometry never sharing a batch
+	 */
+	@Test
+	public void testBatchSignatures() {
+		TestContext context = new TestContext(16);
+		Renderer renderer = new Renderer(context);
+		int[] quad = { 0, 1, 0 };
+		TestProperty[] properties = { createData("default", false, null), createData("default", true, null),
+				createData("ui", false, null), createData("default", false, quad),
+				createData("default", false, new int[] { 1, 0, 1 }) };
+		for (TestProperty property : properties)
+			register(renderer, property);
+		assertEquals(properties.length, context.mBatches.size());
+		for (int i = 0; i < properties.length; i++)
+			assertEquals(i, batchOf(context, properties[i]));
+
+		// the same signatures share the existing batches
+		TestProperty dynamic = createData("default", false, null);
+		TestProperty instanced = createData("default", false, quad.clone());
+		register(renderer, dynamic);
+		register(renderer, instanced);
+		assertEquals(properties.length, context.mBatches.size());
+		assertEquals(0, batchOf(context, dynamic));
+		assertEquals(3, batchOf(context, instanced));
+
+		// the same indices with other vertices are another geometry
+		TestProperty moved = createData("default", false, quad.clone());
+		moved.get().setPosition(1, 2, 2);
+		register(renderer, moved);
+		assertEquals(properties.length + 1, context.mBatches.size());
+		assertEquals(properties.length, batchOf(context, moved));
+	}
+
+	/**
+	 * Tests {@link Renderer#registerEntitiesForRendering(Entity[])} putting
+	 * runs of properties with the same signature into the same batches, while
+	 * properties with other signatures in between still get their own
+	 */
+	@Test
+	public void testRegisterEntities() {
+		TestContext context = new TestContext(2);
+		Renderer renderer = new Renderer(context);
+		TestProperty[] properties = { createData("default", false, null), createData("default", false, null),
+				createData("ui", false, null), createData("default", false, null), createData("default", false, null),
+				createData("default", true, null), createData("ui", false, null) };
+		Entity[] entities = new Entity[properties.length];
+		for (int i = 0; i < properties.length; i++)
+			entities[i] = new Entity(null, properties[i]);
+
+		renderer.registerEntitiesForRendering(entities);
+		assertEquals(4, context.mBatches.size());
+		int[] batches = new int[properties.length];
+		for (int i = 0; i < properties.length; i++)
+			batches[i] = batchOf(context, properties[i]);
+		assertArrayEquals(new int[] { 0, 0, 1, 2, 2, 3, 1 }, batches);
+
+		// single registrations use the same open batches
+		TestProperty dynamic = createData("default", false, null);
+		TestProperty fixed = createData("default", true, null);
+		register(renderer, fixed);
+		register(renderer, dynamic);
+		assertEquals(3, batchOf(context, fixed));
+		assertEquals(4, batchOf(context, dynamic));
+		assertEquals(5, context.mBatches.size());
+
+		// nothing to register
+		renderer.registerEntitiesForRendering(new Entity[0]);
+		assertEquals(5, context.mBatches.size());
+	}
+
+	/**
+	 * Tests registering properties on another Thread while rendering, which
+	 * must only change the culling state on the rendering Thread
+	 *
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testConcurrentRegistration() throws InterruptedException {
+		TestContext context = new TestContext(64);
+		Renderer renderer = new Renderer(context);
+		renderer.setViewport(0, 0, 50, 50);
+
+		TestProperty[] properties = new TestProperty[2000];
+		for (int i = 0; i < properties.length; i++)
+			properties[i] = createQuad(i % 100, i / 100, 1);
+
+		Thread logic = new Thread(() -> {
+			for (int i = 0; i < properties.length; i++) {
+				register(renderer, properties[i]);
+				if (i % 2 == 1)
+					properties[i - 1].fire(IProperty.PropertyEvent.PROPERTY_REMOVED);
+			}
+		});
+		logic.start();
+		while (logic.isAlive())
+			renderer.render();
+		logic.join();
+
+		renderer.render();
+		FrameStats stats = renderer.getFrameStats();
+		assertEquals(properties.length / 2, stats.visible() + stats.culled());
+		// the odd properties with x and y below 50
+		assertEquals(25 * 20, stats.visible());
+	}
+}
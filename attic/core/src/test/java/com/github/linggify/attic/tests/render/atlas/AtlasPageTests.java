@@ -0,0 +1,87 @@
+package com.github.linggify.attic.tests.render.atlas;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.github.linggify.attic.exceptions.AtticRuntimeException;
+import com.github.linggify.attic.render.atlas.AtlasPage;
+import com.github.linggify.attic.render.atlas.AtlasRegion;
+
+public class AtlasPageTests {
+
+	/**
+	 * Creates an image of the given size, with every pixel holding its index
+	 * in the red channel
+	 * 
+	 * @param width
+	 * @param height
+	 * @return the pixels of the image
+	 */
+	private static byte[] image(int width, int height) {
+		byte[] pixels = new byte[width * height * 4];
+		for (int i = 0; i < width * height; i++) {
+			pixels[i * 4] = (byte) (i + 1);
+			pixels[i * 4 + 3] = (byte) 0xFF;
+		}
+		return pixels;
+	}
+
+	/**
+	 * 
+	 * @param page
+	 * @param x
+	 * @param y
+	 * @return the red channel of the given pixel of the page
+	 */
+	private static int red(AtlasPage page, int x, int y) {
+		return page.getPixels()[(y * page.getSize() + x) * 4];
+	}
+
+	/**
+	 * Tests {@link AtlasPage#add(int, int, byte[])}
+	 */
+	@Test
+	public void testAdd() {
+		AtlasPage page = new AtlasPage(16, 1);
+		assertFalse(page.isDirty());
+
+		AtlasRegion region = page.add(2, 2, image(2, 2));
+		assertTrue(page.isDirty());
+		assertEquals(1, region.getX());
+		assertEquals(1, region.getY());
+		assertEquals(1 / 16f, region.getU(), 0f);
+		assertEquals(2 / 16f, region.getUWidth(), 0f);
+
+		// the image itself
+		assertEquals(1, red(page, 1, 1));
+		assertEquals(2, red(page, 2, 1));
+		assertEquals(3, red(page, 1, 2));
+		assertEquals(4, red(page, 2, 2));
+		// the border repeats the closest pixel
+		assertEquals(1, red(page, 0, 0));
+		assertEquals(2, red(page, 3, 0));
+		assertEquals(4, red(page, 3, 3));
+
+		// the next image starts behind the border
+		assertEquals(5, page.add(1, 1, image(1, 1)).getX());
+	}
+
+	/**
+	 * Tests {@link AtlasPage#add(int, int, byte[])} failing if the page is
+	 * full
+	 */
+	@Test
+	public void testFull() {
+		AtlasPage page = new AtlasPage(8, 0);
+		assertNotNull(page.add(8, 4, image(8, 4)));
+		assertNotNull(page.add(4, 4, image(4, 4)));
+		assertNull(page.add(5, 4, image(5, 4)));
+		assertEquals(0.75f, page.occupancy(), 0f);
+	}
+
+	@Test (expected = AtticRuntimeException.class)
+	public void testInvalidPixelsError0() {
+		new AtlasPage(8, 0).add(2, 2, new byte[4]);
+	}
+}
@@ -0,0 +1,78 @@
+package com.github.linggify.attic.tests.render.atlas;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.github.linggify.attic.exceptions.AtticRuntimeException;
+import com.github.linggify.attic.render.atlas.SkylinePacker;
+
+public class SkylinePackerTests {
+
+	/**
+	 * Tests {@link SkylinePacker#pack(int, int)} filling rows from left to
+	 * right
+	 */
+	@Test
+	public void testPack() {
+		SkylinePacker packer = new SkylinePacker(100, 100);
+		assertArrayEquals(new int[] { 0, 0 }, packer.pack(50, 20));
+		assertArrayEquals(new int[] { 50, 0 }, packer.pack(50, 30));
+		// the lower segment on the left is preferred
+		assertArrayEquals(new int[] { 0, 20 }, packer.pack(40, 10));
+		// too wide for the left segment, rests on both
+		assertArrayEquals(new int[] { 0, 30 }, packer.pack(60, 10));
+	}
+
+	/**
+	 * Tests {@link SkylinePacker#pack(int, int)} failing if the rectangle does
+	 * not fit anymore
+	 */
+	@Test
+	public void testFull() {
+		SkylinePacker packer = new SkylinePacker(100, 100);
+		assertNotNull(packer.pack(100, 60));
+		assertNull(packer.pack(10, 50));
+		assertNull(packer.pack(101, 1));
+		assertArrayEquals(new int[] { 0, 60 }, packer.pack(100, 40));
+		assertNull(packer.pack(1, 1));
+		assertEquals(1f, packer.occupancy(), 0f);
+	}
+
+	/**
+	 * Tests {@link SkylinePacker#pack(int, int)} never overlapping
+	 * rectangles
+	 */
+	@Test
+	public void testNoOverlap() {
+		SkylinePacker packer = new SkylinePacker(64, 64);
+		boolean[] used = new boolean[64 * 64];
+		int area = 0;
+		for (int i = 0; i < 200; i++) {
+			int width = 1 + (i * 7) % 13;
+			int height = 1 + (i * 5) % 11;
+			int[] position = packer.pack(width, height);
+			if (position == null)
+				continue;
+
+			for (int y = position[1]; y < position[1] + height; y++) {
+				for (int x = position[0]; x < position[0] + width; x++) {
+					assertFalse(used[y * 64 + x]);
+					used[y * 64 + x] = true;
+				}
+			}
+			area += width * height;
+		}
+		assertEquals(area / (64f * 64f), packer.occupancy(), 0.0001f);
+	}
+
+	@Test (expected = AtticRuntimeException.class)
+	public void testInvalidSizeError0() {
+		new SkylinePacker(0, 10);
+	}
+
+	@Test (expected = AtticRuntimeException.class)
+	public void testInvalidSizeError1() {
+		new SkylinePacker(10, 10).pack(0, 5);
+	}
+}
@@ -0,0 +1,77 @@
+package com.github.linggify.attic.tests.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.github.linggify.attic.exceptions.AtticRuntimeException;
+import com.github.linggify.attic.util.DirtyRanges;
+
+public class DirtyRangesTests {
+
+	/**
+	 * Tests {@link DirtyRanges#merge()} combining adjacent ranges
+	 */
+	@Test
+	public void testMergeAdjacent() {
+		DirtyRanges ranges = new DirtyRanges();
+		ranges.add(40, 20);
+		ranges.add(0, 20);
+		ranges.add(20, 20);
+
+		assertEquals(1, ranges.merge());
+		assertEquals(0, ranges.offset(0));
+		assertEquals(60, ranges.length(0));
+		assertEquals(60, ranges.bytes());
+	}
+
+	/**
+	 * Tests {@link DirtyRanges#merge()} combining overlapping ranges and
+	 * keeping separate ones
+	 */
+	@Test
+	public void testMergeOverlapping() {
+		DirtyRanges ranges = new DirtyRanges();
+		ranges.add(100, 10);
+		ranges.add(0, 30);
+		ranges.add(10, 5);
+		ranges.add(25, 10);
+		ranges.add(100, 10);
+
+		assertEquals(2, ranges.merge());
+		assertEquals(0, ranges.offset(0));
+		assertEquals(35, ranges.length(0));
+		assertEquals(100, ranges.offset(1));
+		assertEquals(10, ranges.length(1));
+		assertEquals(45, ranges.bytes());
+	}
+
+	/**
+	 * Tests {@link DirtyRanges#add(int, int)} growing past its initial size
+	 */
+	@Test
+	public void testGrow() {
+		DirtyRanges ranges = new DirtyRanges();
+		for (int i = 0; i < 100; i++)
+			ranges.add(i * 20, 10);
+
+		assertEquals(100, ranges.merge());
+		assertEquals(1000, ranges.bytes());
+
+		ranges.clear();
+		assertTrue(ranges.isEmpty());
+		assertEquals(0, ranges.merge());
+	}
+
+	@Test (expected = AtticRuntimeException.class)
+	public void testInvalidRangeError0() {
+		new DirtyRanges().add(-1, 10);
+	}
+
+	@Test (expected = AtticRuntimeException.class)
+	public void testInvalidIndexError1() {
+		DirtyRanges ranges = new DirtyRanges();
+		ranges.add(0, 10);
+		ranges.length(1);
+	}
+}
@@ -0,0 +1,280 @@
+package com.github.linggify.attic.tests.util;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.github.linggify.attic.exceptions.AtticRuntimeException;
+import com.github.linggify.attic.util.FreeListAllocator;
+import com.github.linggify.attic.util.IAllocator;
+
+public class FreeListAllocatorTests {
+
+	/**
+	 * Tests {@link FreeListAllocator#allocate(int)}
+	 */
+	@Test
+	public void testAllocate() {
+		FreeListAllocator allocator = new FreeListAllocator(100);
+		int a = allocator.allocate(40);
+		int b = allocator.allocate(60);
+		assertEquals(0, allocator.offset(a));
+		assertEquals(40, allocator.offset(b));
+		assertEquals(60, allocator.length(b));
+		assertEquals(0, allocator.freeBytes());
+		assertEquals(0, allocator.largestFreeBlock());
+		assertEquals(IAllocator.INVALID_HANDLE, allocator.allocate(1));
+	}
+
+	/**
+	 * Tests {@link FreeListAllocator#allocate(int)} choosing a block of the
+	 * smallest fitting size class
+	 */
+	@Test
+	public void testBestFit() {
+		FreeListAllocator allocator = new FreeListAllocator(100);
+		int a = allocator.allocate(30);
+		allocator.allocate(10);
+		int c = allocator.allocate(20);
+		allocator.allocate(10);
+
+		allocator.free(a);
+		allocator.free(c);
+		assertEquals(80, allocator.freeBytes());
+		assertEquals(30, allocator.largestFreeBlock());
+
+		// the 20 byte gap fits better than the 30 byte gap or the end
+		int d = allocator.allocate(15);
+		assertEquals(40, allocator.offset(d));
+	}
+
+	/**
+	 * Tests {@link FreeListAllocator#allocate(int)} using a block of the size
+	 * class of the allocation, if it is the only one that is large enough
+	 */
+	@Test
+	public void testSizeClass() {
+		FreeListAllocator allocator = new FreeListAllocator(1000);
+		int a = allocator.allocate(301);
+		int b = allocator.allocate(299);
+		allocator.allocate(400);
+		allocator.free(a);
+		allocator.free(b);
+
+		// 600 bytes lie in the same class as 590, but are large enough
+		assertEquals(0, allocator.offset(allocator.allocate(590)));
+		assertEquals(10, allocator.freeBytes());
+		assertEquals(IAllocator.INVALID_HANDLE, allocator.allocate(11));
+		assertEquals(590, allocator.offset(allocator.allocate(10)));
+	}
+
+	/**
+	 * Tests {@link FreeListAllocator#free(int)} merging neighbouring blocks
+	 */
+	@Test
+	public void testMerge() {
+		FreeListAllocator allocator = new FreeListAllocator(100);
+		int a = allocator.allocate(25);
+		int b = allocator.allocate(25);
+		int c = allocator.allocate(25);
+		allocator.allocate(25);
+
+		allocator.free(a);
+		allocator.free(c);
+		allocator.free(b);
+		assertEquals(75, allocator.largestFreeBlock());
+		assertEquals(0, allocator.offset(allocator.allocate(75)));
+	}
+
+	/**
+	 * Tests {@link FreeListAllocator#allocate(int)} failing on fragmented
+	 * memory instead of moving allocations
+	 */
+	@Test
+	public void testFragmented() {
+		FreeListAllocator allocator = new FreeListAllocator(100);
+		int[] moved = new int[1];
+		allocator.setMoveListener((handle, from, to, length) -> moved[0]++);
+
+		int a = allocator.allocate(25);
+		allocator.allocate(25);
+		int c = allocator.allocate(25);
+		allocator.allocate(25);
+		allocator.free(a);
+		allocator.free(c);
+
+		assertEquals(50, allocator.freeBytes());
+		assertEquals(IAllocator.INVALID_HANDLE, allocator.allocate(50));
+		assertEquals(0, moved[0]);
+	}
+
+	/**
+	 * Tests {@link FreeListAllocator#defragment(int)}
+	 */
+	@Test
+	public void testDefragment() {
+		FreeListAllocator allocator = new FreeListAllocator(100);
+		int[] moved = new int[1];
+		allocator.setMoveListener((handle, from, to, length) -> {
+			assertEquals(allocator.offset(handle), to);
+			moved[0]++;
+		});
+
+		int a = allocator.allocate(25);
+		int b = allocator.allocate(25);
+		int c = allocator.allocate(25);
+		int d = allocator.allocate(25);
+		allocator.free(a);
+		allocator.free(c);
+
+		assertEquals(50, allocator.defragment(100));
+		assertEquals(2, moved[0]);
+		assertEquals(0, allocator.offset(b));
+		assertEquals(25, allocator.offset(d));
+		assertEquals(50, allocator.largestFreeBlock());
+		assertEquals(50, allocator.offset(allocator.allocate(50)));
+
+		// nothing left to move
+		assertEquals(0, allocator.defragment(100));
+	}
+
+	/**
+	 * Tests {@link FreeListAllocator} with many random allocations, which
+	 * must never overlap and leave a single free block once defragmented
+	 */
+	@Test
+	public void testChurn() {
+		FreeListAllocator allocator = new FreeListAllocator(10000);
+		Random random = new Random(3);
+		List<Integer> handles = new ArrayList<>();
+		int used = 0;
+		for (int i = 0; i < 2000; i++) {
+			if (!handles.isEmpty() && random.nextInt(3) == 0) {
+				int handle = handles.remove(random.nextInt(handles.size()));
+				used -= allocator.length(handle);
+				allocator.free(handle);
+			} else {
+				int handle = allocator.allocate(1 + random.nextInt(100));
+				if (handle != IAllocator.INVALID_HANDLE) {
+					handles.add(handle);
+					used += allocator.length(handle);
+				}
+			}
+			assertEquals(10000 - used, allocator.freeBytes());
+		}
+
+		boolean[] owned = new boolean[10000];
+		for (int handle : handles) {
+			for (int b = allocator.offset(handle); b < allocator.offset(handle) + allocator.length(handle); b++) {
+				assertFalse(owned[b]);
+				owned[b] = true;
+			}
+		}
+
+		allocator.defragment(Integer.MAX_VALUE);
+		assertEquals(used, allocator.end());
+		assertEquals(10000 - used, allocator.largestFreeBlock());
+	}
+
+	/**
+	 * Tests {@link FreeListAllocator#defragment(int)} moving no more than the
+	 * budget
+	 */
+	@Test
+	public void testDefragmentBudget() {
+		FreeListAllocator allocator = new FreeListAllocator(100);
+		int a = allocator.allocate(20);
+		int b = allocator.allocate(20);
+		int c = allocator.allocate(20);
+		int d = allocator.allocate(20);
+		allocator.free(a);
+		allocator.free(c);
+
+		// only the first allocation fits into the budget
+		assertEquals(20, allocator.defragment(30));
+		assertEquals(0, allocator.offset(b));
+		assertEquals(60, allocator.offset(d));
+		assertEquals(40, allocator.largestFreeBlock());
+
+		// nothing is moved without a budget
+		assertEquals(0, allocator.defragment(0));
+		assertEquals(60, allocator.offset(d));
+
+		// the first allocation is moved even if it exceeds the budget
+		assertEquals(20, allocator.defragment(10));
+		assertEquals(20, allocator.offset(d));
+		assertEquals(60, allocator.largestFreeBlock());
+	}
+
+	/**
+	 * Tests {@link FreeListAllocator#defragment(int)} with an allocation
+	 * behind the first gap that is larger than the budget, which must not
+	 * stall defragmentation
+	 */
+	@Test
+	public void testDefragmentLargeAllocation() {
+		FreeListAllocator allocator = new FreeListAllocator(100);
+		int a = allocator.allocate(10);
+		int b = allocator.allocate(50);
+		int c = allocator.allocate(10);
+		allocator.free(a);
+
+		// b exceeds the budget, but is moved alone
+		assertEquals(50, allocator.defragment(20));
+		assertEquals(0, allocator.offset(b));
+		assertEquals(60, allocator.offset(c));
+
+		// c fits into the budget afterwards
+		assertEquals(10, allocator.defragment(20));
+		assertEquals(50, allocator.offset(c));
+		assertEquals(40, allocator.largestFreeBlock());
+		assertEquals(0, allocator.defragment(20));
+	}
+
+	/**
+	 * Tests {@link FreeListAllocator#grow(int)} and
+	 * {@link FreeListAllocator#end()}
+	 */
+	@Test
+	public void testGrow() {
+		FreeListAllocator allocator = new FreeListAllocator(100);
+		int a = allocator.allocate(60);
+		int b = allocator.allocate(20);
+		assertEquals(80, allocator.end());
+		assertEquals(IAllocator.INVALID_HANDLE, allocator.allocate(50));
+
+		// the new bytes are merged with the free bytes at the end
+		allocator.grow(150);
+		assertEquals(150, allocator.capacity());
+		assertEquals(70, allocator.largestFreeBlock());
+		assertEquals(0, allocator.offset(a));
+		assertEquals(60, allocator.offset(b));
+		assertEquals(80, allocator.offset(allocator.allocate(50)));
+		assertEquals(130, allocator.end());
+
+		allocator.free(b);
+		assertEquals(130, allocator.end());
+	}
+
+	@Test (expected = AtticRuntimeException.class)
+	public void testInvalidHandleError0() {
+		FreeListAllocator allocator = new FreeListAllocator(100);
+		int a = allocator.allocate(10);
+		allocator.free(a);
+		allocator.free(a);
+	}
+
+	@Test (expected = AtticRuntimeException.class)
+	public void testInvalidLengthError0() {
+		new FreeListAllocator(100).allocate(0);
+	}
+
+	@Test (expected = AtticRuntimeException.class)
+	public void testInvalidCapacityError0() {
+		new FreeListAllocator(100).grow(50);
+	}
+}
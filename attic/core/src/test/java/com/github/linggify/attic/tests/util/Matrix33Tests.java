@@ -46,6 +46,30 @@ public class Matrix33Tests {
 		new Matrix33().set(matrix);
 	}
 	
+	@Test
+	public void testSetOffset() {
+		float[] values = new float[]{0, 1, 1, 1, 2, 2, 2, 3, 3, 3, 0};
+		assertArrayEquals(new float[]{1, 1, 1, 2, 2, 2, 3, 3, 3}, new Matrix33().set(values, 1).getValues(), 0.001f);
+	}
+	
+	@Test (expected = AtticRuntimeException.class)
+	public void testInvalidArgumentCountError2() {
+		new Matrix33().set(new float[10], 2);
+	}
+	
+	@Test
+	public void testGet() {
+		Matrix33 matrix = new Matrix33(new float[]{1, 2, 3, 4, 5, 6, 7, 8, 9});
+		assertEquals(2, matrix.get(0, 1), 0.001f);
+		assertEquals(6, matrix.get(1, 2), 0.001f);
+		assertEquals(7, matrix.get(2, 0), 0.001f);
+	}
+	
+	@Test (expected = AtticRuntimeException.class)
+	public void testInvalidIndexError0() {
+		new Matrix33().get(3, 0);
+	}
+	
 	@Test
 	public void testIdenty() {
 		assertArrayEquals(new float[]{1, 0, 0, 0, 1, 0, 0, 0, 1}, new Matrix33().identy().getValues(), 0.001f);
@@ -101,6 +125,51 @@ public class Matrix33Tests {
 		new Matrix33().multiply(matrix);
 	}
 	
+	@Test
+	public void testMultiplySelf() {
+		Matrix33 matrix = new Matrix33(new float[]{1, 2, 2, 0, 3, 2, 1, 0, 1});
+		assertArrayEquals(new float[]{3, 8, 8, 2, 9, 8, 2, 2, 3}, matrix.multiply(matrix).getValues(), 0.001f);
+	}
+	
+	@Test
+	public void testMultiplyAffine() {
+		Matrix33 a = new Matrix33().compose(2, 90, 1, 2);
+		Matrix33 b = new Matrix33().compose(1, 45, -3, 4);
+		Matrix33 expected = new Matrix33(a.getValues()).multiply(b);
+		assertArrayEquals(expected.getValues(), a.multiplyAffine(b).getValues(), 0.001f);
+	}
+	
+	@Test (expected = AtticRuntimeException.class)
+	public void testNullMatrixError3() {
+		new Matrix33().multiplyAffine(null);
+	}
+	
+	@Test
+	public void testCompose() {
+		Matrix33 matrix = new Matrix33().compose(2, 90, 3, -1);
+		assertArrayEquals(new float[]{0, -2, 3, 2, 0, -1, 0, 0, 1}, matrix.getValues(), 0.001f);
+		
+		Vector2D point = matrix.multiply(new Vector2D(1, 0));
+		assertEquals(3, point.getX(), 0.001f);
+		assertEquals(1, point.getY(), 0.001f);
+	}
+	
+	@Test
+	public void testTransformPoints() {
+		Matrix33 matrix = new Matrix33().compose(1, 90, 1, 1);
+		float[] points = new float[]{1, 0, 0, 1, 2, 2};
+		float[] result = matrix.transformPoints(points, new float[6], 3);
+		assertArrayEquals(new float[]{1, 2, 0, 1, -1, 3}, result, 0.001f);
+		
+		// transforming in place
+		assertArrayEquals(result, matrix.transformPoints(points, points, 3), 0.001f);
+	}
+	
+	@Test (expected = AtticRuntimeException.class)
+	public void testInvalidArgumentCountError3() {
+		new Matrix33().transformPoints(new float[4], new float[6], 3);
+	}
+	
 	@Test
 	public void testTransform() {
 		Matrix33 matrix = new Matrix33();
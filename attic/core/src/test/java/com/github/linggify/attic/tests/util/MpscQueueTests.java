@@ -0,0 +1,82 @@
+package com.github.linggify.attic.tests.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.github.linggify.attic.exceptions.AtticRuntimeException;
+import com.github.linggify.attic.util.MpscQueue;
+
+public class MpscQueueTests {
+
+	/**
+	 * Tests {@link MpscQueue#offer(Object)} and {@link MpscQueue#poll()}
+	 */
+	@Test
+	public void testOfferPoll() {
+		MpscQueue<Integer> queue = new MpscQueue<>();
+		assertTrue(queue.isEmpty());
+		assertNull(queue.poll());
+
+		queue.offer(1);
+		queue.offer(2);
+		queue.offer(3);
+		assertEquals(3, queue.size());
+		assertFalse(queue.isEmpty());
+
+		assertEquals(Integer.valueOf(1), queue.poll());
+		assertEquals(Integer.valueOf(2), queue.poll());
+		queue.offer(4);
+		assertEquals(Integer.valueOf(3), queue.poll());
+		assertEquals(Integer.valueOf(4), queue.poll());
+		assertNull(queue.poll());
+		assertEquals(0, queue.size());
+		assertTrue(queue.isEmpty());
+	}
+
+	@Test (expected = AtticRuntimeException.class)
+	public void testNullValueError0() {
+		new MpscQueue<Integer>().offer(null);
+	}
+
+	/**
+	 * Tests {@link MpscQueue#offer(Object)} from multiple Threads
+	 */
+	@Test
+	public void testMultipleProducers() throws InterruptedException {
+		final int producers = 4;
+		final int values = 10000;
+		MpscQueue<Integer> queue = new MpscQueue<>();
+
+		Thread[] threads = new Thread[producers];
+		for (int i = 0; i < producers; i++) {
+			final int producer = i;
+			threads[i] = new Thread(() -> {
+				for (int c = 0; c < values; c++)
+					queue.offer(producer * values + c);
+			});
+			threads[i].start();
+		}
+
+		// every producer's values have to arrive in order
+		int[] last = new int[producers];
+		for (int i = 0; i < producers; i++)
+			last[i] = -1;
+
+		int received = 0;
+		while (received < producers * values) {
+			Integer value = queue.poll();
+			if (value == null)
+				continue;
+
+			int producer = value / values;
+			assertTrue(value % values > last[producer]);
+			last[producer] = value % values;
+			received++;
+		}
+
+		for (Thread thread : threads)
+			thread.join();
+		assertNull(queue.poll());
+	}
+}
@@ -0,0 +1,147 @@
+package com.github.linggify.attic.tests.util;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.github.linggify.attic.exceptions.AtticRuntimeException;
+import com.github.linggify.attic.util.SpatialGrid;
+
+public class SpatialGridTests {
+
+	/**
+	 * Queries the given grid and returns the found items as a set
+	 *
+	 * @param grid
+	 * @param minX
+	 * @param minY
+	 * @param maxX
+	 * @param maxY
+	 * @return the found items
+	 */
+	private Set<String> query(SpatialGrid<String> grid, float minX, float minY, float maxX, float maxY) {
+		List<String> result = new ArrayList<>();
+		int found = grid.query(minX, minY, maxX, maxY, result);
+		assertEquals(result.size(), found);
+
+		Set<String> set = new HashSet<>(result);
+		// every item is reported once
+		assertEquals(result.size(), set.size());
+		return set;
+	}
+
+	/**
+	 * Tests {@link SpatialGrid#query(float, float, float, float, List)}
+	 */
+	@Test
+	public void testQuery() {
+		SpatialGrid<String> grid = new SpatialGrid<>(10);
+		grid.insert("a", 0, 0, 5, 5);
+		grid.insert("b", 12, 12, 14, 14);
+		// spans many cells
+		grid.insert("c", -25, -25, 25, 25);
+		grid.insert("d", 100, 100, 101, 101);
+
+		assertEquals(new HashSet<>(Arrays.asList("a", "c")), query(grid, 1, 1, 2, 2));
+		// b shares a cell with the rectangle, but does not overlap it
+		assertEquals(new HashSet<>(Arrays.asList("c")), query(grid, 15, 15, 18, 18));
+		assertEquals(new HashSet<>(Arrays.asList("d")), query(grid, 90, 90, 110, 110));
+		assertTrue(query(grid, 200, 200, 300, 300).isEmpty());
+		assertEquals(4, grid.size());
+	}
+
+	/**
+	 * Tests {@link SpatialGrid#update(int, float, float, float, float)} and
+	 * {@link SpatialGrid#remove(int)}
+	 */
+	@Test
+	public void testUpdate() {
+		SpatialGrid<String> grid = new SpatialGrid<>(10);
+		int a = grid.insert("a", 0, 0, 1, 1);
+		int b = grid.insert("b", 0, 0, 1, 1);
+
+		grid.update(a, 50, 50, 51, 51);
+		assertEquals(new HashSet<>(Arrays.asList("b")), query(grid, 0, 0, 5, 5));
+		assertEquals(new HashSet<>(Arrays.asList("a")), query(grid, 45, 45, 55, 55));
+
+		// moving within the same cell
+		grid.update(a, 52, 52, 53, 53);
+		assertTrue(query(grid, 50, 50, 51, 51).isEmpty());
+
+		grid.remove(b);
+		assertTrue(query(grid, 0, 0, 5, 5).isEmpty());
+		assertEquals(1, grid.size());
+		assertEquals(1, grid.cellCount());
+		assertEquals("a", grid.get(a));
+	}
+
+	/**
+	 * Tests {@link SpatialGrid#query(float, float, float, float, List)} against
+	 * a brute force search
+	 */
+	@Test
+	public void testRandom() {
+		SpatialGrid<String> grid = new SpatialGrid<>(16);
+		Random random = new Random(7);
+		float[][] bounds = new float[300][];
+		int[] handles = new int[bounds.length];
+		for (int i = 0; i < bounds.length; i++) {
+			float x = random.nextFloat() * 1000 - 500;
+			float y = random.nextFloat() * 1000 - 500;
+			bounds[i] = new float[] { x, y, x + random.nextFloat() * 40, y + random.nextFloat() * 40 };
+			handles[i] = grid.insert("" + i, bounds[i][0], bounds[i][1], bounds[i][2], bounds[i][3]);
+		}
+		// move half of them
+		for (int i = 0; i < bounds.length; i += 2) {
+			bounds[i][0] += 30;
+			bounds[i][2] += 30;
+			grid.update(handles[i], bounds[i][0], bounds[i][1], bounds[i][2], bounds[i][3]);
+		}
+
+		for (int q = 0; q < 50; q++) {
+			float x = random.nextFloat() * 1000 - 500;
+			float y = random.nextFloat() * 1000 - 500;
+			Set<String> expected = new HashSet<>();
+			for (int i = 0; i < bounds.length; i++) {
+				if (bounds[i][0] <= x + 100 && bounds[i][2] >= x && bounds[i][1] <= y + 100 && bounds[i][3] >= y)
+					expected.add("" + i);
+			}
+			assertEquals(expected, query(grid, x, y, x + 100, y + 100));
+		}
+	}
+
+	/**
+	 * Tests {@link SpatialGrid#SpatialGrid(float)} with an invalid cell size
+	 */
+	@Test (expected = AtticRuntimeException.class)
+	public void testCellSizeError0() {
+		new SpatialGrid<>(0);
+	}
+
+	/**
+	 * Tests {@link SpatialGrid#insert(Object, float, float, float, float)} with
+	 * invalid bounds
+	 */
+	@Test (expected = AtticRuntimeException.class)
+	public void testBoundsError0() {
+		new SpatialGrid<String>(10).insert("a", 1, 0, 0, 1);
+	}
+
+	/**
+	 * Tests {@link SpatialGrid#remove(int)} with a removed handle
+	 */
+	@Test (expected = AtticRuntimeException.class)
+	public void testHandleError0() {
+		SpatialGrid<String> grid = new SpatialGrid<>(10);
+		int handle = grid.insert("a", 0, 0, 1, 1);
+		grid.remove(handle);
+		grid.remove(handle);
+	}
+}
@@ -0,0 +1,97 @@
+package com.github.linggify.attic.lwjgl;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL13.*;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL30.*;
+
+/**
+ * The GL functions changing the bindings tracked by a {@link GLStateCache}.
+ * Lets the {@link GLStateCache} be used without a GL context
+ * 
+ * @author Fredie
+ *
+ */
+public interface GLFunctions {
+
+	/** The {@link GLFunctions} calling the GL through LWJGL */
+	GLFunctions LWJGL = new GLFunctions() {
+
+		@Override
+		public void useProgram(int program) {
+			glUseProgram(program);
+		}
+
+		@Override
+		public void bindVertexArray(int array) {
+			glBindVertexArray(array);
+		}
+
+		@Override
+		public void bindBuffer(int target, int buffer) {
+			glBindBuffer(target, buffer);
+		}
+
+		@Override
+		public void activeTexture(int texture) {
+			glActiveTexture(texture);
+		}
+
+		@Override
+		public void bindTexture(int target, int texture) {
+			glBindTexture(target, texture);
+		}
+
+		@Override
+		public void bindFramebuffer(int target, int framebuffer) {
+			glBindFramebuffer(target, framebuffer);
+		}
+	};
+
+	/**
+	 * glUseProgram
+	 * 
+	 * @param program
+	 */
+	void useProgram(int program);
+
+	/**
+	 * glBindVertexArray
+	 * 
+	 * @param array
+	 */
+	void bindVertexArray(int array);
+
+	/**
+	 * glBindBuffer
+	 * 
+	 * @param target
+	 * @param buffer
+	 */
+	void bindBuffer(int target, int buffer);
+
+	/**
+	 * glActiveTexture
+	 * 
+	 * @param texture
+	 *            the texture unit, starting at GL_TEXTURE0
+	 */
+	void activeTexture(int texture);
+
+	/**
+	 * glBindTexture
+	 * 
+	 * @param target
+	 * @param texture
+	 */
+	void bindTexture(int target, int texture);
+
+	/**
+	 * glBindFramebuffer
+	 * 
+	 * @param target
+	 * @param framebuffer
+	 */
+	void bindFramebuffer(int target, int framebuffer);
+}
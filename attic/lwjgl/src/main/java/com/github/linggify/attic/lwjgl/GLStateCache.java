@@ -0,0 +1,243 @@
+package com.github.linggify.attic.lwjgl;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL13.*;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL30.*;
+
+import java.util.Arrays;
+
+import com.github.linggify.attic.render.FrameStats;
+
+/**
+ * A GLStateCache remembers the bound program, vertex array, buffers,
+ * textures and framebuffer, and skips every bind that would not change
+ * anything. Every bind and skipped bind is counted in the {@link FrameStats}.
+ * <p>
+ * The cache only stays correct if all bindings of a context are changed
+ * through it. If they were changed by other code, {@link #invalidate()} makes
+ * the cache issue every bind once again. Deleting a bound object resets its
+ * binding to 0, which has to be reported by the on*Deleted methods
+ * 
+ * @author Fredie
+ *
+ */
+public class GLStateCache {
+
+	// used for bindings that are not known
+	private static final int UNKNOWN = -1;
+
+	private final GLFunctions mFunctions;
+	private final FrameStats mStats;
+
+	private int mProgram;
+	private int mVertexArray;
+	private int mFramebuffer;
+
+	private int[] mBufferTargets;
+	private int[] mBuffers;
+	private int mTargetCount;
+
+	private int mActiveUnit;
+	private int[] mTextures;
+
+	/**
+	 * Creates a new {@link GLStateCache} for a new context, in which
+	 * everything is bound to 0
+	 * 
+	 * @param functions
+	 *            the {@link GLFunctions} to issue the binds with
+	 * @param stats
+	 *            the {@link FrameStats} to count the binds in
+	 */
+	public GLStateCache(GLFunctions functions, FrameStats stats) {
+		mFunctions = functions;
+		mStats = stats;
+		mBufferTargets = new int[4];
+		mBuffers = new int[4];
+		mTextures = new int[16];
+	}
+
+	/**
+	 * Counts a bind and whether it was issued
+	 * 
+	 * @param issued
+	 * @return whether the bind was issued
+	 */
+	private boolean record(boolean issued) {
+		if (issued)
+			mStats.recordBind();
+		else
+			mStats.recordSkippedBind();
+		return issued;
+	}
+
+	/**
+	 * Uses the given program, if it is not used already
+	 * 
+	 * @param program
+	 */
+	public void useProgram(int program) {
+		if (record(mProgram != program)) {
+			mFunctions.useProgram(program);
+			mProgram = program;
+		}
+	}
+
+	/**
+	 * Binds the given vertex array, if it is not bound already. As the
+	 * element array buffer is part of the vertex array, its binding is not
+	 * known afterwards
+	 * 
+	 * @param array
+	 */
+	public void bindVertexArray(int array) {
+		if (record(mVertexArray != array)) {
+			mFunctions.bindVertexArray(array);
+			mVertexArray = array;
+			mBuffers[slot(GL_ELEMENT_ARRAY_BUFFER)] = UNKNOWN;
+		}
+	}
+
+	/**
+	 * Binds the given buffer to the given target, if it is not bound already
+	 * 
+	 * @param target
+	 * @param buffer
+	 */
+	public void bindBuffer(int target, int buffer) {
+		int slot = slot(target);
+		if (record(mBuffers[slot] != buffer)) {
+			mFunctions.bindBuffer(target, buffer);
+			mBuffers[slot] = buffer;
+		}
+	}
+
+	/**
+	 * Finds the slot remembering the buffer bound to the given target,
+	 * creating it if it does not exist yet. There are only a few targets, so
+	 * they are searched one by one
+	 * 
+	 * @param target
+	 * @return the index of the slot
+	 */
+	private int slot(int target) {
+		for (int i = 0; i < mTargetCount; i++) {
+			if (mBufferTargets[i] == target)
+				return i;
+		}
+
+		if (mTargetCount == mBufferTargets.length) {
+			mBufferTargets = Arrays.copyOf(mBufferTargets, mTargetCount * 2);
+			mBuffers = Arrays.copyOf(mBuffers, mTargetCount * 2);
+		}
+		// the binding of a new target is not known, so the first bind is always issued
+		mBufferTargets[mTargetCount] = target;
+		mBuffers[mTargetCount] = UNKNOWN;
+		return mTargetCount++;
+	}
+
+	/**
+	 * Binds the given 2D texture to the texture unit with the given index,
+	 * if it is not bound already. Activates the unit only if needed
+	 * 
+	 * @param unit
+	 *            the index of the unit, starting at 0
+	 * @param texture
+	 */
+	public void bindTexture(int unit, int texture) {
+		if (unit >= mTextures.length) {
+			int length = mTextures.length;
+			mTextures = Arrays.copyOf(mTextures, Math.max(unit + 1, length * 2));
+			Arrays.fill(mTextures, length, mTextures.length, UNKNOWN);
+		}
+
+		if (mTextures[unit] == texture) {
+			record(false);
+			return;
+		}
+
+		if (record(mActiveUnit != unit)) {
+			mFunctions.activeTexture(GL_TEXTURE0 + unit);
+			mActiveUnit = unit;
+		}
+		record(true);
+		mFunctions.bindTexture(GL_TEXTURE_2D, texture);
+		mTextures[unit] = texture;
+	}
+
+	/**
+	 * Binds the given framebuffer for drawing and reading, if it is not bound
+	 * already
+	 * 
+	 * @param framebuffer
+	 */
+	public void bindFramebuffer(int framebuffer) {
+		if (record(mFramebuffer != framebuffer)) {
+			mFunctions.bindFramebuffer(GL_FRAMEBUFFER, framebuffer);
+			mFramebuffer = framebuffer;
+		}
+	}
+
+	/**
+	 * Reports that the given buffer was deleted, which unbinds it from every
+	 * target
+	 * 
+	 * @param buffer
+	 */
+	public void onBufferDeleted(int buffer) {
+		for (int i = 0; i < mTargetCount; i++) {
+			if (mBuffers[i] == buffer)
+				mBuffers[i] = 0;
+		}
+	}
+
+	/**
+	 * Reports that the given vertex array was deleted, which unbinds it if it
+	 * was bound
+	 * 
+	 * @param array
+	 */
+	public void onVertexArrayDeleted(int array) {
+		if (mVertexArray == array) {
+			mVertexArray = 0;
+			mBuffers[slot(GL_ELEMENT_ARRAY_BUFFER)] = UNKNOWN;
+		}
+	}
+
+	/**
+	 * Reports that the given texture was deleted, which unbinds it from every
+	 * unit
+	 * 
+	 * @param texture
+	 */
+	public void onTextureDeleted(int texture) {
+		for (int i = 0; i < mTextures.length; i++) {
+			if (mTextures[i] == texture)
+				mTextures[i] = 0;
+		}
+	}
+
+	/**
+	 * Reports that the given framebuffer was deleted, which unbinds it if it
+	 * was bound
+	 * 
+	 * @param framebuffer
+	 */
+	public void onFramebufferDeleted(int framebuffer) {
+		if (mFramebuffer == framebuffer)
+			mFramebuffer = 0;
+	}
+
+	/**
+	 * Forgets all bindings, so every following bind is issued at least once
+	 */
+	public void invalidate() {
+		mProgram = UNKNOWN;
+		mVertexArray = UNKNOWN;
+		mFramebuffer = UNKNOWN;
+		mActiveUnit = UNKNOWN;
+		Arrays.fill(mBuffers, UNKNOWN);
+		Arrays.fill(mTextures, UNKNOWN);
+	}
+}
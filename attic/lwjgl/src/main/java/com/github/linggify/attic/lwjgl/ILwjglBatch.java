@@ -0,0 +1,44 @@
+package com.github.linggify.attic.lwjgl;
+
+import com.github.linggify.attic.render.FrameStats;
+import com.github.linggify.attic.render.IBatch;
+
+/**
+ * An {@link IBatch} that can be rendered and destroyed by the
+ * {@link LwjglContext}
+ * 
+ * @author Fredie
+ *
+ */
+interface ILwjglBatch extends IBatch {
+
+	/**
+	 * Uploads all changes since the last frame, so the batch can be drawn
+	 * 
+	 * @param stats
+	 *            the {@link FrameStats} to record the uploads in
+	 */
+	void prepare(FrameStats stats);
+
+	/**
+	 * 
+	 * @return the names of the attributes read by the shader, in the order of
+	 *         their indices. The same array is returned every time
+	 */
+	String[] attributeNames();
+
+	/**
+	 * Binds the vertex array of this batch and draws it with the currently
+	 * active shader. Does nothing if the batch is empty. The vertex array is
+	 * left bound, so the next batch only has to bind its own
+	 * 
+	 * @param stats
+	 *            the {@link FrameStats} to record the draw in
+	 */
+	void draw(FrameStats stats);
+
+	/**
+	 * Destroys this batch making it unusable
+	 */
+	void destroy();
+}
@@ -1,55 +1,96 @@
 package com.github.linggify.attic.lwjgl;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.lwjgl.system.MemoryUtil;
 
 import com.github.linggify.attic.logic.IProperty;
 import com.github.linggify.attic.logic.IProperty.PropertyEvent;
 import com.github.linggify.attic.logic.IProperty.PropertyListener;
 import com.github.linggify.attic.lwjgl.LwjglVertexBuffer.BufferSegment;
-import com.github.linggify.attic.render.IBatch;
+import com.github.linggify.attic.render.FrameStats;
 import com.github.linggify.attic.render.RenderData;
-import com.github.linggify.attic.render.RenderData.VertexData;
-import com.github.linggify.attic.util.Pair;
-import com.github.linggify.attic.render.IContext;
+import com.github.linggify.attic.render.VertexWriter;
+import com.github.linggify.attic.util.FreeListAllocator;
+import com.github.linggify.attic.util.IAllocator;
+import com.github.linggify.attic.util.MpscQueue;
 import com.github.linggify.attic.render.IContext.VertexAttribute;
 
 import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL32.*;
 
 /**
- * A LwjglBatch is used to render using the {@link LwjglBackend}
+ * A LwjglBatch is used to render using the {@link LwjglBackend}. Static
+ * batches keep every {@link RenderData} in its own segment of a
+ * {@link LwjglVertexBuffer}, dynamic batches write the vertices of all
+ * RenderData into a {@link LwjglStreamBuffer} whenever one of them changed.
+ * Every RenderData owns a range in the {@link LwjglIndexBuffer}, that is only
+ * rewritten when the RenderData itself changes.
+ * 
+ * Properties are accepted and notify their listeners on the Thread of their
+ * Genius, so both only reserve bytes and record the events of a {@link Slot}.
+ * Every buffer, allocator and index is only touched by {@link #prepare}
+ * and {@link #setVisible} on the rendering Thread
  * 
  * @author Freddy
  *
  */
-public class LwjglBatch implements IBatch {
+public class LwjglBatch implements ILwjglBatch {
+
+	// how many indices are moved per frame to close gaps in the index buffer
+	private static final int INDEX_DEFRAGMENT_BUDGET = 16 * 1024;
 	
-	private List<Pair<BufferSegment, RenderData>> mProperties;
-	private List<Boolean> mActiveProperties;
-	private List<Integer> mFreeIds;
+	private List<Slot> mSlots;
+	// ids of removed slots, reused before the list of slots grows
+	private int[] mFreeIds;
+	private int mFreeIdCount;
+	// accepted on the Genius Thread, looked up on the rendering Thread
+	private Map<IProperty<RenderData>, Slot> mProperties;
+	// slots with events that were not yet applied
+	private MpscQueue<Slot> mPending;
+	// bytes promised to accepted properties, so they always fit once defragmented.
+	// Released as soon as a property is removed, not when the removal is applied
+	private AtomicInteger mReserved;
+	private int mCapacity;
+	// properties that changed since the last frame
+	private BitSet mChanged;
 
 	private Set<VertexAttribute> mAttributeSet;
 	private VertexAttribute[] mAttributes;
 	private int mVertexSize;
-
-	private int[] mIndices;
-	private int mHighIndex;
-	private boolean mIndicesDirty;
 	
 	private LwjglVertexArray mBuffer;
+	private LwjglIndexBuffer mIndices;
+	private ByteBuffer mStaging;
+	private VertexWriter mWriter;
+
+	// only used by dynamic batches
+	private LwjglStreamBuffer mStream;
+	private FreeListAllocator mStreamAllocator;
+	private VertexWriter mStreamWriter;
+	private int mStreamOffset;
+	private boolean mStreamDirty;
 	
 	/**
 	 * Creates a new {@link LwjglBatch}
 	 */
-	public LwjglBatch(int size, boolean isStatic, VertexAttribute... attributes) {
-		mProperties = new ArrayList<>();
-		mActiveProperties = new ArrayList<>();
-		mFreeIds = new LinkedList<>();
+	public LwjglBatch(int size, boolean isStatic, GLStateCache state, VertexAttribute... attributes) {
+		mSlots = new ArrayList<>();
+		mFreeIds = new int[16];
+		mProperties = new ConcurrentHashMap<>();
+		mPending = new MpscQueue<>();
+		mReserved = new AtomicInteger();
+		mChanged = new BitSet();
 
 		mAttributes = attributes;
 		mAttributeSet = new HashSet<>(Arrays.asList(attributes));
@@ -57,93 +98,306 @@ public class LwjglBatch implements IBatch {
 		mVertexSize = 0;
 		for (VertexAttribute attribute : mAttributes)
 			mVertexSize += attribute.offset();
+
+		// room for the indices of sprites, grows for other meshes
+		mIndices = new LwjglIndexBuffer(size * 3 / 2 + 1, size, isStatic, state);
+		if (isStatic) {
+			mBuffer = new LwjglVertexArray(new LwjglVertexBuffer(mVertexSize * size, mVertexSize, isStatic, state),
+					mIndices, state, mAttributes);
+			mCapacity = mVertexSize * size;
+		} else {
+			mStream = new LwjglStreamBuffer(mVertexSize * size, state);
+			mStreamAllocator = new FreeListAllocator(mStream.regionSize());
+			mCapacity = mStream.regionSize();
+			mBuffer = new LwjglVertexArray(mStream, mIndices, state, mAttributes);
+			mStreamOffset = -1;
+		}
 		
-		mBuffer = new LwjglVertexArray(new LwjglVertexBuffer(mVertexSize * size, mVertexSize, isStatic), mAttributes);
+		// room for a sprite, grows for larger RenderData with another layout
+		mStaging = MemoryUtil.memAlloc(mVertexSize * 4);
+		mWriter = new VertexWriter(mStaging);
 	}
 
 	/**
-	 * Packs the indices of this {@link LwjglBatch}
+	 * 
+	 * @param slot
+	 * @return the first vertex of the given {@link Slot} in the underlying
+	 *         buffer or the streamed region
 	 */
-	private void packIndices() {
-		if (mIndicesDirty) {
-			int indexCount = 0;
-			for (int i = 0; i < mProperties.size(); i++) {
-				if (mActiveProperties.get(i))
-					indexCount += mProperties.get(i).getValue().getIndices().length;
-			}
+	private int base(Slot slot) {
+		if (slot.mSegment != null)
+			return slot.mSegment.index(0);
+		return mStreamAllocator.offset(slot.mStreamHandle) / mVertexSize;
+	}
 
-			if (mIndices.length < indexCount)
-				mIndices = new int[indexCount];
-			mHighIndex = indexCount;
+	/**
+	 * Writes the indices of the given {@link Slot} into its range of the
+	 * {@link LwjglIndexBuffer}, or degenerate triangles if it is not shown.
+	 * The range is reallocated if the amount of indices changed
+	 * 
+	 * @param slot
+	 */
+	private void writeIndices(Slot slot) {
+		int[] indices = slot.mData.getIndices();
+		int handle = slot.mIndexHandle;
+		if (handle == IAllocator.INVALID_HANDLE || mIndices.count(handle) != indices.length) {
+			if (handle != IAllocator.INVALID_HANDLE)
+				mIndices.free(handle);
+			handle = indices.length > 0 ? mIndices.allocate(indices.length) : IAllocator.INVALID_HANDLE;
+			slot.mIndexHandle = handle;
+		}
 
-			int ioff = 0;
-			for (int i = 0; i < mProperties.size(); i++) {
-				if (mActiveProperties.get(i)) {
-					Pair<BufferSegment, RenderData> data = mProperties.get(i);
-					int[] indices = data.getValue().getIndices();
-					for (int c = 0; c < indices.length; c++) {
-						mIndices[c + ioff] = data.getKey().index(indices[c]);
-					}
+		if (handle == IAllocator.INVALID_HANDLE)
+			return;
 
-					ioff += indices.length;
-				}
-			}
+		if (slot.isShown()) {
+			slot.mBase = base(slot);
+			mIndices.set(handle, indices, slot.mBase);
+		} else {
+			mIndices.degenerate(handle);
+		}
+	}
 
-			mBuffer.setIndices(mIndices);
-			mIndicesDirty = false;
+	/**
+	 * Rewrites the indices of every shown {@link Slot} whose vertices moved
+	 * since its indices were written
+	 */
+	private void rebase() {
+		for (Slot slot : mSlots) {
+			if (slot != null && slot.isShown() && base(slot) != slot.mBase)
+				writeIndices(slot);
 		}
 	}
 
 	/**
-	 * Puts the given {@link RenderData} into the underlying buffer at the given
-	 * offset
+	 * Puts the given {@link RenderData} into its segment. If the layout of the
+	 * data matches this batch, its vertices are uploaded as they are, otherwise
+	 * they are rearranged in a reused direct buffer first, so no garbage is
+	 * created. Streamed data is only marked to be written with the next frame
 	 * 
 	 * @param data
-	 * @param offset
+	 * @param segment
+	 *            the segment of the data or null if it is streamed
 	 */
 	private void put(RenderData data, BufferSegment segment) {
-		byte[] bdata = new byte[mVertexSize * data.getVertexCount()];
-		int off = 0;
-		for (int i = 0; i < data.getVertexCount(); i++) {
-			for (int c = 0; c < mAttributes.length; c++) {
-				VertexData vdata = data.getVertexData(i, mAttributes[c]);
-
-				int aSize = mAttributes[c].elementCount() * mAttributes[c].type().size();
-				if (vdata != null) {
-					byte[] vbdata = vdata.asBytes();
-					for (int j = 0; j < aSize; j++)
-						bdata[off + j] = vbdata[j];
-				}
-				off += aSize;
+		if (segment == null) {
+			mStreamDirty = true;
+			return;
+		}
+
+		if (data.hasLayout(mAttributes)) {
+			segment.set(data.asBuffer());
+			return;
+		}
+
+		int size = mVertexSize * data.getVertexCount();
+		if (mStaging.capacity() < size) {
+			MemoryUtil.memFree(mStaging);
+			mStaging = MemoryUtil.memAlloc(Math.max(size, mStaging.capacity() * 2));
+			mWriter.setBuffer(mStaging);
+		}
+
+		mStaging.clear();
+		data.write(mAttributes, mWriter);
+		mStaging.flip();
+		segment.set(mStaging);
+	}
+
+	/**
+	 * Puts the vertices and writes the indices of all {@link RenderData} that
+	 * changed since the last frame, so every property is put at most once per
+	 * frame, no matter how often it changed
+	 */
+	private void putChanged() {
+		for (int id = mChanged.nextSetBit(0); id >= 0; id = mChanged.nextSetBit(id + 1)) {
+			Slot slot = mSlots.get(id);
+			if (slot.isShown())
+				put(slot.mData, slot.mSegment);
+			writeIndices(slot);
+		}
+		mChanged.clear();
+	}
+
+	/**
+	 * Writes the vertices of all shown {@link RenderData} into their ranges of
+	 * the next region of the {@link LwjglStreamBuffer}
+	 * 
+	 * @param stats
+	 */
+	private void stream(FrameStats stats) {
+		ByteBuffer region = mStream.begin();
+		if (mStreamWriter == null)
+			mStreamWriter = new VertexWriter(region);
+		else
+			mStreamWriter.setBuffer(region);
+
+		int written = 0;
+		for (Slot slot : mSlots) {
+			if (slot != null && slot.isShown()) {
+				mStreamWriter.position(mStreamAllocator.offset(slot.mStreamHandle));
+				slot.mData.write(mAttributes, mStreamWriter);
+				written += mStreamAllocator.length(slot.mStreamHandle);
 			}
 		}
-		segment.set(bdata);
-		mIndicesDirty = true;
+
+		stats.recordUpload(written);
+		mStreamOffset = mStream.end();
+		mStreamDirty = false;
 	}
 
 	/**
-	 * Renders this {@link LwjglBatch} with the currently active
-	 * shader
-	 * @param helper
+	 * Applies the events recorded since the last frame. Only the slots queued
+	 * before this call are applied, events that are recorded meanwhile are
+	 * applied with the next frame
 	 */
-	public void render(IContext helper) {
-		packIndices();
-		mBuffer.bind(helper);
-		glDrawElements(GL_TRIANGLES, mHighIndex, GL_INT, 0);
-		mBuffer.unbind();
+	private void applyPending() {
+		for (int i = mPending.size(); i > 0; i--) {
+			Slot slot = mPending.poll();
+			if (slot == null)
+				break;
+
+			int events = slot.take();
+			if ((events & Slot.REMOVED) != 0) {
+				remove(slot);
+				continue;
+			}
+			// too fragmented, try again once more bytes were defragmented
+			if ((events & Slot.ADDED) != 0 && !add(slot)) {
+				if (slot.record(events))
+					mPending.offer(slot);
+				continue;
+			}
+
+			if ((events & Slot.ACTIVITY) != 0 && slot.mActive != slot.mEnabled) {
+				slot.mActive = slot.mEnabled;
+				if (slot.mActive)
+					mChanged.set(slot.mId);
+				else
+					hide(slot);
+			}
+			if ((events & Slot.CHANGED) != 0)
+				mChanged.set(slot.mId);
+		}
+	}
+
+	/**
+	 * Allocates the vertices of the given {@link Slot} and assigns it an id
+	 * 
+	 * @param slot
+	 * @return whether the vertices could be allocated
+	 */
+	private boolean add(Slot slot) {
+		if (mStream != null) {
+			slot.mStreamHandle = allocateStreamed(slot.mSize);
+			if (slot.mStreamHandle == IAllocator.INVALID_HANDLE)
+				return false;
+		} else {
+			slot.mSegment = mBuffer.allocate(slot.mSize);
+			if (slot.mSegment == null)
+				return false;
+		}
+
+		if (mFreeIdCount > 0) {
+			slot.mId = mFreeIds[--mFreeIdCount];
+			mSlots.set(slot.mId, slot);
+		} else {
+			slot.mId = mSlots.size();
+			mSlots.add(slot);
+		}
+		slot.mActive = slot.mEnabled;
+		// the data is put with the next frame
+		mChanged.set(slot.mId);
+		return true;
 	}
 
 	/**
-	 * Destroys this {@link LwjglBatch} making it unusable
+	 * Frees the vertices and indices of the given {@link Slot}. Its reserved
+	 * bytes were already released when it was removed. The freed indices are
+	 * degenerated in the shadow copy before the next flush uploads it
+	 * 
+	 * @param slot
 	 */
+	private void remove(Slot slot) {
+		if (slot.mId != -1) {
+			if (slot.mSegment != null)
+				slot.mSegment.clear();
+			else
+				mStreamAllocator.free(slot.mStreamHandle);
+			if (slot.mIndexHandle != IAllocator.INVALID_HANDLE)
+				mIndices.free(slot.mIndexHandle);
+			slot.mIndexHandle = IAllocator.INVALID_HANDLE;
+			mSlots.set(slot.mId, null);
+			mChanged.clear(slot.mId);
+			if (mFreeIdCount == mFreeIds.length)
+				mFreeIds = Arrays.copyOf(mFreeIds, mFreeIdCount * 2);
+			mFreeIds[mFreeIdCount++] = slot.mId;
+		}
+
+		mProperties.remove(slot.mProperty, slot);
+	}
+
+	@Override
+	public void prepare(FrameStats stats) {
+		applyPending();
+		putChanged();
+		// moved segments need their indices to be rebased
+		if (mBuffer.defragment() > 0)
+			rebase();
+		mIndices.defragment(INDEX_DEFRAGMENT_BUDGET);
+		mBuffer.flush(stats);
+
+		// the last region stays valid until the next one is written
+		if (mStream != null && (mStreamDirty || mStreamOffset == -1))
+			stream(stats);
+	}
+
+	@Override
+	public String[] attributeNames() {
+		return mBuffer.attributeNames();
+	}
+
+	@Override
+	public void draw(FrameStats stats) {
+		int count = mIndices.drawCount();
+		if (count == 0)
+			return;
+
+		mBuffer.bind();
+		if (mStream != null)
+			glDrawElementsBaseVertex(GL_TRIANGLES, count, mIndices.type(), 0, mStreamOffset / mVertexSize);
+		else
+			glDrawElements(GL_TRIANGLES, count, mIndices.type(), 0);
+		stats.recordDraw();
+	}
+
+	@Override
 	public void destroy() {
+		mSlots.clear();
+		mFreeIdCount = 0;
 		mProperties.clear();
-		mActiveProperties.clear();
-		mFreeIds.clear();
 		mAttributes = null;
-		mIndices = null;
 		
 		mBuffer.destroy();
+		MemoryUtil.memFree(mStaging);
+		mStaging = null;
+	}
+
+	/**
+	 * Allocates a range of the given size in the streamed region, moving all
+	 * other ranges to the front if the free bytes are too fragmented
+	 * 
+	 * @param size
+	 * @return the handle of the range or {@link IAllocator#INVALID_HANDLE}
+	 */
+	private int allocateStreamed(int size) {
+		int handle = mStreamAllocator.allocate(size);
+		if (handle == IAllocator.INVALID_HANDLE && mStreamAllocator.freeBytes() >= size) {
+			mStreamAllocator.defragment(Integer.MAX_VALUE);
+			rebase();
+			mStreamDirty = true;
+			handle = mStreamAllocator.allocate(size);
+		}
+		return handle;
 	}
 	
 	@Override
@@ -151,63 +405,178 @@ public class LwjglBatch implements IBatch {
 		RenderData data = property.get();
 
 		// check if the renderdatas attributes match the batches attributes
-		if (!mAttributeSet.equals(data.getAttributes()))
+		if (data.isInstanced() || !mAttributeSet.equals(data.getAttributes()))
 			return false;
 
 		// check if there is enough space in this LwjglBatch for the renderdata
 		int size = mVertexSize * data.getVertexCount();
-		BufferSegment segment = mBuffer.allocate(size);
-		if (segment == null)
-			return false;
+		int reserved;
+		do {
+			reserved = mReserved.get();
+			if (reserved + size > mCapacity)
+				return false;
+		} while (!mReserved.compareAndSet(reserved, reserved + size));
 
-		// if allocation succeded, add the property to the batch
-		put(data, segment);
-
-		int preId;
-		if (!mFreeIds.isEmpty()) {
-			preId = mFreeIds.remove(0);
-			mProperties.set(preId, new Pair<>(segment, data));
-			mActiveProperties.set(preId, property.isActive());
-		} else {
-			preId = mProperties.size();
-			mProperties.add(new Pair<>(segment, data));
-			mActiveProperties.add(property.isActive());
-		}
-		final int id = preId;
+		// the vertices are allocated and put with the next frame
+		Slot slot = new Slot(property, size);
+		mProperties.put(property, slot);
+		slot.record(Slot.ADDED);
+		mPending.offer(slot);
 
 		property.addListener(new PropertyListener() {
 			public void onEvent(IProperty<?> p, PropertyEvent e) {
+				int event;
 				switch (e) {
 				case PROPERTY_CHANGED:
-					if (mActiveProperties.get(id)) {
-						Pair<BufferSegment, RenderData> prop = mProperties.get(id);
-						put(prop.getValue(), prop.getKey());
-					}
+					event = Slot.CHANGED;
 					break;
 				case PROPERTY_DISABLED:
-					mActiveProperties.set(id, false);
-					mIndicesDirty = true;
+					slot.mEnabled = false;
+					event = Slot.ACTIVITY;
 					break;
 				case PROPERTY_ENABLED:
-					mActiveProperties.set(id, true);
-					Pair<BufferSegment, RenderData> prop = mProperties.get(id);
-					put(prop.getValue(), prop.getKey());
-					mIndicesDirty = true;
+					slot.mEnabled = true;
+					event = Slot.ACTIVITY;
 					break;
 				case PROPERTY_REMOVED:
-					mProperties.get(id).getKey().clear();
-					mProperties.set(id, null);
-					mActiveProperties.set(id, false);
-					mFreeIds.add(id);
+					event = Slot.REMOVED;
 					p.removeListener(this);
+					// the room can be accepted again right away, as slots are
+					// added in the order they were queued, after this removal
+					mReserved.addAndGet(-slot.mSize);
 					break;
 				default:
 					// do nothing
-					break;
+					return;
 				}
+
+				// queued once, until the rendering Thread takes the events
+				if (slot.record(event))
+					mPending.offer(slot);
 			}
 		});
 
 		return true;
 	}
+
+	@Override
+	public void setVisible(IProperty<RenderData> property, boolean visible) {
+		Slot slot = mProperties.get(property);
+		if (slot == null || slot.mVisible == visible)
+			return;
+
+		slot.mVisible = visible;
+		// slots that were not added yet are written as they are with the next frame
+		if (slot.mId == -1)
+			return;
+
+		if (visible)
+			mChanged.set(slot.mId);
+		else
+			hide(slot);
+	}
+
+	/**
+	 * Hides the given {@link Slot}. The vertices stay where they are, only the
+	 * indices are replaced with degenerate triangles, and streamed vertices are
+	 * no longer written
+	 * 
+	 * @param slot
+	 */
+	private void hide(Slot slot) {
+		if (slot.mIndexHandle != IAllocator.INVALID_HANDLE)
+			mIndices.degenerate(slot.mIndexHandle);
+		if (slot.mSegment == null)
+			mStreamDirty = true;
+	}
+
+	/**
+	 * A Slot holds where the vertices and indices of a single
+	 * {@link RenderData} are kept, and the events of its property that were
+	 * not yet applied on the rendering Thread
+	 * 
+	 * @author Fredie
+	 *
+	 */
+	private static class Slot {
+
+		private static final int ADDED = 1;
+		private static final int CHANGED = 2;
+		private static final int ACTIVITY = 4;
+		private static final int REMOVED = 8;
+
+		private final IProperty<RenderData> mProperty;
+		private final RenderData mData;
+		private final int mSize;
+		// -1 until the slot was added on the rendering Thread
+		private int mId;
+
+		// the recorded events, the slot is queued while they are not 0
+		private final AtomicInteger mEvents;
+		// the activity of the property, applied to mActive with the next frame
+		private volatile boolean mEnabled;
+		private boolean mActive;
+		// whether the data was not culled
+		private boolean mVisible;
+
+		// either the segment of a static batch or the range in the streamed region
+		private BufferSegment mSegment;
+		private int mStreamHandle;
+
+		private int mIndexHandle;
+		// the vertex the indices were written relative to
+		private int mBase;
+
+		/**
+		 * Creates a new {@link Slot}
+		 * 
+		 * @param property
+		 * @param size
+		 *            the size of the vertices in bytes
+		 */
+		private Slot(IProperty<RenderData> property, int size) {
+			mProperty = property;
+			mData = property.get();
+			mSize = size;
+			mId = -1;
+			mEvents = new AtomicInteger();
+			mEnabled = property.isActive();
+			mVisible = true;
+			mStreamHandle = IAllocator.INVALID_HANDLE;
+			mIndexHandle = IAllocator.INVALID_HANDLE;
+		}
+
+		/**
+		 * 
+		 * @return whether the data of this {@link Slot} is rendered
+		 */
+		private boolean isShown() {
+			return mActive && mVisible;
+		}
+
+		/**
+		 * Records the given events. This method may be called from any Thread
+		 * 
+		 * @param events
+		 * @return whether no events were recorded before, so the slot has to be
+		 *         queued
+		 */
+		private boolean record(int events) {
+			int previous;
+			do {
+				previous = mEvents.get();
+			} while (!mEvents.compareAndSet(previous, previous | events));
+			return previous == 0;
+		}
+
+		/**
+		 * Takes the recorded events, the next recorded event queues the slot
+		 * again
+		 * 
+		 * @return the events
+		 */
+		private int take() {
+			return mEvents.getAndSet(0);
+		}
+	}
 }
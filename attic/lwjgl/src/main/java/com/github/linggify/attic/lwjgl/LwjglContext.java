@@ -3,6 +3,8 @@ package com.github.linggify.attic.lwjgl;
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -12,6 +14,7 @@ import org.lwjgl.opengl.GL;
 import org.lwjgl.system.MemoryUtil;
 
 import com.github.linggify.attic.exceptions.AtticRuntimeException;
+import com.github.linggify.attic.render.FrameStats;
 import com.github.linggify.attic.render.IBatch;
 import com.github.linggify.attic.render.IContext;
 import com.github.linggify.attic.render.IContext.TextureFormat;
@@ -68,6 +71,9 @@ public class LwjglContext implements IContext {
 	private Color[] mTargetClearColors;
 	private Color mClearColor;
 
+	private FrameStats mFrameStats;
+	private GLStateCache mState;
+
 	private final int[] mAllRenderTargets = new int[] { GL_COLOR_ATTACHMENT0, GL_COLOR_ATTACHMENT1,
 			GL_COLOR_ATTACHMENT2, GL_COLOR_ATTACHMENT3, GL_COLOR_ATTACHMENT4, GL_COLOR_ATTACHMENT5,
 			GL_COLOR_ATTACHMENT6, GL_COLOR_ATTACHMENT7, GL_COLOR_ATTACHMENT8, GL_COLOR_ATTACHMENT9,
@@ -84,6 +90,8 @@ public class LwjglContext implements IContext {
 	 */
 	public LwjglContext() {
 		GL.createCapabilities();
+		mFrameStats = new FrameStats();
+		mState = new GLStateCache(GLFunctions.LWJGL, mFrameStats);
 		
 		mData = new ArrayList<>();
 		mResources = new ArrayList<>();
@@ -190,7 +198,7 @@ public class LwjglContext implements IContext {
 	@Override
 	public void clearRenderTargets() {
 		boolean cleared = false;
-		glBindFramebuffer(GL_FRAMEBUFFER, mFramebufferHandle);
+		mState.bindFramebuffer(mFramebufferHandle);
 		for (int i = 0; i < mActiveRenderTargets.length; i++) {
 			if (mActiveRenderTargets[i] != 0) {
 				Color c = mTargetClearColors[i];
@@ -201,7 +209,7 @@ public class LwjglContext implements IContext {
 				cleared = true;
 			}
 		}
-		glBindFramebuffer(GL_FRAMEBUFFER, 0);
+		mState.bindFramebuffer(0);
 		if (!cleared) {
 			glClearColor(mClearColor.red(), mClearColor.green(), mClearColor.blue(), mClearColor.alpha());
 			glClear(GL_COLOR_BUFFER_BIT);
@@ -241,6 +249,7 @@ public class LwjglContext implements IContext {
 			mResources.set(handle, null);
 			mData.set(handle, null);
 			glDeleteTextures(realHandle);
+			mState.onTextureDeleted(realHandle);
 		}
 	}
 
@@ -273,7 +282,6 @@ public class LwjglContext implements IContext {
 			}
 
 			bindTexture(0, handle);
-			glActiveTexture(GL_TEXTURE0);
 
 			TextureData tdata = (TextureData) mData.get(handle);
 
@@ -308,9 +316,7 @@ public class LwjglContext implements IContext {
 			throw new AtticRuntimeException("Invalid texture-handle " + handle);
 
 		if (handle != 0) {
-			int realHandle = mResources.get(handle).getKey();
-			glActiveTexture(unit);
-			glBindTexture(GL_TEXTURE_2D, realHandle);
+			mState.bindTexture(unit, mResources.get(handle).getKey());
 		} else
 			unbindTexture(unit);
 
@@ -319,8 +325,7 @@ public class LwjglContext implements IContext {
 
 	@Override
 	public void unbindTexture(int unit) {
-		glActiveTexture(unit);
-		glBindTexture(GL_TEXTURE_2D, 0);
+		mState.bindTexture(unit, 0);
 	}
 
 	@Override
@@ -331,7 +336,7 @@ public class LwjglContext implements IContext {
 		if (!checkHandle(handle, Resource.TEXTURE))
 			throw new AtticRuntimeException("Invalid texture-handle " + handle);
 
-		glBindFramebuffer(GL_FRAMEBUFFER, mFramebufferHandle);
+		mState.bindFramebuffer(mFramebufferHandle);
 		if (handle != 0) {
 			int rHandle = mResources.get(handle).getKey();
 			glFramebufferTexture2D(GL_FRAMEBUFFER, mAllRenderTargets[target], GL_TEXTURE_2D, rHandle, 0);
@@ -339,7 +344,6 @@ public class LwjglContext implements IContext {
 			glFramebufferTexture2D(GL_FRAMEBUFFER, mAllRenderTargets[target], GL_TEXTURE_2D, 0, 0);
 		}
 		mActiveRenderTargets[target] = handle;
-		glBindFramebuffer(GL_FRAMEBUFFER, mFramebufferHandle);
 
 		return true;
 	}
@@ -451,9 +455,9 @@ public class LwjglContext implements IContext {
 			return false;
 
 		if (handle != 0)
-			glUseProgram(mResources.get(handle).getKey());
+			mState.useProgram(mResources.get(handle).getKey());
 		else
-			glUseProgram(0);
+			mState.useProgram(0);
 
 		mCurrentProgram = handle;
 		return true;
@@ -549,24 +553,57 @@ public class LwjglContext implements IContext {
 	}
 
 	@Override
-	public IBatch genBatch(boolean isStatic, VertexAttribute... attributes) {
+	public IBatch genBatch(BatchType type, boolean isStatic, VertexAttribute... attributes) {
+		if (type == BatchType.INSTANCED)
+			// create a batch holding up to 2^14 instances
+			return new LwjglInstancedBatch(16384, isStatic, mState, attributes);
+
 		// create a batch holding up to 2^16 vertices
-		return new LwjglBatch(65536, isStatic, attributes);
+		return new LwjglBatch(65536, isStatic, mState, attributes);
 	}
 
 	@Override
 	public void destroyBatch(IBatch batch) {
-		LwjglBatch lbatch = (LwjglBatch) batch;
-		lbatch.destroy();
+		if (batch != null)
+			((ILwjglBatch) batch).destroy();
 	}
 
 	@Override
 	public boolean renderBatch(IBatch batch) {
-		LwjglBatch lbatch = (LwjglBatch) batch;
-		lbatch.render(this);
+		return renderBatches(Collections.singletonList(batch));
+	}
+
+	/**
+	 * Uploads the changes of all batches first, so no draw waits for a buffer
+	 * update of the next batch. Afterwards every batch is drawn with a single
+	 * bind and draw call, the attribute locations are only bound when the
+	 * attributes differ from the previous batch
+	 */
+	@Override
+	public boolean renderBatches(List<IBatch> batches) {
+		for (IBatch batch : batches)
+			((ILwjglBatch) batch).prepare(mFrameStats);
+
+		String[] bound = null;
+		for (IBatch batch : batches) {
+			ILwjglBatch lwjglBatch = (ILwjglBatch) batch;
+			String[] names = lwjglBatch.attributeNames();
+			if (!Arrays.equals(bound, names)) {
+				for (int i = 0; i < names.length; i++)
+					setAttribute(names[i], i);
+				bound = names;
+			}
+			lwjglBatch.draw(mFrameStats);
+		}
+		mState.bindVertexArray(0);
 		return true;
 	}
 
+	@Override
+	public FrameStats getFrameStats() {
+		return mFrameStats;
+	}
+
 	/**
 	 * Stores data about a texture
 	 * 
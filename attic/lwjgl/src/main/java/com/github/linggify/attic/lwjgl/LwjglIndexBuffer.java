@@ -0,0 +1,258 @@
+package com.github.linggify.attic.lwjgl;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL15.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.lwjgl.system.MemoryUtil;
+
+import com.github.linggify.attic.exceptions.AtticRuntimeException;
+import com.github.linggify.attic.render.FrameStats;
+import com.github.linggify.attic.util.DirtyRanges;
+import com.github.linggify.attic.util.FreeListAllocator;
+import com.github.linggify.attic.util.IAllocator;
+
+/**
+ * A LwjglIndexBuffer keeps the indices of many meshes in a single GPU-side
+ * buffer. Every mesh owns a range of indices, that is rewritten in place when
+ * the mesh changes, so only the changed ranges are uploaded. Hidden and freed
+ * ranges are filled with degenerate triangles, that are drawn without
+ * producing any fragments. Uses 16-bit indices if all vertices can be
+ * addressed with them. The shadow copy is uploaded by {@link #flush}, so a
+ * LwjglIndexBuffer must only be used on the rendering Thread
+ *
+ * @author Fredie
+ *
+ */
+public class LwjglIndexBuffer {
+
+	private int mBufferHandle;
+	private int mGpuCapacity;
+	private final int mIndexSize;
+	private final int mUsage;
+	private GLStateCache mState;
+
+	private FreeListAllocator mAllocator;
+	private ByteBuffer mShadow;
+	private DirtyRanges mDirty;
+
+	/**
+	 * Creates a new {@link LwjglIndexBuffer} with room for the given amount of
+	 * indices, that grows when more are needed
+	 *
+	 * @param capacity
+	 *            the initial capacity in indices
+	 * @param vertexCount
+	 *            how many vertices are addressed by the indices
+	 * @param isStatic
+	 * @param state
+	 *            the {@link GLStateCache} to bind the buffer with
+	 */
+	public LwjglIndexBuffer(int capacity, int vertexCount, boolean isStatic, GLStateCache state) {
+		if (capacity <= 0)
+			throw new AtticRuntimeException("The capacity must be positive, but was " + capacity);
+
+		mBufferHandle = glGenBuffers();
+		if (mBufferHandle == 0)
+			throw new AtticRuntimeException("Failed to create GPU-side buffer");
+
+		mState = state;
+		mIndexSize = vertexCount <= 0x10000 ? 2 : 4;
+		mUsage = isStatic ? GL_STATIC_DRAW : GL_DYNAMIC_DRAW;
+		mShadow = MemoryUtil.memCalloc(capacity * mIndexSize).order(ByteOrder.nativeOrder());
+		mDirty = new DirtyRanges();
+
+		mAllocator = new FreeListAllocator(capacity * mIndexSize);
+		// indices do not depend on their position, so moved ranges are only uploaded again
+		mAllocator.setMoveListener((handle, from, to, length) -> move(from, to, length));
+	}
+
+	/**
+	 * Moves the given range within the shadow copy and marks the new range
+	 * dirty. The old range is left as it is, as it is free afterwards
+	 *
+	 * @param from
+	 * @param to
+	 * @param length
+	 */
+	private void move(int from, int to, int length) {
+		for (int i = 0; i < length; i++)
+			mShadow.put(to + i, mShadow.get(from + i));
+		mDirty.add(to, length);
+	}
+
+	/**
+	 * Allocates a range of the given amount of indices, growing this
+	 * {@link LwjglIndexBuffer} if there is not enough space. The range is
+	 * filled with degenerate triangles
+	 *
+	 * @param count
+	 * @return the handle of the range
+	 */
+	public int allocate(int count) {
+		int length = count * mIndexSize;
+		int handle = mAllocator.allocate(length);
+		if (handle == IAllocator.INVALID_HANDLE) {
+			grow(Math.max(mAllocator.capacity() * 2, mAllocator.end() + length));
+			handle = mAllocator.allocate(length);
+		}
+
+		degenerate(handle);
+		return handle;
+	}
+
+	/**
+	 * Grows the shadow copy and the allocator to the given amount of bytes. The
+	 * GPU-side buffer is recreated with the next {@link #flush(FrameStats)}
+	 *
+	 * @param capacity
+	 */
+	private void grow(int capacity) {
+		ByteBuffer shadow = MemoryUtil.memCalloc(capacity).order(ByteOrder.nativeOrder());
+		mShadow.clear();
+		shadow.put(mShadow);
+		shadow.clear();
+		MemoryUtil.memFree(mShadow);
+		mShadow = shadow;
+		mAllocator.grow(capacity);
+	}
+
+	/**
+	 * Writes the given indices into the range with the given handle
+	 *
+	 * @param handle
+	 * @param indices
+	 * @param base
+	 *            the vertex added to every index
+	 */
+	public void set(int handle, int[] indices, int base) {
+		int offset = mAllocator.offset(handle);
+		int length = mAllocator.length(handle);
+		if (indices.length * mIndexSize != length)
+			throw new AtticRuntimeException(
+					"Expected " + length / mIndexSize + " indices but got " + indices.length);
+
+		if (mIndexSize == 2) {
+			for (int i = 0; i < indices.length; i++)
+				mShadow.putShort(offset + i * 2, (short) (base + indices[i]));
+		} else {
+			for (int i = 0; i < indices.length; i++)
+				mShadow.putInt(offset + i * 4, base + indices[i]);
+		}
+		mDirty.add(offset, length);
+	}
+
+	/**
+	 * Fills the range with the given handle with degenerate triangles, so
+	 * nothing is drawn for it
+	 *
+	 * @param handle
+	 */
+	public void degenerate(int handle) {
+		int offset = mAllocator.offset(handle);
+		int length = mAllocator.length(handle);
+		for (int i = 0; i < length; i++)
+			mShadow.put(offset + i, (byte) 0);
+		mDirty.add(offset, length);
+	}
+
+	/**
+	 * Frees the range with the given handle
+	 *
+	 * @param handle
+	 */
+	public void free(int handle) {
+		degenerate(handle);
+		mAllocator.free(handle);
+	}
+
+	/**
+	 *
+	 * @param handle
+	 * @return how many indices the range with the given handle contains
+	 */
+	public int count(int handle) {
+		return mAllocator.length(handle) / mIndexSize;
+	}
+
+	/**
+	 * Moves ranges towards the front as specified in
+	 * {@link IAllocator#defragment(int)}, so fewer degenerate triangles are
+	 * drawn
+	 *
+	 * @param budget
+	 *            the maximum amount of indices to move
+	 * @return how many indices were moved
+	 */
+	public int defragment(int budget) {
+		return mAllocator.defragment(budget * mIndexSize) / mIndexSize;
+	}
+
+	/**
+	 * Uploads all changes since the last flush, merging adjacent changes, so
+	 * every contiguous range is uploaded with a single call. Uploads every
+	 * index once after this {@link LwjglIndexBuffer} grew
+	 *
+	 * @param stats
+	 *            the {@link FrameStats} to record the uploads in
+	 */
+	public void flush(FrameStats stats) {
+		// element array bindings belong to the bound vertex array, so upload through another target
+		mState.bindBuffer(GL_ARRAY_BUFFER, mBufferHandle);
+		if (mGpuCapacity < mAllocator.capacity()) {
+			mShadow.clear();
+			glBufferData(GL_ARRAY_BUFFER, mShadow, mUsage);
+			stats.recordUpload(mShadow.capacity());
+			mGpuCapacity = mAllocator.capacity();
+		} else if (!mDirty.isEmpty()) {
+			int count = mDirty.merge();
+			for (int i = 0; i < count; i++) {
+				int offset = mDirty.offset(i);
+				int length = mDirty.length(i);
+				mShadow.limit(offset + length);
+				mShadow.position(offset);
+				glBufferSubData(GL_ARRAY_BUFFER, offset, mShadow);
+				stats.recordUpload(length);
+			}
+		}
+		mDirty.clear();
+	}
+
+	/**
+	 *
+	 * @return how many indices have to be drawn to draw every range
+	 */
+	public int drawCount() {
+		return mAllocator.end() / mIndexSize;
+	}
+
+	/**
+	 *
+	 * @return the type of the indices, either GL_UNSIGNED_SHORT or
+	 *         GL_UNSIGNED_INT
+	 */
+	public int type() {
+		return mIndexSize == 2 ? GL_UNSIGNED_SHORT : GL_UNSIGNED_INT;
+	}
+
+	/**
+	 * Binds this {@link LwjglIndexBuffer} to the given target
+	 *
+	 * @param target
+	 */
+	public void bindTo(int target) {
+		mState.bindBuffer(target, mBufferHandle);
+	}
+
+	/**
+	 * Destroys this {@link LwjglIndexBuffer} making it unusable in the process
+	 */
+	public void destroy() {
+		glDeleteBuffers(mBufferHandle);
+		mState.onBufferDeleted(mBufferHandle);
+		MemoryUtil.memFree(mShadow);
+		mShadow = null;
+	}
+}
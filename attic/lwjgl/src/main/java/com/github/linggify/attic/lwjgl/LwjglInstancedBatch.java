@@ -0,0 +1,611 @@
+package com.github.linggify.attic.lwjgl;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL31.*;
+import static org.lwjgl.opengl.GL33.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.lwjgl.system.MemoryUtil;
+
+import com.github.linggify.attic.logic.IProperty;
+import com.github.linggify.attic.logic.IProperty.PropertyEvent;
+import com.github.linggify.attic.logic.IProperty.PropertyListener;
+import com.github.linggify.attic.render.FrameStats;
+import com.github.linggify.attic.render.IContext.InstanceAttribute;
+import com.github.linggify.attic.render.IContext.VertexAttribute;
+import com.github.linggify.attic.render.RenderData;
+import com.github.linggify.attic.render.VertexWriter;
+import com.github.linggify.attic.util.MpscQueue;
+
+/**
+ * A LwjglInstancedBatch renders instanced {@link RenderData} sharing the same
+ * vertices and indices. The vertices are uploaded once, after that only the
+ * {@link InstanceAttribute}s of every RenderData are streamed, which are
+ * {@link RenderData#INSTANCE_SIZE} bytes per instance. Dynamic batches
+ * write all instances into a {@link LwjglStreamBuffer} every frame, static
+ * batches upload them only when a property changes.
+ * 
+ * Properties are accepted and notify their listeners on the Thread of their
+ * Genius, so both only record the events of an {@link Instance}. The instance
+ * buffer and the slots are only touched by {@link #prepare} and
+ * {@link #setVisible} on the rendering Thread
+ * 
+ * @author Fredie
+ *
+ */
+public class LwjglInstancedBatch implements ILwjglBatch {
+
+	private static final InstanceAttribute[] INSTANCE_ATTRIBUTES = InstanceAttribute.values();
+
+	private final int mCapacity;
+
+	private Set<VertexAttribute> mAttributeSet;
+	private VertexAttribute[] mAttributes;
+	private String[] mAttributeNames;
+	private int mVertexSize;
+
+	private int mArrayHandle;
+	private int mVertexHandle;
+	private int mIndicesHandle;
+	private int mInstanceHandle;
+	private LwjglStreamBuffer mStream;
+	private GLStateCache mState;
+
+	// the shared geometry, null until the first RenderData is accepted
+	private ByteBuffer mGeometry;
+	private int[] mIndices;
+	private boolean mGeometryUploaded;
+
+	private List<IProperty<RenderData>> mProperties;
+	// accepted on the Genius Thread, looked up on the rendering Thread
+	private Map<IProperty<RenderData>, Instance> mPropertyInstances;
+	// instances with events that were not yet applied
+	private MpscQueue<Instance> mPending;
+	// ids of removed instances, there are never more ids than the capacity
+	private int[] mFreeIds;
+	private int mFreeIdCount;
+	private AtomicInteger mPropertyCount;
+
+	// active instances are kept packed at the front of the instance buffer
+	private int[] mSlots;
+	private int[] mIds;
+	private int mInstanceCount;
+
+	private ByteBuffer mInstances;
+	private VertexWriter mWriter;
+	private boolean mInstancesDirty;
+
+	/**
+	 * Creates a new {@link LwjglInstancedBatch} holding up to the given amount
+	 * of instances
+	 * 
+	 * @param capacity
+	 * @param isStatic
+	 * @param attributes
+	 *            the {@link VertexAttribute}s of the shared vertices
+	 */
+	public LwjglInstancedBatch(int capacity, boolean isStatic, GLStateCache state, VertexAttribute... attributes) {
+		mCapacity = capacity;
+		mState = state;
+
+		mAttributes = attributes;
+		mAttributeSet = new HashSet<>(Arrays.asList(attributes));
+		for (VertexAttribute attribute : mAttributes)
+			mVertexSize += attribute.offset();
+
+		mProperties = new ArrayList<>();
+		mPropertyInstances = new ConcurrentHashMap<>();
+		mPending = new MpscQueue<>();
+		mFreeIds = new int[capacity];
+		mPropertyCount = new AtomicInteger();
+		mSlots = new int[capacity];
+		mIds = new int[capacity];
+
+		mArrayHandle = glGenVertexArrays();
+		mVertexHandle = glGenBuffers();
+		mIndicesHandle = glGenBuffers();
+
+		mState.bindVertexArray(mArrayHandle);
+
+		// per-vertex attributes, advancing with every vertex
+		mState.bindBuffer(GL_ARRAY_BUFFER, mVertexHandle);
+		int offset = 0;
+		for (int i = 0; i < mAttributes.length; i++) {
+			VertexAttribute attribute = mAttributes[i];
+			LwjglVertexArray.pointer(i, attribute.type(), attribute.elementCount(), attribute.normalized(),
+					mVertexSize, offset);
+			offset += attribute.offset();
+		}
+
+		// per-instance attributes, advancing with every instance
+		for (int i = 0; i < INSTANCE_ATTRIBUTES.length; i++)
+			glVertexAttribDivisor(mAttributes.length + i, 1);
+
+		// enabled arrays are part of the vertex array, so they never have to be enabled again
+		mAttributeNames = new String[mAttributes.length + INSTANCE_ATTRIBUTES.length];
+		for (int i = 0; i < mAttributes.length; i++)
+			mAttributeNames[i] = mAttributes[i].attribute();
+		for (int i = 0; i < INSTANCE_ATTRIBUTES.length; i++)
+			mAttributeNames[mAttributes.length + i] = INSTANCE_ATTRIBUTES[i].attribute();
+		for (int i = 0; i < mAttributeNames.length; i++)
+			glEnableVertexAttribArray(i);
+
+		int size = capacity * RenderData.INSTANCE_SIZE;
+		if (isStatic) {
+			mInstances = MemoryUtil.memAlloc(size);
+			mWriter = new VertexWriter(mInstances);
+
+			mInstanceHandle = glGenBuffers();
+			mState.bindBuffer(GL_ARRAY_BUFFER, mInstanceHandle);
+			glBufferData(GL_ARRAY_BUFFER, size, GL_STATIC_DRAW);
+			instancePointers(0);
+		} else {
+			// the pointers move to the written region every frame
+			mStream = new LwjglStreamBuffer(size, state);
+		}
+		mState.bindBuffer(GL_ARRAY_BUFFER, 0);
+
+		mState.bindBuffer(GL_ELEMENT_ARRAY_BUFFER, mIndicesHandle);
+		mState.bindVertexArray(0);
+	}
+
+	/**
+	 * Sets the pointers of the {@link InstanceAttribute}s into the currently
+	 * bound buffer, with the first instance at the given offset. The vertex
+	 * array has to be bound
+	 * 
+	 * @param offset
+	 */
+	private void instancePointers(long offset) {
+		for (int i = 0; i < INSTANCE_ATTRIBUTES.length; i++) {
+			InstanceAttribute attribute = INSTANCE_ATTRIBUTES[i];
+			LwjglVertexArray.pointer(mAttributes.length + i, attribute.type(), attribute.elementCount(),
+					attribute.normalized(), RenderData.INSTANCE_SIZE, offset);
+			offset += attribute.offset();
+		}
+	}
+
+	/**
+	 * Uses the vertices and indices of the given {@link RenderData} as the
+	 * geometry shared by all instances. It is uploaded when the first instance
+	 * is added
+	 * 
+	 * @param data
+	 */
+	private void setGeometry(RenderData data) {
+		ByteBuffer geometry = ByteBuffer.allocateDirect(mVertexSize * data.getVertexCount())
+				.order(ByteOrder.nativeOrder());
+		putVertices(data, geometry);
+		geometry.flip();
+		mIndices = data.getIndices().clone();
+		mGeometry = geometry;
+	}
+
+	/**
+	 * Puts the vertices of the given {@link RenderData} into the given buffer,
+	 * interleaved in the order of the attributes of this batch. Runs on the
+	 * Genius Thread, so the reused views of the RenderData are not touched
+	 * 
+	 * @param data
+	 * @param target
+	 */
+	private void putVertices(RenderData data, ByteBuffer target) {
+		ByteBuffer vertices = data.getVertices();
+		if (data.hasLayout(mAttributes)) {
+			target.put(vertices);
+			return;
+		}
+
+		int size = data.getVertexSize();
+		for (int i = 0; i < data.getVertexCount(); i++) {
+			for (VertexAttribute attribute : mAttributes) {
+				int position = i * size + data.offsetOf(attribute);
+				vertices.limit(position + attribute.offset()).position(position);
+				target.put(vertices);
+			}
+		}
+	}
+
+	/**
+	 * Uploads the shared geometry
+	 */
+	private void uploadGeometry() {
+		mState.bindBuffer(GL_ARRAY_BUFFER, mVertexHandle);
+		glBufferData(GL_ARRAY_BUFFER, mGeometry, GL_STATIC_DRAW);
+
+		mState.bindVertexArray(mArrayHandle);
+		glBufferData(GL_ELEMENT_ARRAY_BUFFER, mIndices, GL_STATIC_DRAW);
+		mState.bindVertexArray(0);
+		mGeometryUploaded = true;
+	}
+
+	/**
+	 * 
+	 * @param data
+	 * @return whether the given {@link RenderData} uses the shared geometry of
+	 *         this {@link LwjglInstancedBatch}
+	 */
+	private boolean hasGeometry(RenderData data) {
+		if (!Arrays.equals(mIndices, data.getIndices()))
+			return false;
+		if (data.getVertexCount() * mVertexSize != mGeometry.capacity())
+			return false;
+		if (data.hasLayout(mAttributes))
+			return mGeometry.equals(data.getVertices());
+
+		ByteBuffer vertices = ByteBuffer.allocate(mGeometry.capacity()).order(ByteOrder.nativeOrder());
+		putVertices(data, vertices);
+		vertices.flip();
+		return mGeometry.equals(vertices);
+	}
+
+	/**
+	 * Writes the instance of the property with the given id into its slot.
+	 * Streamed instances are written with every frame instead
+	 * 
+	 * @param id
+	 */
+	private void writeInstance(int id) {
+		if (mStream != null)
+			return;
+
+		mInstances.clear();
+		mInstances.position(mSlots[id] * RenderData.INSTANCE_SIZE);
+		mProperties.get(id).get().writeInstance(mWriter);
+		mInstancesDirty = true;
+	}
+
+	/**
+	 * Adds the property with the given id to the rendered instances
+	 * 
+	 * @param id
+	 */
+	private void addInstance(int id) {
+		mSlots[id] = mInstanceCount;
+		mIds[mInstanceCount++] = id;
+		writeInstance(id);
+	}
+
+	/**
+	 * Removes the property with the given id from the rendered instances,
+	 * moving the last instance into its slot
+	 * 
+	 * @param id
+	 */
+	private void removeInstance(int id) {
+		int slot = mSlots[id];
+		if (slot == -1)
+			return;
+
+		int last = --mInstanceCount;
+		if (slot != last) {
+			if (mInstances != null) {
+				int size = RenderData.INSTANCE_SIZE;
+				ByteBuffer moved = mInstances.duplicate();
+				moved.limit((last + 1) * size).position(last * size);
+				mInstances.clear();
+				mInstances.position(slot * size);
+				mInstances.put(moved);
+			}
+
+			mIds[slot] = mIds[last];
+			mSlots[mIds[slot]] = slot;
+			mInstancesDirty = true;
+		}
+		mSlots[id] = -1;
+	}
+
+	/**
+	 * Writes all instances into the next region of the
+	 * {@link LwjglStreamBuffer}, as dynamic instances are expected to move
+	 * every frame, and points the instance-attributes at it
+	 * 
+	 * @param stats
+	 */
+	private void stream(FrameStats stats) {
+		ByteBuffer region = mStream.begin();
+		if (mWriter == null)
+			mWriter = new VertexWriter(region);
+		else
+			mWriter.setBuffer(region);
+
+		for (int slot = 0; slot < mInstanceCount; slot++)
+			mProperties.get(mIds[slot]).get().writeInstance(mWriter);
+		stats.recordUpload(region.position());
+		int offset = mStream.end();
+
+		mState.bindVertexArray(mArrayHandle);
+		mStream.bindTo(GL_ARRAY_BUFFER);
+		instancePointers(offset);
+		mState.bindVertexArray(0);
+	}
+
+	/**
+	 * Applies the events recorded since the last frame. Only the instances
+	 * queued before this call are applied, events that are recorded meanwhile
+	 * are applied with the next frame
+	 */
+	private void applyPending() {
+		for (int i = mPending.size(); i > 0; i--) {
+			Instance instance = mPending.poll();
+			if (instance == null)
+				break;
+
+			int events = instance.take();
+			if ((events & Instance.REMOVED) != 0) {
+				remove(instance);
+				continue;
+			}
+			if ((events & Instance.ADDED) != 0)
+				add(instance);
+
+			int id = instance.mId;
+			if ((events & Instance.ACTIVITY) != 0) {
+				if (!instance.mEnabled)
+					removeInstance(id);
+				else if (mSlots[id] == -1 && instance.mVisible)
+					addInstance(id);
+			}
+			if ((events & Instance.CHANGED) != 0 && mSlots[id] != -1)
+				writeInstance(id);
+		}
+	}
+
+	/**
+	 * Assigns the given {@link Instance} an id and adds it to the rendered
+	 * instances if it is shown
+	 * 
+	 * @param instance
+	 */
+	private void add(Instance instance) {
+		int id;
+		if (mFreeIdCount > 0) {
+			id = mFreeIds[--mFreeIdCount];
+			mProperties.set(id, instance.mProperty);
+		} else {
+			id = mProperties.size();
+			mProperties.add(instance.mProperty);
+		}
+		instance.mId = id;
+		mSlots[id] = -1;
+
+		if (!mGeometryUploaded)
+			uploadGeometry();
+		if (instance.mEnabled && instance.mVisible)
+			addInstance(id);
+	}
+
+	/**
+	 * Removes the given {@link Instance} and releases its id for the next
+	 * added instance. The room for another property was already released when
+	 * it was removed
+	 * 
+	 * @param instance
+	 */
+	private void remove(Instance instance) {
+		int id = instance.mId;
+		if (id != -1) {
+			removeInstance(id);
+			mProperties.set(id, null);
+			mFreeIds[mFreeIdCount++] = id;
+		}
+
+		mPropertyInstances.remove(instance.mProperty, instance);
+	}
+
+	@Override
+	public void prepare(FrameStats stats) {
+		applyPending();
+		if (mInstanceCount == 0)
+			return;
+
+		if (mStream != null) {
+			stream(stats);
+		} else if (mInstancesDirty) {
+			mInstances.clear();
+			mInstances.limit(mInstanceCount * RenderData.INSTANCE_SIZE);
+			mState.bindBuffer(GL_ARRAY_BUFFER, mInstanceHandle);
+			glBufferSubData(GL_ARRAY_BUFFER, 0, mInstances);
+			stats.recordUpload(mInstances.limit());
+			mInstancesDirty = false;
+		}
+	}
+
+	@Override
+	public String[] attributeNames() {
+		return mAttributeNames;
+	}
+
+	@Override
+	public void draw(FrameStats stats) {
+		if (mInstanceCount == 0)
+			return;
+
+		mState.bindVertexArray(mArrayHandle);
+		glDrawElementsInstanced(GL_TRIANGLES, mIndices.length, GL_UNSIGNED_INT, 0, mInstanceCount);
+		stats.recordDraw();
+	}
+
+	@Override
+	public void destroy() {
+		mProperties.clear();
+		mPropertyInstances.clear();
+		mFreeIdCount = 0;
+		mInstanceCount = 0;
+		mAttributes = null;
+		mIndices = null;
+		mGeometry = null;
+
+		glDeleteBuffers(mVertexHandle);
+		mState.onBufferDeleted(mVertexHandle);
+		glDeleteBuffers(mIndicesHandle);
+		mState.onBufferDeleted(mIndicesHandle);
+		glDeleteVertexArrays(mArrayHandle);
+		mState.onVertexArrayDeleted(mArrayHandle);
+		if (mStream != null) {
+			mStream.destroy();
+		} else {
+			glDeleteBuffers(mInstanceHandle);
+			mState.onBufferDeleted(mInstanceHandle);
+			MemoryUtil.memFree(mInstances);
+			mInstances = null;
+		}
+	}
+
+	@Override
+	public boolean accept(IProperty<RenderData> property) {
+		RenderData data = property.get();
+
+		// only instanced renderdata with matching attributes can share the vertices
+		if (!data.isInstanced() || !mAttributeSet.equals(data.getAttributes()) || data.getIndices() == null)
+			return false;
+		if (mGeometry != null && !hasGeometry(data))
+			return false;
+
+		int count;
+		do {
+			count = mPropertyCount.get();
+			if (count == mCapacity)
+				return false;
+		} while (!mPropertyCount.compareAndSet(count, count + 1));
+
+		if (mGeometry == null)
+			setGeometry(data);
+
+		// the instance is added with the next frame
+		Instance instance = new Instance(property);
+		mPropertyInstances.put(property, instance);
+		instance.record(Instance.ADDED);
+		mPending.offer(instance);
+
+		property.addListener(new PropertyListener() {
+			public void onEvent(IProperty<?> p, PropertyEvent e) {
+				int event;
+				switch (e) {
+				case PROPERTY_CHANGED:
+					event = Instance.CHANGED;
+					break;
+				case PROPERTY_DISABLED:
+					instance.mEnabled = false;
+					event = Instance.ACTIVITY;
+					break;
+				case PROPERTY_ENABLED:
+					instance.mEnabled = true;
+					event = Instance.ACTIVITY;
+					break;
+				case PROPERTY_REMOVED:
+					event = Instance.REMOVED;
+					p.removeListener(this);
+					// the room can be accepted again right away, as instances
+					// are added in the order they were queued, after this removal
+					mPropertyCount.decrementAndGet();
+					break;
+				default:
+					// do nothing
+					return;
+				}
+
+				// queued once, until the rendering Thread takes the events
+				if (instance.record(event))
+					mPending.offer(instance);
+			}
+		});
+
+		return true;
+	}
+
+	@Override
+	public void setVisible(IProperty<RenderData> property, boolean visible) {
+		Instance instance = mPropertyInstances.get(property);
+		if (instance == null || instance.mVisible == visible)
+			return;
+
+		instance.mVisible = visible;
+		// instances that were not added yet are shown or hidden when they are added
+		int id = instance.mId;
+		if (id == -1)
+			return;
+
+		if (!visible)
+			removeInstance(id);
+		else if (mSlots[id] == -1 && instance.mEnabled)
+			addInstance(id);
+	}
+
+	/**
+	 * An Instance holds the id of a single accepted property, and its events
+	 * that were not yet applied on the rendering Thread
+	 * 
+	 * @author Fredie
+	 *
+	 */
+	private static class Instance {
+
+		private static final int ADDED = 1;
+		private static final int CHANGED = 2;
+		private static final int ACTIVITY = 4;
+		private static final int REMOVED = 8;
+
+		private final IProperty<RenderData> mProperty;
+		// -1 until the instance was added on the rendering Thread
+		private int mId;
+
+		// the recorded events, the instance is queued while they are not 0
+		private final AtomicInteger mEvents;
+		// the activity of the property, applied with the next frame
+		private volatile boolean mEnabled;
+		// whether the property was not culled
+		private boolean mVisible;
+
+		/**
+		 * Creates a new {@link Instance}
+		 * 
+		 * @param property
+		 */
+		private Instance(IProperty<RenderData> property) {
+			mProperty = property;
+			mId = -1;
+			mEvents = new AtomicInteger();
+			mEnabled = property.isActive();
+			mVisible = true;
+		}
+
+		/**
+		 * Records the given events. This method may be called from any Thread
+		 * 
+		 * @param events
+		 * @return whether no events were recorded before, so the instance has
+		 *         to be queued
+		 */
+		private boolean record(int events) {
+			int previous;
+			do {
+				previous = mEvents.get();
+			} while (!mEvents.compareAndSet(previous, previous | events));
+			return previous == 0;
+		}
+
+		/**
+		 * Takes the recorded events, the next recorded event queues the
+		 * instance again
+		 * 
+		 * @return the events
+		 */
+		private int take() {
+			return mEvents.getAndSet(0);
+		}
+	}
+}
@@ -0,0 +1,226 @@
+package com.github.linggify.attic.lwjgl;
+
+import static org.lwjgl.opengl.ARBBufferStorage.*;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL32.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.lwjgl.opengl.GL;
+
+import com.github.linggify.attic.exceptions.AtticRuntimeException;
+
+/**
+ * A LwjglStreamBuffer is a GPU-side buffer for data that is rewritten every
+ * frame. It is split into {@link #REGIONS} regions, so a new region can be
+ * written while the graphics hardware still reads the previous ones.
+ * <p>
+ * If ARB_buffer_storage is supported, the buffer is mapped once persistently
+ * and coherently, and fences make sure a region is no longer read before it
+ * is written again. Otherwise every region is mapped unsynchronized, and the
+ * storage is orphaned whenever the first region is used again.
+ *
+ * @author Fredie
+ *
+ */
+public class LwjglStreamBuffer {
+
+	/** How many regions a {@link LwjglStreamBuffer} is split into */
+	public static final int REGIONS = 3;
+
+	// how long to wait for a fence per try, in nanoseconds
+	private static final long FENCE_TIMEOUT = 1000000;
+
+	private int mBufferHandle;
+	private GLStateCache mState;
+	private final int mRegionSize;
+	private final boolean mPersistent;
+
+	private ByteBuffer[] mRegions;
+	private long[] mFences;
+	private ByteBuffer mMapping;
+
+	private int mRegion;
+	private int mPrevious;
+	private ByteBuffer mCurrent;
+
+	/**
+	 * Creates a new {@link LwjglStreamBuffer} with {@link #REGIONS} regions of
+	 * the given size (in bytes)
+	 *
+	 * @param regionSize
+	 * @param state
+	 *            the {@link GLStateCache} to bind the buffer with
+	 */
+	public LwjglStreamBuffer(int regionSize, GLStateCache state) {
+		if (regionSize <= 0)
+			throw new AtticRuntimeException("The region size must be positive, but was " + regionSize);
+
+		mBufferHandle = glGenBuffers();
+		if (mBufferHandle == 0)
+			throw new AtticRuntimeException("Failed to create GPU-side buffer");
+
+		mState = state;
+		mRegionSize = regionSize;
+		mPersistent = GL.getCapabilities().GL_ARB_buffer_storage;
+		mFences = new long[REGIONS];
+		mPrevious = -1;
+
+		int size = regionSize * REGIONS;
+		mState.bindBuffer(GL_ARRAY_BUFFER, mBufferHandle);
+		if (mPersistent) {
+			int flags = GL_MAP_WRITE_BIT | GL_MAP_PERSISTENT_BIT | GL_MAP_COHERENT_BIT;
+			glBufferStorage(GL_ARRAY_BUFFER, size, flags);
+			ByteBuffer mapping = glMapBufferRange(GL_ARRAY_BUFFER, 0, size, flags);
+			if (mapping == null)
+				throw new AtticRuntimeException("Failed to map GPU-side buffer");
+
+			// slice the regions once, so writing them creates no garbage
+			mRegions = new ByteBuffer[REGIONS];
+			for (int i = 0; i < REGIONS; i++) {
+				mapping.limit((i + 1) * regionSize);
+				mapping.position(i * regionSize);
+				mRegions[i] = mapping.slice().order(ByteOrder.nativeOrder());
+			}
+			mMapping = mapping;
+		} else {
+			glBufferData(GL_ARRAY_BUFFER, size, GL_STREAM_DRAW);
+		}
+		mState.bindBuffer(GL_ARRAY_BUFFER, 0);
+	}
+
+	/**
+	 * Starts writing the next region. Fences the region written before, so
+	 * all draw calls using it have to be issued before this method is called
+	 * again. Blocks if the graphics hardware still reads the next region
+	 *
+	 * @return the region to write into, with its position at 0 and its limit
+	 *         at the size of a region
+	 */
+	public ByteBuffer begin() {
+		if (mCurrent != null)
+			throw new AtticRuntimeException("The LwjglStreamBuffer is already being written");
+
+		if (mPersistent) {
+			if (mPrevious != -1)
+				mFences[mPrevious] = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+			await(mRegion);
+			mCurrent = mRegions[mRegion];
+		} else {
+			mState.bindBuffer(GL_ARRAY_BUFFER, mBufferHandle);
+			// orphan the storage, regions still read by the hardware keep their data
+			if (mRegion == 0)
+				glBufferData(GL_ARRAY_BUFFER, mRegionSize * REGIONS, GL_STREAM_DRAW);
+			mMapping = glMapBufferRange(GL_ARRAY_BUFFER, mRegion * mRegionSize, mRegionSize,
+					GL_MAP_WRITE_BIT | GL_MAP_INVALIDATE_RANGE_BIT | GL_MAP_UNSYNCHRONIZED_BIT, mMapping);
+			if (mMapping == null)
+				throw new AtticRuntimeException("Failed to map GPU-side buffer");
+
+			mCurrent = mMapping.order(ByteOrder.nativeOrder());
+		}
+
+		mCurrent.clear();
+		return mCurrent;
+	}
+
+	/**
+	 * Waits until the graphics hardware no longer reads the given region
+	 *
+	 * @param region
+	 */
+	private void await(int region) {
+		long fence = mFences[region];
+		if (fence == 0)
+			return;
+
+		int status = glClientWaitSync(fence, GL_SYNC_FLUSH_COMMANDS_BIT, FENCE_TIMEOUT);
+		while (status == GL_TIMEOUT_EXPIRED)
+			status = glClientWaitSync(fence, 0, FENCE_TIMEOUT);
+
+		glDeleteSync(fence);
+		mFences[region] = 0;
+		if (status == GL_WAIT_FAILED)
+			throw new AtticRuntimeException("Failed to wait for the GPU-side buffer");
+	}
+
+	/**
+	 * Finishes writing the current region
+	 *
+	 * @return the offset of the written region in the buffer (in bytes)
+	 */
+	public int end() {
+		if (mCurrent == null)
+			throw new AtticRuntimeException("The LwjglStreamBuffer is not being written");
+
+		if (!mPersistent) {
+			mState.bindBuffer(GL_ARRAY_BUFFER, mBufferHandle);
+			glUnmapBuffer(GL_ARRAY_BUFFER);
+		}
+
+		int offset = mRegion * mRegionSize;
+		mCurrent = null;
+		mPrevious = mRegion;
+		mRegion = (mRegion + 1) % REGIONS;
+		return offset;
+	}
+
+	/**
+	 *
+	 * @return the size of a single region in bytes
+	 */
+	public int regionSize() {
+		return mRegionSize;
+	}
+
+	/**
+	 *
+	 * @return whether the buffer is mapped persistently
+	 */
+	public boolean isPersistent() {
+		return mPersistent;
+	}
+
+	/**
+	 * Binds this {@link LwjglStreamBuffer} to the given target
+	 *
+	 * @param target
+	 */
+	public void bindTo(int target) {
+		mState.bindBuffer(target, mBufferHandle);
+	}
+
+	/**
+	 * unbinds the currently bound buffer from the given target
+	 *
+	 * @param target
+	 */
+	public void unbindFrom(int target) {
+		mState.bindBuffer(target, 0);
+	}
+
+	/**
+	 * Destroys this {@link LwjglStreamBuffer} making it unusable in the
+	 * process
+	 */
+	public void destroy() {
+		for (int i = 0; i < REGIONS; i++) {
+			if (mFences[i] != 0)
+				glDeleteSync(mFences[i]);
+			mFences[i] = 0;
+		}
+
+		if (mPersistent || mCurrent != null) {
+			mState.bindBuffer(GL_ARRAY_BUFFER, mBufferHandle);
+			glUnmapBuffer(GL_ARRAY_BUFFER);
+			mState.bindBuffer(GL_ARRAY_BUFFER, 0);
+		}
+
+		mRegions = null;
+		mMapping = null;
+		mCurrent = null;
+		glDeleteBuffers(mBufferHandle);
+		mState.onBufferDeleted(mBufferHandle);
+	}
+}
@@ -1,7 +1,11 @@
 package com.github.linggify.attic.lwjgl;
 
+import java.util.function.IntConsumer;
+
+import com.github.linggify.attic.exceptions.AtticRuntimeException;
 import com.github.linggify.attic.lwjgl.LwjglVertexBuffer.BufferSegment;
-import com.github.linggify.attic.render.IContext;
+import com.github.linggify.attic.render.FrameStats;
+import com.github.linggify.attic.render.IContext.ElementType;
 import com.github.linggify.attic.render.IContext.VertexAttribute;
 
 import static org.lwjgl.opengl.GL11.*;
@@ -12,102 +16,178 @@ import static org.lwjgl.opengl.GL20.*;
 public class LwjglVertexArray {
 
 	private int mArrayHandle;
-	private int mIndicesHandle;
+	private LwjglIndexBuffer mIndices;
 	private LwjglVertexBuffer mBuffer;
+	private LwjglStreamBuffer mStream;
+	private GLStateCache mState;
 	private VertexAttribute[] mAttributes;
-	
+	private String[] mAttributeNames;
+
 	/**
 	 * Creates a new {@link LwjglVertexArray} using the given {@link LwjglVertexBuffer}
 	 * @param buffer
+	 * @param indices
+	 * @param state the {@link GLStateCache} to bind the vertex array with
 	 */
-	public LwjglVertexArray(LwjglVertexBuffer buffer, VertexAttribute...attributes) {
-		mAttributes = attributes;
+	public LwjglVertexArray(LwjglVertexBuffer buffer, LwjglIndexBuffer indices, GLStateCache state,
+			VertexAttribute...attributes) {
 		mBuffer = buffer;
-		
+		mState = state;
+		create(buffer::bindTo, indices, attributes);
+	}
+
+	/**
+	 * Creates a new {@link LwjglVertexArray} using the given {@link LwjglStreamBuffer}. The vertices
+	 * of the written region are selected by the base vertex of the draw call
+	 * @param stream
+	 * @param indices
+	 * @param state the {@link GLStateCache} to bind the vertex array with
+	 */
+	public LwjglVertexArray(LwjglStreamBuffer stream, LwjglIndexBuffer indices, GLStateCache state,
+			VertexAttribute...attributes) {
+		mStream = stream;
+		mState = state;
+		create(stream::bindTo, indices, attributes);
+	}
+
+	/**
+	 * Creates the GPU-side vertex array, pointing the interleaved attributes into the buffer bound by
+	 * the given function
+	 * @param bind
+	 * @param indices
+	 * @param attributes
+	 */
+	private void create(IntConsumer bind, LwjglIndexBuffer indices, VertexAttribute[] attributes) {
+		mAttributes = attributes;
+		mIndices = indices;
+		mAttributeNames = new String[attributes.length];
+		for(int i = 0; i < attributes.length; i++)
+			mAttributeNames[i] = attributes[i].attribute();
+
+		int vertexSize = 0;
+		for(VertexAttribute attribute : mAttributes)
+			vertexSize += attribute.offset();
+
 		mArrayHandle = glGenVertexArrays();
-		glBindVertexArray(mArrayHandle);
-		buffer.bindTo(GL_ARRAY_BUFFER);
-		
+		mState.bindVertexArray(mArrayHandle);
+		bind.accept(GL_ARRAY_BUFFER);
+
 		int globalOffset = 0;
 		for(int i = 0; i < mAttributes.length; i++) {
 			VertexAttribute attribute = mAttributes[i];
-			
-			int glType = 0;
-			switch(attribute.type()) {
-			case FLOAT:
-				glType = GL_FLOAT;
-				break;
-			case INTEGER:
-				glType = GL_INT;
-				break;
-			case SHORT:
-				glType = GL_SHORT;
-				break;
-			case BYTE:
-				glType = GL_BYTE;
-				break;
-			}
-			glVertexAttribIPointer(i, attribute.elementCount(), glType, 0, globalOffset);
-			globalOffset += attribute.elementCount();
+			pointer(i, attribute.type(), attribute.elementCount(), attribute.normalized(), vertexSize, globalOffset);
+			// enabled arrays are part of the vertex array, so they never have to be enabled again
+			glEnableVertexAttribArray(i);
+			globalOffset += attribute.offset();
 		}
-		buffer.unbindFrom(GL_ARRAY_BUFFER);
-		
-		mIndicesHandle = glGenBuffers();
-		glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, mIndicesHandle);
-		
-		glBindVertexArray(0);
+		mState.bindBuffer(GL_ARRAY_BUFFER, 0);
+
+		indices.bindTo(GL_ELEMENT_ARRAY_BUFFER);
+
+		mState.bindVertexArray(0);
 	}
-	
+
+	/**
+	 * Sets the pointer of the vertex-attribute with the given index into the currently bound buffer.
+	 * Bytes are treated as color channels, so they are always unsigned and normalized
+	 * @param index
+	 * @param type
+	 * @param count
+	 * @param normalized
+	 * @param stride
+	 * @param offset
+	 */
+	static void pointer(int index, ElementType type, int count, boolean normalized, int stride, long offset) {
+		switch(type) {
+		case FLOAT:
+			glVertexAttribPointer(index, count, GL_FLOAT, normalized, stride, offset);
+			break;
+		case INTEGER:
+			glVertexAttribPointer(index, count, GL_INT, normalized, stride, offset);
+			break;
+		case SHORT:
+			glVertexAttribPointer(index, count, GL_SHORT, normalized, stride, offset);
+			break;
+		case BYTE:
+			glVertexAttribPointer(index, count, GL_UNSIGNED_BYTE, true, stride, offset);
+			break;
+		}
+	}
+
 	/**
 	 * Allocates a {@link BufferSegment} as specified in {@link LwjglVertexBuffer#allocate(int)}
 	 * @param size
 	 * @return the allocated BufferSegment
 	 */
 	public BufferSegment allocate(int size) {
+		if(mBuffer == null)
+			throw new AtticRuntimeException("A streamed LwjglVertexArray has no segments");
+
 		return mBuffer.allocate(size);
 	}
-	
+
 	/**
-	 * Sets the indices of this {@link LwjglVertexArray}
-	 * @param indices
+	 * Uploads all changes to the segments and indices of this {@link LwjglVertexArray} as specified in
+	 * {@link LwjglVertexBuffer#flush(FrameStats)}. Streamed vertices are not touched
+	 * @param stats
 	 */
-	public void setIndices(int[] indices) {
-		glBindVertexArray(mArrayHandle);
-		glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, mIndicesHandle);
-		glBufferData(mIndicesHandle, indices, GL_STATIC_DRAW);
-		glBindVertexArray(0);
+	public void flush(FrameStats stats) {
+		if(mBuffer != null)
+			mBuffer.flush(stats);
+		mIndices.flush(stats);
 	}
-	
+
 	/**
-	 * Binds this {@link LwjglVertexArray} for rendering and sets the VertexAttributes to the currently active shader
-	 * @param helper
+	 * Defragments the segments of this {@link LwjglVertexArray} as specified in
+	 * {@link LwjglVertexBuffer#defragment()}. Does nothing if the vertices are streamed
+	 * @return how many bytes were moved
 	 */
-	public void bind(IContext helper) {
-		glBindVertexArray(mArrayHandle);
-		for(int i = 0; i < mAttributes.length; i++) {
-			helper.setAttribute(mAttributes[i].attribute(), i);
-			glEnableVertexAttribArray(i);
-		}
+	public int defragment() {
+		return mBuffer != null ? mBuffer.defragment() : 0;
+	}
+
+	/**
+	 * 
+	 * @return the {@link LwjglIndexBuffer} holding the indices of this {@link LwjglVertexArray}
+	 */
+	public LwjglIndexBuffer indices() {
+		return mIndices;
+	}
+
+	/**
+	 * 
+	 * @return the names of the {@link VertexAttribute}s in the order of their indices
+	 */
+	public String[] attributeNames() {
+		return mAttributeNames;
+	}
+
+	/**
+	 * Binds this {@link LwjglVertexArray} for rendering
+	 */
+	public void bind() {
+		mState.bindVertexArray(mArrayHandle);
 	}
-	
+
 	/**
-	 * Unbinds this {@link LwjglVertexArray} and disables all associated {@link VertexAttribute}s
+	 * Unbinds the currently bound vertex array
 	 */
 	public void unbind() {
-		for(int i = 0; i < mAttributes.length; i++)
-			glDisableVertexAttribArray(i);
-		
-		glBindVertexArray(0);
+		mState.bindVertexArray(0);
 	}
-	
+
 	/**
 	 * Destroys this {@link LwjglVertexArray} thereby making it unusable
 	 */
 	public void destroy() {
-		mBuffer.destroy();
-		
+		if(mBuffer != null)
+			mBuffer.destroy();
+		if(mStream != null)
+			mStream.destroy();
+
 		//delete indices and vertexarray
-		glDeleteBuffers(mIndicesHandle);
+		mIndices.destroy();
 		glDeleteVertexArrays(mArrayHandle);
+		mState.onVertexArrayDeleted(mArrayHandle);
 	}
 }
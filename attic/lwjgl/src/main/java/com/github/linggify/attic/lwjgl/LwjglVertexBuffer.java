@@ -3,125 +3,175 @@ package com.github.linggify.attic.lwjgl;
 import static org.lwjgl.opengl.GL15.*;
 
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
-import org.lwjgl.opengl.GL15;
 import org.lwjgl.system.MemoryUtil;
 
 import com.github.linggify.attic.exceptions.AtticRuntimeException;
+import com.github.linggify.attic.render.FrameStats;
+import com.github.linggify.attic.util.DirtyRanges;
+import com.github.linggify.attic.util.FreeListAllocator;
+import com.github.linggify.attic.util.IAllocator;
 
 public class LwjglVertexBuffer {
 
+	/** How many bytes are moved per {@link #defragment()} by default */
+	public static final int DEFAULT_DEFRAGMENT_BUDGET = 64 * 1024;
+
 	private int mBufferHandle;
-	private int mSize;
 	private int mVertexSize;
-	
-	private int mFreeBytes;
-	private List<BufferSegment> mSegments;
+	private GLStateCache mState;
+
+	private IAllocator mAllocator;
+	private BufferSegment[] mSegments;
+	private int mDefragmentBudget;
+
+	// CPU-side copy of the whole buffer, changes are uploaded by flush()
+	private ByteBuffer mShadow;
+	private ByteBuffer mUpload;
+	// views of the shadow copy used to move allocations
+	private ByteBuffer mMoveSource;
+	private ByteBuffer mMoveTarget;
+	private DirtyRanges mDirty;
 
 	/**
 	 * Creates a new {@link LwjglVertexBuffer} of the given size (in bytes)
-	 * 
+	 *
 	 * @param size
+	 * @param vertexSize
+	 * @param isStatic
+	 * @param state
+	 *            the {@link GLStateCache} to bind the buffer with
 	 */
-	public LwjglVertexBuffer(int size, int vertexSize, boolean isStatic) {
-		int mBufferHandle = glGenBuffers();
+	public LwjglVertexBuffer(int size, int vertexSize, boolean isStatic, GLStateCache state) {
+		mState = state;
+		mBufferHandle = glGenBuffers();
 		if (mBufferHandle == 0)
 			throw new AtticRuntimeException("Failed to create GPU-side buffer");
 
-		// init GPU-side buffer with arbitrary values
-		ByteBuffer buffer = MemoryUtil.memAlloc(size);
-		glBufferData(mBufferHandle, buffer, isStatic ? GL15.GL_STATIC_DRAW : GL15.GL_DYNAMIC_DRAW);
-		MemoryUtil.memFree(buffer);
+		// init GPU-side buffer without any data
+		mState.bindBuffer(GL_ARRAY_BUFFER, mBufferHandle);
+		glBufferData(GL_ARRAY_BUFFER, size, isStatic ? GL_STATIC_DRAW : GL_DYNAMIC_DRAW);
+		mState.bindBuffer(GL_ARRAY_BUFFER, 0);
 
-		mSize = size;
 		mVertexSize = vertexSize;
-		mFreeBytes = mSize;
-		mSegments = new ArrayList<>();
-		mSegments.add(new BufferSegment(mBufferHandle, 0, mSize, mVertexSize));
+		mSegments = new BufferSegment[16];
+		mShadow = MemoryUtil.memCalloc(size);
+		mUpload = mShadow.duplicate();
+		mMoveSource = mShadow.duplicate();
+		mMoveTarget = mShadow.duplicate();
+		mDirty = new DirtyRanges();
+
+		mDefragmentBudget = DEFAULT_DEFRAGMENT_BUDGET;
+		mAllocator = new FreeListAllocator(size);
+		// moved segments have to be uploaded at the new offset
+		mAllocator.setMoveListener((handle, from, to, length) -> move(from, to, length));
+	}
+
+	/**
+	 * Moves the given range within the shadow copy with a single bulk copy
+	 * and marks the new range dirty. The ranges may overlap, as the bulk copy
+	 * copies from front to back and allocations only move to the front
+	 *
+	 * @param from
+	 * @param to
+	 * @param length
+	 */
+	private void move(int from, int to, int length) {
+		mMoveSource.clear();
+		mMoveSource.position(from);
+		mMoveSource.limit(from + length);
+		mMoveTarget.clear();
+		mMoveTarget.position(to);
+		mMoveTarget.put(mMoveSource);
+		mDirty.add(to, length);
 	}
 
 	/**
 	 * Allocates a {@link BufferSegment} of the given length in this
 	 * {@link LwjglVertexBuffer}
-	 * 
+	 *
 	 * @param length
 	 * @return the allocated {@link BufferSegment} or null of there is not
 	 *         enough space
 	 */
 	public BufferSegment allocate(int length) {
-		if (mFreeBytes < length)
+		int handle = mAllocator.allocate(length);
+		if (handle == IAllocator.INVALID_HANDLE)
 			return null;
 
-		// find the best fitting BufferSegment
-		int clen = Integer.MAX_VALUE;
-		BufferSegment fit = null;
-		for (BufferSegment segment : mSegments) {
-			if (!segment.isUsed() && segment.length() >= length && segment.length() < clen) {
-				fit = segment;
-				clen = segment.length();
-			}
-		}
+		if (handle >= mSegments.length)
+			mSegments = Arrays.copyOf(mSegments, Math.max(handle + 1, mSegments.length * 2));
 
-		// if no fitting segment was found, group all free bytes together
-		if (fit == null) {
-			// sort segments and try again
-			// this algorithm also ensures that every used segment is moved only
-			// once
-			mSegments.sort(null);
-			for (int i = 0; i < mSegments.size(); i++) {
-				BufferSegment a = mSegments.get(i);
-				BufferSegment b = mSegments.get(i + 1);
-
-				if (!a.isUsed() && b.isUsed()) {
-					int aoff = a.index(0);
-					int boff = b.index(0);
-
-					a.move(boff);
-					b.move(aoff);
-				} else if (!a.isUsed() && !b.isUsed()) {
-					a.setLength(a.length() + b.length());
-					mSegments.remove(i + 1);
-					i--;
-				}
-			}
-
-			// at this point all free bytes should be in a single BufferSegment
-			// at the end of the list
-			fit = mSegments.get(mSegments.size() - 1);
-		}
+		BufferSegment segment = new BufferSegment(handle, length);
+		mSegments[handle] = segment;
+		return segment;
+	}
 
-		if (fit.length() == length)
-			return fit;
+	/**
+	 * Moves segments towards the front of this {@link LwjglVertexBuffer}, so
+	 * larger segments fit into the freed bytes. Moves at most the bytes set by
+	 * {@link #setDefragmentBudget(int)}, so it can be called every frame. The
+	 * moved bytes are uploaded with the next {@link #flush(FrameStats)}
+	 *
+	 * @return how many bytes were moved
+	 */
+	public int defragment() {
+		return mAllocator.defragment(mDefragmentBudget);
+	}
 
-		int toffset = fit.index(0);
-		fit.setLength(fit.length() - length);
-		fit.move(toffset + length);
+	/**
+	 * Sets how many bytes may be moved per {@link #defragment()}
+	 *
+	 * @param budget
+	 */
+	public void setDefragmentBudget(int budget) {
+		if (budget < 0)
+			throw new AtticRuntimeException("The defragment budget must not be negative, but was " + budget);
 
-		BufferSegment segment = new BufferSegment(mBufferHandle, toffset, length, mVertexSize);
-		mSegments.add(segment);
-		segment.use();
-		
-		return segment;
+		mDefragmentBudget = budget;
+	}
+
+	/**
+	 * Uploads all changes since the last flush, merging adjacent changes, so
+	 * every contiguous range is uploaded with a single call
+	 *
+	 * @param stats
+	 *            the {@link FrameStats} to record the uploads in
+	 */
+	public void flush(FrameStats stats) {
+		if (mDirty.isEmpty())
+			return;
+
+		int count = mDirty.merge();
+		mState.bindBuffer(GL_ARRAY_BUFFER, mBufferHandle);
+		for (int i = 0; i < count; i++) {
+			int offset = mDirty.offset(i);
+			int length = mDirty.length(i);
+			mUpload.limit(offset + length);
+			mUpload.position(offset);
+			glBufferSubData(GL_ARRAY_BUFFER, offset, mUpload);
+			stats.recordUpload(length);
+		}
+		mDirty.clear();
 	}
 
 	/**
 	 * Binds this {@link LwjglVertexBuffer} to the given target
-	 * 
+	 *
 	 * @param target
 	 */
 	public void bindTo(int target) {
-		glBindBuffer(target, mBufferHandle);
+		mState.bindBuffer(target, mBufferHandle);
 	}
 
 	/**
 	 * unbinds the currently bound buffer from the given target
-	 * 
+	 *
 	 * @param target
 	 */
 	public void unbindFrom(int target) {
-		glBindBuffer(target, 0);
+		mState.bindBuffer(target, 0);
 	}
 
 	/**
@@ -129,149 +179,120 @@ public class LwjglVertexBuffer {
 	 */
 	public void destroy() {
 		//clear all segments
-		for(BufferSegment segment : mSegments)
-			segment.clear();
-		
+		for(BufferSegment segment : mSegments) {
+			if (segment != null)
+				segment.clear();
+		}
+
 		//delete the GPU-side buffer
 		glDeleteBuffers(mBufferHandle);
+		mState.onBufferDeleted(mBufferHandle);
+		MemoryUtil.memFree(mShadow);
+		mShadow = null;
+		mUpload = null;
+		mMoveSource = null;
+		mMoveTarget = null;
 	}
-	
+
 	/**
 	 * BufferSegments represent a segment in the underlying vertex-buffer
-	 * 
+	 *
 	 * @author Freddy
 	 *
 	 */
-	public class BufferSegment implements Comparable<BufferSegment> {
+	public class BufferSegment {
 
-		private int mOffset;
-		private int mVertexOffset;
-		private int mVertexSize;
-		private int mLength;
-		private int mBuffer;
+		private final int mHandle;
+		private final int mLength;
 		private boolean mUsed;
 		private boolean mIsStatic;
 
-		private byte[] mData;
-		private ByteBuffer mRamBuffer;
-
 		/**
 		 * Creates a new {@link BufferSegment}
-		 * 
-		 * @param offset
+		 *
+		 * @param handle
 		 * @param length
 		 */
-		private BufferSegment(int buffer, int offset, int length, int vertexsize) {
-			mOffset = offset;
+		private BufferSegment(int handle, int length) {
+			mHandle = handle;
 			mLength = length;
-			mBuffer = buffer;
-			mVertexSize = vertexsize;
-			mVertexOffset = mOffset / mVertexSize;
-		}
-
-		/**
-		 * 
-		 * @return the length of this {@link BufferSegment}
-		 */
-		private int length() {
-			return mLength;
+			mUsed = true;
 		}
 
 		/**
-		 * Sets the length of this {@link BufferSegment}
-		 * 
-		 * @param length
-		 */
-		private void setLength(int length) {
-			if (mUsed)
-				throw new AtticRuntimeException("Cannot change the length of a BufferSegment that is already in use");
-			mLength = length;
-		}
-		
-		/**
-		 * Moves this BufferSegment to the new offset
-		 * 
-		 * @param dest
+		 * Sets the data in this {@link BufferSegment}. The data is copied and
+		 * uploaded with the next {@link LwjglVertexBuffer#flush(FrameStats)}
+		 *
+		 * @param data
 		 */
-		private void move(int dest) {
-			mOffset = dest;
+		public void set(byte[] data) {
+			if(!mUsed)
+				throw new AtticRuntimeException("BufferSegment is not in use and cant accept data");
 
-			// if this BufferSegment is not in use, do nothing else
-			if (!mUsed)
-				return;
+			if (data.length > mLength)
+				throw new AtticRuntimeException(
+						"Data is too large. Expected " + mLength + " bytes but got " + data.length);
 
-			if (mIsStatic) {
-				// if this BufferSegment is static, the buffer already exists
-				glBufferSubData(mBuffer, mOffset, mRamBuffer);
-			} else {
-				mRamBuffer = MemoryUtil.memAlloc(mLength);
-				mRamBuffer.put(mData);
-				glBufferSubData(mBuffer, mOffset, mRamBuffer);
-				MemoryUtil.memFree(mRamBuffer);
-			}
+			int offset = mAllocator.offset(mHandle);
+			mUpload.clear();
+			mUpload.position(offset);
+			mUpload.put(data);
+			mDirty.add(offset, data.length);
 		}
 
 		/**
-		 * Marks this BufferSegment as used
-		 */
-		private void use() {
-			mUsed = true;
-			
-			if(!mIsStatic)
-				mRamBuffer = MemoryUtil.memAlloc(mLength);
-		}
-		
-		/**
-		 * Sets the data in this {@link BufferSegment}. Using <code>null</code>
-		 * not do anything
-		 * 
+		 * Sets the data in this {@link BufferSegment} to the remaining bytes of
+		 * the given {@link ByteBuffer}. The bytes are copied and uploaded with
+		 * the next {@link LwjglVertexBuffer#flush(FrameStats)}. The position of
+		 * the given buffer is not changed
+		 *
 		 * @param data
 		 */
-		public void set(byte[] data) {
+		public void set(ByteBuffer data) {
 			if(!mUsed)
 				throw new AtticRuntimeException("BufferSegment is not in use and cant accept data");
-			
-			if (data.length > mLength)
-				throw new AtticRuntimeException(
-						"Data is too large. Expected " + mLength + " bytes but got " + data.length);
-
-			if (!mUsed && !mIsStatic)
-				mRamBuffer = MemoryUtil.memAlloc(mLength);
 
+			int length = data.remaining();
+			if (length > mLength)
+				throw new AtticRuntimeException(
+						"Data is too large. Expected " + mLength + " bytes but got " + length);
 
-			if (mIsStatic)
-				mRamBuffer.put(data);
-			else
-				mData = data;
-			move(mOffset);
+			int offset = mAllocator.offset(mHandle);
+			mUpload.clear();
+			mUpload.position(offset);
+			mUpload.put(data.duplicate());
+			mDirty.add(offset, length);
 		}
 
 		/**
 		 * Sets whether this {@link BufferSegment} is used for static or dynamic
-		 * interaction. If set to static, the BufferSegment will not keep a
-		 * ByteBuffer in offheap memory for faster moving and changing values,
-		 * but instead create a new one everytime its data is changed
-		 * 
+		 * interaction. This is only a hint, the data is always kept to be able
+		 * to move the segment
+		 *
 		 * @param flag
 		 */
 		public void setStatic(boolean flag) {
 			mIsStatic = flag;
+		}
 
-			if (mUsed && mIsStatic && mRamBuffer != null)
-				MemoryUtil.memFree(mRamBuffer);
-			else if (mUsed && !mIsStatic && mRamBuffer == null)
-				mRamBuffer = MemoryUtil.memAlloc(mLength);
+		/**
+		 *
+		 * @return whether this {@link BufferSegment} is used for static
+		 *         interaction
+		 */
+		public boolean isStatic() {
+			return mIsStatic;
 		}
 
 		/**
 		 * Converts an index which is relative to this {@link BufferSegment} to
 		 * be relative to the underlying-buffer
-		 * 
+		 *
 		 * @param index
 		 * @return the given index relative to the underlying buffer
 		 */
 		public int index(int index) {
-			return mVertexOffset + index;
+			return mAllocator.offset(mHandle) / mVertexSize + index;
 		}
 
 		/**
@@ -279,24 +300,20 @@ public class LwjglVertexBuffer {
 		 * and marks it as unused
 		 */
 		public void clear() {
+			if (!mUsed)
+				return;
+
 			mUsed = false;
-			
-			if(!mIsStatic)
-				MemoryUtil.memFree(mRamBuffer);
-			else mData = null;
+			mSegments[mHandle] = null;
+			mAllocator.free(mHandle);
 		}
-		
+
 		/**
-		 * 
+		 *
 		 * @return whether this {@link BufferSegment} is used or not
 		 */
 		public boolean isUsed() {
 			return mUsed;
 		}
-
-		@Override
-		public int compareTo(BufferSegment o) {
-			return Integer.compare(mOffset, o.mOffset);
-		}
 	}
 }
@@ -0,0 +1,181 @@
+package com.github.linggify.attic.tests.lwjgl;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.linggify.attic.lwjgl.GLFunctions;
+import com.github.linggify.attic.lwjgl.GLStateCache;
+import com.github.linggify.attic.render.FrameStats;
+
+public class GLStateCacheTests {
+
+	private static final int GL_ARRAY_BUFFER = 0x8892;
+	private static final int GL_ELEMENT_ARRAY_BUFFER = 0x8893;
+	private static final int GL_TEXTURE0 = 0x84C0;
+
+	private List<String> mCalls;
+	private FrameStats mStats;
+	private GLStateCache mState;
+
+	@Before
+	public void setup() {
+		mCalls = new ArrayList<>();
+		mStats = new FrameStats();
+		mState = new GLStateCache(new GLFunctions() {
+
+			@Override
+			public void useProgram(int program) {
+				mCalls.add("useProgram " + program);
+			}
+
+			@Override
+			public void bindVertexArray(int array) {
+				mCalls.add("bindVertexArray " + array);
+			}
+
+			@Override
+			public void bindBuffer(int target, int buffer) {
+				mCalls.add("bindBuffer " + target + " " + buffer);
+			}
+
+			@Override
+			public void activeTexture(int texture) {
+				mCalls.add("activeTexture " + texture);
+			}
+
+			@Override
+			public void bindTexture(int target, int texture) {
+				mCalls.add("bindTexture " + texture);
+			}
+
+			@Override
+			public void bindFramebuffer(int target, int framebuffer) {
+				mCalls.add("bindFramebuffer " + framebuffer);
+			}
+		}, mStats);
+	}
+
+	/**
+	 * Tests {@link GLStateCache#useProgram(int)}
+	 */
+	@Test
+	public void testUseProgram() {
+		mState.useProgram(3);
+		mState.useProgram(3);
+		mState.useProgram(0);
+		mState.useProgram(0);
+
+		assertEquals(Arrays.asList("useProgram 3", "useProgram 0"), mCalls);
+		assertEquals(2, mStats.bindCalls());
+		assertEquals(2, mStats.skippedBinds());
+	}
+
+	/**
+	 * Tests {@link GLStateCache#bindBuffer(int, int)} keeping a binding per
+	 * target
+	 */
+	@Test
+	public void testBindBuffer() {
+		mState.bindBuffer(GL_ARRAY_BUFFER, 1);
+		mState.bindBuffer(GL_ARRAY_BUFFER, 1);
+		mState.bindBuffer(GL_ELEMENT_ARRAY_BUFFER, 1);
+		mState.bindBuffer(GL_ARRAY_BUFFER, 2);
+
+		assertEquals(Arrays.asList("bindBuffer " + GL_ARRAY_BUFFER + " 1",
+				"bindBuffer " + GL_ELEMENT_ARRAY_BUFFER + " 1", "bindBuffer " + GL_ARRAY_BUFFER + " 2"), mCalls);
+		assertEquals(1, mStats.skippedBinds());
+	}
+
+	/**
+	 * Tests {@link GLStateCache#bindVertexArray(int)} forgetting the element
+	 * array buffer, which belongs to the vertex array
+	 */
+	@Test
+	public void testBindVertexArray() {
+		mState.bindVertexArray(1);
+		mState.bindBuffer(GL_ELEMENT_ARRAY_BUFFER, 5);
+		mState.bindBuffer(GL_ARRAY_BUFFER, 6);
+		mState.bindVertexArray(1);
+		mState.bindVertexArray(2);
+		mState.bindBuffer(GL_ELEMENT_ARRAY_BUFFER, 5);
+		mState.bindBuffer(GL_ARRAY_BUFFER, 6);
+
+		assertEquals(Arrays.asList("bindVertexArray 1", "bindBuffer " + GL_ELEMENT_ARRAY_BUFFER + " 5",
+				"bindBuffer " + GL_ARRAY_BUFFER + " 6", "bindVertexArray 2",
+				"bindBuffer " + GL_ELEMENT_ARRAY_BUFFER + " 5"), mCalls);
+	}
+
+	/**
+	 * Tests {@link GLStateCache#bindTexture(int, int)} activating units only
+	 * when needed
+	 */
+	@Test
+	public void testBindTexture() {
+		mState.bindTexture(0, 4);
+		mState.bindTexture(0, 4);
+		mState.bindTexture(1, 4);
+		mState.bindTexture(1, 5);
+		mState.bindTexture(0, 4);
+		mState.bindTexture(0, 5);
+
+		assertEquals(Arrays.asList("bindTexture 4", "activeTexture " + (GL_TEXTURE0 + 1), "bindTexture 4",
+				"bindTexture 5", "activeTexture " + GL_TEXTURE0, "bindTexture 5"), mCalls);
+	}
+
+	/**
+	 * Tests {@link GLStateCache#bindFramebuffer(int)}
+	 */
+	@Test
+	public void testBindFramebuffer() {
+		mState.bindFramebuffer(7);
+		mState.bindFramebuffer(7);
+		mState.bindFramebuffer(0);
+
+		assertEquals(Arrays.asList("bindFramebuffer 7", "bindFramebuffer 0"), mCalls);
+	}
+
+	/**
+	 * Tests the on*Deleted methods resetting the bindings to 0
+	 */
+	@Test
+	public void testDeleted() {
+		mState.bindBuffer(GL_ARRAY_BUFFER, 1);
+		mState.bindTexture(0, 2);
+		mState.bindFramebuffer(3);
+		mState.onBufferDeleted(1);
+		mState.onTextureDeleted(2);
+		mState.onFramebufferDeleted(3);
+		mCalls.clear();
+
+		mState.bindBuffer(GL_ARRAY_BUFFER, 0);
+		mState.bindTexture(0, 0);
+		mState.bindFramebuffer(0);
+		mState.bindBuffer(GL_ARRAY_BUFFER, 1);
+
+		assertEquals(Arrays.asList("bindBuffer " + GL_ARRAY_BUFFER + " 1"), mCalls);
+	}
+
+	/**
+	 * Tests {@link GLStateCache#invalidate()}
+	 */
+	@Test
+	public void testInvalidate() {
+		mState.useProgram(1);
+		mState.bindVertexArray(2);
+		mState.invalidate();
+		mCalls.clear();
+
+		mState.useProgram(1);
+		mState.bindVertexArray(2);
+		mState.bindTexture(0, 0);
+
+		assertEquals(Arrays.asList("useProgram 1", "bindVertexArray 2", "activeTexture " + GL_TEXTURE0,
+				"bindTexture 0"), mCalls);
+	}
+}
@@ -125,9 +125,8 @@ public class RenderLayerNode implements INode{
 			//render frame
 			List<IBatch> layer = mLayer.getValue(List.class);
 			
-			//render batch
-			for(IBatch batch : layer)
-				mHelper.renderBatch(batch);
+			//render all batches at once
+			mHelper.renderBatches(layer);
 			
 			//unbind stuff
 			if(target > 0) {
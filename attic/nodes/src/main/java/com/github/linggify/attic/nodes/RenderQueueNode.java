@@ -0,0 +1,86 @@
+package com.github.linggify.attic.nodes;
+
+import com.github.linggify.attic.exceptions.AtticRuntimeException;
+import com.github.linggify.attic.render.IContext;
+import com.github.linggify.attic.render.RenderQueue;
+import com.github.linggify.attic.render.path.INode;
+import com.github.linggify.attic.render.path.RenderPath;
+
+/**
+ * A RenderQueueNode is a {@link INode} that renders all batches submitted to a
+ * {@link RenderQueue} sorted by their state to its output (a framebuffer if the
+ * Node is not the root of the {@link RenderPath}). Uniforms are set by the
+ * {@link RenderQueue.ShaderSetup} of the queue
+ *
+ * @author Fredie
+ *
+ */
+public class RenderQueueNode implements INode {
+
+	private IContext mHelper;
+
+	private IInput mQueue;
+	private IInput mTarget;
+
+	private boolean mDirty;
+
+	/**
+	 * Creates a new {@link RenderQueueNode}
+	 */
+	public RenderQueueNode() {
+		mDirty = true;
+	}
+
+	@Override
+	public void setRenderHepler(IContext helper) {
+		mHelper = helper;
+	}
+
+	@Override
+	public void setInput(String name, IInput input) {
+		switch (name) {
+		case "Queue": mQueue = input;
+			break;
+		case "Target": mTarget = input;
+			break;
+		default: throw new AtticRuntimeException("No Such IInput " + name);
+		}
+	}
+
+	@Override
+	public void prepare() {
+		mDirty = true;
+	}
+
+	@Override
+	public int getOutputId(String name) {
+		if (name.equals("result"))
+			return 0;
+		else return -1;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T> T getOutput(int index, Class<T> type) throws AtticRuntimeException {
+		if (!type.equals(Integer.class))
+			throw new AtticRuntimeException("Unexpected Type. Expected Integer but was " + type.getTypeName());
+
+		if (mDirty) {
+			//bind render target
+			int target = mTarget.getValue(Integer.class);
+			if (target > 0)
+				mHelper.bindRenderTarget(0, target);
+
+			//render the queue sorted by state
+			mQueue.getValue(RenderQueue.class).render(mHelper);
+
+			if (target > 0)
+				mHelper.unbindRenderTarget(0);
+
+			//remember not to render this node again in this frame
+			mDirty = false;
+		}
+
+		return (T) mTarget.getValue(Integer.class);
+	}
+}
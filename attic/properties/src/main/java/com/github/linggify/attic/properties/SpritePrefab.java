@@ -0,0 +1,88 @@
+package com.github.linggify.attic.properties;
+
+import com.github.linggify.attic.render.IContext.VertexAttribute;
+import com.github.linggify.attic.render.RenderData;
+import com.github.linggify.attic.render.atlas.AtlasRegion;
+import com.github.linggify.attic.util.Color;
+
+/**
+ * A SpritePrefab is the template of many identical
+ * {@link SpriteRendererProperty}s. All sprites created by it share the
+ * vertices and indices of its quad, so they only cost their own transform.
+ * A sprite that changes its tint or region afterwards gets its own copy of
+ * the vertices. Changing the prefab only changes sprites created afterwards
+ *
+ * @author Fredie
+ *
+ */
+public class SpritePrefab {
+
+	private final RenderData mTemplate;
+
+	/**
+	 * Creates a new {@link SpritePrefab} of white, untextured sprites on the
+	 * given layer
+	 *
+	 * @param layer
+	 * @param isStatic
+	 * @param isInstanced
+	 */
+	public SpritePrefab(String layer, boolean isStatic, boolean isInstanced) {
+		mTemplate = new RenderData(4, layer, isStatic, VertexAttribute.POSITION, VertexAttribute.COLOR,
+				VertexAttribute.TEX_COORD_0);
+		// corners
+		mTemplate.setPosition(0, 0.5f, -0.5f);
+		mTemplate.setPosition(1, -0.5f, -0.5f);
+		mTemplate.setPosition(2, -0.5f, 0.5f);
+		mTemplate.setPosition(3, 0.5f, 0.5f);
+		// color white
+		for (int i = 0; i < 4; i++)
+			mTemplate.setColor(i, 0xFFFFFFFF);
+		// texture coordinates
+		mTemplate.setTexCoord(0, 0, 1, 1);
+		mTemplate.setTexCoord(1, 0, 0, 1);
+		mTemplate.setTexCoord(2, 0, 0, 0);
+		mTemplate.setTexCoord(3, 0, 1, 0);
+		// two triangles
+		mTemplate.setIndices(new int[] { 0, 1, 2, 2, 3, 0 });
+		mTemplate.setInstanced(isInstanced);
+	}
+
+	/**
+	 * Sets the Color of the sprites created by this {@link SpritePrefab}
+	 *
+	 * @param color
+	 */
+	public void setTint(Color color) {
+		SpriteRendererProperty.tint(mTemplate, color);
+	}
+
+	/**
+	 * Shows the given {@link AtlasRegion} on the sprites created by this
+	 * {@link SpritePrefab}
+	 *
+	 * @param region
+	 */
+	public void setRegion(AtlasRegion region) {
+		SpriteRendererProperty.region(mTemplate, region);
+	}
+
+	/**
+	 * Creates a new {@link SpriteRendererProperty} sharing the quad of this
+	 * {@link SpritePrefab}
+	 *
+	 * @return the new SpriteRendererProperty
+	 */
+	public SpriteRendererProperty create() {
+		return new SpriteRendererProperty(this);
+	}
+
+	/**
+	 *
+	 * @return new {@link RenderData} sharing the quad of this
+	 *         {@link SpritePrefab}
+	 */
+	RenderData share() {
+		return mTemplate.share();
+	}
+}
@@ -1,10 +1,10 @@
 package com.github.linggify.attic.properties;
 
-import com.github.linggify.attic.render.IContext.VertexAttribute;
 import com.github.linggify.attic.render.RenderData;
+import com.github.linggify.attic.render.atlas.AtlasPage;
+import com.github.linggify.attic.render.atlas.AtlasRegion;
 import com.github.linggify.attic.util.Color;
 import com.github.linggify.attic.util.Matrix33;
-import com.github.linggify.attic.util.Vector2D;
 
 /**
  * The SpriteRendererProperty is used to render Textured Quads at a specific
@@ -21,6 +21,11 @@ public class SpriteRendererProperty extends BaseProperty<RenderData> {
 	private PropertyListener mTransformChangeListener;
 	private Matrix33 mTransform;
 
+	// the quads shared by all sprites created without a prefab, by static and instanced
+	private static final SpritePrefab[] DEFAULTS = { new SpritePrefab("default", false, false),
+			new SpritePrefab("default", false, true), new SpritePrefab("default", true, false),
+			new SpritePrefab("default", true, true) };
+
 	/**
 	 * Creates a new {@link SpriteRendererProperty} with static or non static
 	 * {@link RenderData}
@@ -28,27 +33,31 @@ public class SpriteRendererProperty extends BaseProperty<RenderData> {
 	 * @param isStatic
 	 */
 	public SpriteRendererProperty(boolean isStatic) {
+		this(isStatic, false);
+	}
+
+	/**
+	 * Creates a new {@link SpriteRendererProperty} with static or non static
+	 * {@link RenderData}. Instanced sprites share their quad with all other
+	 * instanced sprites and are only placed by their transform and tint
+	 * 
+	 * @param isStatic
+	 * @param isInstanced
+	 */
+	public SpriteRendererProperty(boolean isStatic, boolean isInstanced) {
+		this(DEFAULTS[(isStatic ? 2 : 0) + (isInstanced ? 1 : 0)]);
+	}
+
+	/**
+	 * Creates a new {@link SpriteRendererProperty} sharing the quad of the
+	 * given {@link SpritePrefab} until its tint or region is changed
+	 * 
+	 * @param prefab
+	 */
+	public SpriteRendererProperty(SpritePrefab prefab) {
 		super();
-		
-		// setup sprite
-		mData = new RenderData(4, isStatic, VertexAttribute.POSITION, VertexAttribute.COLOR,
-				VertexAttribute.TEX_COORD_0);
-		// corners
-		mData.setVertexData(0, VertexAttribute.POSITION, new Vector2D(0.5f, -0.5f));
-		mData.setVertexData(1, VertexAttribute.POSITION, new Vector2D(-0.5f, -0.5f));
-		mData.setVertexData(2, VertexAttribute.POSITION, new Vector2D(-0.5f, 0.5f));
-		mData.setVertexData(3, VertexAttribute.POSITION, new Vector2D(0.5f, 0.5f));
-		// color white
-		Color white = new Color(1, 1, 1, 1);
-		mData.setVertexData(0, VertexAttribute.COLOR, white);
-		mData.setVertexData(1, VertexAttribute.COLOR, white);
-		mData.setVertexData(2, VertexAttribute.COLOR, white);
-		mData.setVertexData(3, VertexAttribute.COLOR, white);
-		// texture coordinates
-		mData.setVertexData(0, VertexAttribute.TEX_COORD_0, new Vector2D(1, 1));
-		mData.setVertexData(1, VertexAttribute.TEX_COORD_0, new Vector2D(0, 1));
-		mData.setVertexData(2, VertexAttribute.TEX_COORD_0, new Vector2D(0, 0));
-		mData.setVertexData(3, VertexAttribute.TEX_COORD_0, new Vector2D(1, 0));
+
+		mData = prefab.share();
 
 		// use transform changelistener
 		mHasTransform = false;
@@ -73,11 +82,59 @@ public class SpriteRendererProperty extends BaseProperty<RenderData> {
 	 * @param color
 	 */
 	public void setTint(Color color) {
-		// color white
-		mData.setVertexData(0, VertexAttribute.COLOR, color);
-		mData.setVertexData(1, VertexAttribute.COLOR, color);
-		mData.setVertexData(2, VertexAttribute.COLOR, color);
-		mData.setVertexData(3, VertexAttribute.COLOR, color);
+		tint(mData, color);
+	}
+
+	/**
+	 * Sets the Color of the given sprite
+	 * 
+	 * @param data
+	 * @param color
+	 */
+	static void tint(RenderData data, Color color) {
+		// instanced sprites have to keep the shared vertices
+		if (data.isInstanced()) {
+			data.setTint(color);
+			return;
+		}
+
+		for (int i = 0; i < 4; i++)
+			data.setColor(i, color);
+	}
+
+	/**
+	 * Shows the given {@link AtlasRegion} on this
+	 * {@link SpriteRendererProperty}. Sprites showing regions of the same
+	 * {@link AtlasPage} can be rendered with a single draw call
+	 * 
+	 * @param region
+	 */
+	public void setRegion(AtlasRegion region) {
+		region(mData, region);
+	}
+
+	/**
+	 * Shows the given {@link AtlasRegion} on the given sprite
+	 * 
+	 * @param data
+	 * @param region
+	 */
+	static void region(RenderData data, AtlasRegion region) {
+		float u = region.getU();
+		float v = region.getV();
+		float width = region.getUWidth();
+		float height = region.getVHeight();
+
+		// instanced sprites have to keep the shared vertices
+		if (data.isInstanced()) {
+			data.setRegion(u, v, width, height);
+			return;
+		}
+
+		data.setTexCoord(0, 0, u + width, v + height);
+		data.setTexCoord(1, 0, u, v + height);
+		data.setTexCoord(2, 0, u, v);
+		data.setTexCoord(3, 0, u + width, v);
 	}
 
 	@Override
@@ -90,6 +147,12 @@ public class SpriteRendererProperty extends BaseProperty<RenderData> {
 		// do nothing here
 	}
 
+	@Override
+	public boolean isThreadSafe() {
+		// updating does not change any state
+		return true;
+	}
+
 	@Override
 	public RenderData get() {
 		//if there is no transform, search for one
@@ -2,41 +2,163 @@ package com.github.linggify.attic.properties;
 
 import com.github.linggify.attic.exceptions.AtticRuntimeException;
 import com.github.linggify.attic.logic.Entity;
+import com.github.linggify.attic.logic.Genius;
 import com.github.linggify.attic.util.Matrix33;
 import com.github.linggify.attic.util.Vector2D;
 
 /**
- * The TransformProperty represents an {@link Entity}s position and rotation
+ * The TransformProperty represents an {@link Entity}s position and rotation.
+ * Once attached to an Entity of a {@link Genius}, its values live in a slot of
+ * the {@link TransformStore} of that Genius, which computes the world matrices
+ * of all transforms in one pass. The slot is taken on the Thread of the
+ * Genius. Until then, and while it is detached without children, the
+ * TransformProperty keeps its values itself and computes its matrix on demand
  * 
  * @author Freddy
  *
  */
 public class TransformProperty extends BaseProperty<Matrix33> {
 
-	private float mRotation;
-	private float mScale;
-	private final Vector2D mPosition;
-	private boolean mTransformDirty;
+	// the store given on creation or null to use the one of the Genius
+	private final TransformStore mFixedStore;
+	private TransformStore mStore;
+	private int mSlot;
 	private final Matrix33 mTransform;
+	private final Matrix33 mLocal;
 
-	private final Matrix33 mTmpMatrix;
 	private TransformProperty mParentTransform;
-	private PropertyListener mParentListener;
+	private int mChildCount;
+	private boolean mAttached;
+
+	// values kept while there is no slot
+	private float mX;
+	private float mY;
+	private float mRotation;
+	private float mScale;
 
 	/**
-	 * Creates a new {@link TransformProperty} with the identy-matrix
+	 * Creates a new {@link TransformProperty} with the identy-matrix, which
+	 * uses the {@link TransformStore} of the {@link Genius} it is attached to
 	 */
 	public TransformProperty() {
-		mPosition = new Vector2D();
-		mScale = 1.0f;
-		mRotation = 0.0f;
+		this(null, false);
+	}
+
+	/**
+	 * Creates a new {@link TransformProperty} with the identy-matrix in the
+	 * given {@link TransformStore}. Its slot is taken when it is first used
+	 * 
+	 * @param store
+	 */
+	public TransformProperty(TransformStore store) {
+		this(store, true);
+	}
+
+	/**
+	 * Creates a new {@link TransformProperty} with the identy-matrix
+	 * 
+	 * @param store
+	 * @param required
+	 *            whether the store may not be null
+	 */
+	private TransformProperty(TransformStore store, boolean required) {
+		if (required && store == null)
+			throw new AtticRuntimeException("The TransformStore may not be null");
+
+		mFixedStore = store;
+		mStore = store;
+		mSlot = -1;
+		mScale = 1;
 		mTransform = new Matrix33();
-		mTmpMatrix = new Matrix33();
+		mLocal = new Matrix33();
+	}
+
+	/**
+	 * 
+	 * @return the {@link TransformStore} holding this {@link TransformProperty}
+	 *         or null if it keeps its values itself
+	 */
+	public TransformStore getStore() {
+		return mStore;
+	}
+
+	/**
+	 * Takes a slot in the given {@link TransformStore} if this
+	 * {@link TransformProperty} has none yet, moving its values and parent
+	 * there
+	 * 
+	 * @param store
+	 * @return the slot of this TransformProperty
+	 */
+	private int slot(TransformStore store) {
+		if (mStore != null && mStore != store)
+			throw new AtticRuntimeException("The parent of a TransformProperty must be in the same TransformStore");
+
+		if (mSlot < 0) {
+			mStore = store;
+			mSlot = store.allocate();
+			store.setPosition(mSlot, mX, mY);
+			store.setRotation(mSlot, mRotation);
+			store.setScale(mSlot, mScale);
+
+			if (mParentTransform != null)
+				store.setParent(mSlot, mParentTransform.retain(store));
+		}
+
+		return mSlot;
+	}
+
+	/**
+	 * Takes a slot in the store given on creation, if there is one
+	 * 
+	 * @return the slot of this {@link TransformProperty} or -1 if it keeps its
+	 *         values itself
+	 */
+	private int slot() {
+		if (mSlot < 0 && mFixedStore != null)
+			return slot(mFixedStore);
+		return mSlot;
+	}
+
+	/**
+	 * Keeps the slot of this {@link TransformProperty} alive for a child
+	 * 
+	 * @param store
+	 *            the store of the child
+	 * @return the slot of this TransformProperty
+	 */
+	private int retain(TransformStore store) {
+		int slot = slot(store);
+		mChildCount++;
+		return slot;
+	}
+
+	/**
+	 * Lets go of the slot of this {@link TransformProperty} for a child
+	 */
+	private void releaseChild() {
+		mChildCount--;
+		releaseIfUnused();
+	}
 
-		mParentListener = (t, e) -> {
-			if (e == PropertyEvent.PROPERTY_CHANGED)
-				mTransformDirty = true;
-		};
+	/**
+	 * Gives the slot of this {@link TransformProperty} back to the
+	 * {@link TransformStore} if it is neither attached nor a parent
+	 */
+	private void releaseIfUnused() {
+		if (mSlot < 0 || mAttached || mChildCount > 0)
+			return;
+
+		mX = mStore.getPositionX(mSlot);
+		mY = mStore.getPositionY(mSlot);
+		mRotation = mStore.getRotation(mSlot);
+		mScale = mStore.getScale(mSlot);
+		mStore.release(mSlot);
+		mStore = mFixedStore;
+		mSlot = -1;
+
+		if (mParentTransform != null)
+			mParentTransform.releaseChild();
 	}
 
 	/**
@@ -45,20 +167,21 @@ public class TransformProperty extends BaseProperty<Matrix33> {
 	 * @param parent
 	 */
 	public void setParentTransform(TransformProperty parent) {
-		// check to avoid setting this to its own parent
-		if (parent == this)
-			throw new AtticRuntimeException("Cannot set the parent of a TransformProperty to itself");
+		// check to avoid cycles, including setting this to its own parent
+		for (TransformProperty current = parent; current != null; current = current.mParentTransform) {
+			if (current == this)
+				throw new AtticRuntimeException("Cannot set the parent of a TransformProperty to itself");
+		}
 
-		// detach from previous parent
-		if (mParentTransform != null)
-			mParentTransform.removeListener(mParentListener);
+		int slot = slot();
+		if (slot >= 0) {
+			mStore.setParent(slot, parent == null ? TransformStore.NO_PARENT : parent.retain(mStore));
 
+			// detach from previous parent
+			if (mParentTransform != null)
+				mParentTransform.releaseChild();
+		}
 		mParentTransform = parent;
-		mTransformDirty = true;
-
-		// attach to current parent
-		if (mParentTransform != null)
-			mParentTransform.addListener(mParentListener);
 	}
 
 	/**
@@ -68,8 +191,13 @@ public class TransformProperty extends BaseProperty<Matrix33> {
 	 * @param y
 	 */
 	public void setPosition(float x, float y) {
-		mPosition.set(x, y);
-		mTransformDirty = true;
+		int slot = slot();
+		if (slot >= 0) {
+			mStore.setPosition(slot, x, y);
+		} else {
+			mX = x;
+			mY = y;
+		}
 	}
 
 	/**
@@ -78,8 +206,7 @@ public class TransformProperty extends BaseProperty<Matrix33> {
 	 * @param vector
 	 */
 	public void setPosition(Vector2D vector) {
-		mPosition.set(vector);
-		mTransformDirty = true;
+		setPosition(vector.getX(), vector.getY());
 	}
 
 	/**
@@ -89,8 +216,13 @@ public class TransformProperty extends BaseProperty<Matrix33> {
 	 * @param y
 	 */
 	public void move(float x, float y) {
-		mPosition.add(x, y);
-		mTransformDirty = true;
+		int slot = slot();
+		if (slot >= 0) {
+			mStore.move(slot, x, y);
+		} else {
+			mX += x;
+			mY += y;
+		}
 	}
 
 	/**
@@ -99,8 +231,7 @@ public class TransformProperty extends BaseProperty<Matrix33> {
 	 * @param vector
 	 */
 	public void move(Vector2D vector) {
-		mPosition.add(vector);
-		mTransformDirty = true;
+		move(vector.getX(), vector.getY());
 	}
 
 	/**
@@ -109,8 +240,11 @@ public class TransformProperty extends BaseProperty<Matrix33> {
 	 * @param angle
 	 */
 	public void setRotation(float angle) {
-		mRotation = angle;
-		mTransformDirty = true;
+		int slot = slot();
+		if (slot >= 0)
+			mStore.setRotation(slot, angle);
+		else
+			mRotation = angle;
 	}
 
 	/**
@@ -119,8 +253,11 @@ public class TransformProperty extends BaseProperty<Matrix33> {
 	 * @param angle
 	 */
 	public void rotate(float angle) {
-		mRotation += angle;
-		mTransformDirty = true;
+		int slot = slot();
+		if (slot >= 0)
+			mStore.setRotation(slot, mStore.getRotation(slot) + angle);
+		else
+			mRotation += angle;
 	}
 
 	/**
@@ -129,8 +266,11 @@ public class TransformProperty extends BaseProperty<Matrix33> {
 	 * @param scalar
 	 */
 	public void setScale(float scalar) {
-		mScale = scalar;
-		mTransformDirty = true;
+		int slot = slot();
+		if (slot >= 0)
+			mStore.setScale(slot, scalar);
+		else
+			mScale = scalar;
 	}
 
 	/**
@@ -140,8 +280,11 @@ public class TransformProperty extends BaseProperty<Matrix33> {
 	 * @param scalar
 	 */
 	public void scale(float scalar) {
-		mScale *= scalar;
-		mTransformDirty = true;
+		int slot = slot();
+		if (slot >= 0)
+			mStore.setScale(slot, mStore.getScale(slot) * scalar);
+		else
+			mScale *= scalar;
 	}
 
 	/**
@@ -152,6 +295,25 @@ public class TransformProperty extends BaseProperty<Matrix33> {
 		notifyListeners(PropertyEvent.PROPERTY_CHANGED);
 	}
 
+	@Override
+	public void onAttach(Entity parent) throws AtticRuntimeException {
+		super.onAttach(parent);
+		mAttached = true;
+
+		// Entities of a Genius attach their properties on its Thread
+		if (mFixedStore != null)
+			slot(mFixedStore);
+		else if (parent.getGenius() != null)
+			slot(TransformStore.of(parent.getGenius()));
+	}
+
+	@Override
+	public void onDetach() throws AtticRuntimeException {
+		super.onDetach();
+		mAttached = false;
+		releaseIfUnused();
+	}
+
 	@Override
 	public Class<Matrix33> getContentType() {
 		return Matrix33.class;
@@ -162,23 +324,26 @@ public class TransformProperty extends BaseProperty<Matrix33> {
 		// do nothing
 	}
 
+	@Override
+	public boolean isThreadSafe() {
+		// updating does not change any state
+		return true;
+	}
+
 	@Override
 	public Matrix33 get() {
-		if (mTransformDirty) {
-			mTransform.identy();
-			mTransform.scale(mScale);
-			mTransform.rotate(mRotation);
-			mTransform.transform(mPosition);
-
-			if (mParentTransform != null) {
-				mTmpMatrix.set(mParentTransform.get());
-				mTransform.set(mTmpMatrix.multiply(mTransform));
-			}
-
-			mTransformDirty = false;
+		int slot = slot();
+		if (slot >= 0) {
+			mStore.updateWorldMatrix(slot);
+			return mStore.getWorldMatrix(slot, mTransform);
 		}
 
-		return mTransform;
+		// computed the same way the TransformStore does
+		mLocal.compose(mScale, mRotation, mX, mY);
+		mTransform.identy();
+		if (mParentTransform != null)
+			mTransform.set(mParentTransform.get());
+		return mTransform.multiplyAffine(mLocal);
 	}
 
 }
@@ -0,0 +1,631 @@
+package com.github.linggify.attic.properties;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.github.linggify.attic.exceptions.AtticRuntimeException;
+import com.github.linggify.attic.logic.Genius;
+import com.github.linggify.attic.logic.ISystem;
+import com.github.linggify.attic.util.Matrix33;
+
+/**
+ * The TransformStore keeps the position, rotation, scale and world matrix of
+ * many {@link TransformProperty}s in parallel primitive arrays, so all world
+ * matrices can be recomputed in one pass without touching any objects.
+ *
+ * Every transform occupies a slot. World matrices are 2D affine transforms,
+ * stored row-major with 9 floats per slot, and are only recomputed if the transform or one of its
+ * parents changed since the last computation.
+ *
+ * The slots are kept sorted by their depth in the hierarchy, so a single pass
+ * over all depth levels computes every parent before its children and every
+ * world matrix at most once. The slots of one level do not depend on each
+ * other and can optionally be computed in parallel.
+ *
+ * @author Fredie
+ *
+ */
+public class TransformStore implements ISystem {
+
+	/** The parent of a transform that has no parent */
+	public static final int NO_PARENT = -1;
+	/** The number of floats per world matrix */
+	public static final int MATRIX_SIZE = 9;
+
+	private static final float[] IDENTITY = { 1, 0, 0, 0, 1, 0, 0, 0, 1 };
+
+	private float[] mPositionX;
+	private float[] mPositionY;
+	private float[] mRotation;
+	private float[] mScale;
+	private float[] mWorld;
+
+	private int[] mParent;
+	private int[] mVersion;
+	private int[] mParentVersion;
+	private boolean[] mDirty;
+	private boolean[] mUsed;
+	private int mSlotCount;
+
+	private int[] mFreeSlots;
+	private int mFreeCount;
+
+	private int[] mDepth;
+	private int[] mOrder;
+	private int[] mLevelStart;
+	private int mLevelCount;
+	private boolean mOrderDirty;
+
+	private boolean mParallel;
+	private int mChunkSize;
+	private ForkJoinPool mPool;
+
+	/**
+	 * Creates a new empty {@link TransformStore}
+	 */
+	public TransformStore() {
+		this(64);
+	}
+
+	/**
+	 * Creates a new empty {@link TransformStore} with room for the given amount
+	 * of transforms
+	 *
+	 * @param capacity
+	 */
+	public TransformStore(int capacity) {
+		capacity = Math.max(capacity, 1);
+		mPositionX = new float[capacity];
+		mPositionY = new float[capacity];
+		mRotation = new float[capacity];
+		mScale = new float[capacity];
+		mWorld = new float[capacity * MATRIX_SIZE];
+
+		mParent = new int[capacity];
+		mVersion = new int[capacity];
+		mParentVersion = new int[capacity];
+		mDirty = new boolean[capacity];
+		mUsed = new boolean[capacity];
+		mFreeSlots = new int[capacity];
+
+		mDepth = new int[capacity];
+		mOrder = new int[capacity];
+		mLevelStart = new int[2];
+		mOrderDirty = true;
+
+		mParallel = false;
+		mChunkSize = 1024;
+		mPool = ForkJoinPool.commonPool();
+	}
+
+	/**
+	 * Finds the {@link TransformStore} of the given {@link Genius}, adding a
+	 * new one as a system if it has none yet. This must be called on the
+	 * Thread of the Genius
+	 *
+	 * @param genius
+	 * @return the TransformStore used by the {@link TransformProperty}s of the
+	 *         given Genius
+	 */
+	public static TransformStore of(Genius genius) {
+		TransformStore store = genius.getSystem(TransformStore.class);
+		if (store == null) {
+			store = new TransformStore();
+			genius.addSystem(store);
+		}
+		return store;
+	}
+
+	/**
+	 * Sets whether the slots of a depth level are computed in parallel during
+	 * {@link #updateWorldMatrices()}
+	 *
+	 * @param flag
+	 */
+	public void setParallel(boolean flag) {
+		mParallel = flag;
+	}
+
+	/**
+	 *
+	 * @return whether the slots of a depth level are computed in parallel
+	 */
+	public boolean isParallel() {
+		return mParallel;
+	}
+
+	/**
+	 * Sets how many slots are computed by a single task at least during a
+	 * parallel update. Smaller levels are computed serially
+	 *
+	 * @param size
+	 */
+	public void setParallelChunkSize(int size) {
+		if (size < 1)
+			throw new AtticRuntimeException("The chunk size must be positive, but was " + size);
+		mChunkSize = size;
+	}
+
+	/**
+	 *
+	 * @return how many slots are computed by a single task at least
+	 */
+	public int getParallelChunkSize() {
+		return mChunkSize;
+	}
+
+	/**
+	 * Sets the {@link ForkJoinPool} used for parallel updates. By default the
+	 * common pool is used
+	 *
+	 * @param pool
+	 */
+	public void setUpdatePool(ForkJoinPool pool) {
+		if (pool == null)
+			throw new AtticRuntimeException("The update pool may not be null");
+		mPool = pool;
+	}
+
+	/**
+	 * Makes sure the given amount of slots exists without growing any
+	 * internal arrays
+	 *
+	 * @param capacity
+	 */
+	private void ensureCapacity(int capacity) {
+		if (capacity <= mParent.length)
+			return;
+
+		mPositionX = Arrays.copyOf(mPositionX, capacity);
+		mPositionY = Arrays.copyOf(mPositionY, capacity);
+		mRotation = Arrays.copyOf(mRotation, capacity);
+		mScale = Arrays.copyOf(mScale, capacity);
+		mWorld = Arrays.copyOf(mWorld, capacity * MATRIX_SIZE);
+
+		mParent = Arrays.copyOf(mParent, capacity);
+		mVersion = Arrays.copyOf(mVersion, capacity);
+		mParentVersion = Arrays.copyOf(mParentVersion, capacity);
+		mDirty = Arrays.copyOf(mDirty, capacity);
+		mUsed = Arrays.copyOf(mUsed, capacity);
+		mFreeSlots = Arrays.copyOf(mFreeSlots, capacity);
+
+		mDepth = Arrays.copyOf(mDepth, capacity);
+		mOrder = Arrays.copyOf(mOrder, capacity);
+	}
+
+	/**
+	 * Allocates a new slot holding the identity transform
+	 *
+	 * @return the slot
+	 */
+	public int allocate() {
+		int slot;
+		if (mFreeCount > 0) {
+			slot = mFreeSlots[--mFreeCount];
+		} else {
+			// grow by half to keep allocating amortized constant
+			if (mSlotCount == mParent.length)
+				ensureCapacity(mSlotCount + Math.max(mSlotCount / 2, 16));
+			slot = mSlotCount++;
+		}
+
+		mUsed[slot] = true;
+		mPositionX[slot] = 0;
+		mPositionY[slot] = 0;
+		mRotation[slot] = 0;
+		mScale[slot] = 1;
+		mParent[slot] = NO_PARENT;
+		mDirty[slot] = true;
+		mOrderDirty = true;
+		return slot;
+	}
+
+	/**
+	 * Gives the given slot back to this {@link TransformStore}. The slot must
+	 * not be the parent of any other slot
+	 *
+	 * @param slot
+	 */
+	public void release(int slot) {
+		checkSlot(slot);
+		mUsed[slot] = false;
+		mParent[slot] = NO_PARENT;
+		// transforms still holding the old version must not match the next user
+		mVersion[slot]++;
+		mFreeSlots[mFreeCount++] = slot;
+		mOrderDirty = true;
+	}
+
+	/**
+	 *
+	 * @param slot
+	 * @return whether the given slot is currently allocated
+	 */
+	public boolean isAllocated(int slot) {
+		return slot >= 0 && slot < mSlotCount && mUsed[slot];
+	}
+
+	/**
+	 * Throws an exception if the given slot is not allocated
+	 *
+	 * @param slot
+	 */
+	private void checkSlot(int slot) {
+		if (!isAllocated(slot))
+			throw new AtticRuntimeException("Transform slot " + slot + " is not allocated");
+	}
+
+	/**
+	 * Sets the position of the given slot
+	 *
+	 * @param slot
+	 * @param x
+	 * @param y
+	 */
+	public void setPosition(int slot, float x, float y) {
+		checkSlot(slot);
+		mPositionX[slot] = x;
+		mPositionY[slot] = y;
+		mDirty[slot] = true;
+	}
+
+	/**
+	 * Moves the given slot by the given amount
+	 *
+	 * @param slot
+	 * @param x
+	 * @param y
+	 */
+	public void move(int slot, float x, float y) {
+		checkSlot(slot);
+		mPositionX[slot] += x;
+		mPositionY[slot] += y;
+		mDirty[slot] = true;
+	}
+
+	/**
+	 *
+	 * @param slot
+	 * @return the x-coordinate of the position of the given slot
+	 */
+	public float getPositionX(int slot) {
+		checkSlot(slot);
+		return mPositionX[slot];
+	}
+
+	/**
+	 *
+	 * @param slot
+	 * @return the y-coordinate of the position of the given slot
+	 */
+	public float getPositionY(int slot) {
+		checkSlot(slot);
+		return mPositionY[slot];
+	}
+
+	/**
+	 * Sets the rotation of the given slot in degrees
+	 *
+	 * @param slot
+	 * @param angle
+	 */
+	public void setRotation(int slot, float angle) {
+		checkSlot(slot);
+		mRotation[slot] = angle;
+		mDirty[slot] = true;
+	}
+
+	/**
+	 *
+	 * @param slot
+	 * @return the rotation of the given slot in degrees
+	 */
+	public float getRotation(int slot) {
+		checkSlot(slot);
+		return mRotation[slot];
+	}
+
+	/**
+	 * Sets the scale of the given slot
+	 *
+	 * @param slot
+	 * @param scalar
+	 */
+	public void setScale(int slot, float scalar) {
+		checkSlot(slot);
+		mScale[slot] = scalar;
+		mDirty[slot] = true;
+	}
+
+	/**
+	 *
+	 * @param slot
+	 * @return the scale of the given slot
+	 */
+	public float getScale(int slot) {
+		checkSlot(slot);
+		return mScale[slot];
+	}
+
+	/**
+	 * Sets the parent of the given slot
+	 *
+	 * @param slot
+	 * @param parent
+	 *            the parent slot or {@link #NO_PARENT}
+	 */
+	public void setParent(int slot, int parent) {
+		checkSlot(slot);
+		if (parent != NO_PARENT) {
+			checkSlot(parent);
+			// walk up the hierarchy to avoid cycles
+			for (int current = parent; current != NO_PARENT; current = mParent[current]) {
+				if (current == slot)
+					throw new AtticRuntimeException("Cannot make transform slot " + slot + " a child of itself");
+			}
+		}
+
+		if (mParent[slot] != parent) {
+			mParent[slot] = parent;
+			mDirty[slot] = true;
+			mOrderDirty = true;
+		}
+	}
+
+	/**
+	 *
+	 * @param slot
+	 * @return the parent of the given slot or {@link #NO_PARENT}
+	 */
+	public int getParent(int slot) {
+		checkSlot(slot);
+		return mParent[slot];
+	}
+
+	/**
+	 *
+	 * @param slot
+	 * @return the depth of the given slot in the hierarchy, 0 for slots
+	 *         without a parent
+	 */
+	public int getDepth(int slot) {
+		checkSlot(slot);
+		if (mOrderDirty)
+			sortByDepth();
+		return mDepth[slot];
+	}
+
+	/**
+	 * Sorts all allocated slots by their depth in the hierarchy using a
+	 * counting sort
+	 */
+	private void sortByDepth() {
+		for (int slot = 0; slot < mSlotCount; slot++)
+			mDepth[slot] = -1;
+
+		int maxDepth = -1;
+		for (int slot = 0; slot < mSlotCount; slot++) {
+			if (!mUsed[slot] || mDepth[slot] >= 0)
+				continue;
+
+			// count the unknown ancestors, then assign the depths downwards
+			int unknown = 0;
+			int current = slot;
+			while (current != NO_PARENT && mDepth[current] < 0) {
+				unknown++;
+				current = mParent[current];
+			}
+
+			int depth = (current == NO_PARENT ? -1 : mDepth[current]) + unknown;
+			maxDepth = Math.max(maxDepth, depth);
+			for (current = slot; current != NO_PARENT && mDepth[current] < 0; current = mParent[current])
+				mDepth[current] = depth--;
+		}
+
+		mLevelCount = maxDepth + 1;
+		if (mLevelStart.length < mLevelCount + 1)
+			mLevelStart = new int[mLevelCount + 1];
+		Arrays.fill(mLevelStart, 0, mLevelCount + 1, 0);
+
+		for (int slot = 0; slot < mSlotCount; slot++) {
+			if (mUsed[slot])
+				mLevelStart[mDepth[slot] + 1]++;
+		}
+		for (int level = 0; level < mLevelCount; level++)
+			mLevelStart[level + 1] += mLevelStart[level];
+
+		// mLevelStart[level] is used as the insert position and ends up at the
+		// start of the next level, so it is shifted back afterwards
+		for (int slot = 0; slot < mSlotCount; slot++) {
+			if (mUsed[slot])
+				mOrder[mLevelStart[mDepth[slot]]++] = slot;
+		}
+		for (int level = mLevelCount; level > 0; level--)
+			mLevelStart[level] = mLevelStart[level - 1];
+		mLevelStart[0] = 0;
+
+		mOrderDirty = false;
+	}
+
+	/**
+	 * Recomputes the world matrices of all slots that changed. The slots are
+	 * processed level by level, so every world matrix is computed at most once
+	 */
+	public void updateWorldMatrices() {
+		if (mOrderDirty)
+			sortByDepth();
+
+		for (int level = 0; level < mLevelCount; level++) {
+			int start = mLevelStart[level];
+			int end = mLevelStart[level + 1];
+
+			if (mParallel && end - start > mChunkSize) {
+				mPool.invoke(new LevelAction(start, end, mChunkSize));
+			} else {
+				for (int i = start; i < end; i++)
+					updateSlot(mOrder[i]);
+			}
+		}
+	}
+
+	/**
+	 * Recomputes the world matrix of the given slot if it or its parent
+	 * changed. The parent must already be up to date
+	 *
+	 * @param slot
+	 */
+	private void updateSlot(int slot) {
+		int parent = mParent[slot];
+		// a parent that changed since the last computation makes its children dirty
+		if (parent != NO_PARENT && mParentVersion[slot] != mVersion[parent])
+			mDirty[slot] = true;
+
+		if (mDirty[slot])
+			compute(slot, parent);
+	}
+
+	/**
+	 * Recomputes the world matrix of the given slot and its parents, if they
+	 * changed
+	 *
+	 * @param slot
+	 */
+	public void updateWorldMatrix(int slot) {
+		checkSlot(slot);
+		resolve(slot);
+	}
+
+	/**
+	 * Recomputes the world matrix of the given slot after its parents
+	 *
+	 * @param slot
+	 */
+	private void resolve(int slot) {
+		int parent = mParent[slot];
+		if (parent != NO_PARENT)
+			resolve(parent);
+
+		updateSlot(slot);
+	}
+
+	/**
+	 * Computes the world matrix of the given slot from its local values and
+	 * the world matrix of its parent. The local matrix is built like
+	 * {@link Matrix33#compose(float, float, float, float)} and multiplied onto
+	 * the parent like {@link Matrix33#multiplyAffine(Matrix33)}, so the last
+	 * row of every world matrix is (0, 0, 1)
+	 *
+	 * @param slot
+	 * @param parent
+	 */
+	private void compute(int slot, int parent) {
+		double radians = Math.toRadians(mRotation[slot]);
+		float sin = (float) Math.sin(radians) * mScale[slot];
+		float cos = (float) Math.cos(radians) * mScale[slot];
+		float l0 = cos, l1 = -sin, l2 = mPositionX[slot];
+		float l3 = sin, l4 = cos, l5 = mPositionY[slot];
+
+		// slots without a parent use the identity as their parent
+		float[] p = IDENTITY;
+		int po = 0;
+		if (parent != NO_PARENT) {
+			p = mWorld;
+			po = parent * MATRIX_SIZE;
+			mParentVersion[slot] = mVersion[parent];
+		}
+		float p0 = p[po], p1 = p[po + 1], p2 = p[po + 2];
+		float p3 = p[po + 3], p4 = p[po + 4], p5 = p[po + 5];
+
+		float[] world = mWorld;
+		int o = slot * MATRIX_SIZE;
+		world[o] = p0 * l0 + p1 * l3;
+		world[o + 1] = p0 * l1 + p1 * l4;
+		world[o + 2] = p0 * l2 + p1 * l5 + p2;
+		world[o + 3] = p3 * l0 + p4 * l3;
+		world[o + 4] = p3 * l1 + p4 * l4;
+		world[o + 5] = p3 * l2 + p4 * l5 + p5;
+		world[o + 6] = 0;
+		world[o + 7] = 0;
+		world[o + 8] = 1;
+
+		mDirty[slot] = false;
+		mVersion[slot]++;
+	}
+
+	/**
+	 * Copies the current world matrix of the given slot into the given
+	 * {@link Matrix33}. The matrix is not recomputed
+	 *
+	 * @param slot
+	 * @param target
+	 * @return the given Matrix33
+	 */
+	public Matrix33 getWorldMatrix(int slot, Matrix33 target) {
+		checkSlot(slot);
+		return target.set(mWorld, slot * MATRIX_SIZE);
+	}
+
+	/**
+	 * The returned array is replaced when this {@link TransformStore} grows
+	 *
+	 * @return the world matrices of all slots, {@link #MATRIX_SIZE} floats per
+	 *         slot
+	 */
+	public float[] worldMatrices() {
+		return mWorld;
+	}
+
+	/**
+	 *
+	 * @return how many slots are currently allocated
+	 */
+	public int size() {
+		return mSlotCount - mFreeCount;
+	}
+
+	@Override
+	public void update(double delta) {
+		updateWorldMatrices();
+	}
+
+	/**
+	 * Computes the world matrices of a range of slots within one depth level
+	 *
+	 * @author Fredie
+	 *
+	 */
+	private class LevelAction extends RecursiveAction {
+
+		private static final long serialVersionUID = -2311064380618322781L;
+
+		private final int mStart;
+		private final int mEnd;
+		private final int mChunk;
+
+		/**
+		 * Creates a new {@link LevelAction} for the ordered slots in [start,
+		 * end)
+		 *
+		 * @param start
+		 * @param end
+		 * @param chunk
+		 */
+		LevelAction(int start, int end, int chunk) {
+			mStart = start;
+			mEnd = end;
+			mChunk = chunk;
+		}
+
+		@Override
+		protected void compute() {
+			if (mEnd - mStart <= mChunk) {
+				for (int i = mStart; i < mEnd; i++)
+					updateSlot(mOrder[i]);
+			} else {
+				int mid = (mStart + mEnd) >>> 1;
+				invokeAll(new LevelAction(mStart, mid, mChunk), new LevelAction(mid, mEnd, mChunk));
+			}
+		}
+	}
+}
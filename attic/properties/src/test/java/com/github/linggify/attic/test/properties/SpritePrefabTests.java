@@ -0,0 +1,66 @@
+package com.github.linggify.attic.test.properties;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.github.linggify.attic.properties.SpritePrefab;
+import com.github.linggify.attic.properties.SpriteRendererProperty;
+import com.github.linggify.attic.render.RenderData;
+import com.github.linggify.attic.util.Color;
+
+/**
+ * Tests for {@link SpritePrefab}
+ *
+ * @author Fredie
+ *
+ */
+public class SpritePrefabTests {
+
+	/**
+	 * Tests {@link SpritePrefab#create()}
+	 */
+	@Test
+	public void testCreate() {
+		SpritePrefab prefab = new SpritePrefab("sprites", false, false);
+		RenderData a = prefab.create().get();
+		RenderData b = prefab.create().get();
+
+		assertEquals("sprites", a.getLayer());
+		assertTrue(a.isShared());
+		assertEquals(a.asBuffer(), b.asBuffer());
+		assertArrayEquals(new int[] { 0, 1, 2, 2, 3, 0 }, a.getIndices());
+		assertSame(a.getIndices(), b.getIndices());
+	}
+
+	/**
+	 * Tests {@link SpriteRendererProperty#setTint(Color)} on a sprite sharing
+	 * the quad of a {@link SpritePrefab}
+	 */
+	@Test
+	public void testCopyOnWrite() {
+		SpritePrefab prefab = new SpritePrefab("sprites", false, false);
+		SpriteRendererProperty a = prefab.create();
+		SpriteRendererProperty b = prefab.create();
+
+		a.setTint(new Color(1, 0, 0, 1));
+		assertFalse(a.get().isShared());
+		assertEquals(0xFF0000FF, a.get().getColor(0));
+		assertEquals(0xFFFFFFFF, b.get().getColor(0));
+	}
+
+	/**
+	 * Tests {@link SpritePrefab#setTint(Color)}, which only changes sprites
+	 * created afterwards
+	 */
+	@Test
+	public void testSetTint() {
+		SpritePrefab prefab = new SpritePrefab("sprites", false, false);
+		SpriteRendererProperty before = prefab.create();
+		prefab.setTint(new Color(0, 1, 0, 1));
+		SpriteRendererProperty after = prefab.create();
+
+		assertEquals(0xFFFFFFFF, before.get().getColor(3));
+		assertEquals(0x00FF00FF, after.get().getColor(3));
+	}
+}
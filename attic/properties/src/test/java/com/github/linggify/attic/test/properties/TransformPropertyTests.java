@@ -98,7 +98,7 @@ public class TransformPropertyTests {
 	public void testSetScale() {
 		TransformProperty property = new TransformProperty();
 		property.setScale(2);
-		assertEquals(new Matrix33().scale(2), property.get());
+		assertEquals(new Matrix33(new float[] { 2, 0, 0, 0, 2, 0, 0, 0, 1 }), property.get());
 	}
 	
 	/**
@@ -108,7 +108,7 @@ public class TransformPropertyTests {
 	public void testScale() {
 		TransformProperty property = new TransformProperty();
 		property.scale(2);
-		assertEquals(new Matrix33().scale(2), property.get());
+		assertEquals(new Matrix33(new float[] { 2, 0, 0, 0, 2, 0, 0, 0, 1 }), property.get());
 	}
 	
 	/**
@@ -0,0 +1,223 @@
+package com.github.linggify.attic.test.properties;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.github.linggify.attic.exceptions.AtticRuntimeException;
+import com.github.linggify.attic.logic.Entity;
+import com.github.linggify.attic.logic.Genius;
+import com.github.linggify.attic.properties.TransformProperty;
+import com.github.linggify.attic.properties.TransformStore;
+import com.github.linggify.attic.util.Matrix33;
+
+/**
+ * Tests for {@link TransformStore}
+ *
+ * @author Fredie
+ *
+ */
+public class TransformStoreTests {
+
+	/**
+	 * Tests {@link TransformStore#allocate()} and
+	 * {@link TransformStore#release(int)}
+	 */
+	@Test
+	public void testAllocateRelease() {
+		TransformStore store = new TransformStore(1);
+		int a = store.allocate();
+		int b = store.allocate();
+		assertNotEquals(a, b);
+		assertEquals(2, store.size());
+
+		store.setPosition(a, 3, 4);
+		store.release(a);
+		assertFalse(store.isAllocated(a));
+		assertEquals(1, store.size());
+
+		// reused slots start out as the identity
+		int c = store.allocate();
+		assertEquals(a, c);
+		store.updateWorldMatrices();
+		assertEquals(new Matrix33(), store.getWorldMatrix(c, new Matrix33()));
+	}
+
+	/**
+	 * Tests accessing a released slot (expecting an exception)
+	 */
+	@Test (expected = AtticRuntimeException.class)
+	public void testReleasedSlotError0() {
+		TransformStore store = new TransformStore();
+		int slot = store.allocate();
+		store.release(slot);
+		store.setPosition(slot, 1, 1);
+	}
+
+	/**
+	 * Tests {@link TransformStore#updateWorldMatrices()}
+	 */
+	@Test
+	public void testUpdateWorldMatrices() {
+		TransformStore store = new TransformStore();
+		int parent = store.allocate();
+		int child = store.allocate();
+		store.setParent(child, parent);
+
+		store.setPosition(parent, 2, 0);
+		store.setRotation(parent, 90);
+		store.setPosition(child, 1, 0);
+		store.updateWorldMatrices();
+
+		Matrix33 expected = new Matrix33().transform(1, 0).rotate(90).transform(2, 0);
+		assertEquals(expected, store.getWorldMatrix(child, new Matrix33()));
+
+		// changing only the parent has to update the child
+		store.setPosition(parent, 0, 0);
+		store.updateWorldMatrix(parent);
+		store.updateWorldMatrices();
+		expected = new Matrix33().transform(1, 0).rotate(90);
+		assertEquals(expected, store.getWorldMatrix(child, new Matrix33()));
+	}
+
+	/**
+	 * Tests {@link TransformStore#updateWorldMatrices()} with scaled
+	 * transforms against {@link Matrix33#compose(float, float, float, float)}
+	 * and {@link Matrix33#multiplyAffine(Matrix33)}
+	 */
+	@Test
+	public void testScaledHierarchy() {
+		TransformStore store = new TransformStore();
+		int parent = store.allocate();
+		int child = store.allocate();
+		store.setParent(child, parent);
+
+		store.setScale(parent, 2);
+		store.setRotation(parent, 30);
+		store.setPosition(parent, 1, -1);
+		store.setScale(child, 0.5f);
+		store.setRotation(child, -45);
+		store.setPosition(child, 3, 4);
+		store.updateWorldMatrices();
+
+		Matrix33 expected = new Matrix33().compose(2, 30, 1, -1);
+		assertArrayEquals(expected.getValues(), store.getWorldMatrix(parent, new Matrix33()).getValues(), 0.0001f);
+
+		expected.multiplyAffine(new Matrix33().compose(0.5f, -45, 3, 4));
+		float[] world = store.getWorldMatrix(child, new Matrix33()).getValues();
+		assertArrayEquals(expected.getValues(), world, 0.0001f);
+		// the world matrix stays affine
+		assertArrayEquals(new float[] { 0, 0, 1 }, Arrays.copyOfRange(world, 6, 9), 0);
+	}
+
+	/**
+	 * Tests {@link TransformStore#getDepth(int)}
+	 */
+	@Test
+	public void testGetDepth() {
+		TransformStore store = new TransformStore();
+		int leaf = store.allocate();
+		int middle = store.allocate();
+		int root = store.allocate();
+		store.setParent(leaf, middle);
+		store.setParent(middle, root);
+
+		assertEquals(0, store.getDepth(root));
+		assertEquals(1, store.getDepth(middle));
+		assertEquals(2, store.getDepth(leaf));
+
+		store.setParent(middle, TransformStore.NO_PARENT);
+		assertEquals(0, store.getDepth(middle));
+		assertEquals(1, store.getDepth(leaf));
+	}
+
+	/**
+	 * Tests {@link TransformStore#updateWorldMatrices()} with parallel levels
+	 */
+	@Test
+	public void testParallelUpdate() {
+		TransformStore store = new TransformStore();
+		store.setParallel(true);
+		store.setParallelChunkSize(8);
+
+		int root = store.allocate();
+		store.setPosition(root, 1, 2);
+		int[] children = new int[100];
+		for (int i = 0; i < children.length; i++) {
+			children[i] = store.allocate();
+			store.setParent(children[i], root);
+			store.setPosition(children[i], i, 0);
+		}
+		store.updateWorldMatrices();
+
+		Matrix33 matrix = new Matrix33();
+		for (int i = 0; i < children.length; i++)
+			assertEquals(new Matrix33().transform(i + 1, 2), store.getWorldMatrix(children[i], matrix));
+	}
+
+	/**
+	 * Tests {@link TransformStore#setParent(int, int)} creating a cycle
+	 * (expecting an exception)
+	 */
+	@Test (expected = AtticRuntimeException.class)
+	public void testParentCycleError0() {
+		TransformStore store = new TransformStore();
+		int a = store.allocate();
+		int b = store.allocate();
+		store.setParent(b, a);
+		store.setParent(a, b);
+	}
+
+	/**
+	 * Tests that a detached {@link TransformProperty} gives its slot back and
+	 * keeps its values
+	 */
+	@Test
+	public void testDetachedProperty() {
+		TransformStore store = new TransformStore();
+		TransformProperty parent = new TransformProperty(store);
+		TransformProperty child = new TransformProperty(store);
+		child.setParentTransform(parent);
+		parent.setPosition(2, 0);
+		child.setPosition(1, 0);
+
+		Entity entity = new Entity(null);
+		parent.onAttach(entity);
+		child.onAttach(entity);
+		assertEquals(2, store.size());
+
+		// the parent keeps its slot while it has a child
+		parent.onDetach();
+		assertEquals(2, store.size());
+		child.onDetach();
+		assertEquals(0, store.size());
+
+		assertEquals(new Matrix33().transform(3, 0), child.get());
+		assertEquals(2, store.size());
+	}
+
+	/**
+	 * Tests {@link TransformStore#of(Genius)} giving every {@link Genius} its
+	 * own store, whose slots are only taken when attaching
+	 */
+	@Test
+	public void testOf() {
+		Genius first = new Genius(null);
+		Genius second = new Genius(null);
+		TransformStore store = TransformStore.of(first);
+		assertSame(store, TransformStore.of(first));
+		assertNotSame(store, TransformStore.of(second));
+
+		TransformProperty property = new TransformProperty();
+		property.setPosition(1, 2);
+		assertNull(property.getStore());
+		assertEquals(0, store.size());
+
+		new Entity(first, property);
+		assertSame(store, property.getStore());
+		assertEquals(1, store.size());
+		assertEquals(new Matrix33().transform(1, 2), property.get());
+	}
+}
@@ -0,0 +1,23 @@
+attribute vec2 a_pos;
+attribute vec4 a_color;
+attribute vec2 a_texcoord_0;
+
+attribute vec3 i_transform_0;
+attribute vec3 i_transform_1;
+attribute vec4 i_tint;
+attribute vec4 i_region;
+
+varying vec4 v_color;
+varying vec2 v_texcoord;
+
+uniform mat3 u_transform;
+
+void main() {
+    vec3 local = vec3(a_pos.x, a_pos.y, 1);
+    vec3 world = vec3(dot(i_transform_0, local), dot(i_transform_1, local), 1);
+    vec3 pos = u_transform * world;
+    v_color = a_color * i_tint;
+    v_texcoord = i_region.xy + a_texcoord_0 * i_region.zw;
+
+    gl_Position = vec4(pos.x, pos.y, 0, 1);
+}
\ No newline at end of file